@@ -10,8 +10,14 @@ import vue.llm.io.VueFile;
 import vue.llm.io.VueFileCollector;
 import vue.llm.router.RouteTable;
 import vue.llm.router.RouterParser;
+import vue.llm.util.AdaptiveConcurrencyLimiter;
 import vue.llm.util.LlmClient;
+import vue.llm.util.LlmResponseCache;
+import vue.llm.util.RateLimiter;
+import vue.llm.util.RetryPolicy;
 import vue.llm.util.RouteGraph;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
@@ -25,9 +31,68 @@ import java.util.List;
 import java.util.Set;
 
 public class Main {
+
+    private static final Logger log = LoggerFactory.getLogger(Main.class);
+
+    /** Command-line options; see the README for what each one does. */
+    static final class Options {
+        int fromStage = 1;
+        int llmConcurrency = StructureExtraction.DEFAULT_LLM_CONCURRENCY;
+        int requestsPerMinute = 0;
+        int tokensPerMinute = 0;
+        LlmResponseCache.Mode cacheMode = LlmResponseCache.Mode.READ_WRITE;
+        int inputTokens = StructureExtraction.DEFAULT_STAGE2_INPUT_TOKENS;
+        int outputTokens = StructureExtraction.DEFAULT_STAGE2_OUTPUT_TOKENS;
+        double confidenceThreshold = StructureExtraction.DEFAULT_LLM_CONFIDENCE_THRESHOLD;
+        boolean streaming = false;
+        int maxAttempts = RetryPolicy.DEFAULT_MAX_ATTEMPTS;
+        boolean hedging = false;
+        boolean structuredOutput = false;
+        boolean pipelined = false;
+
+        static Options parse(String[] args) {
+            Options options = new Options();
+            for (String arg : args) {
+                int eq = arg.indexOf('=');
+                String name = eq > 0 ? arg.substring(0, eq) : arg;
+                String value = eq > 0 ? arg.substring(eq + 1) : "";
+                switch (name) {
+                    case "--from-stage":
+                        options.fromStage = Integer.parseInt(value);
+                        if (options.fromStage < 1 || options.fromStage > 3) {
+                            throw new IllegalArgumentException("--from-stage must be 1, 2 or 3: " + arg);
+                        }
+                        break;
+                    case "--llm-concurrency": options.llmConcurrency = Integer.parseInt(value); break;
+                    case "--llm-rpm": options.requestsPerMinute = Integer.parseInt(value); break;
+                    case "--llm-tpm": options.tokensPerMinute = Integer.parseInt(value); break;
+                    case "--llm-cache": options.cacheMode = LlmResponseCache.Mode.parse(value); break;
+                    case "--llm-input-tokens": options.inputTokens = Integer.parseInt(value); break;
+                    case "--llm-output-tokens": options.outputTokens = Integer.parseInt(value); break;
+                    case "--llm-skip-confidence": options.confidenceThreshold = Double.parseDouble(value); break;
+                    case "--llm-stream": options.streaming = flag(arg, eq, value); break;
+                    case "--llm-max-attempts": options.maxAttempts = Integer.parseInt(value); break;
+                    case "--llm-hedge": options.hedging = flag(arg, eq, value); break;
+                    case "--llm-schema": options.structuredOutput = flag(arg, eq, value); break;
+                    case "--pipeline": options.pipelined = flag(arg, eq, value); break;
+                    default: throw new IllegalArgumentException("Unknown option: " + arg);
+                }
+            }
+            return options;
+        }
+
+        /** A switch: on when given bare, otherwise {@code =true} or {@code =false}. */
+        private static boolean flag(String arg, int eq, String value) {
+            if (eq < 0) return true;
+            if (value.equals("true")) return true;
+            if (value.equals("false")) return false;
+            throw new IllegalArgumentException("Expected true or false: " + arg);
+        }
+    }
+
     public static void main(String[] args) throws Exception {
         String activeProject = "library";
-        buildPTG(activeProject);
+        buildPTG(activeProject, Options.parse(args));
     }
 
 
@@ -104,12 +169,11 @@ public class Main {
                     .sum();
 
         } catch (Exception e) {
-            System.err.println("[displayProjectStatistics] Error: " + e.getMessage());
-            e.printStackTrace();
+            log.warn("[displayProjectStatistics] Error: {}", e.getMessage(), e);
         }
     }
 
-    private static void buildPTG(String activeProject) throws Exception {
+    private static void buildPTG(String activeProject, Options options) throws Exception {
         ProjectConfig config = ProjectConfig.PROJECTS.get(activeProject);
         if (config == null) {
             throw new IllegalArgumentException("Unknown project: " + activeProject);
@@ -124,8 +188,20 @@ public class Main {
         List<VueFile> vueFiles = VueFileCollector.collect(config.projectRoot);
         displayProjectStatistics(activeProject);
         LlmClient llm = new LlmClient();
-        StructureExtraction structureExtraction = new StructureExtraction(llm, routeTable, config.routerRelativePath);
-        StructureGraph stage3Graph = structureExtraction.run(activeProject, vueFiles);
+        llm.setCache(new LlmResponseCache(LlmResponseCache.DEFAULT_DIR, options.cacheMode));
+        llm.setRetryPolicy(new RetryPolicy(options.maxAttempts, RetryPolicy.DEFAULT_BASE_DELAY_MS, RetryPolicy.DEFAULT_MAX_DELAY_MS));
+        llm.setConcurrencyLimiter(new AdaptiveConcurrencyLimiter(options.llmConcurrency));
+        llm.setHedging(options.hedging);
+        StructureExtraction structureExtraction = new StructureExtraction(llm, routeTable, config.routerRelativePath, config.disabledExtractors);
+        structureExtraction.setCheckpointDir(Path.of("out", config.projectName, "checkpoints"));
+        structureExtraction.setLlmConcurrency(options.llmConcurrency);
+        structureExtraction.setRateLimiter(new RateLimiter(options.requestsPerMinute, options.tokensPerMinute));
+        structureExtraction.setStage2TokenBudget(options.inputTokens, options.outputTokens);
+        structureExtraction.setLlmConfidenceThreshold(options.confidenceThreshold);
+        structureExtraction.setLlmStreaming(options.streaming);
+        structureExtraction.setLlmStructuredOutput(options.structuredOutput);
+        structureExtraction.setPipelineStages(options.pipelined);
+        StructureGraph stage3Graph = structureExtraction.run(activeProject, vueFiles, options.fromStage);
         Path expertGraphPath = Path.of("ptg", activeProject + ".json");
         StructureGraph expertGraph = null;
         if (Files.exists(expertGraphPath)) {
@@ -135,7 +211,8 @@ public class Main {
         String stage3Json = JSON.toJSONString(stage3Graph);
         Files.writeString(outDir.resolve("stage3_graph.json"), stage3Json, StandardCharsets.UTF_8,
                 StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
-        System.out.println("\n[Output] Stage 3 graph saved to stage3_graph.json");
+        log.info("[Output] Stage 3 graph saved to stage3_graph.json");
+        llm.getTelemetry().write(outDir.resolve("llm_metrics.json"));
         if (expertGraph != null) {
             evaluation(structureExtraction, expertGraph, stage3Graph, outDir);
         }
@@ -169,7 +246,7 @@ public class Main {
         }
 
         if (undefinedNodes.isEmpty()) {
-            System.out.println("\nAll nodes are defined in router configuration.");
+            log.info("All nodes are defined in router configuration.");
         } else {
             for (String node : undefinedNodes) {
                 List<String> referencingEdges = new ArrayList<>();
@@ -186,7 +263,7 @@ public class Main {
     public static GraphEvaluator.EvaluationResult evaluation(StructureExtraction structureExtraction, StructureGraph expertGraph,
                                                              StructureGraph stage3Graph, Path outDir) throws Exception {
         if (expertGraph == null) {
-            System.out.println("[Evaluation] Expert graph not found, skipping evaluation.");
+            log.info("[Evaluation] Expert graph not found, skipping evaluation.");
             return null;
         }
 
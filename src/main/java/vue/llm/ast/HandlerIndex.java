@@ -0,0 +1,165 @@
+package vue.llm.ast;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+
+/**
+ * Maps router-call handler names to the DOM nodes that invoke them, preserving the
+ * {@code handlerExpr.contains(handler)} / {@code command} semantics of a linear scan.
+ *
+ * Event expressions are split into maximal identifier runs; any identifier-only handler that occurs
+ * in an expression occurs inside one of those runs, so the lookup only has to search the (small)
+ * distinct-token vocabulary. Handlers with other characters fall back to the linear scan.
+ * Set {@code -Dvue.llm.verifyHandlerIndex=true} to cross-check every lookup against the scan.
+ */
+public class HandlerIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(HandlerIndex.class);
+
+    private static final boolean VERIFY = Boolean.getBoolean("vue.llm.verifyHandlerIndex");
+
+    private final List<DomNode> nodes;
+    private final List<List<String>> eventKeys = new ArrayList<>();
+    private final Map<String, List<int[]>> tokenPostings = new HashMap<>();
+    private final Map<String, List<Integer>> commandIndex = new HashMap<>();
+    private final Map<String, List<Match>> memo = new HashMap<>();
+
+    public static final class Match {
+        public final DomNode node;
+        public final String eventKey;
+
+        Match(DomNode node, String eventKey) {
+            this.node = node;
+            this.eventKey = eventKey;
+        }
+    }
+
+    public HandlerIndex(List<DomNode> domNodes) {
+        this.nodes = domNodes == null ? List.of() : domNodes;
+        for (int n = 0; n < nodes.size(); n++) {
+            DomNode node = nodes.get(n);
+            List<String> keys = new ArrayList<>();
+            eventKeys.add(keys);
+            if (node == null) continue;
+
+            if (node.events != null) {
+                for (Map.Entry<String, String> evt : node.events.entrySet()) {
+                    int ordinal = keys.size();
+                    keys.add(evt.getKey());
+                    if (evt.getValue() == null) continue;
+                    for (String token : identifierRuns(evt.getValue())) {
+                        tokenPostings.computeIfAbsent(token, k -> new ArrayList<>()).add(new int[]{n, ordinal});
+                    }
+                }
+            }
+            if (node.attrs != null && node.attrs.containsKey("command")) {
+                String command = node.attrs.get("command");
+                if (command != null) {
+                    commandIndex.computeIfAbsent(command, k -> new ArrayList<>()).add(n);
+                }
+            }
+        }
+    }
+
+    /** Nodes matched by {@code handler} in document order, each with the event key that matched. */
+    public synchronized List<Match> lookup(String handler) {
+        if (handler == null) return List.of();
+        List<Match> cached = memo.get(handler);
+        if (cached != null) return cached;
+
+        List<Match> result = isIdentifier(handler) ? indexedLookup(handler) : linearLookup(handler);
+        if (VERIFY && !sameMatches(result, linearLookup(handler))) {
+            log.warn("[HandlerIndex] Mismatch for handler '{}', using linear scan", handler);
+            result = linearLookup(handler);
+        }
+        result = Collections.unmodifiableList(result);
+        memo.put(handler, result);
+        return result;
+    }
+
+    private List<Match> indexedLookup(String handler) {
+        Map<Integer, Integer> firstEvent = new TreeMap<>();
+        for (Map.Entry<String, List<int[]>> entry : tokenPostings.entrySet()) {
+            if (!entry.getKey().contains(handler)) continue;
+            for (int[] posting : entry.getValue()) {
+                firstEvent.merge(posting[0], posting[1], Math::min);
+            }
+        }
+        for (int n : commandIndex.getOrDefault(handler, List.of())) {
+            firstEvent.putIfAbsent(n, -1);
+        }
+
+        List<Match> result = new ArrayList<>();
+        for (Map.Entry<Integer, Integer> entry : firstEvent.entrySet()) {
+            int n = entry.getKey();
+            int ordinal = entry.getValue();
+            result.add(new Match(nodes.get(n), ordinal < 0 ? "click" : eventKeys.get(n).get(ordinal)));
+        }
+        return result;
+    }
+
+    private List<Match> linearLookup(String handler) {
+        List<Match> result = new ArrayList<>();
+        for (DomNode node : nodes) {
+            if (node == null) continue;
+
+            String eventKey = null;
+            if (node.events != null) {
+                for (Map.Entry<String, String> evt : node.events.entrySet()) {
+                    String handlerExpr = evt.getValue();
+                    if (handlerExpr != null && handlerExpr.contains(handler)) {
+                        eventKey = evt.getKey();
+                        break;
+                    }
+                }
+            }
+            if (eventKey == null && node.attrs != null && node.attrs.containsKey("command")
+                    && handler.equals(node.attrs.get("command"))) {
+                eventKey = "click";
+            }
+            if (eventKey != null) {
+                result.add(new Match(node, eventKey));
+            }
+        }
+        return result;
+    }
+
+    private static boolean sameMatches(List<Match> a, List<Match> b) {
+        if (a.size() != b.size()) return false;
+        for (int i = 0; i < a.size(); i++) {
+            if (a.get(i).node != b.get(i).node || !Objects.equals(a.get(i).eventKey, b.get(i).eventKey)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isIdentifierChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '$';
+    }
+
+    private static boolean isIdentifier(String s) {
+        if (s.isEmpty()) return false;
+        for (int i = 0; i < s.length(); i++) {
+            if (!isIdentifierChar(s.charAt(i))) return false;
+        }
+        return true;
+    }
+
+    private static Set<String> identifierRuns(String expr) {
+        Set<String> runs = new LinkedHashSet<>();
+        int start = -1;
+        for (int i = 0; i <= expr.length(); i++) {
+            boolean ident = i < expr.length() && isIdentifierChar(expr.charAt(i));
+            if (ident && start < 0) {
+                start = i;
+            } else if (!ident && start >= 0) {
+                runs.add(expr.substring(start, i));
+                start = -1;
+            }
+        }
+        return runs;
+    }
+}
@@ -0,0 +1,69 @@
+package vue.llm.bench;
+
+import com.alibaba.fastjson2.JSON;
+import vue.llm.graph.Edge;
+import vue.llm.graph.PageNode;
+import vue.llm.graph.StructureGraph;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Compares the fastjson round-trip graph copy with {@link StructureGraph#snapshot()} on a synthetic PTG:
+ * time and bytes allocated per snapshot.
+ *
+ * Usage: java vue.llm.bench.GraphSnapshotBenchmark [edges]
+ */
+public class GraphSnapshotBenchmark {
+
+    public static void main(String[] args) {
+        int edgeCount = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        StructureGraph graph = buildGraph(edgeCount);
+        System.out.println("[Bench] Graph: " + graph.getNodes().size() + " nodes, " + graph.getEdges().size() + " edges");
+
+        run("fastjson round trip", graph, () -> {
+            String json = JSON.toJSONString(graph);
+            return JSON.parseObject(json, StructureGraph.class).getEdges().size();
+        });
+        run("StructureGraph.snapshot()", graph, () -> graph.snapshot().getEdges().size());
+    }
+
+    static StructureGraph buildGraph(int edgeCount) {
+        StructureGraph graph = new StructureGraph();
+        int routes = Math.max(1, edgeCount / 20);
+        for (int i = 0; i < routes; i++) {
+            graph.addNode(new PageNode("/module" + i + "/list"));
+        }
+        for (int i = 0; i < edgeCount; i++) {
+            Edge e = new Edge("/module" + (i % routes) + "/list",
+                    ".el-menu-item:has-text('Module " + i + "')", "click", "/module" + ((i * 7) % routes) + "/list");
+            e.setSelectorKind("TEXT");
+            e.setSourceFile("src/layout/components/Sidebar" + (i % 5) + ".vue");
+            e.setExtractionMethod("AST+LLM");
+            e.setRawAstSelector(e.getSelector());
+            e.setConfidence(0.9);
+            e.setIsValid(true);
+            e.setLlmReasoning("Menu item navigates to the module list page");
+            graph.getEdges().add(e);
+        }
+        return graph;
+    }
+
+    static void run(String name, StructureGraph graph, RegexHotPathBenchmark.Workload workload) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        int sink = 0;
+        for (int i = 0; i < 5; i++) {
+            sink += workload.run();
+        }
+        int iterations = 20;
+        long allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            sink += workload.run();
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocated = threads.getCurrentThreadAllocatedBytes() - allocatedBefore;
+        if (sink == Integer.MIN_VALUE) System.out.println(sink);
+        System.out.println(String.format("[Bench] %-30s %10.3f ms/op %12.1f KiB/op",
+                name, elapsed / 1_000_000.0 / iterations, allocated / 1024.0 / iterations));
+    }
+}
@@ -0,0 +1,94 @@
+package vue.llm.bench;
+
+import vue.llm.util.AdaptiveConcurrencyLimiter;
+import vue.llm.util.Histogram;
+import vue.llm.util.LlmClient;
+import vue.llm.util.LlmDispatcher;
+import vue.llm.util.LlmEndpoint;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+
+/**
+ * {@link LlmClient}'s endpoint pool and hedging against local {@link LlmStubServer}s whose answers have a
+ * slow tail: the same requests on one stub, balanced over all of them, and balanced with hedging, with
+ * the per-request latency percentiles and how the calls were spread. Each stub has its own seed, so a
+ * request slow on one is usually fast on another.
+ *
+ * Usage: java vue.llm.bench.LlmEndpointBenchmark [requests] [stubs] [slowRate] [slowLatencyMs] [maxInFlight]
+ */
+public class LlmEndpointBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int requests = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        int stubCount = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+        double slowRate = args.length > 2 ? Double.parseDouble(args[2]) : 0.05;
+        long slowLatencyMs = args.length > 3 ? Long.parseLong(args[3]) : 1000;
+        int maxInFlight = args.length > 4 ? Integer.parseInt(args[4]) : 8;
+
+        System.out.println("[Bench] " + requests + " requests, " + stubCount + " stubs, " + slowRate
+                + " of answers " + slowLatencyMs + " ms late, max " + maxInFlight + " in flight");
+        runAll(requests, 1, slowRate, slowLatencyMs, maxInFlight, false, "one endpoint");
+        runAll(requests, stubCount, slowRate, slowLatencyMs, maxInFlight, false, "balanced");
+        runAll(requests, stubCount, slowRate, slowLatencyMs, maxInFlight, true, "balanced+hedge");
+    }
+
+    private static void runAll(int requests, int stubCount, double slowRate, long slowLatencyMs, int maxInFlight,
+                               boolean hedging, String label) throws Exception {
+        List<LlmStubServer> stubs = new ArrayList<>();
+        try {
+            List<LlmEndpoint> endpoints = new ArrayList<>();
+            for (int i = 0; i < stubCount; i++) {
+                LlmStubServer.Options options = new LlmStubServer.Options();
+                options.port = 0;
+                options.latencyMs = 40;
+                options.jitterMs = 20;
+                options.slowRate = slowRate;
+                options.slowLatencyMs = slowLatencyMs;
+                options.seed = 42 + i;
+                LlmStubServer stub = new LlmStubServer(options);
+                stubs.add(stub);
+                endpoints.add(new LlmEndpoint(stub.getEndpoint(), 1));
+            }
+            LlmClient llm = new LlmClient(endpoints, LlmClient.MAX_REQUESTS);
+            // room for the hedged copies on top of the callers' own calls
+            llm.setConcurrencyLimiter(new AdaptiveConcurrencyLimiter(2 * maxInFlight));
+            llm.setHedging(hedging);
+            run(llm, stubs, requests, maxInFlight, label);
+        } finally {
+            for (LlmStubServer stub : stubs) {
+                stub.close();
+            }
+        }
+    }
+
+    private static void run(LlmClient llm, List<LlmStubServer> stubs, int requests, int maxInFlight, String label)
+            throws Exception {
+        Histogram latency = new Histogram();
+        long start = System.nanoTime();
+        try (LlmDispatcher dispatcher = new LlmDispatcher(maxInFlight)) {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < requests; i++) {
+                String prompt = "Edges to validate (1 total):\n[{\"id\":\"e1\",\"f\":\"/r" + i + "\",\"t\":\"/home\",\"s\":\"a\",\"e\":\"click\"}]";
+                results.add(dispatcher.submit(() -> {
+                    long sent = System.nanoTime();
+                    String answer = llm.ask("system", prompt);
+                    latency.record(System.nanoTime() - sent);
+                    return answer;
+                }));
+            }
+            for (Future<String> result : results) {
+                result.get();
+            }
+        }
+        StringBuilder spread = new StringBuilder();
+        for (int i = 0; i < stubs.size(); i++) {
+            LlmEndpoint endpoint = llm.getEndpoints().get(i);
+            spread.append(String.format(" [%d: %d calls, %d slow, %d hedges won]", i, endpoint.getCalls(),
+                    stubs.get(i).getSlow(), endpoint.getHedgeWins()));
+        }
+        System.out.println(String.format("[Bench] %-15s %8.1f ms  latency %s, hedges=%d%s", label,
+                (System.nanoTime() - start) / 1_000_000.0, latency.summary(1_000_000.0, "ms"), llm.getHedges(), spread));
+    }
+}
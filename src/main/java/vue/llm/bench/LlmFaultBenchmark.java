@@ -0,0 +1,84 @@
+package vue.llm.bench;
+
+import vue.llm.util.AdaptiveConcurrencyLimiter;
+import vue.llm.util.CircuitBreaker;
+import vue.llm.util.LlmClient;
+import vue.llm.util.LlmDispatcher;
+import vue.llm.util.RetryPolicy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * {@link LlmClient}'s retry, circuit breaker and adaptive concurrency against a fault-injecting
+ * {@link LlmStubServer}: the same requests with and without retries under 429s and 500s, then an outage
+ * long enough to open the circuit.
+ *
+ * Usage: java vue.llm.bench.LlmFaultBenchmark [requests] [throttleRate] [errorRate] [maxInFlight]
+ */
+public class LlmFaultBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int requests = args.length > 0 ? Integer.parseInt(args[0]) : 40;
+        double throttleRate = args.length > 1 ? Double.parseDouble(args[1]) : 0.2;
+        double errorRate = args.length > 2 ? Double.parseDouble(args[2]) : 0.1;
+        int maxInFlight = args.length > 3 ? Integer.parseInt(args[3]) : 8;
+
+        LlmStubServer.Options faults = new LlmStubServer.Options();
+        faults.port = 0;
+        faults.latencyMs = 50;
+        faults.throttleRate = throttleRate;
+        faults.errorRate = errorRate;
+        faults.retryAfterSeconds = 1;
+        System.out.println("[Bench] " + requests + " requests, 429 rate " + throttleRate + ", 500 rate " + errorRate
+                + ", max " + maxInFlight + " in flight");
+        for (RetryPolicy policy : new RetryPolicy[]{RetryPolicy.none(), RetryPolicy.defaults()}) {
+            try (LlmStubServer stub = new LlmStubServer(faults)) {
+                LlmClient llm = new LlmClient(stub.getEndpoint());
+                llm.setRetryPolicy(policy);
+                llm.setConcurrencyLimiter(new AdaptiveConcurrencyLimiter(maxInFlight));
+                run(llm, stub, requests, maxInFlight, "max attempts " + policy.getMaxAttempts());
+            }
+        }
+
+        // Every request fails until the circuit opens; the rest are refused without reaching the stub.
+        LlmStubServer.Options outage = new LlmStubServer.Options();
+        outage.port = 0;
+        outage.outageRequests = Integer.MAX_VALUE;
+        try (LlmStubServer stub = new LlmStubServer(outage)) {
+            LlmClient llm = new LlmClient(stub.getEndpoint());
+            llm.setRetryPolicy(new RetryPolicy(3, 20, 200));
+            llm.setCircuitBreakers(CircuitBreaker.DEFAULT_FAILURE_THRESHOLD, 60_000);
+            llm.setConcurrencyLimiter(new AdaptiveConcurrencyLimiter(1));
+            run(llm, stub, requests, 1, "outage");
+        }
+    }
+
+    private static void run(LlmClient llm, LlmStubServer stub, int requests, int maxInFlight, String label) throws Exception {
+        long start = System.nanoTime();
+        int ok = 0;
+        int refused = 0;
+        try (LlmDispatcher dispatcher = new LlmDispatcher(maxInFlight)) {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < requests; i++) {
+                String prompt = "Edges to validate (1 total):\n[{\"id\":\"e1\",\"f\":\"/r" + i + "\",\"t\":\"/home\",\"s\":\"a\",\"e\":\"click\"}]";
+                results.add(dispatcher.submit(() -> llm.ask("system", prompt)));
+            }
+            for (Future<String> result : results) {
+                try {
+                    result.get();
+                    ok++;
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof CircuitBreaker.OpenException) refused++;
+                }
+            }
+        }
+        System.out.println(String.format(
+                "[Bench] %-16s %8.1f ms  ok=%d failed=%d (refused by open circuit %d)  stub saw %d requests "
+                        + "(%d 429, %d 5xx), retries=%d, concurrency limit lowest %d",
+                label, (System.nanoTime() - start) / 1_000_000.0, ok, requests - ok, refused, stub.getRequests(),
+                stub.getThrottled(), stub.getErrors(), llm.getRetries(), llm.getConcurrencyLimiter().getMinLimitSeen()));
+    }
+}
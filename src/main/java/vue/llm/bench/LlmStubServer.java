@@ -0,0 +1,411 @@
+package vue.llm.bench;
+
+import com.alibaba.fastjson2.JSON;
+import com.alibaba.fastjson2.JSONArray;
+import com.alibaba.fastjson2.JSONObject;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import vue.llm.util.LlmResponseCache;
+import vue.llm.util.TokenEstimator;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Local OpenAI-compatible {@code /v1/chat/completions} endpoint for offline Stage 2 runs.
+ *
+ * A request is answered from the replay directory (an {@code out/.cache/llm} recorded with
+ * {@code --llm-cache=rw}) when it has the same model, temperature and prompts; otherwise the
+ * prompt's "Edges to validate" array is echoed back with {@code isValid=true}. Latency, HTTP 500s
+ * and 429s, and echoed edges pointing at an unknown route can be injected. Fault decisions depend only
+ * on the seed, the request content and how often that request has been seen, so a run is reproducible
+ * regardless of concurrency. {@code --outage=n} answers the first n requests with 503 to exercise
+ * a client's circuit breaker, and {@code --slow-rate} holds that share of answers back for
+ * {@code --slow-latency} to give the latency a tail for hedged requests to cut. Requests with {@code "stream": true} are answered as server-sent events,
+ * the content split into small chunks {@code --chunk-delay} apart. Echoed answers report
+ * {@code usage.prompt_tokens_details.cached_tokens} the way a provider-side prompt cache would: the
+ * longest prefix of system plus user prompt, in {@value #PREFIX_BLOCK_CHARS}-character blocks, that an
+ * earlier request already sent.
+ *
+ * Usage: java vue.llm.bench.LlmStubServer [--port=8089] [--latency=ms] [--jitter=ms]
+ *        [--error-rate=0..1] [--throttle-rate=0..1] [--retry-after=s] [--bad-edge-rate=0..1]
+ *        [--chunk-delay=ms] [--outage=n] [--slow-rate=0..1] [--slow-latency=ms]
+ *        [--seed=n] [--replay=dir]
+ *
+ * Point the pipeline at it with {@code -Dllmvue.endpoint=http://127.0.0.1:8089/v1/chat/completions}.
+ */
+public class LlmStubServer implements AutoCloseable {
+
+    /** Granularity of the simulated prompt cache, roughly the 128-token blocks providers cache in. */
+    static final int PREFIX_BLOCK_CHARS = 512;
+
+    public static class Options {
+        public int port = 8089;
+        public long latencyMs = 0;
+        public long jitterMs = 0;
+        public double errorRate = 0;
+        public double throttleRate = 0;
+        public int retryAfterSeconds = 1;
+        public double badEdgeRate = 0;
+        public long chunkDelayMs = 0;
+        public int outageRequests = 0;
+        public double slowRate = 0;
+        public long slowLatencyMs = 2000;
+        public long seed = 42;
+        public Path replayDir;
+
+        public static Options parse(String[] args) {
+            Options options = new Options();
+            for (String arg : args) {
+                int eq = arg.indexOf('=');
+                String name = eq > 0 ? arg.substring(0, eq) : arg;
+                String value = eq > 0 ? arg.substring(eq + 1) : "";
+                switch (name) {
+                    case "--port": options.port = Integer.parseInt(value); break;
+                    case "--latency": options.latencyMs = Long.parseLong(value); break;
+                    case "--jitter": options.jitterMs = Long.parseLong(value); break;
+                    case "--error-rate": options.errorRate = Double.parseDouble(value); break;
+                    case "--throttle-rate": options.throttleRate = Double.parseDouble(value); break;
+                    case "--retry-after": options.retryAfterSeconds = Integer.parseInt(value); break;
+                    case "--bad-edge-rate": options.badEdgeRate = Double.parseDouble(value); break;
+                    case "--chunk-delay": options.chunkDelayMs = Long.parseLong(value); break;
+                    case "--outage": options.outageRequests = Integer.parseInt(value); break;
+                    case "--slow-rate": options.slowRate = Double.parseDouble(value); break;
+                    case "--slow-latency": options.slowLatencyMs = Long.parseLong(value); break;
+                    case "--seed": options.seed = Long.parseLong(value); break;
+                    case "--replay": options.replayDir = Path.of(value); break;
+                    default: throw new IllegalArgumentException("Unknown option: " + arg);
+                }
+            }
+            return options;
+        }
+    }
+
+    private final HttpServer server;
+    private final Options options;
+    private final LlmResponseCache replay;
+    private final Map<String, AtomicInteger> seen = new ConcurrentHashMap<>();
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger replayed = new AtomicInteger();
+    private final AtomicInteger errors = new AtomicInteger();
+    private final AtomicInteger throttled = new AtomicInteger();
+    private final AtomicInteger slow = new AtomicInteger();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+    private final Set<Long> cachedPrefixes = ConcurrentHashMap.newKeySet();
+
+    public LlmStubServer(int port, long latencyMs) throws IOException {
+        this(withLatency(port, latencyMs));
+    }
+
+    public LlmStubServer(Options options) throws IOException {
+        this.options = options;
+        this.replay = options.replayDir != null
+                ? new LlmResponseCache(options.replayDir, LlmResponseCache.Mode.READ_ONLY)
+                : null;
+        // Without TCP_NODELAY, Nagle plus delayed ACKs add ~40 ms to every response and swamp small latencies.
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", options.port), 0);
+        server.createContext("/v1/chat/completions", this::handle);
+        server.setExecutor(Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "llm-stub");
+            t.setDaemon(true);
+            return t;
+        }));
+        server.start();
+    }
+
+    private static Options withLatency(int port, long latencyMs) {
+        Options options = new Options();
+        options.port = port;
+        options.latencyMs = latencyMs;
+        return options;
+    }
+
+    public String getEndpoint() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/v1/chat/completions";
+    }
+
+    public int getRequests() {
+        return requests.get();
+    }
+
+    public int getReplayed() {
+        return replayed.get();
+    }
+
+    public int getErrors() {
+        return errors.get();
+    }
+
+    public int getSlow() {
+        return slow.get();
+    }
+
+    public int getThrottled() {
+        return throttled.get();
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight.get();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        if (replay != null) {
+            replay.close();
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        int current = inFlight.incrementAndGet();
+        maxInFlight.accumulateAndGet(current, Math::max);
+        int number = requests.incrementAndGet();
+        try {
+            String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+            if (number <= options.outageRequests) {
+                errors.incrementAndGet();
+                send(exchange, 503, error("server_error", "Outage (stub)"));
+                return;
+            }
+            JSONObject request = JSON.parseObject(body);
+            JSONArray messages = request.getJSONArray("messages");
+            String systemPrompt = messages.size() > 1 ? messages.getJSONObject(0).getString("content") : null;
+            String userPrompt = messages.getJSONObject(messages.size() - 1).getString("content");
+            JSONObject format = request.getJSONObject("response_format");
+            String key = LlmResponseCache.key(request.getString("model"), String.valueOf(request.get("temperature")),
+                    format != null && !"json_object".equals(format.getString("type")) ? format.toJSONString() : null,
+                    systemPrompt, userPrompt);
+
+            int occurrence = seen.computeIfAbsent(key, k -> new AtomicInteger()).getAndIncrement();
+            SplittableRandom random = new SplittableRandom(options.seed * 31 + key.hashCode() * 17L + occurrence);
+            long delay = options.latencyMs + (options.jitterMs > 0 ? (long) (random.nextDouble() * options.jitterMs) : 0);
+            if (options.slowRate > 0 && random.nextDouble() < options.slowRate) {
+                slow.incrementAndGet();
+                delay += options.slowLatencyMs;
+            }
+            if (delay > 0) {
+                Thread.sleep(delay);
+            }
+
+            double roll = random.nextDouble();
+            if (roll < options.throttleRate) {
+                throttled.incrementAndGet();
+                exchange.getResponseHeaders().set("Retry-After", String.valueOf(options.retryAfterSeconds));
+                send(exchange, 429, error("rate_limit_exceeded", "Rate limit reached (stub)"));
+                return;
+            }
+            if (roll < options.throttleRate + options.errorRate) {
+                errors.incrementAndGet();
+                send(exchange, 500, error("server_error", "Injected failure (stub)"));
+                return;
+            }
+
+            String recorded = replay != null ? replay.get(key) : null;
+            String response;
+            if (recorded != null) {
+                replayed.incrementAndGet();
+                response = recorded;
+            } else {
+                response = echo(systemPrompt, userPrompt, random, options.badEdgeRate,
+                        cachedPrefixTokens(systemPrompt, userPrompt));
+            }
+            if (request.getBooleanValue("stream")) {
+                sendStream(exchange, response, options.chunkDelayMs);
+            } else {
+                send(exchange, 200, response);
+            }
+        } catch (Exception e) {
+            send(exchange, 500, error("server_error", e.getClass().getSimpleName()));
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    private static String error(String type, String message) {
+        JSONObject error = new JSONObject();
+        error.put("type", type);
+        error.put("message", message);
+        JSONObject body = new JSONObject();
+        body.put("error", error);
+        return body.toJSONString();
+    }
+
+    private static void send(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Sends the response's message content as chat-completion chunks, 16 characters each, then its
+     * {@code usage} in a final chunk, then {@code [DONE]}. A client that hangs up early just ends the stream.
+     */
+    private static void sendStream(HttpExchange exchange, String response, long chunkDelayMs) throws Exception {
+        JSONObject json = JSON.parseObject(response);
+        String content = json.getJSONArray("choices").getJSONObject(0).getJSONObject("message").getString("content");
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+        exchange.sendResponseHeaders(200, 0);
+        try (OutputStream out = exchange.getResponseBody()) {
+            for (int i = 0; i < content.length(); i += 16) {
+                writeEvent(out, chunk(content.substring(i, Math.min(content.length(), i + 16)), null).toJSONString());
+                if (chunkDelayMs > 0) {
+                    Thread.sleep(chunkDelayMs);
+                }
+            }
+            writeEvent(out, chunk(null, "stop").toJSONString());
+            if (json.containsKey("usage")) {
+                JSONObject usage = new JSONObject();
+                usage.put("object", "chat.completion.chunk");
+                usage.put("choices", List.of());
+                usage.put("usage", json.getJSONObject("usage"));
+                writeEvent(out, usage.toJSONString());
+            }
+            writeEvent(out, "[DONE]");
+        } catch (IOException e) {
+            // client cancelled the stream
+        }
+    }
+
+    private static JSONObject chunk(String content, String finishReason) {
+        JSONObject delta = new JSONObject();
+        if (content != null) delta.put("content", content);
+        JSONObject choice = new JSONObject();
+        choice.put("index", 0);
+        choice.put("delta", delta);
+        choice.put("finish_reason", finishReason);
+        JSONObject chunk = new JSONObject();
+        chunk.put("object", "chat.completion.chunk");
+        chunk.put("choices", List.of(choice));
+        return chunk;
+    }
+
+    private static void writeEvent(OutputStream out, String data) throws IOException {
+        out.write(("data: " + data + "\n\n").getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    /**
+     * Tokens in the longest block-aligned prefix of the prompts that an earlier request shared, then
+     * remembers this request's prefixes.
+     */
+    private int cachedPrefixTokens(String systemPrompt, String userPrompt) {
+        String prompt = (systemPrompt != null ? systemPrompt : "") + '\u0000' + userPrompt;
+        long hash = 1125899906842597L;
+        int cachedChars = 0;
+        boolean hit = true;
+        for (int i = 0; i < prompt.length(); i++) {
+            hash = 31 * hash + prompt.charAt(i);
+            if ((i + 1) % PREFIX_BLOCK_CHARS == 0) {
+                boolean known = !cachedPrefixes.add(hash);
+                hit &= known;
+                if (hit) cachedChars = i + 1;
+            }
+        }
+        if (cachedChars == 0) return 0;
+        return TokenEstimator.estimate(prompt.substring(0, cachedChars));
+    }
+
+    static String echo(String systemPrompt, String userPrompt, SplittableRandom random, double badEdgeRate,
+                       int cachedPromptTokens) {
+        JSONArray edges = new JSONArray();
+        for (Object o : edgesInPrompt(userPrompt)) {
+            JSONObject in = (JSONObject) o;
+            JSONObject out = new JSONObject();
+            if (in.containsKey("id")) out.put("id", in.get("id"));
+            out.put("from", field(in, "from", "f"));
+            boolean bad = badEdgeRate > 0 && random.nextDouble() < badEdgeRate;
+            out.put("to", bad ? "/__stub_unknown_route" : field(in, "to", "t"));
+            out.put("selector", field(in, "selector", "s"));
+            out.put("event", field(in, "event", "e"));
+            out.put("condition", field(in, "condition", "c"));
+            out.put("isValid", true);
+            out.put("llmReasoning", "stub echo");
+            edges.add(out);
+        }
+        JSONObject content = new JSONObject();
+        content.put("edges", edges);
+
+        JSONObject message = new JSONObject();
+        message.put("role", "assistant");
+        message.put("content", content.toJSONString());
+        JSONObject choice = new JSONObject();
+        choice.put("index", 0);
+        choice.put("message", message);
+        choice.put("finish_reason", "stop");
+        JSONObject response = new JSONObject();
+        response.put("object", "chat.completion");
+        response.put("choices", List.of(choice));
+        JSONObject usage = new JSONObject();
+        int promptTokens = TokenEstimator.estimate(systemPrompt, userPrompt);
+        int completionTokens = TokenEstimator.estimate(message.getString("content"));
+        usage.put("prompt_tokens", promptTokens);
+        usage.put("completion_tokens", completionTokens);
+        usage.put("total_tokens", promptTokens + completionTokens);
+        usage.put("prompt_tokens_details", Map.of("cached_tokens", Math.min(cachedPromptTokens, promptTokens)));
+        response.put("usage", usage);
+        return response.toJSONString();
+    }
+
+    /** Prompt edges use short keys; older recorded prompts used the full field names. */
+    private static Object field(JSONObject edge, String name, String shortKey) {
+        return edge.containsKey(shortKey) ? edge.get(shortKey) : edge.get(name);
+    }
+
+    /** Every edge listed after an "Edges to validate" marker; a request may cover several files. */
+    private static JSONArray edgesInPrompt(String userPrompt) {
+        JSONArray edges = new JSONArray();
+        int marker = userPrompt != null ? userPrompt.indexOf("Edges to validate") : -1;
+        while (marker >= 0) {
+            int start = userPrompt.indexOf('[', marker);
+            if (start < 0) break;
+            int end = closingBracket(userPrompt, start);
+            if (end < 0) break;
+            edges.addAll(JSON.parseArray(userPrompt.substring(start, end + 1)));
+            marker = userPrompt.indexOf("Edges to validate", end);
+        }
+        return edges;
+    }
+
+    private static int closingBracket(String text, int start) {
+        int depth = 0;
+        boolean inString = false;
+        for (int i = start; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (inString) {
+                if (c == '\\') i++;
+                else if (c == '"') inString = false;
+            } else if (c == '"') {
+                inString = true;
+            } else if (c == '[') {
+                depth++;
+            } else if (c == ']' && --depth == 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = Options.parse(args);
+        LlmStubServer stub = new LlmStubServer(options);
+        System.out.println("[Stub] Listening on " + stub.getEndpoint()
+                + " (latency " + options.latencyMs + "+" + options.jitterMs + " ms, error rate " + options.errorRate
+                + ", 429 rate " + options.throttleRate + (options.replayDir != null ? ", replay " + options.replayDir : "") + ")");
+        Thread.currentThread().join();
+    }
+}
@@ -0,0 +1,126 @@
+package vue.llm.bench;
+
+import vue.llm.io.LexicalIndex;
+import vue.llm.util.RegexPatterns;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Micro-benchmark for the regex hot paths of Stage 1 on a synthetic large layout file.
+ * Compares the previous compile-per-call code against the compile-once registry.
+ *
+ * Usage: java vue.llm.bench.RegexHotPathBenchmark [menuItems]
+ */
+public class RegexHotPathBenchmark {
+
+    public static void main(String[] args) {
+        int menuItems = args.length > 0 ? Integer.parseInt(args[0]) : 400;
+        String layout = buildLayout(menuItems);
+        List<String> routes = new ArrayList<>();
+        for (int i = 0; i < menuItems; i++) {
+            routes.add("/module" + i + "/list");
+        }
+        routes.add("/not-in-menu");
+
+        System.out.println("[Bench] Layout size: " + layout.length() + " chars, " + routes.size() + " routes");
+
+        report("isRouteInMenu (String.matches per route)", measure(() -> {
+            int hits = 0;
+            for (String route : routes) {
+                if (layout.matches("(?s).*index\\s*=\\s*[\"']" + Pattern.quote(route) + "[\"'].*")) hits++;
+            }
+            return hits;
+        }));
+        report("isRouteInMenu (literal binding search)", measure(() -> {
+            int hits = 0;
+            for (String route : routes) {
+                if (RegexPatterns.indexOfQuotedBinding(layout, "index", '=', route) >= 0) hits++;
+            }
+            return hits;
+        }));
+        report("lexical index build (once per file)", measure(() -> LexicalIndex.build(layout).getMenuTexts().size()));
+        LexicalIndex index = LexicalIndex.build(layout);
+        report("isRouteInMenu (lexical index lookup)", measure(() -> {
+            int hits = 0;
+            for (String route : routes) {
+                if (index.hasQuotedBinding("index", '=', route)) hits++;
+            }
+            return hits;
+        }));
+
+        report("inline push (compile per handler)", measure(() -> {
+            int hits = 0;
+            for (int i = 0; i < menuItems; i++) {
+                String expr = "$router.push('/module" + i + "/list')";
+                Matcher m = Pattern.compile("\\$router\\.push\\(\\s*['\"]([^'\"]+)['\"]\\s*\\)").matcher(expr);
+                if (m.find()) hits++;
+            }
+            return hits;
+        }));
+        report("inline push (registry pattern)", measure(() -> {
+            int hits = 0;
+            for (int i = 0; i < menuItems; i++) {
+                String expr = "$router.push('/module" + i + "/list')";
+                if (RegexPatterns.ROUTER_PUSH_LITERAL.matcher(expr).find()) hits++;
+            }
+            return hits;
+        }));
+
+        report("menu texts (compile per call)", measure(() -> {
+            Matcher m = Pattern.compile(
+                    "\\{[^}]*label\\s*:\\s*['\"]([^'\"]+)['\"][^}]*path\\s*:\\s*['\"]([^'\"]+)['\"][^}]*\\}|" +
+                    "\\{[^}]*path\\s*:\\s*['\"]([^'\"]+)['\"][^}]*label\\s*:\\s*['\"]([^'\"]+)['\"][^}]*\\}"
+            ).matcher(layout);
+            int hits = 0;
+            while (m.find()) hits++;
+            return hits;
+        }));
+        report("menu texts (registry pattern)", measure(() -> {
+            Matcher m = RegexPatterns.MENU_LABEL_PATH.matcher(layout);
+            int hits = 0;
+            while (m.find()) hits++;
+            return hits;
+        }));
+    }
+
+    static String buildLayout(int menuItems) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("<template>\n  <el-menu router>\n");
+        for (int i = 0; i < menuItems; i++) {
+            sb.append("    <el-menu-item index=\"/module").append(i).append("/list\">Module ")
+                    .append(i).append("</el-menu-item>\n");
+        }
+        sb.append("  </el-menu>\n</template>\n<script>\nexport default {\n  data() {\n    return {\n      items: [\n");
+        for (int i = 0; i < menuItems; i++) {
+            sb.append("        { path: '/module").append(i).append("/list', label: 'Module ").append(i).append("' },\n");
+        }
+        sb.append("      ]\n    }\n  }\n}\n</script>\n");
+        return sb.toString();
+    }
+
+    interface Workload {
+        int run();
+    }
+
+    static double measure(Workload workload) {
+        int sink = 0;
+        for (int i = 0; i < 5; i++) {
+            sink += workload.run();
+        }
+        int iterations = 10;
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            sink += workload.run();
+        }
+        long elapsed = System.nanoTime() - start;
+        if (sink == Integer.MIN_VALUE) System.out.println(sink);
+        return elapsed / 1_000_000.0 / iterations;
+    }
+
+    static void report(String name, double millis) {
+        System.out.println(String.format("[Bench] %-45s %10.3f ms/op", name, millis));
+    }
+}
@@ -0,0 +1,75 @@
+package vue.llm.bench;
+
+import com.alibaba.fastjson2.JSON;
+import vue.llm.graph.Edge;
+import vue.llm.util.LlmClient;
+import vue.llm.util.LlmDispatcher;
+import vue.llm.util.RateLimiter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+
+/**
+ * Stage 2 dispatch against {@link LlmStubServer}: wall time for the same set of batch requests
+ * at increasing max-in-flight, optionally under a requests-per-minute limit, then all of them
+ * enqueued at once through {@link LlmClient#askAsync}.
+ *
+ * Usage: java vue.llm.bench.Stage2ConcurrencyBenchmark [batches] [latencyMs] [requestsPerMinute]
+ */
+public class Stage2ConcurrencyBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int batches = args.length > 0 ? Integer.parseInt(args[0]) : 24;
+        long latency = args.length > 1 ? Long.parseLong(args[1]) : 300;
+        int rpm = args.length > 2 ? Integer.parseInt(args[2]) : 0;
+
+        List<String> prompts = new ArrayList<>();
+        for (int b = 0; b < batches; b++) {
+            List<Edge> edges = new ArrayList<>();
+            for (int i = 0; i < 30; i++) {
+                edges.add(new Edge("/module" + b, ".el-menu-item:has-text('Item " + i + "')", "click", "/module" + b + "/item" + i));
+            }
+            prompts.add("File: src/views/Module" + b + ".vue\n\nEdges to validate (" + edges.size() + " total):\n"
+                    + JSON.toJSONString(edges) + "\n");
+        }
+
+        try (LlmStubServer stub = new LlmStubServer(0, latency)) {
+            LlmClient llm = new LlmClient(stub.getEndpoint());
+            System.out.println("[Bench] " + batches + " batches, stub latency " + latency + " ms"
+                    + (rpm > 0 ? ", " + rpm + " requests/min" : ""));
+            for (int maxInFlight : new int[]{1, 4, 8, 16}) {
+                RateLimiter limiter = new RateLimiter(rpm, 0);
+                long start = System.nanoTime();
+                int echoed = 0;
+                try (LlmDispatcher dispatcher = new LlmDispatcher(maxInFlight)) {
+                    List<Future<String>> results = new ArrayList<>();
+                    for (String prompt : prompts) {
+                        results.add(dispatcher.submit(() -> {
+                            limiter.acquire(RateLimiter.estimateTokens(prompt));
+                            return llm.ask("system", prompt);
+                        }));
+                    }
+                    for (Future<String> result : results) {
+                        echoed += result.get().length() > 0 ? 1 : 0;
+                    }
+                }
+                long elapsed = System.nanoTime() - start;
+                System.out.println(String.format("[Bench] max-in-flight %-3d %9.1f ms  (%d responses, stub peak %d in flight)",
+                        maxInFlight, elapsed / 1_000_000.0, echoed, stub.getMaxInFlight()));
+            }
+
+            // All batches enqueued at once on LlmClient's own dispatcher, no caller threads blocked.
+            long start = System.nanoTime();
+            List<CompletableFuture<String>> results = new ArrayList<>();
+            for (String prompt : prompts) {
+                results.add(llm.askAsync("system", prompt));
+            }
+            CompletableFuture.allOf(results.toArray(new CompletableFuture<?>[0])).join();
+            long elapsed = System.nanoTime() - start;
+            System.out.println(String.format("[Bench] async enqueue (max %d)  %9.1f ms  (%d responses, stub peak %d in flight)",
+                    LlmClient.MAX_REQUESTS, elapsed / 1_000_000.0, results.size(), stub.getMaxInFlight()));
+        }
+    }
+}
@@ -2,17 +2,25 @@ package vue.llm.config;
 
 import java.nio.file.Path;
 import java.util.Map;
+import java.util.Set;
 
 public class ProjectConfig {
 
     public final String projectRoot;
     public final String projectName;
     public final String routerRelativePath;
+    /** Stage 1 edge extractors (by name) to skip for this project, e.g. expensive low-yield ones. */
+    public final Set<String> disabledExtractors;
 
     public ProjectConfig(String projectRoot, String projectName, String routerRelativePath) {
+        this(projectRoot, projectName, routerRelativePath, Set.of());
+    }
+
+    public ProjectConfig(String projectRoot, String projectName, String routerRelativePath, Set<String> disabledExtractors) {
         this.projectRoot = projectRoot;
         this.projectName = projectName;
         this.routerRelativePath = routerRelativePath;
+        this.disabledExtractors = disabledExtractors;
     }
 
     public Path resolveRouterPath() {
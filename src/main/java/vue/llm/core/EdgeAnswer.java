@@ -0,0 +1,157 @@
+package vue.llm.core;
+
+import com.alibaba.fastjson2.JSONObject;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import vue.llm.graph.Edge;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * One edge of a Stage 2 answer, as the LLM returns it: the batch-local {@code id} plus the {@link Edge}
+ * fields the model may rewrite.
+ *
+ * In structured-output mode the request carries a strict JSON schema generated from these fields' types
+ * on {@link Edge}, and {@link #decode} reads the chat completion in one Jackson token pass: it walks to
+ * {@code choices[0].message.content} and parses the edges straight out of the content token's character
+ * buffer, without materialising the content string, a map or a JsonPath document.
+ */
+public final class EdgeAnswer {
+
+    /** Answer fields taken from {@link Edge}, in schema order; {@code id} comes first. */
+    private static final List<String> EDGE_FIELDS =
+            List.of("from", "to", "selector", "event", "condition", "isValid", "llmReasoning");
+    private static final Set<String> NULLABLE = Set.of("condition", "llmReasoning");
+
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    private static volatile String responseFormat;
+
+    public String id;
+    public String from;
+    public String to;
+    public String selector;
+    public String event;
+    public String condition;
+    public Boolean isValid;
+    public String llmReasoning;
+
+    /** An answer edge parsed some other way (legacy mode, streaming). */
+    static EdgeAnswer from(Map<String, Object> edgeData) {
+        EdgeAnswer answer = new EdgeAnswer();
+        Object id = edgeData.get("id");
+        answer.id = id != null ? id.toString() : null;
+        answer.from = (String) edgeData.get("from");
+        answer.to = (String) edgeData.get("to");
+        answer.selector = (String) edgeData.get("selector");
+        answer.event = (String) edgeData.get("event");
+        answer.condition = (String) edgeData.get("condition");
+        answer.isValid = edgeData.get("isValid") instanceof Boolean ? (Boolean) edgeData.get("isValid") : null;
+        answer.llmReasoning = (String) edgeData.get("llmReasoning");
+        return answer;
+    }
+
+    /** {@code response_format} value asking for {@code {"edges": [...]}} under a strict schema. */
+    public static String responseFormat() {
+        String format = responseFormat;
+        if (format == null) {
+            format = buildResponseFormat();
+            responseFormat = format;
+        }
+        return format;
+    }
+
+    private static String buildResponseFormat() {
+        Map<String, Object> properties = new LinkedHashMap<>();
+        properties.put("id", Map.of("type", "string"));
+        for (String name : EDGE_FIELDS) {
+            String type = jsonType(name);
+            properties.put(name, Map.of("type", NULLABLE.contains(name) ? List.of(type, "null") : type));
+        }
+        Map<String, Object> item = objectSchema(properties);
+        Map<String, Object> schema = objectSchema(Map.of("edges", Map.of("type", "array", "items", item)));
+
+        JSONObject jsonSchema = new JSONObject();
+        jsonSchema.put("name", "stage2_edges");
+        jsonSchema.put("strict", true);
+        jsonSchema.put("schema", schema);
+        JSONObject format = new JSONObject();
+        format.put("type", "json_schema");
+        format.put("json_schema", jsonSchema);
+        return format.toJSONString();
+    }
+
+    private static Map<String, Object> objectSchema(Map<String, Object> properties) {
+        Map<String, Object> schema = new LinkedHashMap<>();
+        schema.put("type", "object");
+        schema.put("properties", properties);
+        schema.put("required", new ArrayList<>(properties.keySet()));
+        schema.put("additionalProperties", false);
+        return schema;
+    }
+
+    private static String jsonType(String edgeField) {
+        Class<?> type;
+        try {
+            type = Edge.class.getDeclaredField(edgeField).getType();
+        } catch (NoSuchFieldException e) {
+            throw new IllegalStateException("Edge has no field " + edgeField, e);
+        }
+        if (type == String.class) return "string";
+        if (type == Boolean.class || type == boolean.class) return "boolean";
+        if (Number.class.isAssignableFrom(type) || type.isPrimitive()) return "number";
+        throw new IllegalStateException("No JSON schema type for Edge." + edgeField + ": " + type);
+    }
+
+    /**
+     * The answer edges of a chat-completion body, or null when it has no {@code edges} array. The message
+     * content may be the JSON text (the usual case) or, from some proxies, the JSON object itself.
+     */
+    static List<EdgeAnswer> decode(String response) throws IOException {
+        try (JsonParser outer = MAPPER.createParser(response)) {
+            if (outer.nextToken() != JsonToken.START_OBJECT
+                    || !seekField(outer, "choices") || outer.nextToken() != JsonToken.START_ARRAY
+                    || outer.nextToken() != JsonToken.START_OBJECT
+                    || !seekField(outer, "message") || outer.nextToken() != JsonToken.START_OBJECT
+                    || !seekField(outer, "content")) {
+                return null;
+            }
+            JsonToken content = outer.nextToken();
+            if (content == JsonToken.START_OBJECT) {
+                return readEdges(outer);
+            }
+            if (content != JsonToken.VALUE_STRING) return null;
+            try (JsonParser inner = MAPPER.createParser(outer.getTextCharacters(), outer.getTextOffset(),
+                    outer.getTextLength())) {
+                return inner.nextToken() == JsonToken.START_OBJECT ? readEdges(inner) : null;
+            }
+        }
+    }
+
+    /** Reads the {@code edges} array of the object the parser has just entered. */
+    private static List<EdgeAnswer> readEdges(JsonParser parser) throws IOException {
+        if (!seekField(parser, "edges") || parser.nextToken() != JsonToken.START_ARRAY) return null;
+        List<EdgeAnswer> edges = new ArrayList<>();
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            edges.add(MAPPER.readValue(parser, EdgeAnswer.class));
+        }
+        return edges;
+    }
+
+    /** Moves to the field {@code name} of the current object, skipping the members before it. */
+    private static boolean seekField(JsonParser parser, String name) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            if (name.equals(parser.currentName())) return true;
+            parser.nextToken();
+            parser.skipChildren();
+        }
+        return false;
+    }
+}
@@ -0,0 +1,74 @@
+package vue.llm.core;
+
+import vue.llm.graph.Edge;
+import vue.llm.util.RegexPatterns;
+
+import java.util.Set;
+import java.util.regex.Matcher;
+
+/**
+ * Stage 1 confidence that an edge's selector is already final, from how it was extracted.
+ *
+ * Stage 2 only rewrites selectors (adding visible text, fixing the submenu class for the UI framework)
+ * and fills conditions, so an edge whose selector names a specific element by literal text or id
+ * gains nothing from the LLM. Generic or templated selectors score low and are always sent.
+ */
+public final class EdgeConfidence {
+
+    /** Bump when the scoring changes, so Stage 1 checkpoints carrying old scores are not reused. */
+    public static final String VERSION = "1";
+
+    /** Router configuration edges (redirects, guards, route records): no selector to improve. */
+    public static final double ROUTER = 1.0;
+    /** {@code #id} selectors and menu items built from menu data or route names. */
+    public static final double SPECIFIC = 0.95;
+    /** Any other selector with literal {@code :has-text()} text. */
+    public static final double TEXT = 0.9;
+    /** A class selector without text, e.g. {@code .nav-btn}. */
+    public static final double CLASS = 0.5;
+    /**
+     * Text still unresolved ({@code {{ }}}, {@code ${}}), or a component class the prompt rewrites
+     * ({@code .el-button}, {@code .el-dropdown-item}, the other framework's submenu class).
+     */
+    public static final double REWRITE = 0.4;
+    /** Bare tags and Element component classes the prompt asks the LLM to enhance. */
+    public static final double GENERIC = 0.2;
+
+    private static final Set<String> MENU_EXTRACTORS = Set.of("nodeBinding", "routeConfigMenu", "selfLoopMenu");
+
+    private static final Set<String> GENERIC_SELECTORS = Set.of(
+            "button", "a", "span", "div", "li", "el", "i", "img", ".el-dropdown", ".el-card");
+
+    private EdgeConfidence() {
+    }
+
+    /**
+     * @param extractor  name of the Stage 1 extractor that produced the edge
+     * @param elementUI2 whether the project uses Element UI 2 ({@code .el-submenu} rather than {@code .el-sub-menu})
+     */
+    public static double score(String extractor, Edge edge, boolean elementUI2) {
+        String selector = edge.getSelector();
+        if ("ROUTER".equals(edge.getSelectorKind()) || "-".equals(selector)) return ROUTER;
+        if (selector == null || selector.isBlank()) return GENERIC;
+
+        if (elementUI2 ? selector.contains(".el-sub-menu") : selector.contains(".el-submenu")) return REWRITE;
+        if (selector.contains(".el-button") || selector.contains(".el-dropdown-item")) return REWRITE;
+
+        Matcher text = RegexPatterns.HAS_TEXT_QUOTED.matcher(selector);
+        boolean hasText = false;
+        while (text.find()) {
+            String value = text.group(1);
+            if (value.isBlank() || value.contains("{{") || value.contains("${")) return REWRITE;
+            hasText = true;
+        }
+        if (hasText) {
+            boolean menuItem = selector.contains(".el-menu-item") || selector.contains(".el-submenu")
+                    || selector.contains(".el-sub-menu");
+            return menuItem && MENU_EXTRACTORS.contains(extractor) ? SPECIFIC : TEXT;
+        }
+
+        if (selector.startsWith("#") && selector.indexOf(' ') < 0) return SPECIFIC;
+        if (GENERIC_SELECTORS.contains(selector) || !selector.contains(".")) return GENERIC;
+        return CLASS;
+    }
+}
@@ -0,0 +1,42 @@
+package vue.llm.core;
+
+import vue.llm.ast.StaticFacts;
+import vue.llm.graph.Edge;
+import vue.llm.io.VueFile;
+
+import java.util.List;
+
+/**
+ * One Stage 1 strategy that turns a file's static facts into navigation edges for a route.
+ * Extractors run in registration order over a shared edge list; independent ones may run concurrently.
+ */
+public interface EdgeExtractor {
+
+    /** Stable name used in metrics and in a project's disabled-extractor list. */
+    String name();
+
+    /**
+     * True when the extractor only appends edges (deduplicated) and never reads or rewrites edges
+     * produced by other extractors. Consecutive independent extractors at the head of the chain
+     * run concurrently and are merged back in registration order.
+     */
+    default boolean isIndependent() {
+        return false;
+    }
+
+    void extract(Context ctx, List<Edge> edges);
+
+    final class Context {
+        public final String routePath;
+        public final StaticFacts facts;
+        public final String sourceFile;
+        public final VueFile vueFile;
+
+        public Context(String routePath, StaticFacts facts, String sourceFile, VueFile vueFile) {
+            this.routePath = routePath;
+            this.facts = facts;
+            this.sourceFile = sourceFile;
+            this.vueFile = vueFile;
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package vue.llm.core;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-extractor call count, wall time and edge yield for one Stage 1 run.
+ * Yield is the net change of the route's edge list, so rewriting extractors may report negative values.
+ */
+public class ExtractorMetrics {
+
+    private static final Logger log = LoggerFactory.getLogger(ExtractorMetrics.class);
+
+    private static class Entry {
+        final LongAdder calls = new LongAdder();
+        final LongAdder nanos = new LongAdder();
+        final LongAdder edges = new LongAdder();
+    }
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    public void record(String extractor, long nanos, int edgeDelta) {
+        Entry entry = entries.computeIfAbsent(extractor, k -> new Entry());
+        entry.calls.increment();
+        entry.nanos.add(nanos);
+        entry.edges.add(edgeDelta);
+    }
+
+    public long getCalls(String extractor) {
+        Entry entry = entries.get(extractor);
+        return entry == null ? 0 : entry.calls.sum();
+    }
+
+    public double getMillis(String extractor) {
+        Entry entry = entries.get(extractor);
+        return entry == null ? 0 : entry.nanos.sum() / 1_000_000.0;
+    }
+
+    public long getEdges(String extractor) {
+        Entry entry = entries.get(extractor);
+        return entry == null ? 0 : entry.edges.sum();
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    public void print(Iterable<String> order) {
+        if (!log.isInfoEnabled()) return;
+        for (String name : order) {
+            if (!entries.containsKey(name)) continue;
+            log.info(String.format("[Extractors] %-22s calls=%-5d time=%9.2f ms  edges=%d",
+                    name, getCalls(name), getMillis(name), getEdges(name)));
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package vue.llm.core;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Run-scoped memo of artefacts derived from a single source file (menu items, menu texts,
+ * conditional rendering, ...). Each (file, artefact) pair is computed at most once per run.
+ */
+public class FileAnalysisCache {
+
+    private static final Logger log = LoggerFactory.getLogger(FileAnalysisCache.class);
+
+    private final Map<String, Optional<Object>> entries = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> hits = new ConcurrentSkipListMap<>();
+    private final Map<String, LongAdder> misses = new ConcurrentSkipListMap<>();
+
+    @SuppressWarnings("unchecked")
+    public <T> T get(String filePath, String artefact, Supplier<T> compute) {
+        String key = artefact + '\u0000' + filePath;
+        Optional<Object> cached = entries.get(key);
+        if (cached != null) {
+            counter(hits, artefact).increment();
+            return (T) cached.orElse(null);
+        }
+        counter(misses, artefact).increment();
+        Optional<Object> computed = Optional.ofNullable(compute.get());
+        Optional<Object> previous = entries.putIfAbsent(key, computed);
+        return (T) (previous != null ? previous : computed).orElse(null);
+    }
+
+    public long getHits(String artefact) {
+        LongAdder adder = hits.get(artefact);
+        return adder == null ? 0 : adder.sum();
+    }
+
+    public long getMisses(String artefact) {
+        LongAdder adder = misses.get(artefact);
+        return adder == null ? 0 : adder.sum();
+    }
+
+    public void clear() {
+        entries.clear();
+        hits.clear();
+        misses.clear();
+    }
+
+    public void printStats() {
+        if (!log.isInfoEnabled()) return;
+        for (String artefact : misses.keySet()) {
+            long h = getHits(artefact);
+            long m = getMisses(artefact);
+            log.info(String.format("[Cache] %-20s hits=%d misses=%d (%.1f%% hit rate)",
+                    artefact, h, m, 100.0 * h / (h + m)));
+        }
+    }
+
+    private static LongAdder counter(Map<String, LongAdder> counters, String artefact) {
+        return counters.computeIfAbsent(artefact, k -> new LongAdder());
+    }
+}
@@ -0,0 +1,165 @@
+package vue.llm.core;
+
+import vue.llm.graph.Edge;
+import vue.llm.io.VueFile;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.ToIntFunction;
+
+/**
+ * Packs Stage 2 work into LLM requests by estimated token cost instead of a fixed edge count.
+ *
+ * A file's edges are split into segments that fit the input and output budgets next to the file's
+ * prompt context (template/source). Segments are then first-fit packed, in file order, into batches,
+ * so several small files share one request and a large file is split only as often as its token
+ * count requires. Planning is deterministic for a given input order.
+ */
+public class Stage2BatchPlanner {
+
+    /** One file's edges, in the order they must come back. */
+    public static final class FileWork {
+        public final String filePath;
+        public final VueFile file;
+        public final List<Edge> edges;
+
+        public FileWork(String filePath, VueFile file, List<Edge> edges) {
+            this.filePath = filePath;
+            this.file = file;
+            this.edges = edges;
+        }
+    }
+
+    /** A contiguous run of one file's edges; {@code part} numbers the segments of that file. */
+    public static final class Segment {
+        public final FileWork work;
+        public final int part;
+        public final List<Edge> edges;
+        final int contextTokens;
+        final int edgeTokens;
+        final int outputTokens;
+
+        Segment(FileWork work, int part, List<Edge> edges, int contextTokens, int edgeTokens, int outputTokens) {
+            this.work = work;
+            this.part = part;
+            this.edges = edges;
+            this.contextTokens = contextTokens;
+            this.edgeTokens = edgeTokens;
+            this.outputTokens = outputTokens;
+        }
+    }
+
+    /** Segments sent in one request. */
+    public static final class Batch {
+        private final List<Segment> segments = new ArrayList<>();
+        private int inputTokens;
+        private int outputTokens;
+
+        public List<Segment> getSegments() {
+            return Collections.unmodifiableList(segments);
+        }
+
+        public int getInputTokens() {
+            return inputTokens;
+        }
+
+        public int getOutputTokens() {
+            return outputTokens;
+        }
+
+        public int getEdgeCount() {
+            int count = 0;
+            for (Segment segment : segments) count += segment.edges.size();
+            return count;
+        }
+    }
+
+    private final int inputBudget;
+    private final int outputBudget;
+    private final int maxFilesPerBatch;
+    private final int requestOverheadTokens;
+    private final ToIntFunction<FileWork> contextTokens;
+    private final ToIntFunction<Edge> edgeTokens;
+    private final ToIntFunction<Edge> outputTokens;
+
+    /**
+     * @param inputBudget           target prompt tokens per request (system prompt included)
+     * @param outputBudget          target completion tokens per request
+     * @param maxFilesPerBatch      cap on co-packed files, keeping each request's context focused
+     * @param requestOverheadTokens fixed per-request cost (system prompt, output format instructions)
+     * @param contextTokens         cost of a file's source excerpt for all of its edges; a segment's excerpt is
+     *                              never larger
+     */
+    public Stage2BatchPlanner(int inputBudget, int outputBudget, int maxFilesPerBatch, int requestOverheadTokens,
+                              ToIntFunction<FileWork> contextTokens, ToIntFunction<Edge> edgeTokens,
+                              ToIntFunction<Edge> outputTokens) {
+        this.inputBudget = inputBudget;
+        this.outputBudget = outputBudget;
+        this.maxFilesPerBatch = Math.max(1, maxFilesPerBatch);
+        this.requestOverheadTokens = requestOverheadTokens;
+        this.contextTokens = contextTokens;
+        this.edgeTokens = edgeTokens;
+        this.outputTokens = outputTokens;
+    }
+
+    public List<Batch> plan(List<FileWork> works) {
+        List<Segment> segments = new ArrayList<>();
+        for (FileWork work : works) {
+            segments.addAll(split(work));
+        }
+
+        List<Batch> batches = new ArrayList<>();
+        for (Segment segment : segments) {
+            Batch target = null;
+            for (Batch batch : batches) {
+                if (fits(batch, segment)) {
+                    target = batch;
+                    break;
+                }
+            }
+            if (target == null) {
+                target = new Batch();
+                target.inputTokens = requestOverheadTokens;
+                batches.add(target);
+            }
+            target.segments.add(segment);
+            target.inputTokens += segment.contextTokens + segment.edgeTokens;
+            target.outputTokens += segment.outputTokens;
+        }
+        return batches;
+    }
+
+    private boolean fits(Batch batch, Segment segment) {
+        return batch.segments.size() < maxFilesPerBatch
+                && batch.inputTokens + segment.contextTokens + segment.edgeTokens <= inputBudget
+                && batch.outputTokens + segment.outputTokens <= outputBudget;
+    }
+
+    /** Splits a file's edges by token count; every segment repeats the file context and holds at least one edge. */
+    private List<Segment> split(FileWork work) {
+        int context = contextTokens.applyAsInt(work);
+        List<Segment> segments = new ArrayList<>();
+        int start = 0;
+        int in = 0;
+        int out = 0;
+        for (int i = 0; i < work.edges.size(); i++) {
+            Edge edge = work.edges.get(i);
+            int edgeIn = edgeTokens.applyAsInt(edge);
+            int edgeOut = outputTokens.applyAsInt(edge);
+            boolean overflow = requestOverheadTokens + context + in + edgeIn > inputBudget || out + edgeOut > outputBudget;
+            if (i > start && overflow) {
+                segments.add(new Segment(work, segments.size(), work.edges.subList(start, i), context, in, out));
+                start = i;
+                in = 0;
+                out = 0;
+            }
+            in += edgeIn;
+            out += edgeOut;
+        }
+        if (start < work.edges.size()) {
+            segments.add(new Segment(work, segments.size(), work.edges.subList(start, work.edges.size()), context, in, out));
+        }
+        return segments;
+    }
+}
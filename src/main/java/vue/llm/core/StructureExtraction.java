@@ -1,45 +1,279 @@
 package vue.llm.core;
 
 import com.alibaba.fastjson2.JSON;
+import com.alibaba.fastjson2.JSONArray;
+import com.alibaba.fastjson2.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import vue.llm.ast.ASTAnalyzer;
 import vue.llm.ast.DomNode;
+import vue.llm.ast.HandlerIndex;
 import vue.llm.ast.RouterCall;
 import vue.llm.ast.StaticFacts;
 import vue.llm.graph.Edge;
 import vue.llm.graph.PageNode;
 import vue.llm.graph.StructureGraph;
+import vue.llm.io.CheckpointStore;
+import vue.llm.io.LexicalIndex;
+import vue.llm.io.TemplateOutline;
 import vue.llm.io.VueFile;
+import vue.llm.io.VueFileIndex;
 import vue.llm.router.RouteTable;
+import vue.llm.util.JsonArrayStream;
+import vue.llm.util.Histogram;
+import vue.llm.util.LlmCallRecord;
 import vue.llm.util.LlmClient;
+import vue.llm.util.LlmEndpoint;
+import vue.llm.util.LlmDispatcher;
 import vue.llm.util.ProgressBar;
+import vue.llm.util.RateLimiter;
+import vue.llm.util.RegexPatterns;
+import vue.llm.util.TokenEstimator;
 
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToIntFunction;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 
 public class StructureExtraction {
 
+    private static final Logger log = LoggerFactory.getLogger(StructureExtraction.class);
+
+    /** Bump whenever the Stage 2 prompt or its response parsing changes, so old checkpoints are not reused. */
+    public static final String PROMPT_VERSION = "4";
+
+    public static final int DEFAULT_LLM_CONCURRENCY = 4;
+
+    /** Stage 1 edges scored at or above this {@link EdgeConfidence} skip the LLM; above 1 sends every edge. */
+    public static final double DEFAULT_LLM_CONFIDENCE_THRESHOLD = EdgeConfidence.TEXT;
+
+    /** Stage 2 request sizing: prompt and completion token targets, and how many files may share a request. */
+    public static final int DEFAULT_STAGE2_INPUT_TOKENS = 12_000;
+    public static final int DEFAULT_STAGE2_OUTPUT_TOKENS = 4_000;
+    private static final int STAGE2_MAX_FILES_PER_BATCH = 6;
+    private static final int STAGE2_TEMPERATURE = 0;
+    /** Files Stage 1 may be ahead of Stage 2 in pipelined mode. */
+    private static final int PIPELINE_QUEUE_FILES = 16;
+    /** Pipelined Stage 2 sends the files it holds once Stage 1 has handed over nothing for this long. */
+    private static final long PIPELINE_FLUSH_MS = 100;
+    /** Completion tokens per edge beyond its own fields: keys, isValid and a one-line llmReasoning. */
+    private static final int OUTPUT_TOKENS_PER_EDGE = 45;
+    private static final int MAX_VALIDATION_ATTEMPTS = 3;
+    /** An edge found only by its selector's tag/class is anchored to at most this many template elements. */
+    private static final int MAX_SELECTOR_ANCHORS = 5;
+
+    /**
+     * The Stage 2 system prompt. It is the same for every project and request, so a provider's prompt
+     * cache can reuse it; project facts go at the start of the user prompt instead.
+     */
+    private static final String VALIDATION_SYSTEM_PROMPT = """
+            You are a Vue.js navigation graph expert. Your task is to ENHANCE navigation edges, NOT to filter them.
+            
+            SELECTOR RULES:
+            1. Button: <el-button> renders as <button> tag
+               - Use: button:has-text('Login')
+               - Not: .el-button:has-text('Login')
+            
+            2. Submenu: Convert .el-sub-menu based on framework
+               - Element UI 2.x: .el-submenu (no hyphen)
+               - Element Plus: .el-sub-menu (with hyphen)
+            
+            3. Dropdown item: <el-dropdown-item> renders as <li class="el-dropdown-menu__item">
+               - Use: .el-dropdown-menu__item:has-text('Logout')
+               - Not: .el-dropdown-item:has-text('Logout')
+            
+            YOUR TASKS:
+            1. **Enhance selector**: Convert generic selectors to specific Playwright selectors with text
+            2. **Fix selector format**: Convert .el-sub-menu to correct format based on UI framework
+            3. **Extract conditions**: Find v-if/v-show conditions from source code
+            4. **Mark ALL edges as valid**: Set isValid=true for ALL edges
+            
+            CRITICAL RULES:
+            - You MUST return ALL input edges with isValid=true
+            - Every input edge has an "id"; return each edge with the same "id"
+            - Input edges use short keys: f=from, t=to, s=selector, e=event, c=condition (absent = null);
+              answer with the full key names shown in OUTPUT FORMAT
+            - Source code shows only the template elements of the edges and their enclosing elements;
+              "…" marks omitted content
+            - The user message starts with PROJECT INFO, then the source code of each file in the request;
+              the edges come last, each group under the path of the file it belongs to
+            - Do NOT filter out or remove any edges
+            - Your role is ENHANCEMENT ONLY, not validation or filtering
+            - Downstream processing will handle normalization, deduplication, and filtering
+            - Even if an edge seems incorrect, include it with isValid=true
+            
+            SPECIAL HANDLING FOR ROUTER CONFIG FILE EDGES:
+            - Edges from router configuration files (redirect, beforeEach) have selector="-"
+            - Keep these edges EXACTLY as-is without any modifications
+            - Do NOT attempt to enhance or change selector="-" for router config edges
+            - These represent programmatic navigation, not UI-based navigation
+            
+            SELECTOR ENHANCEMENT REQUIREMENTS:
+            - **ALWAYS** enhance generic selectors by adding text content from source code
+            - Generic selectors include: "button", ".el-button", "a", "span"
+            - Target format: selector:has-text('text_content')
+            - **EXCEPTION**: Never modify selector="-" (router config edges)
+            - If text cannot be extracted, keep the original selector unchanged
+            
+            TEXT EXTRACTION RULES:
+            1. Preserve selector type - only append text information
+               - "button" remains "button" (becomes "button:has-text('Login')")
+               - ".el-menu-item" remains ".el-menu-item" (becomes ".el-menu-item:has-text('Home')")
+               - Never change selector type (e.g., "button" to ".el-dropdown-item")
+            
+            2. Skip selectors that already contain text:
+               - ".el-menu-item:has-text('Home')" → no change needed
+            
+            3. Enhance generic selectors by appending :has-text():
+               - "button" → "button:has-text('Login')"
+               - ".el-dialog__body button" → ".el-dialog__body button:has-text('Submit')"
+            
+            4. When text extraction fails:
+               - Return the original selector without modification
+               - Do NOT invent or guess text content
+            
+            CONDITION EXTRACTION:
+            1. Template-level conditions (v-if, v-show):
+               - Search for v-if or v-show directives on the element or parent elements
+               - Extract the exact condition expression as written in the template
+               - Examples:
+                 * v-if="user.role === 1" → condition: "user.role === 1"
+                 * v-show="isLoggedIn" → condition: "isLoggedIn"
+            
+            2. Script-level conditions (conditional menu data):
+               - When the file contains conditional menu rendering logic
+               - Analyze the script section to determine condition branches for menu items
+               - For cross-branch edges (from-page and to-page in different condition branches):
+                 * Use format: "CROSS_ROLE: <from_condition> -> <to_condition>"
+               - Example:
+                 * if (roles == 'admin') { items = [{path: 'houselist'}] }
+                   else { items = [{path: 'personalHouseList'}] }
+                 * Edge: /houselist → /personalHouseList
+                   → condition: "CROSS_ROLE: roles=='admin' -> roles!='admin'"
+            
+            3. No condition found:
+               - Set condition: null (not empty string, use null)
+            
+            OUTPUT FORMAT:
+            {
+              "edges": [
+                {
+                  "id": "e1",
+                  "from": "/page",
+                  "to": "/page2",
+                  "selector": "button:has-text('Login')",
+                  "event": "click",
+                  "condition": null,
+                  "isValid": true,
+                  "llmReasoning": "Enhanced selector from button text, clear navigation intent"
+                }
+              ]
+            }
+            
+            Return ONLY valid JSON without markdown code blocks.
+            """;
+
+    private static final String VALIDATION_OUTPUT_FORMAT = """
+            Please validate each edge and return JSON in this format:
+            {
+              "edges": [
+                {
+                  "id": "e1",
+                  "from": "/dashboard",
+                  "to": "/user",
+                  "selector": ".el-menu-item:has-text('Reader Management')",
+                  "event": "click",
+                  "condition": null,
+                  "isValid": true,
+                  "llmReasoning": "Clear navigation menu item"
+                }
+              ]
+            }
+            """;
+
     private final LlmClient llm;
     private final RouteTable routeTable;
     private final String routerFilePath;
     private final StructureGraph globalGraph = new StructureGraph();
-    private List<VueFile> vueFiles;
+    private VueFileIndex fileIndex = new VueFileIndex(List.of());
+    private VueFile routerFile;
+    private List<VueFile> routerConfigFiles = List.of();
     private String projectRoot;
     private boolean isElementUI2 = false;
 
     private StructureGraph stage1Snapshot = null;
     private StructureGraph stage2Snapshot = null;
+    private final FileAnalysisCache analysisCache = new FileAnalysisCache();
+    private final List<EdgeExtractor> extractors = new ArrayList<>();
+    private final ExtractorMetrics extractorMetrics = new ExtractorMetrics();
+    private int concurrentExtractors = 0;
+    private ExecutorService extractorPool;
+    private CheckpointStore checkpoints;
+    private int llmConcurrency = DEFAULT_LLM_CONCURRENCY;
+    private double llmConfidenceThreshold = DEFAULT_LLM_CONFIDENCE_THRESHOLD;
+    private final LongAdder retryRequests = new LongAdder();
+    private final LongAdder retriedEdges = new LongAdder();
+    private final LongAdder retryPromptTokens = new LongAdder();
+    private final LongAdder failedRequests = new LongAdder();
+    private final LongAdder failedRequestEdges = new LongAdder();
+    private boolean llmStreaming = false;
+    private volatile Histogram firstEdgeLatency = new Histogram();
+    private final LongAdder abortedStreams = new LongAdder();
+    private boolean llmStructuredOutput = false;
+    private boolean pipelineStages = false;
+    private final LongAdder untypedResponses = new LongAdder();
+    private final Map<Stage2BatchPlanner.FileWork, FileSection> fileSections = new ConcurrentHashMap<>();
+    private RateLimiter rateLimiter = RateLimiter.unlimited();
+    private int stage2InputTokenBudget = DEFAULT_STAGE2_INPUT_TOKENS;
+    private int stage2OutputTokenBudget = DEFAULT_STAGE2_OUTPUT_TOKENS;
 
     public StructureExtraction(LlmClient llm, RouteTable routeTable, String routerFilePath) {
+        this(llm, routeTable, routerFilePath, Set.of());
+    }
+
+    public StructureExtraction(LlmClient llm, RouteTable routeTable, String routerFilePath, Set<String> disabledExtractors) {
         this.llm = llm;
         this.routeTable = routeTable;
         this.routerFilePath = routerFilePath;
         this.projectRoot = extractProjectRoot(routerFilePath);
         this.isElementUI2 = detectElementUI2();
+        registerExtractors(disabledExtractors != null ? disabledExtractors : Set.of());
+    }
+
+    private void registerExtractors(Set<String> disabled) {
+        List<EdgeExtractor> all = List.of(
+                new RouterCallExtractor(),
+                new NodeBindingExtractor(),
+                new ClickPushSelectorExtractor(),
+                new WindowOpenExtractor(),
+                new SelfLoopMenuExtractor(),
+                new RouteConfigMenuExtractor(),
+                new NestedRouteTransform()
+        );
+        for (EdgeExtractor extractor : all) {
+            if (disabled.contains(extractor.name())) {
+                log.info("[Stage 1] Extractor disabled: {}", extractor.name());
+                continue;
+            }
+            extractors.add(extractor);
+        }
+        while (concurrentExtractors < extractors.size() && extractors.get(concurrentExtractors).isIndependent()) {
+            concurrentExtractors++;
+        }
     }
 
     public StructureGraph getStage1Snapshot() {
@@ -54,6 +288,64 @@ public class StructureExtraction {
         return routeTable;
     }
 
+    public FileAnalysisCache getAnalysisCache() {
+        return analysisCache;
+    }
+
+    public ExtractorMetrics getExtractorMetrics() {
+        return extractorMetrics;
+    }
+
+    /** Persist every stage's graph under {@code dir} and allow {@link #run(String, List, int)} to resume from it. */
+    public void setCheckpointDir(Path dir) {
+        this.checkpoints = dir != null ? new CheckpointStore(dir) : null;
+    }
+
+    /** Maximum number of Stage 2 LLM requests in flight at once (1 = sequential). */
+    public void setLlmConcurrency(int maxInFlight) {
+        this.llmConcurrency = Math.max(1, maxInFlight);
+    }
+
+    /** Token targets used to pack Stage 2 edges into requests. */
+    public void setStage2TokenBudget(int inputTokens, int outputTokens) {
+        this.stage2InputTokenBudget = inputTokens;
+        this.stage2OutputTokenBudget = outputTokens;
+    }
+
+    /** Edges whose Stage 1 confidence is at least {@code threshold} are passed through Stage 2 unchanged. */
+    public void setLlmConfidenceThreshold(double threshold) {
+        this.llmConfidenceThreshold = threshold;
+    }
+
+    /**
+     * Stream Stage 2 responses and check each edge as it arrives; a request is abandoned at its first
+     * rejected edge so the retry starts without waiting for the rest of the answer.
+     */
+    public void setLlmStreaming(boolean streaming) {
+        this.llmStreaming = streaming;
+    }
+
+    /**
+     * Ask for Stage 2 answers under a strict JSON schema generated from {@link Edge} and decode them
+     * straight into {@link EdgeAnswer}s; answers that do not decode fall back to the lenient parser.
+     */
+    public void setLlmStructuredOutput(boolean structuredOutput) {
+        this.llmStructuredOutput = structuredOutput;
+    }
+
+    /**
+     * Overlap Stage 1 and Stage 2: each file's edges are validated as soon as Stage 1 has finished the
+     * file, instead of after all of Stage 1. Requests are packed from the files ready at the time, so
+     * they can differ from a sequential run's (and miss its response cache); the graph is assembled the same way.
+     */
+    public void setPipelineStages(boolean pipelineStages) {
+        this.pipelineStages = pipelineStages;
+    }
+
+    public void setRateLimiter(RateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter != null ? rateLimiter : RateLimiter.unlimited();
+    }
+
     private String extractProjectRoot(String routerFilePath) {
         if (routerFilePath == null) return null;
         Path path = Paths.get(routerFilePath);
@@ -81,7 +373,7 @@ public class StructureExtraction {
                 return false;
             }
         } catch (Exception e) {
-            System.err.println("Failed to read package.json: " + e.getMessage());
+            log.warn("Failed to read package.json: {}", e.getMessage());
         }
         return false;
     }
@@ -100,6 +392,25 @@ public class StructureExtraction {
         return routerFilePath.endsWith(filePath) || filePath.equals(routerFilePath);
     }
 
+    private void resolveRouterFiles() {
+        List<VueFile> configFiles = new ArrayList<>();
+        VueFile routerConfig = fileIndex.get("router-config");
+        if (routerConfig != null) {
+            configFiles.add(routerConfig);
+        }
+        routerFile = null;
+        if (routerFilePath != null) {
+            List<VueFile> suffixes = fileIndex.findSuffixesOf(routerFilePath);
+            configFiles.addAll(suffixes);
+            if (!routerFilePath.isBlank()) {
+                routerFile = fileIndex.earliest(suffixes.isEmpty() ? null : suffixes.get(0),
+                        fileIndex.findEndingWith(routerFilePath));
+            }
+        }
+        routerConfigFiles = List.copyOf(new LinkedHashSet<>(configFiles));
+    }
+
+
     private String getRouterFileName() {
         if (routerFilePath == null) {
             return "router.js";
@@ -113,20 +424,144 @@ public class StructureExtraction {
 
 
     public StructureGraph run(String projectName, List<VueFile> files) {
-        this.vueFiles = files;
-        Map<String, Set<String>> componentUsageIndex = buildComponentUsageIndex(files);
+        return run(projectName, files, 1);
+    }
+
+    /**
+     * Runs the pipeline starting at {@code fromStage} (1-3). Resuming needs a checkpoint directory and
+     * a checkpoint of the previous stage built from identical inputs; otherwise every stage runs.
+     */
+    public StructureGraph run(String projectName, List<VueFile> files, int fromStage) {
+        this.fileIndex = new VueFileIndex(files);
+        resolveRouterFiles();
+        analysisCache.clear();
+        extractorMetrics.clear();
         globalGraph.getNodes().clear();
         globalGraph.getEdges().clear();
-        extractStaticStructure(files, componentUsageIndex);
-        stage1Snapshot = deepCopyGraph(globalGraph);
-        validateAndEnhanceWithLLM(files);
-        stage2Snapshot = deepCopyGraph(globalGraph);
+        stage1Snapshot = null;
+        stage2Snapshot = null;
+
+        List<String> extractorNames = new ArrayList<>();
+        for (EdgeExtractor extractor : extractors) {
+            extractorNames.add(extractor.name());
+        }
+        // Project config Stage 1 reads besides the files: the router path and the UI library from package.json.
+        String stage1Fingerprint = CheckpointStore.fingerprint(files, routeTable, "extractors=" + extractorNames,
+                "confidence=" + EdgeConfidence.VERSION, "router=" + routerFilePath, "elementUI2=" + isElementUI2);
+        String stage2Fingerprint = CheckpointStore.chain(stage1Fingerprint,
+                "prompt=" + PROMPT_VERSION, "model=" + LlmClient.model, "confidence>=" + llmConfidenceThreshold,
+                // which edges share a request changes what the LLM sees next to them
+                "budget=" + stage2InputTokenBudget + "/" + stage2OutputTokenBudget + "/" + STAGE2_MAX_FILES_PER_BATCH,
+                "pipeline=" + pipelineStages,
+                "endpoints=" + endpointUrls(), "temperature=" + STAGE2_TEMPERATURE, "schema=" + llmStructuredOutput);
+
+        int startStage = resolveStartStage(fromStage, stage1Fingerprint, stage2Fingerprint);
+
+        if (startStage <= 1 && pipelineStages) {
+            runPipelined(files, stage1Fingerprint);
+            stage2Snapshot = deepCopyGraph(globalGraph);
+            saveCheckpoint(2, stage2Fingerprint, stage2Snapshot);
+        } else if (startStage <= 1) {
+            runStage1(files, stage1Fingerprint, null);
+        }
+
+        if (startStage <= 2 && stage2Snapshot == null) {
+            validateAndEnhanceWithLLM(files);
+            stage2Snapshot = deepCopyGraph(globalGraph);
+            saveCheckpoint(2, stage2Fingerprint, stage2Snapshot);
+        }
+
         canonicalizeEdges(globalGraph);
+        saveCheckpoint(3, CheckpointStore.chain(stage2Fingerprint, "canonicalize"), globalGraph);
+        analysisCache.printStats();
         return globalGraph;
     }
 
+    private void runStage1(List<VueFile> files, String stage1Fingerprint, Stage2Pipeline pipeline) {
+        Map<String, Set<String>> componentUsageIndex = buildComponentUsageIndex(files);
+        startExtractorPool();
+        try {
+            extractStaticStructure(files, componentUsageIndex, pipeline);
+        } finally {
+            stopExtractorPool();
+        }
+        printExtractorMetrics();
+        stage1Snapshot = deepCopyGraph(globalGraph);
+        saveCheckpoint(1, stage1Fingerprint, stage1Snapshot);
+    }
+
+    /** Stage 1 with Stage 2 consuming its files as they complete; see {@link #setPipelineStages}. */
+    private void runPipelined(List<VueFile> files, String stage1Fingerprint) {
+        long start = System.nanoTime();
+        try (Stage2Pipeline pipeline = new Stage2Pipeline()) {
+            runStage1(files, stage1Fingerprint, pipeline);
+            log.info("[Pipeline] Stage 1 done after {} ms", (System.nanoTime() - start) / 1_000_000);
+            pipeline.finish();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for Stage 2", e);
+        }
+        log.info("[Pipeline] Stages 1 and 2 took {} ms", (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /** The pool's URLs in a fixed order: different deployments may answer differently, weights do not matter. */
+    private List<String> endpointUrls() {
+        List<String> urls = new ArrayList<>();
+        for (LlmEndpoint endpoint : llm.getEndpoints()) {
+            urls.add(endpoint.getUrl());
+        }
+        Collections.sort(urls);
+        return urls;
+    }
+
+    private int resolveStartStage(int fromStage, String stage1Fingerprint, String stage2Fingerprint) {
+        if (fromStage <= 1) {
+            return 1;
+        }
+        if (checkpoints == null) {
+            log.info("[Checkpoint] No checkpoint directory configured, running all stages");
+            return 1;
+        }
+
+        if (fromStage >= 3) {
+            StructureGraph stage2 = checkpoints.load(2, stage2Fingerprint);
+            if (stage2 != null) {
+                stage1Snapshot = checkpoints.load(1, stage1Fingerprint);
+                stage2Snapshot = stage2;
+                restoreGlobalGraph(stage2);
+                log.info("[Checkpoint] Resuming at Stage 3");
+                return 3;
+            }
+        }
+
+        StructureGraph stage1 = checkpoints.load(1, stage1Fingerprint);
+        if (stage1 != null) {
+            stage1Snapshot = stage1;
+            restoreGlobalGraph(stage1);
+            log.info("[Checkpoint] Resuming at Stage 2");
+            return 2;
+        }
+
+        log.info("[Checkpoint] No usable checkpoint, running all stages");
+        return 1;
+    }
+
+    private void restoreGlobalGraph(StructureGraph snapshot) {
+        StructureGraph copy = deepCopyGraph(snapshot);
+        globalGraph.setNodes(copy.getNodes());
+        globalGraph.setEdges(copy.getEdges());
+    }
+
+    private void saveCheckpoint(int stage, String fingerprint, StructureGraph graph) {
+        if (checkpoints != null) {
+            checkpoints.save(stage, fingerprint, graph);
+        }
+    }
 
-    private void extractStaticStructure(List<VueFile> files, Map<String, Set<String>> componentUsageIndex) {
+
+    /** With a {@code pipeline}, each file's new edges are handed to Stage 2 as soon as the file is done. */
+    private void extractStaticStructure(List<VueFile> files, Map<String, Set<String>> componentUsageIndex,
+                                        Stage2Pipeline pipeline) {
         extractRouterEdges();
 
         int totalTasks = 0;
@@ -145,7 +580,8 @@ public class StructureExtraction {
         ProgressBar progressBar = new ProgressBar(totalTasks);
 
         for (VueFile file : files) {
-        System.out.println("\n[Stage 1] Processing: " + file.getPath());
+        log.debug("[Stage 1] Processing: {}", file.getPath());
+        int edgesBefore = globalGraph.getEdges().size();
         StaticFacts facts = extractFacts(file);
         String componentPath = file.getPath();
         Set<String> associatedRoutes = new LinkedHashSet<>();
@@ -156,9 +592,9 @@ public class StructureExtraction {
 
         Set<String> usedByRoutes = componentUsageIndex.getOrDefault(componentPath, Set.of());
         associatedRoutes.addAll(usedByRoutes);
-        System.out.println("[Stage 1]   Component: " + componentPath + " (routes: " + associatedRoutes.size() + ")");
+        log.debug("[Stage 1]   Component: {} (routes: {})", componentPath, associatedRoutes.size());
         if (associatedRoutes.isEmpty()) {
-            System.out.println("[Stage 1]   Skipping: " + file.getPath() + " (not a page component)");
+            log.debug("[Stage 1]   Skipping: {} (not a page component)", file.getPath());
             continue;
         }
 
@@ -200,6 +636,9 @@ public class StructureExtraction {
             mergeGraph(globalGraph, staticGraph);
             progressBar.step(file.getPath(), routePath);
         }
+        if (pipeline != null) {
+            pipeline.fileDone(globalGraph.getEdges().subList(edgesBefore, globalGraph.getEdges().size()));
+        }
     }
 
     addImplicitChildEdges(globalGraph, routeTable);
@@ -208,28 +647,24 @@ public class StructureExtraction {
 
     private boolean hasConditionalMenuRendering(VueFile file) {
         if (file == null || file.getContent() == null) return false;
+        return analysisCache.get(file.getPath(), "conditionalMenu", () -> computeConditionalMenuRendering(file));
+    }
 
-        String content = file.getContent();
+    private boolean computeConditionalMenuRendering(VueFile file) {
 
-        Pattern conditionalAssignment = Pattern.compile(
-            "if\\s*\\([^)]+\\)\\s*\\{[^}]*(this\\.(items|menuList|menus|menuItems))\\s*=\\s*\\[",
-            Pattern.DOTALL
-        );
-        if (conditionalAssignment.matcher(content).find()) {
+        LexicalIndex index = file.getLexicalIndex();
+
+        if (index.hasConditionalMenuAssignment()) {
             return true;
         }
 
-        if (content.contains("computed(") &&
-            (content.contains("menuItems") || content.contains("menuList") || content.contains("menus")) &&
-            (content.contains("role") || content.contains("Role"))) {
+        if (index.contains("computed(") &&
+            (index.contains("menuItems") || index.contains("menuList") || index.contains("menus")) &&
+            (index.contains("role") || index.contains("Role"))) {
             return true;
         }
 
-        Pattern methodConditional = Pattern.compile(
-            "methods\\s*:\\s*\\{[^}]*if\\s*\\([^)]*role[^)]*\\)[^}]*(this\\.(items|menuList|menus))",
-            Pattern.DOTALL | Pattern.CASE_INSENSITIVE
-        );
-        if (methodConditional.matcher(content).find()) {
+        if (index.hasRoleConditionalMethod()) {
             return true;
         }
 
@@ -239,19 +674,18 @@ public class StructureExtraction {
     private boolean isRouteInMenu(VueFile layoutFile, String routePath) {
         if (layoutFile == null || routePath == null) return false;
 
-        String content = layoutFile.getContent();
-        if (content == null) return false;
+        if (layoutFile.getContent() == null) return false;
+        LexicalIndex index = layoutFile.getLexicalIndex();
 
-        if (content.matches("(?s).*index\\s*=\\s*[\"']" + Pattern.quote(routePath) + "[\"'].*")) {
+        if (index.hasQuotedBinding("index", '=', routePath)) {
             return true;
         }
 
-        Map<String, String> menuTexts = extractMenuTextsFromVueFile(layoutFile);
-        if (menuTexts.containsKey(routePath)) {
+        if (index.getMenuTexts().containsKey(routePath)) {
             return true;
         }
 
-        if (content.matches("(?s).*to\\s*=\\s*[\"']" + Pattern.quote(routePath) + "[\"'].*")) {
+        if (index.hasQuotedBinding("to", '=', routePath)) {
             return true;
         }
 
@@ -287,78 +721,31 @@ public class StructureExtraction {
     }
 
 
-    private String extractRouterLinkClass(String content) {
-        Pattern pattern = Pattern.compile("<router-link[^>]*?\\sclass=\"([^\"]+)\"", Pattern.DOTALL);
-        Matcher matcher = pattern.matcher(content);
-        if (matcher.find()) {
-            String classAttr = matcher.group(1);
-            String[] classes = classAttr.split("\\s+");
-            if (classes.length > 0 && !classes[0].isBlank()) {
-                return classes[0];
-            }
-        }
-        return null;
-    }
-
-
     private List<MenuItemInfo> extractMenuItemsWithContext(VueFile vueFile) {
-        List<MenuItemInfo> menuItems = new ArrayList<>();
         if (vueFile == null || vueFile.getContent() == null) {
-            return menuItems;
+            return Collections.emptyList();
         }
+        return analysisCache.get(vueFile.getPath(), "menuItems", () -> computeMenuItemsWithContext(vueFile));
+    }
 
-        String content = vueFile.getContent();
-
-        String routerLinkClass = extractRouterLinkClass(content);
-
-        int pos = 0;
-        while (pos < content.length()) {
-            int returnPos = content.indexOf("return", pos);
-            int itemsPos = content.indexOf("items", pos);
-            int tabsPos = content.indexOf("tabs", pos);
-            int menusPos = content.indexOf("menus", pos);
-            int menuListPos = content.indexOf("menuList", pos);
-
-            int searchPos = -1;
-            int[] positions = {returnPos, itemsPos, tabsPos, menusPos, menuListPos};
-            for (int p : positions) {
-                if (p != -1 && (searchPos == -1 || p < searchPos)) {
-                    searchPos = p;
-                }
-            }
-
-            if (searchPos == -1) {
-                break;
-            }
-
-            int arrayStart = content.indexOf('[', searchPos);
-            if (arrayStart == -1 || arrayStart - searchPos > 30) {
-                pos = searchPos + 6;
-                continue;
-            }
-
-            int arrayEnd = findMatchingBracket(content, arrayStart);
-            if (arrayEnd == -1) {
-                pos = searchPos + 6;
-                continue;
-            }
-
-            String menuArrayContent = content.substring(arrayStart + 1, arrayEnd);
+    private List<MenuItemInfo> computeMenuItemsWithContext(VueFile vueFile) {
+        List<MenuItemInfo> menuItems = new ArrayList<>();
 
+        LexicalIndex index = vueFile.getLexicalIndex();
+        for (String menuArrayContent : index.getMenuArrays()) {
             if (menuArrayContent.contains("path") && (menuArrayContent.contains("label") || menuArrayContent.contains("name"))) {
                 parseMenuArray(menuArrayContent, menuItems, false);
             }
-
-            pos = arrayEnd + 1;
         }
 
+        String routerLinkClass = index.getRouterLinkClass();
         if (routerLinkClass != null) {
             for (MenuItemInfo item : menuItems) {
                 item.className = routerLinkClass;
             }
         }
 
-        return menuItems;
+        return Collections.unmodifiableList(menuItems);
     }
 
 
@@ -374,8 +761,7 @@ public class StructureExtraction {
             String objContent = arrayContent.substring(objStart + 1, objEnd);
 
             Map<String, String> props = new HashMap<>();
-            Pattern propPattern = Pattern.compile("(\\w+)\\s*:\\s*['\"]([^'\"]+)['\"]");
-            Matcher propMatcher = propPattern.matcher(objContent);
+            Matcher propMatcher = RegexPatterns.OBJECT_STRING_PROPERTY.matcher(objContent);
             while (propMatcher.find()) {
                 props.put(propMatcher.group(1), propMatcher.group(2));
             }
@@ -427,107 +813,10 @@ public class StructureExtraction {
 
 
     private Map<String, String> extractMenuTextsFromVueFile(VueFile vueFile) {
-        Map<String, String> routeTexts = new HashMap<>();
         if (vueFile == null || vueFile.getContent() == null) {
-            return routeTexts;
-        }
-
-        String content = vueFile.getContent();
-
-
-        Pattern pattern1 = Pattern.compile(
-            "\\{\\s*path\\s*:\\s*['\"]([^'\"]+)['\"]\\s*,\\s*name\\s*:\\s*['\"]([^'\"]+)['\"]\\s*\\}|" +
-            "\\{\\s*name\\s*:\\s*['\"]([^'\"]+)['\"]\\s*,\\s*path\\s*:\\s*['\"]([^'\"]+)['\"]\\s*\\}"
-        );
-        Matcher matcher1 = pattern1.matcher(content);
-        while (matcher1.find()) {
-            String path = matcher1.group(1) != null ? matcher1.group(1) : matcher1.group(4);
-            String name = matcher1.group(2) != null ? matcher1.group(2) : matcher1.group(3);
-            if (name != null && path != null && !name.isBlank() && !path.isBlank()) {
-                String fullPath = path.startsWith("/") ? path : "/" + path;
-                routeTexts.put(fullPath, name);
-            }
-        }
-
-        Pattern pattern2 = Pattern.compile(
-            "\\{[^}]*label\\s*:\\s*['\"]([^'\"]+)['\"][^}]*path\\s*:\\s*['\"]([^'\"]+)['\"][^}]*\\}|" +
-            "\\{[^}]*path\\s*:\\s*['\"]([^'\"]+)['\"][^}]*label\\s*:\\s*['\"]([^'\"]+)['\"][^}]*\\}"
-        );
-        Matcher matcher2 = pattern2.matcher(content);
-        while (matcher2.find()) {
-            String label = matcher2.group(1) != null ? matcher2.group(1) : matcher2.group(4);
-            String path = matcher2.group(2) != null ? matcher2.group(2) : matcher2.group(3);
-            if (label != null && path != null && !label.isBlank() && !path.isBlank()) {
-                String fullPath = path.startsWith("/") ? path : "/" + path;
-                routeTexts.put(fullPath, label);
-            }
-        }
-
-        Pattern pattern3 = Pattern.compile(
-            "\\{[^}]*title\\s*:\\s*['\"]([^'\"]+)['\"][^}]*path\\s*:\\s*['\"]([^'\"]+)['\"][^}]*\\}|" +
-            "\\{[^}]*path\\s*:\\s*['\"]([^'\"]+)['\"][^}]*title\\s*:\\s*['\"]([^'\"]+)['\"][^}]*\\}"
-        );
-        Matcher matcher3 = pattern3.matcher(content);
-        while (matcher3.find()) {
-            String title = matcher3.group(1) != null ? matcher3.group(1) : matcher3.group(4);
-            String path = matcher3.group(2) != null ? matcher3.group(2) : matcher3.group(3);
-            if (title != null && path != null && !title.isBlank() && !path.isBlank()) {
-                String fullPath = path.startsWith("/") ? path : "/" + path;
-                routeTexts.put(fullPath, title);
-            }
-        }
-
-        Pattern arrayPattern = Pattern.compile(
-            "(children|items|menus|menuList|tabs)\\s*:\\s*\\[([^\\]]+)\\]",
-            Pattern.DOTALL
-        );
-        Matcher arrayMatcher = arrayPattern.matcher(content);
-        while (arrayMatcher.find()) {
-            String arrayBlock = arrayMatcher.group(2);
-
-            Pattern objectPattern = Pattern.compile(
-                "\\{([^}]+)\\}",
-                Pattern.DOTALL
-            );
-            Matcher objectMatcher = objectPattern.matcher(arrayBlock);
-            while (objectMatcher.find()) {
-                String objectContent = objectMatcher.group(1);
-
-                Map<String, String> properties = new HashMap<>();
-                Pattern propertyPattern = Pattern.compile(
-                    "(\\w+)\\s*:\\s*['\"]([^'\"]+)['\"]"
-                );
-                Matcher propertyMatcher = propertyPattern.matcher(objectContent);
-                while (propertyMatcher.find()) {
-                    String key = propertyMatcher.group(1);
-                    String value = propertyMatcher.group(2);
-                    properties.put(key, value);
-                }
-
-                String pathValue = null;
-                String textValue = null;
-
-                for (Map.Entry<String, String> entry : properties.entrySet()) {
-                    String key = entry.getKey().toLowerCase();
-                    String value = entry.getValue();
-
-                    if (pathValue == null && (key.contains("path") || key.contains("route") || key.contains("url"))) {
-                        pathValue = value;
-                    }
-                    if (textValue == null && (key.contains("name") || key.contains("label") ||
-                                             key.contains("title") || key.contains("text"))) {
-                        textValue = value;
-                    }
-                }
-
-                if (pathValue != null && textValue != null && !pathValue.isBlank() && !textValue.isBlank()) {
-                    String fullPath = pathValue.startsWith("/") ? pathValue : "/" + pathValue;
-                    routeTexts.put(fullPath, textValue);
-                }
-            }
+            return Collections.emptyMap();
         }
-
-        return routeTexts;
+        return analysisCache.get(vueFile.getPath(), "menuTexts", () -> vueFile.getLexicalIndex().getMenuTexts());
     }
 
 
@@ -543,6 +832,7 @@ public class StructureExtraction {
                 e.setEvent("redirect");
                 e.setSourceFile(getRouterFileName());
                 e.setExtractionMethod("AST");
+                e.setConfidence(EdgeConfidence.ROUTER);
                 globalGraph.addEdge(e);
             }
         }
@@ -554,33 +844,25 @@ public class StructureExtraction {
         if (routePath == null) return roles;
 
         try {
-            for (VueFile file : vueFiles) {
-                String filePath = file.getPath();
-                if (isRouterFile(filePath)) {
-                    String content = file.getContent();
-                    if (content != null) {
-                        String escapedPath = Pattern.quote(routePath);
-
-                        Pattern pattern = Pattern.compile(
-                            "['\"]?path['\"]?\\s*:\\s*['\"]" + escapedPath + "['\"].*?['\"]?meta['\"]?\\s*:\\s*\\{[^}]*['\"]?roles['\"]?\\s*:\\s*\\[([^\\]]+)\\]",
-                            Pattern.DOTALL
-                        );
-                        Matcher matcher = pattern.matcher(content);
-                        if (matcher.find()) {
-                            String rolesStr = matcher.group(1);
-                            String[] roleArr = rolesStr.split(",");
-                            for (String role : roleArr) {
-                                try {
-                                    roles.add(Integer.parseInt(role.trim()));
-                                } catch (NumberFormatException e) {
-                                }
+            for (VueFile file : routerConfigFiles) {
+                String content = file.getContent();
+                if (content != null) {
+                    int pathPos = RegexPatterns.indexOfQuotedBinding(content, "path", ':', routePath);
+                    Matcher matcher = RegexPatterns.ROUTE_META_ROLES.matcher(content);
+                    if (pathPos >= 0 && matcher.find(pathPos + routePath.length() + 1)) {
+                        String rolesStr = matcher.group(1);
+                        String[] roleArr = rolesStr.split(",");
+                        for (String role : roleArr) {
+                            try {
+                                roles.add(Integer.parseInt(role.trim()));
+                            } catch (NumberFormatException e) {
                             }
                         }
                     }
                 }
             }
         } catch (Exception e) {
-            System.err.println("[getRouteRoles] Error: " + e.getMessage());
+            log.warn("[getRouteRoles] Error: {}", e.getMessage());
         }
         return roles;
     }
@@ -631,6 +913,7 @@ public class StructureExtraction {
                     e.setSelectorKind("ROUTER");
                     e.setSourceFile("router-config");
                     e.setExtractionMethod("AST");
+                    e.setConfidence(EdgeConfidence.ROUTER);
                     graph.addEdge(e);
 
                     existingEdges.add(edgeKey);
@@ -655,6 +938,7 @@ public class StructureExtraction {
                 e.setSelector("-");
                 e.setEvent("redirect");
                 e.setSelectorKind("ROUTER");
+                e.setConfidence(EdgeConfidence.ROUTER);
                 graph.addEdge(e);
                 existingEdges.add(edgeKey);
             }
@@ -663,410 +947,1025 @@ public class StructureExtraction {
 
 
     private void validateAndEnhanceWithLLM(List<VueFile> files) {
-        // Group edges by source file
+        Map<String, List<Edge>> edgesByFile = groupBySourceFile(globalGraph.getEdges());
+        log.info("[Stage 2] Grouped {} edges into {} files.", globalGraph.getEdges().size(), edgesByFile.size());
+
+        try (Stage2Run stage2 = new Stage2Run()) {
+            List<Stage2BatchPlanner.FileWork> works = new ArrayList<>();
+            int processedFiles = 0;
+            for (Map.Entry<String, List<Edge>> entry : edgesByFile.entrySet()) {
+                processedFiles++;
+                log.info("[Stage 2] Processing file {}/{}: {}", processedFiles, edgesByFile.size(), entry.getKey());
+                Stage2BatchPlanner.FileWork work = stage2.prepare(entry.getKey(), entry.getValue());
+                if (work != null) works.add(work);
+            }
+            stage2.dispatch(works);
+            stage2.finish(edgesByFile);
+        }
+    }
+
+    /** Edges by source file, in a stable order; edges without one are not validated. */
+    private static Map<String, List<Edge>> groupBySourceFile(List<Edge> edges) {
         Map<String, List<Edge>> edgesByFile = new HashMap<>();
-        for (Edge edge : globalGraph.getEdges()) {
+        for (Edge edge : edges) {
             String sourceFile = edge.getSourceFile();
             if (sourceFile == null || sourceFile.isBlank()) {
                 continue;
             }
             edgesByFile.computeIfAbsent(sourceFile, k -> new ArrayList<>()).add(edge);
         }
+        return edgesByFile;
+    }
 
-        System.out.println("[Stage 2] Grouped " + globalGraph.getEdges().size() + " edges into " + edgesByFile.size() + " files.");
-
-        Map<String, VueFile> fileMap = new HashMap<>();
-        for (VueFile file : files) {
-            fileMap.put(file.getPath(), file);
-        }
-
-        List<Edge> enhancedEdges = new ArrayList<>();
-        int processedFiles = 0;
-
-        for (Map.Entry<String, List<Edge>> entry : edgesByFile.entrySet()) {
-            String filePath = entry.getKey();
-            List<Edge> fileEdges = entry.getValue();
+    /** A Stage 1 edge kept as it is; Stage 2 never changes its input edges, which stay in the Stage 1 snapshot. */
+    private static Edge keptAsStage1(Edge edge, boolean markValid) {
+        Edge copy = new Edge(edge);
+        copy.setExtractionMethod("AST");
+        if (markValid) copy.setIsValid(true);
+        return copy;
+    }
 
-            processedFiles++;
-            System.out.println("\n[Stage 2] Processing file " + processedFiles + "/" + edgesByFile.size() + ": " + filePath);
-            System.out.println("[Stage 2] Validating " + fileEdges.size() + " edges...");
+    /**
+     * One Stage 2 pass: files are prepared (gated, folded) one at a time, their work is planned into
+     * batches and dispatched as it comes, and {@link #finish} collects the answers into the graph.
+     */
+    private final class Stage2Run implements AutoCloseable {
+        private final Map<String, List<Edge>> keptAsIs = new HashMap<>();
+        private final Map<String, Stage2BatchPlanner.FileWork> workByFile = new HashMap<>();
+        private final List<Stage2BatchPlanner.FileWork> works = new ArrayList<>();
+        private final List<Stage2BatchPlanner.FileWork> ungatedWorks = new ArrayList<>();
+        private final Set<Edge> gated = Collections.newSetFromMap(new IdentityHashMap<>());
+        private final Map<Edge, Edge> representativeOf = new IdentityHashMap<>();
+        // works of files prepared again, whose requests' answers are not used
+        private final Set<Stage2BatchPlanner.FileWork> replaced = Collections.newSetFromMap(new IdentityHashMap<>());
+        private final List<Stage2BatchPlanner.Batch> batches = new ArrayList<>();
+        private final List<Future<List<List<Edge>>>> pending = new ArrayList<>();
+        private final Stage2BatchPlanner planner =
+                newBatchPlanner(work -> buildFileSection(work).tokens);
+        private final LlmDispatcher dispatcher = new LlmDispatcher(llmConcurrency);
+        private final long startNanos = System.nanoTime();
+
+        Stage2Run() {
+            llm.getCache().resetStats();
+            retryRequests.reset();
+            retriedEdges.reset();
+            retryPromptTokens.reset();
+            failedRequests.reset();
+            failedRequestEdges.reset();
+            llm.resetStats();
+            firstEdgeLatency = new Histogram();
+            abortedStreams.reset();
+            untypedResponses.reset();
+            fileSections.clear();
+            log.info("[Stage 2] Dispatching with max {} in flight ({})", dispatcher.getMaxInFlight(),
+                    dispatcher.usesVirtualThreads() ? "virtual threads" : "thread pool");
+        }
+
+        /** Decides what of one file goes to the LLM; returns its work, or null when nothing does. */
+        Stage2BatchPlanner.FileWork prepare(String filePath, List<Edge> fileEdges) {
+            log.debug("[Stage 2] Validating {} edges...", fileEdges.size());
 
             if (isRouterFile(filePath)) {
-                System.out.println("[Stage 2] ✓ Skipping LLM for router config file edges (keep as-is)");
+                log.debug("[Stage 2] ✓ Skipping LLM for router config file edges (keep as-is)");
+                List<Edge> kept = new ArrayList<>(fileEdges.size());
                 for (Edge edge : fileEdges) {
-                    edge.setExtractionMethod("AST");
-                    edge.setIsValid(true);
+                    kept.add(keptAsStage1(edge, true));
                 }
-                enhancedEdges.addAll(fileEdges);
-                System.out.println("[Stage 2] ✓ Kept " + fileEdges.size() + "/" + fileEdges.size() + " edges");
-                continue;
+                keptAsIs.put(filePath, kept);
+                log.debug("[Stage 2] ✓ Kept {}/{} edges", fileEdges.size(), fileEdges.size());
+                return null;
             }
 
-            VueFile file = fileMap.get(filePath);
+            VueFile file = fileIndex.get(filePath);
             if (file == null) {
-                System.err.println("[Stage 2] WARNING: File not found: " + filePath + ", skipping.");
-                continue;
+                log.warn("[Stage 2] WARNING: File not found: {}, skipping.", filePath);
+                return null;
+            }
+
+            // Role-conditional menus always go to the LLM: their cross-role conditions come from the script.
+            List<Edge> uncertain = new ArrayList<>();
+            boolean conditionalMenu = hasConditionalMenuRendering(file);
+            for (Edge edge : fileEdges) {
+                Double confidence = edge.getConfidence();
+                if (!conditionalMenu && confidence != null && confidence >= llmConfidenceThreshold) {
+                    gated.add(edge);
+                } else {
+                    uncertain.add(edge);
+                }
+            }
+            // A file prepared again replaces its earlier work everywhere, not just in workByFile.
+            Stage2BatchPlanner.FileWork earlier = workByFile.remove(filePath);
+            if (earlier != null) {
+                works.remove(earlier);
+                replaced.add(earlier);
+            }
+            ungatedWorks.removeIf(work -> work.filePath.equals(filePath));
+            ungatedWorks.add(new Stage2BatchPlanner.FileWork(filePath, file, fileEdges));
+            if (uncertain.isEmpty()) {
+                log.debug("[Stage 2] ✓ All {} edges are specific enough, skipping LLM", fileEdges.size());
+                return null;
             }
 
-            final int BATCH_SIZE = 30;
+            // A shared layout yields the same element edge once per route: validate each element/target once.
+            // Cross-role conditions depend on the from-route, so conditional menus keep every copy.
+            List<Edge> representatives = uncertain;
+            if (!conditionalMenu) {
+                Map<String, Edge> byKey = new LinkedHashMap<>();
+                for (Edge edge : uncertain) {
+                    representativeOf.put(edge, byKey.computeIfAbsent(crossRouteKey(edge), k -> edge));
+                }
+                representatives = new ArrayList<>(byKey.values());
+            }
 
-            if (fileEdges.size() > BATCH_SIZE) {
-                System.out.println("[Stage 2] Large file detected (" + fileEdges.size() + " edges), processing in batches of " + BATCH_SIZE);
+            Stage2BatchPlanner.FileWork work = new Stage2BatchPlanner.FileWork(filePath, file, representatives);
+            workByFile.put(filePath, work);
+            works.add(work);
+            return work;
+        }
 
-                List<Edge> allValidatedEdges = new ArrayList<>();
-                int batchCount = (int) Math.ceil((double) fileEdges.size() / BATCH_SIZE);
+        /** Requests sent so far that carried the work of a file prepared again since. */
+        int requestsForReplacedWork() {
+            int count = 0;
+            for (Stage2BatchPlanner.Batch batch : batches) {
+                for (Stage2BatchPlanner.Segment segment : batch.getSegments()) {
+                    if (replaced.contains(segment.work)) {
+                        count++;
+                        break;
+                    }
+                }
+            }
+            return count;
+        }
 
-                for (int i = 0; i < batchCount; i++) {
-                    int start = i * BATCH_SIZE;
-                    int end = Math.min(start + BATCH_SIZE, fileEdges.size());
-                    List<Edge> batchEdges = fileEdges.subList(start, end);
+        /** Plans the given files' work into requests and submits them. */
+        void dispatch(List<Stage2BatchPlanner.FileWork> newWorks) {
+            if (newWorks.isEmpty()) return;
+            for (Stage2BatchPlanner.Batch batch : planner.plan(newWorks)) {
+                log.debug("[Stage 2]   Batch: {} file(s), {} edges, ~{} input / ~{} output tokens",
+                        batch.getSegments().size(), batch.getEdgeCount(), batch.getInputTokens(), batch.getOutputTokens());
+                batches.add(batch);
+                pending.add(dispatcher.submit(() -> validateBatchWithLLM(batch)));
+            }
+        }
 
-                    System.out.println("[Stage 2]   Batch " + (i + 1) + "/" + batchCount + ": Processing edges " + start + "-" + (end - 1));
-                    List<Edge> validatedBatch = validateEdgesWithLLM(batchEdges, file);
-                    allValidatedEdges.addAll(validatedBatch);
+        /** Waits for every request and replaces the graph's edges with the Stage 2 result, file by file. */
+        void finish(Map<String, List<Edge>> edgesByFile) {
+            int plannedEdges = 0;
+            int plannedTokens = 0;
+            for (Stage2BatchPlanner.Batch batch : batches) {
+                plannedEdges += batch.getEdgeCount();
+                plannedTokens += batch.getInputTokens();
+            }
+            log.info("[Stage 2] Planned {} requests for {} edges in {} files (~{} input tokens)",
+                    batches.size(), plannedEdges, works.size(), plannedTokens);
+            logStage2Savings(gated.size(), representativeOf.size(), ungatedWorks, batches, plannedTokens);
+            logPromptSlimming(works, batches);
+
+            // Collect in submission order so the result does not depend on timing.
+            Map<Stage2BatchPlanner.Segment, List<Edge>> segmentResults = new IdentityHashMap<>();
+            for (int i = 0; i < batches.size(); i++) {
+                List<Stage2BatchPlanner.Segment> segments = batches.get(i).getSegments();
+                List<List<Edge>> validated = awaitBatch(pending.get(i));
+                for (int j = 0; j < segments.size(); j++) {
+                    segmentResults.put(segments.get(j), validated.get(j));
                 }
+            }
+            log.info("[Stage 2] LLM validation took {} ms", (System.nanoTime() - startNanos) / 1_000_000);
+            printStage2Stats();
 
-                enhancedEdges.addAll(allValidatedEdges);
-                System.out.println("[Stage 2] ✓ Validated " + allValidatedEdges.size() + "/" + fileEdges.size() + " edges (in " + batchCount + " batches)");
-            } else {
-                List<Edge> validatedEdges = validateEdgesWithLLM(fileEdges, file);
-                enhancedEdges.addAll(validatedEdges);
-                System.out.println("[Stage 2] ✓ Validated " + validatedEdges.size() + "/" + fileEdges.size() + " edges");
-            }
-        }
-
-        globalGraph.setEdges(enhancedEdges);
-
-        System.out.println("\n[Stage 2] Enhanced " + enhancedEdges.size() + " edges total.");
-    }
-
-
-    private List<Edge> validateEdgesWithLLM(List<Edge> edges, VueFile file) {
-        List<Edge> validatedEdges = new ArrayList<>();
-
-        String elementUIInfo = isElementUI2 ?
-            "Element UI 2.x (Vue2): Use .el-submenu (no hyphen)" :
-            "Element Plus (Vue3): Use .el-sub-menu (with hyphen)";
-
-        String systemPrompt = String.format("""
-                You are a Vue.js navigation graph expert. Your task is to ENHANCE navigation edges, NOT to filter them.
-                
-                PROJECT INFO:
-                - UI Framework: %s
-                
-                SELECTOR RULES:
-                1. Button: <el-button> renders as <button> tag
-                   - Use: button:has-text('Login')
-                   - Not: .el-button:has-text('Login')
-                
-                2. Submenu: Convert .el-sub-menu based on framework
-                   - Element UI 2.x: .el-submenu (no hyphen)
-                   - Element Plus: .el-sub-menu (with hyphen)
-                
-                3. Dropdown item: <el-dropdown-item> renders as <li class="el-dropdown-menu__item">
-                   - Use: .el-dropdown-menu__item:has-text('Logout')
-                   - Not: .el-dropdown-item:has-text('Logout')
-                
-                YOUR TASKS:
-                1. **Enhance selector**: Convert generic selectors to specific Playwright selectors with text
-                2. **Fix selector format**: Convert .el-sub-menu to correct format based on UI framework
-                3. **Extract conditions**: Find v-if/v-show conditions from source code
-                4. **Mark ALL edges as valid**: Set isValid=true for ALL edges
-                
-                CRITICAL RULES:
-                - You MUST return ALL input edges with isValid=true
-                - Do NOT filter out or remove any edges
-                - Your role is ENHANCEMENT ONLY, not validation or filtering
-                - Downstream processing will handle normalization, deduplication, and filtering
-                - Even if an edge seems incorrect, include it with isValid=true
-                
-                SPECIAL HANDLING FOR ROUTER CONFIG FILE EDGES:
-                - Edges from router configuration files (redirect, beforeEach) have selector="-"
-                - Keep these edges EXACTLY as-is without any modifications
-                - Do NOT attempt to enhance or change selector="-" for router config edges
-                - These represent programmatic navigation, not UI-based navigation
-                
-                SELECTOR ENHANCEMENT REQUIREMENTS:
-                - **ALWAYS** enhance generic selectors by adding text content from source code
-                - Generic selectors include: "button", ".el-button", "a", "span"
-                - Target format: selector:has-text('text_content')
-                - **EXCEPTION**: Never modify selector="-" (router config edges)
-                - If text cannot be extracted, keep the original selector unchanged
-                
-                TEXT EXTRACTION RULES:
-                1. Preserve selector type - only append text information
-                   - "button" remains "button" (becomes "button:has-text('Login')")
-                   - ".el-menu-item" remains ".el-menu-item" (becomes ".el-menu-item:has-text('Home')")
-                   - Never change selector type (e.g., "button" to ".el-dropdown-item")
-                
-                2. Skip selectors that already contain text:
-                   - ".el-menu-item:has-text('Home')" → no change needed
-                
-                3. Enhance generic selectors by appending :has-text():
-                   - "button" → "button:has-text('Login')"
-                   - ".el-dialog__body button" → ".el-dialog__body button:has-text('Submit')"
-                
-                4. When text extraction fails:
-                   - Return the original selector without modification
-                   - Do NOT invent or guess text content
-                
-                CONDITION EXTRACTION:
-                1. Template-level conditions (v-if, v-show):
-                   - Search for v-if or v-show directives on the element or parent elements
-                   - Extract the exact condition expression as written in the template
-                   - Examples:
-                     * v-if="user.role === 1" → condition: "user.role === 1"
-                     * v-show="isLoggedIn" → condition: "isLoggedIn"
-                
-                2. Script-level conditions (conditional menu data):
-                   - When the file contains conditional menu rendering logic
-                   - Analyze the script section to determine condition branches for menu items
-                   - For cross-branch edges (from-page and to-page in different condition branches):
-                     * Use format: "CROSS_ROLE: <from_condition> -> <to_condition>"
-                   - Example:
-                     * if (roles == 'admin') { items = [{path: 'houselist'}] }
-                       else { items = [{path: 'personalHouseList'}] }
-                     * Edge: /houselist → /personalHouseList
-                       → condition: "CROSS_ROLE: roles=='admin' -> roles!='admin'"
-                
-                3. No condition found:
-                   - Set condition: null (not empty string, use null)
-                
-                OUTPUT FORMAT:
-                {
-                  "edges": [
-                    {
-                      "from": "/page",
-                      "to": "/page2",
-                      "selector": "button:has-text('Login')",
-                      "event": "click",
-                      "condition": null,
-                      "isValid": true,
-                      "llmReasoning": "Enhanced selector from button text, clear navigation intent"
+            Map<Stage2BatchPlanner.FileWork, List<Stage2BatchPlanner.Segment>> segmentsByWork = new IdentityHashMap<>();
+            for (Stage2BatchPlanner.Batch batch : batches) {
+                for (Stage2BatchPlanner.Segment segment : batch.getSegments()) {
+                    segmentsByWork.computeIfAbsent(segment.work, k -> new ArrayList<>()).add(segment);
+                }
+            }
+            List<Edge> enhancedEdges = new ArrayList<>();
+            for (Map.Entry<String, List<Edge>> entry : edgesByFile.entrySet()) {
+                String filePath = entry.getKey();
+                if (keptAsIs.containsKey(filePath)) {
+                    enhancedEdges.addAll(keptAsIs.get(filePath));
+                    continue;
+                }
+                if (fileIndex.get(filePath) == null) continue;
+                Stage2BatchPlanner.FileWork work = workByFile.get(filePath);
+                List<Stage2BatchPlanner.Segment> segments = new ArrayList<>(work != null ? segmentsByWork.getOrDefault(work, List.of()) : List.of());
+                segments.sort(Comparator.comparingInt(segment -> segment.part));
+                Map<Edge, Edge> validated = new IdentityHashMap<>();
+                for (Stage2BatchPlanner.Segment segment : segments) {
+                    List<Edge> results = segmentResults.get(segment);
+                    for (int i = 0; i < segment.edges.size(); i++) {
+                        validated.put(segment.edges.get(i), results.get(i));
                     }
-                  ]
                 }
-                
-                Return ONLY valid JSON without markdown code blocks.
-                """, elementUIInfo);
+                // Gated edges keep their place; folded copies take their representative's answer.
+                int passedThrough = 0;
+                for (Edge edge : entry.getValue()) {
+                    if (gated.contains(edge)) {
+                        enhancedEdges.add(keptAsStage1(edge, true));
+                        passedThrough++;
+                        continue;
+                    }
+                    Edge representative = representativeOf.getOrDefault(edge, edge);
+                    Edge result = validated.get(representative);
+                    enhancedEdges.add(representative == edge ? result : fanOut(result, edge));
+                }
+                log.info("[Stage 2] ✓ Validated {}/{} edges of {} ({} segment(s), {} sent, {} passed through)",
+                        entry.getValue().size() - passedThrough, entry.getValue().size(), filePath, segments.size(),
+                        validated.size(), passedThrough);
+            }
 
-        String userPrompt = buildValidationPrompt(edges, file);
+            globalGraph.setEdges(enhancedEdges);
 
-        for (int attempt = 1; attempt <= 3; attempt++) {
-            try {
-                System.out.println("[Stage 2]   Calling LLM (attempt " + attempt + "/3)...");
-                String raw = llm.ask(systemPrompt, userPrompt);
+            log.info("[Stage 2] Enhanced {} edges total.", enhancedEdges.size());
+        }
 
-                List<Edge> parsedEdges = parseValidationResponse(raw, edges);
+        @Override
+        public void close() {
+            dispatcher.close();
+            fileSections.clear();
+        }
+    }
 
-                if (validateLLMResponse(parsedEdges, edges)) {
-                    validatedEdges = parsedEdges;
-                    System.out.println("[Stage 2]   ✓ LLM validation successful");
-                    break;
-                } else {
-                    System.err.println("[Stage 2]   ✗ Response validation failed, retrying...");
-                    userPrompt = buildReflectionPromptForValidation(userPrompt, raw, parsedEdges);
+    private void printStage2Stats() {
+        llm.getTelemetry().printStats();
+        if (firstEdgeLatency.getCount() > 0) {
+            log.info("[Stage 2] Time to first edge: {}, {} streams aborted at a rejected edge",
+                    firstEdgeLatency.summary(1_000_000.0, "ms"), abortedStreams.sum());
+        }
+        if (untypedResponses.sum() > 0) {
+            log.warn("[Stage 2] {} structured-output responses did not match the schema and were parsed leniently",
+                    untypedResponses.sum());
+        }
+        llm.getCache().printStats();
+        llm.printStats();
+        if (failedRequests.sum() > 0) {
+            log.warn("[Stage 2] {} LLM requests failed; {} edges were not validated and keep their Stage 1 form",
+                    failedRequests.sum(), failedRequestEdges.sum());
+        }
+        if (retryRequests.sum() > 0) {
+            log.info("[Stage 2] Retried {} rejected edges in {} requests (~{} input tokens)",
+                    retriedEdges.sum(), retryRequests.sum(), retryPromptTokens.sum());
+        }
+    }
+
+    /**
+     * Stage 1 → Stage 2 hand-off for {@link #setPipelineStages}: each file's edges are queued as soon as
+     * Stage 1 has finished the file, and a consumer thread prepares and dispatches them while later files
+     * are still being extracted. A full queue blocks Stage 1. Files whose final edge list differs from the
+     * one handed over (edges added later, e.g. by {@link #addImplicitChildEdges}) are sent once more after
+     * Stage 1, together with the files it never handed over.
+     */
+    private final class Stage2Pipeline implements AutoCloseable {
+        private final BlockingQueue<Map.Entry<String, List<Edge>>> queue = new ArrayBlockingQueue<>(PIPELINE_QUEUE_FILES);
+        private final Map.Entry<String, List<Edge>> end = Map.entry("", List.of());
+        private final Stage2Run stage2 = new Stage2Run();
+        // consumer thread only until it has been joined
+        private final Map<String, List<Edge>> handedOver = new HashMap<>();
+        private final Set<String> handedOverTwice = new HashSet<>();
+        private final Thread consumer = new Thread(this::consume, "stage2-pipeline");
+        private volatile Throwable failure;
+
+        Stage2Pipeline() {
+            consumer.setDaemon(true);
+            consumer.start();
+        }
+
+        /** Hands over the edges Stage 1 just merged, one group per source file. */
+        void fileDone(List<Edge> added) {
+            try {
+                for (Map.Entry<String, List<Edge>> group : groupBySourceFile(added).entrySet()) {
+                    queue.put(group);
                 }
-            } catch (Exception e) {
-                System.err.println("[Stage 2]   ✗ LLM request failed (attempt " + attempt + "): " + e.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while handing edges to Stage 2", e);
             }
         }
 
-        if (validatedEdges.isEmpty()) {
-            System.err.println("[Stage 2]   ⚠ All attempts failed, keeping original edges");
-            for (Edge edge : edges) {
-                edge.setExtractionMethod("AST");
-                validatedEdges.add(edge);
+        private void consume() {
+            List<Stage2BatchPlanner.FileWork> ready = new ArrayList<>();
+            try {
+                while (true) {
+                    Map.Entry<String, List<Edge>> group = queue.poll(PIPELINE_FLUSH_MS, TimeUnit.MILLISECONDS);
+                    if (group == null || group == end) {
+                        // Stage 1 is busy elsewhere (or done): send what is ready rather than wait for co-packing.
+                        stage2.dispatch(ready);
+                        ready.clear();
+                        if (group == end) return;
+                        continue;
+                    }
+                    String filePath = group.getKey();
+                    if (handedOver.putIfAbsent(filePath, group.getValue()) != null) {
+                        handedOverTwice.add(filePath);
+                        continue;
+                    }
+                    log.info("[Stage 2] Processing file {} while Stage 1 runs", filePath);
+                    Stage2BatchPlanner.FileWork work = stage2.prepare(filePath, group.getValue());
+                    if (work != null) ready.add(work);
+                    if (ready.size() >= STAGE2_MAX_FILES_PER_BATCH) {
+                        stage2.dispatch(ready);
+                        ready.clear();
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Throwable t) {
+                // keep draining so Stage 1 does not block on a full queue; reported by finish()
+                failure = t;
+                try {
+                    while (queue.take() != end) {
+                        // discard
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
             }
         }
 
-        return validatedEdges;
-    }
-
+        /** After Stage 1: waits for the hand-off to drain, sends what is left and collects Stage 2. */
+        void finish() throws InterruptedException {
+            queue.put(end);
+            consumer.join();
+            if (failure != null) {
+                throw new IllegalStateException("Stage 2 pipeline failed", failure);
+            }
+            Map<String, List<Edge>> edgesByFile = groupBySourceFile(globalGraph.getEdges());
+            log.info("[Stage 2] Grouped {} edges into {} files ({} handed over during Stage 1, {} requests already sent).",
+                    globalGraph.getEdges().size(), edgesByFile.size(), handedOver.size(), stage2.batches.size());
+            List<Stage2BatchPlanner.FileWork> rest = new ArrayList<>();
+            int resent = 0;
+            for (Map.Entry<String, List<Edge>> entry : edgesByFile.entrySet()) {
+                String filePath = entry.getKey();
+                List<Edge> early = handedOver.get(filePath);
+                if (early != null && !handedOverTwice.contains(filePath) && sameEdges(early, entry.getValue())) continue;
+                if (early != null) resent++;
+                Stage2BatchPlanner.FileWork work = stage2.prepare(filePath, entry.getValue());
+                if (work != null) rest.add(work);
+            }
+            if (resent > 0) {
+                log.warn("[Stage 2] {} files changed after their hand-off and are validated again; "
+                        + "the answers for them in {} requests already sent are discarded", resent, stage2.requestsForReplacedWork());
+            }
+            stage2.dispatch(rest);
+            stage2.finish(edgesByFile);
+        }
 
-    private String buildValidationPrompt(List<Edge> edges, VueFile file) {
-        StringBuilder sb = new StringBuilder();
-        sb.append("File: ").append(file.getPath()).append("\n\n");
+        private boolean sameEdges(List<Edge> a, List<Edge> b) {
+            if (a.size() != b.size()) return false;
+            for (int i = 0; i < a.size(); i++) {
+                if (a.get(i) != b.get(i)) return false;
+            }
+            return true;
+        }
 
-        boolean hasConditionalMenu = hasConditionalMenuRendering(file);
+        @Override
+        public void close() {
+            consumer.interrupt();
+            stage2.close();
+        }
+    }
 
-        if (hasConditionalMenu) {
-            sb.append("Source code (with conditional menu rendering):\n```vue\n");
-            sb.append(file.getContent());
-            sb.append("\n```\n\n");
-            sb.append("⚠️ IMPORTANT: This file contains conditional menu rendering based on user roles.\n");
-            sb.append("Please analyze the script section to identify cross-role edges and mark them with condition=\"CROSS_ROLE: <from_condition> -> <to_condition>\".\n\n");
-        } else {
-            String content = file.getContent();
-            String template = extractTemplateSection(content);
-            if (template != null && !template.isBlank()) {
-                sb.append("Source code (template only):\n```vue\n");
-                sb.append("<template>\n");
-                sb.append(template);
-                sb.append("\n</template>\n");
-                sb.append("```\n\n");
-            } else {
-                sb.append("Source code:\n```vue\n");
-                sb.append(content);
-                sb.append("\n```\n\n");
-            }
-        }
-
-        sb.append("Edges to validate (").append(edges.size()).append(" total):\n");
-        sb.append(JSON.toJSONString(edges));
-        sb.append("\n\n");
-
-        sb.append("Please validate each edge and return JSON in this format:\n");
-        sb.append("{\n");
-        sb.append("  \"edges\": [\n");
-        sb.append("    {\n");
-        sb.append("      \"from\": \"/dashboard\",\n");
-        sb.append("      \"to\": \"/user\",\n");
-        sb.append("      \"selector\": \".el-menu-item:has-text('Reader Management')\",\n");
-        sb.append("      \"event\": \"click\",\n");
-        sb.append("      \"condition\": null,\n");
-        sb.append("      \"isValid\": true,\n");
-        sb.append("      \"llmReasoning\": \"Clear navigation menu item\"\n");
-        sb.append("    }\n");
-        sb.append("  ]\n");
-        sb.append("}\n");
 
-        return sb.toString();
+    /**
+     * Edges sharing this key are the same element, target and condition on different routes of one file;
+     * copies under different conditions are validated separately, since the answer may rewrite the condition.
+     */
+    private static String crossRouteKey(Edge edge) {
+        String selector = edge.getRawAstSelector() != null ? edge.getRawAstSelector() : edge.getSelector();
+        return selector + '\u0000' + edge.getTo() + '\u0000' + edge.getEvent() + '\u0000' + edge.getCondition();
     }
 
+    /** The representative's validated edge for another route that shares its element and target. */
+    private static Edge fanOut(Edge validated, Edge copy) {
+        Edge edge = new Edge(validated);
+        edge.setFrom(copy.getFrom());
+        edge.setSourceFile(copy.getSourceFile());
+        edge.setRawAstSelector(copy.getRawAstSelector());
+        return edge;
+    }
 
-    private String extractTemplateSection(String content) {
-        if (content == null) return null;
+    /**
+     * What gating and cross-route folding saved. The plan that would send every edge is only worked out
+     * at DEBUG, since it renders and plans every file again.
+     */
+    private void logStage2Savings(int gatedEdges, int foldableEdges, List<Stage2BatchPlanner.FileWork> allWorks,
+                                  List<Stage2BatchPlanner.Batch> batches, int inputTokens) {
+        if (!log.isInfoEnabled()) return;
+        int totalEdges = 0;
+        for (Stage2BatchPlanner.FileWork work : allWorks) {
+            totalEdges += work.edges.size();
+        }
+        int sentEdges = 0;
+        for (Stage2BatchPlanner.Batch batch : batches) {
+            sentEdges += batch.getEdgeCount();
+        }
+        int folded = totalEdges - gatedEdges - sentEdges;
+        if (gatedEdges == 0 && folded == 0) return;
+        log.info(String.format("[Stage 2] Sending %d/%d edges: %d passed through at confidence >= %.2f, %d per-route edges folded into %d unique element edges",
+                sentEdges, totalEdges, gatedEdges, llmConfidenceThreshold, foldableEdges, foldableEdges - folded));
+        if (!log.isDebugEnabled()) return;
+        List<Stage2BatchPlanner.Batch> unreduced = newBatchPlanner(work -> renderFileSection(work.file, work.edges).tokens)
+                .plan(allWorks);
+        int unreducedTokens = 0;
+        for (Stage2BatchPlanner.Batch batch : unreduced) {
+            unreducedTokens += batch.getInputTokens();
+        }
+        log.debug("[Stage 2] {} requests (~{} input tokens) instead of {} (~{})",
+                batches.size(), inputTokens, unreduced.size(), unreducedTokens);
+    }
 
-        Pattern pattern = Pattern.compile("<template[^>]*>(.+?)</template>", Pattern.DOTALL);
-        Matcher matcher = pattern.matcher(content);
-        if (matcher.find()) {
-            return matcher.group(1).trim();
+    /**
+     * Source and edge tokens as planned, from the sections the planner already rendered; the comparison
+     * with unsliced prompts renders everything again, so it is only worked out at DEBUG.
+     */
+    private void logPromptSlimming(List<Stage2BatchPlanner.FileWork> works, List<Stage2BatchPlanner.Batch> batches) {
+        if (!log.isInfoEnabled() || works.isEmpty()) return;
+        long slim = 0;
+        int sliced = 0;
+        for (Stage2BatchPlanner.FileWork work : works) {
+            FileSection section = buildFileSection(work);
+            if (section.sliced) sliced++;
+            slim += section.tokens;
+        }
+        for (Stage2BatchPlanner.Batch batch : batches) {
+            for (Stage2BatchPlanner.Segment segment : batch.getSegments()) {
+                slim += segment.edgeTokens;
+            }
         }
-        return null;
+        log.info("[Stage 2] Prompt sources+edges ~{} tokens, {}/{} templates sliced", slim, sliced, works.size());
+        if (!log.isDebugEnabled()) return;
+        long unsliced = 0;
+        for (Stage2BatchPlanner.FileWork work : works) {
+            unsliced += unslicedTokens(work);
+        }
+        log.debug(String.format("[Stage 2] Prompt sources+edges ~%d tokens unsliced (%.1f%% smaller sliced)",
+                unsliced, unsliced == 0 ? 0.0 : 100.0 * (unsliced - slim) / unsliced));
     }
 
-    private List<Edge> parseValidationResponse(String raw, List<Edge> originalEdges) {
-        List<Edge> result = new ArrayList<>();
-
+    private <T> T awaitBatch(Future<T> batch) {
         try {
-            Object contentObj = com.jayway.jsonpath.JsonPath.read(raw, "$.choices[0].message.content");
-            String json = (contentObj instanceof String)
-                    ? (String) contentObj
-                    : vue.llm.util.JsonUtil.toJson(contentObj);
+            return batch.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for Stage 2 validation", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Stage 2 validation failed", e.getCause());
+        }
+    }
 
-            json = json.replace("\uFEFF", "").trim();
-            json = vue.llm.util.SelfCorrector.extractJson(json);
+    /** One LLM round trip, charged against the requests/tokens-per-minute budget. */
+    private String askLlm(String systemPrompt, String userPrompt, LlmCallRecord record) throws Exception {
+        rateLimiter.acquire(RateLimiter.estimateTokens(systemPrompt, userPrompt));
+        return llm.complete(systemPrompt, userPrompt, stage2Params(), record);
+    }
 
-            System.out.println("[Stage2] Extracted JSON: " + json);
+    /** Request parameters of every Stage 2 call; structured output adds the edge schema. */
+    private Map<String, Object> stage2Params() {
+        if (llmStructuredOutput) {
+            return Map.of("temperature", STAGE2_TEMPERATURE, "response_format", EdgeAnswer.responseFormat());
+        }
+        return Map.of("temperature", STAGE2_TEMPERATURE);
+    }
 
-            @SuppressWarnings("unchecked")
-            Map<String, Object> response = (Map<String, Object>) JSON.parseObject(json, Map.class);
-            @SuppressWarnings("unchecked")
-            List<Map<String, Object>> edgesData = (List<Map<String, Object>>) response.get("edges");
+    /** Each file's share of a batch, by edge count, for attributing the request's tokens. */
+    private static Map<String, Double> fileShares(Stage2BatchPlanner.Batch batch) {
+        Map<String, Double> shares = new LinkedHashMap<>();
+        for (Stage2BatchPlanner.Segment segment : batch.getSegments()) {
+            shares.merge(segment.work.filePath, (double) segment.edges.size() / batch.getEdgeCount(), Double::sum);
+        }
+        return shares;
+    }
 
-            if (edgesData == null) {
-                System.err.println("[Stage2] No 'edges' field in LLM response.");
-                return result;
+    private Stage2BatchPlanner newBatchPlanner(ToIntFunction<Stage2BatchPlanner.FileWork> contextTokens) {
+        return new Stage2BatchPlanner(stage2InputTokenBudget, stage2OutputTokenBudget, STAGE2_MAX_FILES_PER_BATCH,
+                TokenEstimator.estimate(VALIDATION_SYSTEM_PROMPT, projectPromptHeader(), VALIDATION_OUTPUT_FORMAT),
+                contextTokens,
+                edge -> TokenEstimator.estimate(JSON.toJSONString(promptEdge(edge, "e00"))),
+                edge -> TokenEstimator.estimate(edge.getFrom(), edge.getTo(), edge.getSelector(), edge.getEvent(),
+                        edge.getCondition()) + OUTPUT_TOKENS_PER_EDGE);
+    }
+
+    /** Project-level facts, the first part of every Stage 2 user prompt so it stays a shared prefix. */
+    private String projectPromptHeader() {
+        return "PROJECT INFO:\n- UI Framework: " + (isElementUI2
+                ? "Element UI 2.x (Vue2): Use .el-submenu (no hyphen)"
+                : "Element Plus (Vue3): Use .el-sub-menu (with hyphen)") + "\n\n";
+    }
+
+    /**
+     * Validates one planned request; the result holds one edge list per segment, in segment order.
+     * Each returned edge is accepted on its own; a retry asks again for the rejected ids only.
+     */
+    private List<List<Edge>> validateBatchWithLLM(Stage2BatchPlanner.Batch batch) {
+        List<Edge> edges = new ArrayList<>();
+        for (Stage2BatchPlanner.Segment segment : batch.getSegments()) {
+            edges.addAll(segment.edges);
+        }
+        Edge[] accepted = new Edge[edges.size()];
+        Map<Integer, String> problems = new TreeMap<>();
+
+        Map<String, Double> shares = fileShares(batch);
+        String systemPrompt = VALIDATION_SYSTEM_PROMPT;
+        String userPrompt = buildValidationPrompt(batch, null, null);
+        List<Integer> pending = new ArrayList<>();
+        for (int i = 0; i < edges.size(); i++) pending.add(i);
+
+        boolean requestFailed = false;
+        for (int attempt = 1; attempt <= MAX_VALIDATION_ATTEMPTS && !pending.isEmpty(); attempt++) {
+            try {
+                log.debug("[Stage 2]   Calling LLM (attempt {}/{}, {} edges)...", attempt, MAX_VALIDATION_ATTEMPTS, pending.size());
+                LlmCallRecord record = new LlmCallRecord(attempt == 1 ? "stage2" : "stage2-retry", shares);
+                Edge[] parsed = llmStreaming
+                        ? streamValidation(systemPrompt, userPrompt, record, edges, pending)
+                        : parseValidationResponse(askLlm(systemPrompt, userPrompt, record), edges, pending);
+
+                problems.clear();
+                for (int index : pending) {
+                    String problem = edgeProblem(parsed[index]);
+                    if (problem == null) {
+                        accepted[index] = parsed[index];
+                    } else {
+                        problems.put(index, problem);
+                    }
+                }
+                pending = new ArrayList<>(problems.keySet());
+                if (pending.isEmpty()) {
+                    log.debug("[Stage 2]   ✓ LLM validation successful");
+                } else if (attempt < MAX_VALIDATION_ATTEMPTS) {
+                    userPrompt = buildRetryPrompt(batch, problems);
+                    retryRequests.increment();
+                    retriedEdges.add(pending.size());
+                    retryPromptTokens.add(TokenEstimator.estimate(userPrompt));
+                    log.warn("[Stage 2]   ✗ {}/{} edges rejected ({}), retrying only those",
+                            pending.size(), edges.size(), problems.values().iterator().next());
+                }
+            } catch (Exception e) {
+                // LlmClient has already retried transient failures with backoff; asking again here only adds load.
+                failedRequests.increment();
+                failedRequestEdges.add(pending.size());
+                log.warn("[Stage 2]   ✗ LLM request failed, keeping {} edges in their Stage 1 form: {}",
+                        pending.size(), e.getMessage());
+                requestFailed = true;
+                break;
             }
+        }
 
-            for (int i = 0; i < edgesData.size(); i++) {
-                Map<String, Object> edgeData = edgesData.get(i);
-                Edge original = i < originalEdges.size() ? originalEdges.get(i) : null;
+        if (!pending.isEmpty()) {
+            if (!requestFailed) {
+                log.warn("[Stage 2]   ⚠ {} edges still rejected after all attempts, keeping their Stage 1 form", pending.size());
+            }
+            for (int index : pending) {
+                accepted[index] = keptAsStage1(edges.get(index), false);
+            }
+        }
 
-                Edge edge = new Edge();
-                edge.setFrom((String) edgeData.get("from"));
-                edge.setTo((String) edgeData.get("to"));
-                edge.setSelector((String) edgeData.get("selector"));
-                edge.setEvent((String) edgeData.get("event"));
-                edge.setCondition((String) edgeData.get("condition"));
+        List<List<Edge>> perSegment = new ArrayList<>();
+        int offset = 0;
+        for (Stage2BatchPlanner.Segment segment : batch.getSegments()) {
+            perSegment.add(Arrays.asList(accepted).subList(offset, offset + segment.edges.size()));
+            offset += segment.edges.size();
+        }
+        return perSegment;
+    }
 
-                Object validObj = edgeData.get("isValid");
-                if (validObj instanceof Boolean) {
-                    edge.setIsValid((Boolean) validObj);
-                } else {
-                    edge.setIsValid(true);
-                }
+    /** Thrown from the stream consumer to stop reading a response at its first rejected edge. */
+    private static final class RejectedEdgeException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
 
-                edge.setLlmReasoning((String) edgeData.get("llmReasoning"));
-                edge.setExtractionMethod("AST+LLM");
+        RejectedEdgeException(String message) {
+            super(message, null, false, false);
+        }
+    }
 
-                if (original != null) {
-                    edge.setSourceFile(original.getSourceFile());
-                    edge.setRawAstSelector(original.getRawAstSelector());
-                }
+    /**
+     * Streaming variant of one validation attempt: each edge object is parsed and checked as soon as it
+     * completes, and the request is cancelled at the first rejected edge. Edges answered until then are
+     * returned as usual, so only the rejected and unanswered ids are asked for again.
+     */
+    private Edge[] streamValidation(String systemPrompt, String userPrompt, LlmCallRecord record, List<Edge> edges,
+                                    List<Integer> pending) throws Exception {
+        Edge[] aligned = new Edge[edges.size()];
+        Map<String, Integer> indexById = pendingIndexById(pending);
+        long start = System.nanoTime();
+        int[] position = {0};
+        JsonArrayStream stream = new JsonArrayStream("edges", edgeData -> {
+            if (position[0] == 0) {
+                firstEdgeLatency.record(System.nanoTime() - start);
+            }
+            // A malformed edge is that edge's problem, as in the lenient parser: it stays unanswered and is asked again.
+            if (edgeData == null) {
+                position[0]++;
+                log.debug("[Stage 2]   Skipping a streamed edge that is not valid JSON");
+                return;
+            }
+            EdgeAnswer answer;
+            try {
+                answer = EdgeAnswer.from(edgeData);
+            } catch (ClassCastException e) {
+                Integer index = indexById.get(String.valueOf(edgeData.get("id")));
+                position[0]++;
+                if (index == null) return;
+                throw new RejectedEdgeException(edgeId(index) + ": a field has the wrong type");
+            }
+            Integer index = responseIndex(answer, position[0]++, indexById, pending);
+            if (index == null || aligned[index] != null) return;
+            aligned[index] = toValidatedEdge(answer, edges.get(index));
+            String problem = edgeProblem(aligned[index]);
+            if (problem != null) {
+                throw new RejectedEdgeException(edgeId(index) + ": " + problem);
+            }
+        });
 
-                result.add(edge);
+        rateLimiter.acquire(RateLimiter.estimateTokens(systemPrompt, userPrompt));
+        try {
+            String raw = llm.completeStreaming(systemPrompt, userPrompt, stage2Params(), record, stream::feed);
+            if (stream.getEmitted() == 0) {
+                // No "edges" array found while streaming (e.g. an unusual wrapper): parse the whole answer.
+                return parseValidationResponse(raw, edges, pending);
             }
+        } catch (RejectedEdgeException e) {
+            abortedStreams.increment();
+            log.debug("[Stage 2]   Stream aborted after {} edges at {}", position[0], e.getMessage());
+        }
+        return aligned;
+    }
 
-        } catch (Exception e) {
-            System.err.println("[Stage2] Failed to parse LLM response: " + e.getMessage());
+    /** Batch-local edge id sent to the LLM and used to map its answer back: e1, e2, ... in batch order. */
+    private static String edgeId(int index) {
+        return "e" + (index + 1);
+    }
+
+    /** The fields the LLM works on, under short keys; provenance and null fields are left out. */
+    private static JSONObject promptEdge(Edge edge, String id) {
+        JSONObject json = new JSONObject();
+        json.put("id", id);
+        json.put("f", edge.getFrom());
+        json.put("t", edge.getTo());
+        json.put("s", edge.getSelector());
+        json.put("e", edge.getEvent());
+        if (edge.getCondition() != null) json.put("c", edge.getCondition());
+        return json;
+    }
+
+
+    /**
+     * The batch's prompt, laid out so that requests share the longest possible prefix for provider-side
+     * prompt caching: project facts, then each file's source code, then the output format, then
+     * {@code notice} (retries), and the edges last. Every segment of a split file carries the excerpt for
+     * the whole file, so all requests for that file start the same way. With {@code only} set, just those
+     * batch indices are included (ids stay the same).
+     */
+    private String buildValidationPrompt(Stage2BatchPlanner.Batch batch, Set<Integer> only, String notice) {
+        StringBuilder sb = new StringBuilder(projectPromptHeader());
+        StringBuilder edgeGroups = new StringBuilder();
+        int index = 0;
+        for (Stage2BatchPlanner.Segment segment : batch.getSegments()) {
+            JSONArray edges = new JSONArray();
+            for (Edge edge : segment.edges) {
+                if (only == null || only.contains(index)) {
+                    edges.add(promptEdge(edge, edgeId(index)));
+                }
+                index++;
+            }
+            if (edges.isEmpty()) continue;
+
+            sb.append(buildFileSection(segment.work).text);
+            edgeGroups.append("File: ").append(segment.work.filePath).append('\n');
+            edgeGroups.append("Edges to validate (").append(edges.size()).append(" total):\n");
+            edgeGroups.append(edges.toJSONString());
+            edgeGroups.append("\n\n");
+        }
+        sb.append(VALIDATION_OUTPUT_FORMAT).append('\n');
+        if (notice != null) {
+            sb.append(notice).append('\n');
+        }
+        sb.append(edgeGroups);
+        return sb.toString();
+    }
+
+    /** Asks again for the rejected edges only, saying what was wrong with each; earlier answers are not repeated. */
+    private String buildRetryPrompt(Stage2BatchPlanner.Batch batch, Map<Integer, String> problems) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Your previous response was accepted except for these edges:\n");
+        for (Map.Entry<Integer, String> problem : problems.entrySet()) {
+            sb.append("- ").append(edgeId(problem.getKey())).append(": ").append(problem.getValue()).append('\n');
         }
+        sb.append("Return ONLY these edges, with the same ids and all fields.\n");
+        return buildValidationPrompt(batch, problems.keySet(), sb.toString());
+    }
 
-        return result;
+    /**
+     * File header and source excerpt for all of the work's edges, memoized per work because the planner
+     * sizes it and every request for the file repeats it. A file prepared again after a pipelined hand-off
+     * is a new work with its own excerpt.
+     */
+    private FileSection buildFileSection(Stage2BatchPlanner.FileWork work) {
+        return fileSections.computeIfAbsent(work, w -> renderFileSection(w.file, w.edges));
     }
 
+    /** A file's prompt section, its estimated tokens and whether its template was cut down to an excerpt. */
+    private static final class FileSection {
+        final String text;
+        final boolean sliced;
+        final int tokens;
 
-    private boolean validateLLMResponse(List<Edge> parsedEdges, List<Edge> originalEdges) {
-        if (parsedEdges.isEmpty()) {
-            System.err.println("[Stage2] Validation failed: No edges parsed.");
-            return false;
+        FileSection(String text, boolean sliced) {
+            this.text = text;
+            this.sliced = sliced;
+            this.tokens = TokenEstimator.estimate(text);
         }
+    }
 
-        if (parsedEdges.size() != originalEdges.size()) {
-            System.err.println("[Stage2] Validation failed: Edge count mismatch. Expected " +
-                originalEdges.size() + ", got " + parsedEdges.size() +
-                ". LLM must return ALL edges (filtering is done in Stage 3).");
-            return false;
+    private FileSection renderFileSection(VueFile file, List<Edge> edges) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("File: ").append(file.getPath()).append("\n\n");
+
+        String content = file.getContent();
+        String template = TemplateOutline.topLevelTemplate(content);
+        if (template == null || template.isBlank()) {
+            sb.append("Source code:\n```vue\n");
+            sb.append(content);
+            sb.append("\n```\n\n");
+            return new FileSection(sb.toString(), false);
         }
 
-        for (Edge edge : parsedEdges) {
-            if (edge.getFrom() == null || edge.getFrom().isBlank()) {
-                System.err.println("[Stage2] Validation failed: Edge missing 'from' field.");
-                return false;
+        boolean hasConditionalMenu = hasConditionalMenuRendering(file);
+        String excerpt = sliceTemplate(file, template, edges);
+        sb.append("Source code (");
+        sb.append(excerpt != null ? "template excerpt" : "template");
+        sb.append(hasConditionalMenu ? " and script, with conditional menu rendering" : " only");
+        sb.append("):\n```vue\n<template>\n");
+        sb.append(excerpt != null ? excerpt : template);
+        sb.append("\n</template>\n");
+        if (hasConditionalMenu) {
+            Matcher script = RegexPatterns.SCRIPT_SECTION.matcher(content);
+            while (script.find()) {
+                sb.append(script.group()).append('\n');
             }
-            if (edge.getTo() == null || edge.getTo().isBlank()) {
-                System.err.println("[Stage2] Validation failed: Edge missing 'to' field.");
-                return false;
+        }
+        sb.append("```\n\n");
+        if (hasConditionalMenu) {
+            sb.append("⚠️ IMPORTANT: This file contains conditional menu rendering based on user roles.\n");
+            sb.append("Please analyze the script section to identify cross-role edges and mark them with condition=\"CROSS_ROLE: <from_condition> -> <to_condition>\".\n\n");
+        }
+        return new FileSection(sb.toString(), excerpt != null);
+    }
+
+    /**
+     * The template cut down to the elements behind {@code edges} and their enclosing v-if/v-show chain,
+     * or null when some edge cannot be located (the LLM then needs the whole template) or nothing is saved.
+     */
+    private String sliceTemplate(VueFile file, String template, List<Edge> edges) {
+        TemplateOutline outline = analysisCache.get(file.getPath(), "templateOutline", () -> TemplateOutline.build(template));
+        String script = analysisCache.get(file.getPath(), "scriptSection", () -> {
+            Matcher matcher = RegexPatterns.SCRIPT_SECTION.matcher(file.getContent());
+            return matcher.find() ? matcher.group(1) : "";
+        });
+        Set<Integer> selected = new TreeSet<>();
+        for (Edge edge : edges) {
+            List<Integer> anchors = templateAnchors(outline, script, edge);
+            if (anchors.isEmpty()) {
+                log.debug("[Stage 2]   No template anchor for {} -> {} ({}), sending full template",
+                        edge.getFrom(), edge.getTo(), edge.getSelector());
+                return null;
             }
-            if (edge.getSelector() == null) {
-                System.err.println("[Stage2] Validation failed: Edge missing 'selector' field.");
+            selected.addAll(anchors);
+        }
+        String excerpt = outline.render(selected).stripTrailing();
+        return excerpt.length() < template.length() ? excerpt : null;
+    }
+
+    /**
+     * Template elements an edge comes from: elements showing its {@code :has-text()} text, elements whose
+     * attributes or event handler (a script method) name its target route, and failing those, the
+     * elements its selector's last tag/class matches if that is unambiguous enough.
+     */
+    private List<Integer> templateAnchors(TemplateOutline outline, String script, Edge edge) {
+        Set<Integer> anchors = new TreeSet<>();
+
+        Set<String> texts = new LinkedHashSet<>();
+        for (String selector : new String[]{edge.getSelector(), edge.getRawAstSelector()}) {
+            if (selector == null) continue;
+            Matcher m = RegexPatterns.HAS_TEXT_QUOTED.matcher(selector);
+            while (m.find()) texts.add(m.group(1).trim());
+        }
+        for (String text : texts) {
+            if (text.isEmpty()) continue;
+            List<Integer> exact = outline.find(i -> outline.text(i).equalsIgnoreCase(text));
+            anchors.addAll(outline.innermost(!exact.isEmpty() ? exact
+                    : outline.find(i -> outline.text(i).toLowerCase(Locale.ROOT).contains(text.toLowerCase(Locale.ROOT)))));
+        }
+
+        String to = edge.getTo();
+        if (to != null && !to.isBlank() && !"-".equals(to)) {
+            anchors.addAll(outline.find(i -> {
+                String open = outline.openTag(i);
+                if (mentionsRoute(open, to)) return true;
+                Matcher handler = RegexPatterns.EVENT_HANDLER_NAME.matcher(open);
+                while (handler.find()) {
+                    String body = scriptMethodBody(script, handler.group(1));
+                    if (body != null && mentionsRoute(body, to)) return true;
+                }
                 return false;
+            }));
+        }
+
+        if (anchors.isEmpty()) {
+            List<Integer> bySelector = selectorAnchors(outline, edge.getRawAstSelector() != null ? edge.getRawAstSelector() : edge.getSelector());
+            if (bySelector.size() <= MAX_SELECTOR_ANCHORS) anchors.addAll(bySelector);
+        }
+        return new ArrayList<>(anchors);
+    }
+
+    /** Whether {@code text} holds the route as a string literal; parameterized routes match up to the first param. */
+    private static boolean mentionsRoute(String text, String to) {
+        int param = to.indexOf(':');
+        String literal = param > 0 ? to.substring(0, param) : to;
+        for (char quote : new char[]{'\'', '"', '`'}) {
+            if (text.contains(quote + literal)) return true;
+            if (param < 0 && literal.startsWith("/") && literal.length() > 1
+                    && text.contains(quote + literal.substring(1) + quote)) {
+                return true;
             }
-            if (!routeTable.exists(edge.getTo())) {
-                System.err.println("[Stage2] Validation failed: Invalid route: " + edge.getTo());
-                return false;
+        }
+        return false;
+    }
+
+    private String scriptMethodBody(String script, String name) {
+        if (script.isEmpty() || name.isEmpty()) return null;
+        Matcher m = RegexPatterns.METHOD_DEFINITION_TAIL.matcher(script);
+        for (int pos = script.indexOf(name); pos >= 0; pos = script.indexOf(name, pos + 1)) {
+            char before = pos > 0 ? script.charAt(pos - 1) : ' ';
+            if (Character.isLetterOrDigit(before) || before == '_' || before == '.' || before == '$') continue;
+            m.region(pos + name.length(), script.length());
+            if (!m.lookingAt()) continue;
+            int open = m.end() - 1;
+            int close = findMatchingBrace(script, open);
+            return close > open ? script.substring(open, close) : null;
+        }
+        return null;
+    }
+
+    /** Elements matching the last compound of a CSS selector by tag or class (Element components by tag name). */
+    private static List<Integer> selectorAnchors(TemplateOutline outline, String selector) {
+        if (selector == null || selector.isBlank() || "-".equals(selector)) return List.of();
+        String base = RegexPatterns.HAS_TEXT_QUOTED.matcher(selector).replaceAll("").trim();
+        String[] parts = base.split("\\s+");
+        String last = parts[parts.length - 1];
+        int dot = last.indexOf('.');
+        String tag = dot < 0 ? last : last.substring(0, dot);
+        List<String> classes = dot < 0 ? List.of() : Arrays.asList(last.substring(dot + 1).split("\\."));
+        if (tag.isEmpty() && classes.isEmpty()) return List.of();
+
+        return outline.find(i -> {
+            String elementTag = outline.getElements().get(i).tag;
+            if (!tag.isEmpty() && !elementTag.equals(tag) && !elementTag.equals("el-" + tag)) return false;
+            if (classes.isEmpty()) return true;
+            Matcher m = RegexPatterns.CLASS_ATTRIBUTE.matcher(outline.openTag(i));
+            Set<String> elementClasses = new HashSet<>();
+            if (m.find()) elementClasses.addAll(Arrays.asList(m.group(1).trim().split("\\s+")));
+            for (String cls : classes) {
+                if (!elementClasses.contains(cls) && !elementTag.equals(cls)) return false;
+            }
+            return true;
+        });
+    }
+
+    /** Estimated prompt tokens of a file's source and edges as sent before slicing (whole template or file, all edge fields). */
+    private int unslicedTokens(Stage2BatchPlanner.FileWork work) {
+        String content = work.file.getContent();
+        String source = hasConditionalMenuRendering(work.file) ? content : extractTemplateSection(content);
+        return TokenEstimator.estimate(source != null ? source : content) + TokenEstimator.estimate(JSON.toJSONString(work.edges));
+    }
+
+
+    private String extractTemplateSection(String content) {
+        if (content == null) return null;
+
+        Matcher matcher = RegexPatterns.TEMPLATE_SECTION.matcher(content);
+        if (matcher.find()) {
+            return matcher.group(1).trim();
+        }
+        return null;
+    }
+
+    /**
+     * Answers for the {@code pending} batch indices, aligned with {@code originalEdges}; missing and
+     * unparsable answers stay null. Answers are matched by id, or by position among the pending edges
+     * when the model dropped the ids.
+     */
+    private Edge[] parseValidationResponse(String raw, List<Edge> originalEdges, List<Integer> pending) {
+        Edge[] aligned = new Edge[originalEdges.size()];
+
+        List<EdgeAnswer> answers = null;
+        if (llmStructuredOutput) {
+            try {
+                answers = EdgeAnswer.decode(raw);
+            } catch (Exception e) {
+                log.debug("[Stage2] Structured response did not decode: {}", e.getMessage());
             }
+            if (answers == null) untypedResponses.increment();
+        }
+        if (answers == null) {
+            answers = parseLenient(raw);
+        }
+        if (answers == null) {
+            return aligned;
         }
 
-        return true;
+        Map<String, Integer> indexById = pendingIndexById(pending);
+        for (int i = 0; i < answers.size(); i++) {
+            EdgeAnswer answer = answers.get(i);
+            Integer index = responseIndex(answer, i, indexById, pending);
+            if (index == null || aligned[index] != null) continue;
+            aligned[index] = toValidatedEdge(answer, originalEdges.get(index));
+        }
+        return aligned;
     }
 
+    /** The answer edges of a free-form JSON answer: BOM, prose and code fences around the object are tolerated. */
+    private static List<EdgeAnswer> parseLenient(String raw) {
+        try {
+            Object contentObj = com.jayway.jsonpath.JsonPath.read(raw, "$.choices[0].message.content");
+            String json = (contentObj instanceof String)
+                    ? (String) contentObj
+                    : vue.llm.util.JsonUtil.toJson(contentObj);
+
+            json = json.replace("\uFEFF", "").trim();
+            json = vue.llm.util.SelfCorrector.extractJson(json);
 
-    private String buildReflectionPromptForValidation(String originalPrompt, String llmResponse, List<Edge> parsedEdges) {
-        StringBuilder sb = new StringBuilder();
-        sb.append("Your previous response had issues. Please fix them and try again.\n\n");
-        sb.append("Previous response:\n");
-        sb.append(llmResponse);
-        sb.append("\n\nIssues:\n");
+            log.trace("[Stage2] Extracted JSON: {}", json);
+
+            @SuppressWarnings("unchecked")
+            Map<String, Object> response = (Map<String, Object>) JSON.parseObject(json, Map.class);
+            @SuppressWarnings("unchecked")
+            List<Map<String, Object>> edgesData = (List<Map<String, Object>>) response.get("edges");
 
-        if (parsedEdges.isEmpty()) {
-            sb.append("- No edges were parsed from your response\n");
-        } else {
-            sb.append("- Some edges have missing or invalid fields\n");
+            if (edgesData == null) {
+                log.warn("[Stage2] No 'edges' field in LLM response.");
+                return null;
+            }
+            List<EdgeAnswer> answers = new ArrayList<>(edgesData.size());
+            for (Map<String, Object> edgeData : edgesData) {
+                answers.add(EdgeAnswer.from(edgeData));
+            }
+            return answers;
+        } catch (Exception e) {
+            log.warn("[Stage2] Failed to parse LLM response: {}", e.getMessage());
+            return null;
         }
+    }
 
-        sb.append("\nPlease return valid JSON with all required fields.\n\n");
-        sb.append("Original task:\n");
-        sb.append(originalPrompt);
+    private static Map<String, Integer> pendingIndexById(List<Integer> pending) {
+        Map<String, Integer> indexById = new HashMap<>();
+        for (int index : pending) {
+            indexById.put(edgeId(index), index);
+        }
+        return indexById;
+    }
 
-        return sb.toString();
+    /** Batch index of the {@code position}-th answered edge: by its id, or by position when ids were dropped. */
+    private static Integer responseIndex(EdgeAnswer answer, int position,
+                                         Map<String, Integer> indexById, List<Integer> pending) {
+        String id = answer.id;
+        Integer index = id != null ? indexById.get(id) : (position < pending.size() ? pending.get(position) : null);
+        if (index == null) {
+            log.debug("[Stage2] Ignoring response edge with unknown id: {}", id);
+        }
+        return index;
+    }
+
+    private static Edge toValidatedEdge(EdgeAnswer answer, Edge original) {
+        Edge edge = new Edge();
+        edge.setFrom(answer.from);
+        edge.setTo(answer.to);
+        edge.setSelector(answer.selector);
+        edge.setEvent(answer.event);
+        edge.setCondition(answer.condition);
+        edge.setIsValid(answer.isValid != null ? answer.isValid : Boolean.TRUE);
+        edge.setLlmReasoning(answer.llmReasoning);
+        edge.setExtractionMethod("AST+LLM");
+
+        edge.setSourceFile(original.getSourceFile());
+        edge.setRawAstSelector(original.getRawAstSelector());
+        return edge;
+    }
+
+
+    /** Why an answered edge cannot be accepted, or null when it can. */
+    private String edgeProblem(Edge edge) {
+        if (edge == null) return "missing from your response";
+        if (edge.getFrom() == null || edge.getFrom().isBlank()) return "\"from\" is missing";
+        if (edge.getTo() == null || edge.getTo().isBlank()) return "\"to\" is missing";
+        if (edge.getSelector() == null) return "\"selector\" is missing";
+        if (!routeTable.exists(edge.getTo())) return "\"to\" " + edge.getTo() + " is not a route of this app; keep the input target";
+        return null;
     }
 
     private Map<String, Set<String>> buildComponentUsageIndex(List<VueFile> files) {
         Map<String, Set<String>> result = new HashMap<>();
 
-        System.out.println("\n[Stage 1] Building component dependency graph...");
+        log.info("[Stage 1] Building component dependency graph...");
 
         Map<String, VueFile> fileMap = new HashMap<>();
         for (VueFile file : files) {
@@ -1084,9 +1983,9 @@ public class StructureExtraction {
                     String resolvedPath = resolveComponentPath(file.getPath(), comp.path);
                     if (resolvedPath != null) {
                         importedPaths.add(resolvedPath);
-                        System.out.println("[Stage 1]   " + file.getPath() + " imports " + resolvedPath);
+                        log.debug("[Stage 1]   {} imports {}", file.getPath(), resolvedPath);
                     } else {
-                        System.out.println("[Stage 1]   WARNING: Failed to resolve " + comp.path + " from " + file.getPath());
+                        log.warn("[Stage 1]   WARNING: Failed to resolve {} from {}", comp.path, file.getPath());
                     }
                 }
                 if (!importedPaths.isEmpty()) {
@@ -1117,13 +2016,13 @@ public class StructureExtraction {
                 result.computeIfAbsent(file.getPath(), k -> new LinkedHashSet<>()).addAll(filteredPaths);
 
                 if (filteredPaths.size() > 1) {
-                    System.out.println("[Stage 1]   " + file.getPath() + " is used by " + filteredPaths.size() + " routes: " + filteredPaths);
+                    log.debug("[Stage 1]   {} is used by {} routes: {}", file.getPath(), filteredPaths.size(), filteredPaths);
                 }
             }
         }
 
 
-        System.out.println("\n[Stage 1] Propagating edges based on component dependencies...");
+        log.info("[Stage 1] Propagating edges based on component dependencies...");
 
         Map<String, List<String>> routeChildren = routeTable.getChildren();
         Map<String, Set<String>> componentToAllRoutes = new HashMap<>();
@@ -1132,16 +2031,16 @@ public class StructureExtraction {
             if (!routes.isEmpty()) {
                 componentToAllRoutes.put(componentPath, routes);
                 result.put(componentPath, routes);
-                System.out.println("[Stage 1]   " + componentPath + " → " + routes.size() + " routes: " + routes);
+                log.debug("[Stage 1]   {} → {} routes: {}", componentPath, routes.size(), routes);
             } else {
-                if (componentPath.contains("NavBar") || componentPath.contains("SideBar")) {
-                    System.out.println("[Stage 1]   DEBUG: " + componentPath + " has NO routes!");
+                if (log.isTraceEnabled()) {
+                    log.trace("[Stage 1]   DEBUG: {} has NO routes!", componentPath);
                 }
             }
         }
 
-        System.out.println("\n[Stage 1] Component dependency analysis complete.");
-        System.out.println("[Stage 1] Total components with routes: " + result.size());
+        log.info("[Stage 1] Component dependency analysis complete.");
+        log.info("[Stage 1] Total components with routes: {}", result.size());
 
         return result;
     }
@@ -1204,14 +2103,14 @@ public class StructureExtraction {
             }
         }
         else if (cls != null && !cls.isBlank() && text != null && !text.isBlank()) {
-            String firstClass = cls.split("\\s+")[0];
+            String firstClass = RegexPatterns.WHITESPACE.split(cls)[0];
             currentSelector = "." + firstClass + ":has-text('" + text + "')";
         }
         else if (tag != null && !tag.isBlank() && text != null && !text.isBlank()) {
             currentSelector = tag + ":has-text('" + text + "')";
         }
         else if (cls != null && !cls.isBlank()) {
-            String firstClass = cls.split("\\s+")[0];
+            String firstClass = RegexPatterns.WHITESPACE.split(cls)[0];
             currentSelector = "." + firstClass;
         }
         else if (text != null && !text.isBlank()) {
@@ -1266,14 +2165,12 @@ public class StructureExtraction {
         String expr = handlerExpr;
         expr = expr.replace("\n", " ");
 
-        Pattern p1 = Pattern.compile("\\$router\\.push\\(\\s*['\"]([^'\"]+)['\"]\\s*\\)");
-        Matcher m1 = p1.matcher(expr);
+        Matcher m1 = RegexPatterns.ROUTER_PUSH_LITERAL.matcher(expr);
         if (m1.find()) {
             return m1.group(1);
         }
 
-        Pattern p2 = Pattern.compile("\\$router\\.push\\(\\s*['\"]([^'\"]+)['\"]\\s*\\+");
-        Matcher m2 = p2.matcher(expr);
+        Matcher m2 = RegexPatterns.ROUTER_PUSH_CONCAT.matcher(expr);
         if (m2.find()) {
             String basePath = m2.group(1);
             if (basePath.endsWith("/")) {
@@ -1282,8 +2179,7 @@ public class StructureExtraction {
             return basePath;
         }
 
-        Pattern p3 = Pattern.compile("\\$router\\.replace\\(\\s*['\"]([^'\"]+)['\"]");
-        Matcher m3 = p3.matcher(expr);
+        Matcher m3 = RegexPatterns.ROUTER_REPLACE_LITERAL.matcher(expr);
         if (m3.find()) {
             return m3.group(1);
         }
@@ -1306,13 +2202,13 @@ public class StructureExtraction {
             return;
         }
 
-        if (sourceFile.contains("dashboard")) {
-            System.out.println("[DEBUG] Processing " + sourceFile + " for route " + routePath);
-            System.out.println("[DEBUG]   domNodes: " + (facts.domNodes != null ? facts.domNodes.size() : 0));
-            System.out.println("[DEBUG]   routerCalls: " + (facts.routerCalls != null ? facts.routerCalls.size() : 0));
+        if (log.isTraceEnabled()) {
+            log.trace("[DEBUG] Processing {} for route {}", sourceFile, routePath);
+            log.trace("[DEBUG]   domNodes: {}", facts.domNodes != null ? facts.domNodes.size() : 0);
+            log.trace("[DEBUG]   routerCalls: {}", facts.routerCalls != null ? facts.routerCalls.size() : 0);
             if (facts.routerCalls != null) {
                 for (RouterCall rc : facts.routerCalls) {
-                    System.out.println("[DEBUG]     RouterCall: handler=" + rc.handler + ", argument=" + rc.argument);
+                    log.trace("[DEBUG]     RouterCall: handler={}, argument={}", rc.handler, rc.argument);
                 }
             }
         }
@@ -1323,1931 +2219,1939 @@ public class StructureExtraction {
             graph.setEdges(edges);
         }
 
-        if (facts.routerCalls != null && facts.domNodes != null) {
-            for (RouterCall rc : facts.routerCalls) {
-                if (rc == null || rc.argument == null || rc.argument.isBlank()) continue;
-
-                String normalizedTo = normalizeRouteTarget(rc.argument);
-                if (!routeTable.exists(normalizedTo)) {
-                    continue;
-                }
-
-                if (sourceFile != null && (sourceFile.contains("Dialog") || sourceFile.contains("Modal"))) {
-                    continue;
-                }
-
-                String handler = rc.handler;
-                if (handler == null || handler.isBlank()) continue;
+        runExtractors(new EdgeExtractor.Context(routePath, facts, sourceFile, vueFile), edges);
+    }
 
-                for (DomNode node : facts.domNodes) {
-                    if (node == null) continue;
 
-                    boolean matched = false;
-                    String eventKey = null;
+    private void runExtractors(EdgeExtractor.Context ctx, List<Edge> edges) {
+        int next = 0;
+        if (concurrentExtractors > 1 && extractorPool != null) {
+            runConcurrently(extractors.subList(0, concurrentExtractors), ctx, edges);
+            next = concurrentExtractors;
+        }
+        for (; next < extractors.size(); next++) {
+            EdgeExtractor extractor = extractors.get(next);
+            int before = edges.size();
+            long start = System.nanoTime();
+            extractor.extract(ctx, edges);
+            extractorMetrics.record(extractor.name(), System.nanoTime() - start, edges.size() - before);
+            scoreConfidence(extractor.name(), edges);
+        }
+    }
 
-                    if (node.events != null) {
-                        for (Map.Entry<String, String> evt : node.events.entrySet()) {
-                            String handlerExpr = evt.getValue();
-                            if (handlerExpr != null && handlerExpr.contains(handler)) {
-                                matched = true;
-                                eventKey = evt.getKey();
-                                break;
-                            }
-                        }
-                    }
+    /** Scores the edges an extractor just produced; edges carried over by a rewrite keep their score. */
+    private void scoreConfidence(String extractor, List<Edge> edges) {
+        for (Edge edge : edges) {
+            if (edge.getConfidence() == null) {
+                edge.setConfidence(EdgeConfidence.score(extractor, edge, isElementUI2));
+            }
+        }
+    }
 
-                    if (!matched && node.attrs != null && node.attrs.containsKey("command")) {
-                        String commandValue = node.attrs.get("command");
-                        if (handler.equals(commandValue)) {
-                            matched = true;
-                            eventKey = "click";
-                        }
-                    }
+    private void runConcurrently(List<EdgeExtractor> group, EdgeExtractor.Context ctx, List<Edge> edges) {
+        List<Future<List<Edge>>> futures = new ArrayList<>();
+        long[] elapsed = new long[group.size()];
+        for (int i = 0; i < group.size(); i++) {
+            EdgeExtractor extractor = group.get(i);
+            int slot = i;
+            futures.add(extractorPool.submit(() -> {
+                List<Edge> partial = new ArrayList<>();
+                long start = System.nanoTime();
+                extractor.extract(ctx, partial);
+                elapsed[slot] = System.nanoTime() - start;
+                scoreConfidence(extractor.name(), partial);
+                return partial;
+            }));
+        }
+
+        for (int i = 0; i < group.size(); i++) {
+            List<Edge> partial;
+            try {
+                partial = futures.get(i).get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while running extractor " + group.get(i).name(), e);
+            } catch (ExecutionException e) {
+                throw new RuntimeException("Extractor " + group.get(i).name() + " failed", e.getCause());
+            }
+            int before = edges.size();
+            for (Edge e : partial) {
+                if (!edgeExists(edges, e)) {
+                    edges.add(e);
+                }
+            }
+            extractorMetrics.record(group.get(i).name(), elapsed[i], edges.size() - before);
+        }
+    }
 
-                    if (!matched) continue;
+    private void startExtractorPool() {
+        if (concurrentExtractors > 1) {
+            extractorPool = Executors.newFixedThreadPool(concurrentExtractors, r -> {
+                Thread t = new Thread(r, "edge-extractor");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
 
-                    if (routePath.equals(normalizedTo)) {
-                        if (node.tag == null ||
-                            (!node.tag.equals("el-menu-item") && !node.tag.equals("el-avatar"))) {
-                            continue;
-                        }
-                    }
+    private void stopExtractorPool() {
+        if (extractorPool != null) {
+            extractorPool.shutdownNow();
+            extractorPool = null;
+        }
+    }
 
-                    String rawSelector = buildSelectorFromDomNode(node);
-                    if (rawSelector == null || rawSelector.isBlank()) continue;
+    private void printExtractorMetrics() {
+        List<String> names = new ArrayList<>();
+        for (EdgeExtractor extractor : extractors) {
+            names.add(extractor.name());
+        }
+        extractorMetrics.print(names);
+    }
 
-                    String eventType = normalizeEventType(eventKey);
 
-                    Edge e = new Edge();
-                    e.setFrom(routePath);
-                    e.setSelector(rawSelector);
-                    e.setEvent(eventType);
-                    e.setTo(normalizedTo);
-                    e.setSelectorKind("TEXT");
+    private void transformNestedRouteEdges(List<Edge> edges, String parentRoutePath, String sourceFile) {
+        if (edges == null || parentRoutePath == null) {
+            return;
+        }
 
-                    if (node.condition != null && !node.condition.isBlank()) {
-                        e.setCondition(node.condition);
-                    }
+        Set<String> childRoutes = routeTable.getDirectChildren(parentRoutePath);
+        if (childRoutes == null || childRoutes.isEmpty()) {
+            return;
+        }
 
-                    e.setSourceFile(sourceFile);
-                    e.setExtractionMethod("AST");
-                    e.setRawAstSelector(rawSelector);
+        if (sourceFile == null ||
+            !(sourceFile.toLowerCase().contains("menu") ||
+              sourceFile.toLowerCase().contains("nav") ||
+              sourceFile.toLowerCase().contains("header") ||
+              sourceFile.toLowerCase().contains("aside"))) {
+            return;
+        }
+        int parentEdgeCount = 0;
+        int childEdgeCount = 0;
 
-                    if (!edgeExists(edges, e)) {
-                        edges.add(e);
-                    }
+        for (Edge edge : edges) {
+            if (edge != null && edge.getFrom() != null) {
+                if (parentRoutePath.equals(edge.getFrom())) {
+                    parentEdgeCount++;
+                } else if (childRoutes.contains(edge.getFrom())) {
+                    childEdgeCount++;
                 }
             }
         }
 
-        if (facts.domNodes != null) {
-            for (DomNode node : facts.domNodes) {
-                if (node == null || node.attrs == null) continue;
-
-                String target = null;
-                String event = "click";
-
-                if (node.attrs.containsKey("to")) {
-                    target = node.attrs.get("to");
-
-                    if (target != null && (target.contains("tab.path") || target.contains("item.path") ||
-                        target.contains("menu.path") || target.contains(".path"))) {
-                        List<MenuItemInfo> menuItems = extractMenuItemsWithContext(vueFile);
+        if (parentEdgeCount > 0 && childEdgeCount == 0) {
+            transformParentToChildEdges(edges, parentRoutePath, childRoutes);
+        }
+        else if (childEdgeCount > 0 && parentEdgeCount == 0) {
+            transformChildToParentEdges(edges, parentRoutePath, childRoutes, sourceFile);
+        }
+    }
 
-                        if (!menuItems.isEmpty()) {
-                            for (MenuItemInfo menuItem : menuItems) {
-                                String routeTarget = menuItem.path;
-                                String menuText = menuItem.text;
 
-                                if (!routeTable.exists(routeTarget)) {
-                                    continue;
-                                }
+    private void transformParentToChildEdges(List<Edge> edges, String parentRoutePath, Collection<String> childRoutes) {
+        List<Edge> parentEdges = new ArrayList<>();
+        for (Edge edge : edges) {
+            if (edge != null && parentRoutePath.equals(edge.getFrom())) {
+                parentEdges.add(edge);
+            }
+        }
 
-                                String finalSelector;
-                                String itemClass = menuItem.className != null ? menuItem.className : "el-menu-item";
-                                if (menuItem.isInSubmenu) {
-                                    String submenuClass = isElementUI2 ? ".el-submenu" : ".el-sub-menu";
-                                    finalSelector = submenuClass + " ." + itemClass + ":has-text('" + menuText + "')";
-                                } else {
-                                    finalSelector = "." + itemClass + ":has-text('" + menuText + "')";
-                                }
+        for (Edge parentEdge : parentEdges) {
+            edges.remove(parentEdge);
 
-                                Edge e = new Edge();
-                                e.setFrom(routePath);
-                                e.setSelector(finalSelector);
-                                e.setEvent("click");
-                                e.setTo(routeTarget);
-                                e.setSelectorKind("TEXT");
-                                e.setSourceFile(sourceFile);
-                                e.setExtractionMethod("AST");
-                                e.setRawAstSelector(finalSelector);
-
-                                if (!edgeExists(edges, e)) {
-                                    edges.add(e);
-                                }
-                            }
-                            continue;
-                        }
-                        target = null;
-                    }
-                }
-
-                if (target == null && node.attrs.containsKey("index")) {
-                    String indexValue = node.attrs.get("index");
-                    if (indexValue != null && !indexValue.isBlank()) {
-                        if ((indexValue.contains("subItem") || indexValue.contains("item.path") ||
-                            indexValue.contains("child") || indexValue.contains("+")) &&
-                            node.tag != null && node.tag.equals("el-menu-item")) {
-                            String parentRoute = findParentRouteWithChildren(routePath);
-                            if (parentRoute != null) {
-                                Set<String> children = routeTable.getDirectChildren(parentRoute);
-                                if (children != null && !children.isEmpty()) {
-                                    Map<String, String> redirects = routeTable.getRedirects();
-                                    String redirectTarget = redirects != null ? redirects.get(parentRoute) : null;
-                                    List<MenuItemInfo> menuItems = extractMenuItemsWithContext(vueFile);
-
-                                    if (!menuItems.isEmpty()) {
-                                        for (MenuItemInfo menuItem : menuItems) {
-                                            String childRoute = menuItem.path;
-                                            String menuText = menuItem.text;
-
-                                            if (routePath.equals(childRoute) && childRoute.equals(redirectTarget)) {
-                                                continue;
-                                            }
-
-                                            if (!routeTable.exists(childRoute)) {
-                                                continue;
-                                            }
+            for (String childRoute : childRoutes) {
+                Edge childEdge = new Edge();
+                childEdge.setFrom(childRoute);
+                childEdge.setTo(parentEdge.getTo());
+                childEdge.setSelector(parentEdge.getSelector());
+                childEdge.setEvent(parentEdge.getEvent());
+                childEdge.setSelectorKind(parentEdge.getSelectorKind());
+                childEdge.setSourceFile(parentEdge.getSourceFile());
+                childEdge.setExtractionMethod(parentEdge.getExtractionMethod());
+                childEdge.setRawAstSelector(parentEdge.getRawAstSelector());
+                childEdge.setCondition(parentEdge.getCondition());
+                childEdge.setConfidence(parentEdge.getConfidence());
 
-                                            String finalSelector;
-                                            String itemClass = menuItem.className != null ? menuItem.className : "el-menu-item";
-                                            if (menuItem.isInSubmenu) {
-                                                String submenuClass = isElementUI2 ? ".el-submenu" : ".el-sub-menu";
-                                                finalSelector = submenuClass + " ." + itemClass + ":has-text('" + menuText + "')";
-                                            } else {
-                                                finalSelector = "." + itemClass + ":has-text('" + menuText + "')";
-                                            }
+                if (!edgeExists(edges, childEdge)) {
+                    edges.add(childEdge);
+                }
+            }
+        }
+    }
 
-                                            Edge e = new Edge();
-                                            e.setFrom(routePath);
-                                            e.setSelector(finalSelector);
-                                            e.setEvent("click");
-                                            e.setTo(childRoute);
-                                            e.setSelectorKind("INDEX");
-                                            e.setSourceFile(sourceFile);
-                                            e.setExtractionMethod("AST");
-                                            e.setRawAstSelector(finalSelector);
-
-                                            if (!edgeExists(edges, e)) {
-                                                edges.add(e);
-                                            }
-                                        }
-                                    } else {
-                                        Map<String, String> routeTexts = extractMenuTextsFromVueFile(vueFile);
 
-                                        for (String childRoute : children) {
-                                            if (routePath.equals(childRoute) && childRoute.equals(redirectTarget)) {
-                                                continue;
-                                            }
-                                            String menuText = routeTexts.get(childRoute);
-                                            if (menuText == null || menuText.isBlank()) {
-                                                continue;
-                                            }
+    private void transformChildToParentEdges(List<Edge> edges, String parentRoutePath, Collection<String> childRoutes, String sourceFile) {
+        Map<String, List<Edge>> edgeGroups = new HashMap<>();
 
-                                            String rawSelector = buildSelectorFromDomNode(node);
-                                            if (rawSelector == null) continue;
+        for (Edge edge : edges) {
+            if (edge != null && childRoutes.contains(edge.getFrom())) {
+                String key = edge.getTo() + "|" + edge.getSelector() + "|" + edge.getEvent();
+                edgeGroups.computeIfAbsent(key, k -> new ArrayList<>()).add(edge);
+            }
+        }
 
-                                            rawSelector = rawSelector + ":has-text('" + menuText + "')";
+        for (Map.Entry<String, List<Edge>> entry : edgeGroups.entrySet()) {
+            List<Edge> group = entry.getValue();
 
-                                            Edge e = new Edge();
-                                            e.setFrom(routePath);
-                                            e.setSelector(rawSelector);
-                                            e.setEvent("click");
-                                            e.setTo(childRoute);
-                                            e.setSelectorKind("INDEX");
-                                            e.setSourceFile(sourceFile);
-                                            e.setExtractionMethod("AST");
-                                            e.setRawAstSelector(rawSelector);
+            if (group.size() == childRoutes.size()) {
+                edges.removeAll(group);
+                Edge parentEdge = new Edge();
+                Edge template = group.get(0);
+                parentEdge.setFrom(parentRoutePath);
+                parentEdge.setTo(template.getTo());
+                parentEdge.setSelector(template.getSelector());
+                parentEdge.setEvent(template.getEvent());
+                parentEdge.setSelectorKind(template.getSelectorKind());
+                parentEdge.setSourceFile(sourceFile);
+                parentEdge.setExtractionMethod(template.getExtractionMethod());
+                parentEdge.setRawAstSelector(template.getRawAstSelector());
+                parentEdge.setCondition(template.getCondition());
+                parentEdge.setConfidence(template.getConfidence());
 
-                                            if (!edgeExists(edges, e)) {
-                                                edges.add(e);
-                                            }
-                                        }
-                                    }
-                                    continue;
-                                }
-                            }
-                        }
-                        else if (indexValue.startsWith("/")) {
-                            target = indexValue;
-                        } else {
-                            String candidatePath = "/" + indexValue.substring(0, 1).toUpperCase() + indexValue.substring(1);
-                            if (routeTable.exists(candidatePath)) {
-                                target = candidatePath;
-                            } else {
-                                candidatePath = "/" + indexValue;
-                                if (routeTable.exists(candidatePath)) {
-                                    target = candidatePath;
-                                }
-                            }
-                        }
-                    }
+                if (!edgeExists(edges, parentEdge)) {
+                    edges.add(parentEdge);
                 }
+            }
+        }
+    }
 
-                if ((target == null || target.isBlank()) && node.events != null) {
-                    for (String handlerExpr : node.events.values()) {
-                        if (handlerExpr == null) continue;
+    private Map<String, String> extractRouteNamesFromConfig() {
+        Map<String, String> routeNames = new HashMap<>();
 
-                        String extracted = extractRouteFromInlinePush(handlerExpr);
-                        if (extracted != null && !extracted.isBlank()) {
-                            target = extracted;
-                            break;
-                        }
+        try {
+            if (routerFilePath == null || routerFilePath.isBlank()) {
+                log.warn("[extractRouteNamesFromConfig] Router file path is not configured.");
+                return routeNames;
+            }
 
-                        Pattern methodCallPattern = Pattern.compile("^([a-zA-Z_][a-zA-Z0-9_]*)\\s*\\(\\s*['\"]([^'\"]+)['\"]");
-                        Matcher methodCallMatcher = methodCallPattern.matcher(handlerExpr.trim());
-                        if (methodCallMatcher.find()) {
-                            String methodName = methodCallMatcher.group(1);
-                            String routeArg = methodCallMatcher.group(2);
+            if (routerFile == null || routerFile.getContent() == null) {
+                log.warn("[extractRouteNamesFromConfig] Router file not found in vueFiles: {}", routerFilePath);
+                return routeNames;
+            }
 
-                            if (routeArg != null && !routeArg.isBlank()) {
-                                target = routeArg;
-                                break;
-                            }
-                        }
-                        if ((target == null || target.isBlank()) && facts.routerCalls != null) {
-                            Pattern methodPattern = Pattern.compile("^([a-zA-Z_][a-zA-Z0-9_]*)\\s*\\(");
-                            Matcher methodMatcher = methodPattern.matcher(handlerExpr.trim());
-                            if (methodMatcher.find()) {
-                                String methodName = methodMatcher.group(1);
-
-                                for (RouterCall rc : facts.routerCalls) {
-                                    if (rc != null && rc.handler != null && rc.handler.equals(methodName)) {
-                                        if (rc.argument != null && !rc.argument.isBlank()) {
-                                            target = rc.argument;
-                                            break;
-                                        }
-                                    }
-                                }
-                                if (target != null && !target.isBlank()) {
-                                    break;
-                                }
-                            }
-                        }
-                    }
-                }
+            String content = routerFile.getContent();
 
-                if ("el-dropdown-item".equals(node.tag)) {
-                    String commandValue = node.attrs.get("command");
-                    if (commandValue != null && !commandValue.isBlank() && facts.routerCalls != null) {
-                        List<String> commandRoutes = new ArrayList<>();
-                        for (RouterCall rc : facts.routerCalls) {
-                            if (rc == null || rc.argument == null) continue;
-                            if (rc.handler != null && rc.handler.toLowerCase().contains("command")) {
-                                String normalizedRoute = normalizeRouteTarget(rc.argument);
-                                if (routeTable.exists(normalizedRoute)) {
-                                    commandRoutes.add(normalizedRoute);
-                                }
-                            }
-                        }
+            String[] lines = content.split("\n");
+            String currentPath = null;
+            String currentName = null;
+            boolean inRouteObject = false;
 
-                        String nodeText = node.text != null ? node.text.trim().toLowerCase() : "";
-
-                        if (!commandRoutes.isEmpty()) {
-                            if (nodeText.contains("退出") || nodeText.contains("登出") || nodeText.contains("logout")) {
-                                target = commandRoutes.stream()
-                                    .filter(r -> r.contains("login"))
-                                    .findFirst()
-                                    .orElse(commandRoutes.get(0));
-                            } else if (nodeText.contains("个人中心") || nodeText.contains("设置") || nodeText.contains("setting")) {
-                                target = commandRoutes.stream()
-                                    .filter(r -> r.contains("setting"))
-                                    .findFirst()
-                                    .orElse(commandRoutes.get(0));
-                            } else {
-                                target = commandRoutes.get(0);
-                            }
+            for (String line : lines) {
+                if (line.contains("}")) {
+                    if (inRouteObject && currentPath != null && currentName != null) {
+                        String normalizedPath = currentPath;
+                        if (normalizedPath.endsWith("/*")) {
+                            normalizedPath = normalizedPath.substring(0, normalizedPath.length() - 2);
                         }
+                        routeNames.put(normalizedPath, currentName);
+                        currentPath = null;
+                        currentName = null;
+                        inRouteObject = false;
                     }
                 }
 
-                if (target == null || target.isBlank()) {
-                    if (node.tag != null && node.tag.equals("el-menu-item")) {
-                        target = routePath;
-                    } else if (node.tag != null && (node.tag.equals("el-submenu") || node.tag.equals("el-sub-menu"))) {
-                        target = routePath;
-                    } else {
-                        continue;
-                    }
+                Matcher pathMatcher = RegexPatterns.ROUTE_CONFIG_PATH.matcher(line);
+                if (pathMatcher.find()) {
+                    currentPath = pathMatcher.group(1);
+                    inRouteObject = true;
                 }
 
-                String normalizedTo = normalizeRouteTarget(target);
-                if (!routeTable.exists(normalizedTo)) {
-                    continue;
+                Matcher nameMatcher = RegexPatterns.ROUTE_CONFIG_NAME.matcher(line);
+                if (nameMatcher.find() && inRouteObject) {
+                    currentName = nameMatcher.group(1);
                 }
+            }
 
-                if (sourceFile != null && sourceFile.contains("layout") &&
-                    !routePath.equals(normalizedTo)) {
-                    Set<Integer> currentRoles = getRouteRoles(routePath);
-                    Set<Integer> targetRoles = getRouteRoles(normalizedTo);
-
-                    if (routePath.equals("/admin/dashboard") && normalizedTo.equals("/studentExam")) {
-                        System.out.println("[DEBUG] Role filtering: " + routePath + " -> " + normalizedTo);
-                        System.out.println("[DEBUG]   currentRoles: " + currentRoles);
-                        System.out.println("[DEBUG]   targetRoles: " + targetRoles);
-                    }
+        } catch (Exception e) {
+            log.warn("[extractRouteNamesFromConfig] Error: {}", e.getMessage());
+        }
 
-                    if (currentRoles != null && !currentRoles.isEmpty() &&
-                        targetRoles != null && !targetRoles.isEmpty()) {
-                        boolean hasCommonRole = currentRoles.stream()
-                            .anyMatch(targetRoles::contains);
-                        if (!hasCommonRole) {
-                            continue;
-                        }
-                    }
-                }
+        return routeNames;
+    }
 
-                if (routePath.equals(normalizedTo)) {
-                    if (node.text == null || node.text.isBlank()) {
-                        continue;
-                    }
+    private boolean edgeExists(List<Edge> edges, Edge e) {
+        for (Edge old : edges) {
+            if (old.getFrom().equals(e.getFrom()) &&
+                old.getSelector().equals(e.getSelector()) &&
+                old.getEvent().equals(e.getEvent()) &&
+                old.getTo().equals(e.getTo())) {
+                return true;
+            }
+        }
+        return false;
+    }
 
-                    boolean isNavigationSelfLoop = node.tag != null &&
-                        (node.tag.equals("el-menu-item") ||
-                         node.tag.equals("el-avatar"));
+    private String normalizeEventType(String eventType) {
+        if (eventType == null || eventType.isBlank()) {
+            return "click";
+        }
 
-                    if (!isNavigationSelfLoop) {
-                        continue;
-                    }
-                }
+        String normalized = eventType.toLowerCase().trim();
+        if (normalized.equals("click") ||
+            normalized.equals("submit") ||
+            normalized.equals("redirect") ||
+            normalized.equals("route") ||
+            normalized.equals("child")) {
+            return normalized;
+        }
+        return "click";
+    }
 
-                String rawSelector = buildSelectorFromDomNode(node);
-                if (rawSelector == null || rawSelector.isBlank()) continue;
-                String eventType = normalizeEventType(event);
+    private String normalizeRouteTarget(String rawTo) {
+        if (rawTo == null || rawTo.isBlank()) {
+            return rawTo;
+        }
 
-                Edge e = new Edge();
-                e.setFrom(routePath);
-                e.setSelector(rawSelector);
-                e.setEvent(eventType);
-                e.setTo(normalizedTo);
-                e.setSelectorKind("TEXT");
+        if (routeTable.exists(rawTo)) {
+            return rawTo;
+        }
 
-                if (node.condition != null && !node.condition.isBlank()) {
-                    e.setCondition(node.condition);
-                }
+        Set<String> allPaths = routeTable.getAllPaths();
+        if (allPaths == null || allPaths.isEmpty()) {
+            return rawTo;
+        }
+        for (String p : allPaths) {
+            if (p != null && p.equalsIgnoreCase(rawTo)) {
+                return p;
+            }
+        }
 
-                e.setSourceFile(sourceFile);
-                e.setExtractionMethod("AST");
-                e.setRawAstSelector(rawSelector);
+        String suffix = rawTo.startsWith("/") ? rawTo : "/" + rawTo;
+        String candidate = null;
 
-                if (!edgeExists(edges, e)) {
-                    System.out.println("[AST] Extracted edge: " + e);
-                    edges.add(e);
+        for (String p : allPaths) {
+            if (p != null && p.endsWith(suffix)) {
+                if (candidate == null) {
+                    candidate = p;
+                } else {
+                    return rawTo;
                 }
             }
         }
 
-        enhanceSelectorFromSource(edges, vueFile, routePath);
-
-
-        if (vueFile != null && vueFile.getContent() != null && !vueFile.getContent().isBlank()) {
-            String content = vueFile.getContent();
+        if (candidate != null) {
+            return candidate;
+        }
 
-            Pattern pattern2 = Pattern.compile(
-                "window\\.open\\([^)]*\\$router\\.resolve\\(['\"]([^'\"]+)['\"](?:\\s*\\+[^)]+)?\\)"
-            );
-            Matcher matcher2 = pattern2.matcher(content);
+        String normalized = rawTo.startsWith("/") ? rawTo : "/" + rawTo;
+        for (String p : allPaths) {
+            if (p == null) continue;
 
-            while (matcher2.find()) {
-                String rawPath = matcher2.group(1);
-                if (rawPath == null || rawPath.isBlank()) continue;
+            String[] normalizedParts = normalized.split("/");
+            String[] pathParts = p.split("/");
 
-                if (rawPath.endsWith("/")) {
-                    rawPath = rawPath.substring(0, rawPath.length() - 1);
+            if (pathParts.length == normalizedParts.length + 1) {
+                boolean matches = true;
+                for (int i = 0; i < normalizedParts.length; i++) {
+                    if (!normalizedParts[i].equals(pathParts[i])) {
+                        matches = false;
+                        break;
+                    }
                 }
-
-                String normalizedTo = normalizeRouteTarget(rawPath);
-
-                Edge e = new Edge();
-                e.setFrom(routePath);
-                e.setSelector("button");
-                e.setEvent("click");
-                e.setTo(normalizedTo);
-                e.setSelectorKind("SCRIPT");
-
-                e.setSourceFile(sourceFile);
-                e.setExtractionMethod("AST");
-                e.setRawAstSelector("button");
-
-                if (!edgeExists(edges, e)) {
-                    edges.add(e);
+                if (matches && pathParts[pathParts.length - 1].startsWith(":")) {
+                    if (candidate == null) {
+                        candidate = p;
+                    } else {
+                        return rawTo;
+                    }
                 }
             }
+        }
 
-            Pattern pattern3a = Pattern.compile(
-                "window\\.open\\(\\s*['\"]([^'\"]+)['\"]"
-            );
-            Matcher matcher3a = pattern3a.matcher(content);
+        return candidate != null ? candidate : rawTo;
+    }
 
-            while (matcher3a.find()) {
-                String rawPath = matcher3a.group(1);
-                if (rawPath == null || rawPath.isBlank()) continue;
 
-                if (rawPath.endsWith("/")) {
-                    rawPath = rawPath.substring(0, rawPath.length() - 1);
-                }
+    private void canonicalizeEdges(StructureGraph graph) {
+        if (graph == null || graph.getEdges() == null || graph.getEdges().isEmpty()) {
+            return;
+        }
 
-                String normalizedTo = normalizeRouteTarget(rawPath);
+        List<Edge> edges = graph.getEdges();
+        for (Edge e : edges) {
+            String selector = e.getSelector();
 
-                Edge e = new Edge();
-                e.setFrom(routePath);
-                e.setSelector("button");
-                e.setEvent("click");
-                e.setTo(normalizedTo);
-                e.setSelectorKind("SCRIPT");
-                e.setSourceFile(sourceFile);
-                e.setExtractionMethod("AST");
-                e.setRawAstSelector("button");
+            if (selector != null && selector.equals(".el-submenu") && e.getSourceFile() != null) {
+                String text = extractSubMenuTextFromSource(e.getSourceFile());
+                if (text != null) {
+                    e.setSelector(".el-submenu:has-text('" + text + "')");
+                    e.setRawAstSelector(".el-submenu:has-text('" + text + "')");
+                }
+            }
+        }
 
-                if (!edgeExists(edges, e)) {
-                    edges.add(e);
+        for (Edge e : edges) {
+            String selector = e.getSelector();
+            if (selector != null && selector.startsWith("router-link:")) {
+                String newSelector = selector.replace("router-link:", "a:");
+                e.setSelector(newSelector);
+                if (e.getRawAstSelector() != null && e.getRawAstSelector().startsWith("router-link:")) {
+                    e.setRawAstSelector(e.getRawAstSelector().replace("router-link:", "a:"));
                 }
             }
+        }
 
-            Pattern pattern3b = Pattern.compile(
-                "window\\.open\\(\\s*`([^`]+)`"
-            );
-            Matcher matcher3b = pattern3b.matcher(content);
+        for (Edge e : edges) {
+            if (e.getCondition() != null && !e.getCondition().isBlank()) {
+                String condition = e.getCondition();
 
-            while (matcher3b.find()) {
-                String rawPath = matcher3b.group(1);
-                if (rawPath == null || rawPath.isBlank()) continue;
+                condition = condition.replace("this.$store.state.", "store.");
+                condition = condition.replace("this.$store.", "store.");
+                condition = normalizeOrCondition(condition);
 
-                rawPath = rawPath.replaceAll("\\$\\{[^}]+\\}", "");
-                if (rawPath.endsWith("/")) {
-                    rawPath = rawPath.substring(0, rawPath.length() - 1);
-                }
+                e.setCondition(condition);
+            }
+        }
+
+        Map<String, List<Edge>> grouped = new LinkedHashMap<>();
+        for (Edge edge : edges) {
+            String groupKey = edge.getFrom() + "|" + edge.getTo() + "|" + edge.getEvent();
+            grouped.computeIfAbsent(groupKey, k -> new ArrayList<>()).add(edge);
+        }
 
-                String normalizedTo = normalizeRouteTarget(rawPath);
+        List<Edge> deduplicated = new ArrayList<>();
 
-                Edge e = new Edge();
-                e.setFrom(routePath);
-                e.setSelector("button");
-                e.setEvent("click");
-                e.setTo(normalizedTo);
-                e.setSelectorKind("SCRIPT");
-                e.setSourceFile(sourceFile);
-                e.setExtractionMethod("AST");
-                e.setRawAstSelector("button");
+        for (List<Edge> group : grouped.values()) {
+            Set<String> seen = new HashSet<>();
+            List<Edge> uniqueEdges = new ArrayList<>();
 
-                if (!edgeExists(edges, e)) {
-                    edges.add(e);
+            for (Edge edge : group) {
+                String key = edge.getSelector();
+                if (!seen.contains(key)) {
+                    seen.add(key);
+                    uniqueEdges.add(edge);
                 }
             }
-        }
-
-        if (facts.domNodes != null) {
-            for (DomNode node : facts.domNodes) {
-                if (node == null || node.events == null || node.events.isEmpty()) continue;
 
-                String rawSelector = buildSelectorFromDomNode(node);
-                if (rawSelector == null || rawSelector.isBlank()) continue;
-                boolean alreadyProcessed = false;
-                for (Edge existing : edges) {
-                    if (existing.getFrom().equals(routePath) &&
-                        existing.getSelector().equals(rawSelector)) {
-                        alreadyProcessed = true;
+            if (uniqueEdges.size() > 1) {
+                boolean hasSpecificSelector = false;
+                for (Edge edge : uniqueEdges) {
+                    String selector = edge.getSelector();
+                    if (selector != null && !selector.equals("button") &&
+                        (selector.contains(".") || selector.contains(":has-text") || selector.contains("#"))) {
+                        hasSpecificSelector = true;
                         break;
                     }
                 }
 
-                if (alreadyProcessed) continue;
-
-                boolean isNavigationSelfLoop = node.tag != null &&
-                    (node.tag.equals("el-menu-item") || node.tag.equals("el-avatar"));
-
-                if (!isNavigationSelfLoop) {
-                    continue;
-                }
-                for (Map.Entry<String, String> evt : node.events.entrySet()) {
-                    Edge e = new Edge();
-                    e.setFrom(routePath);
-                    e.setSelector(rawSelector);
-                    e.setEvent(evt.getKey() != null ? evt.getKey() : "click");
-                    e.setTo(routePath);
-                    e.setSelectorKind("TEXT");
+                List<Edge> filtered = new ArrayList<>();
 
-                    if (node.condition != null && !node.condition.isBlank()) {
-                        e.setCondition(node.condition);
+                if (hasSpecificSelector) {
+                    for (Edge edge : uniqueEdges) {
+                        if (!edge.getSelector().equals("button")) {
+                            filtered.add(edge);
+                        }
                     }
+                } else {
+                    filtered.addAll(uniqueEdges);
+                }
 
-                    e.setSourceFile(sourceFile);
-                    e.setExtractionMethod("AST");
-                    e.setRawAstSelector(rawSelector);
-
-                    if (!edgeExists(edges, e)) {
-                        edges.add(e);
+                deduplicated.addAll(filtered);
+                boolean hasMenuOrDropdown = false;
+                for (Edge edge : deduplicated) {
+                    String selector = edge.getSelector();
+                    if (selector != null && (selector.contains(".el-menu-item") ||
+                                            selector.contains(".el-dropdown-menu__item"))) {
+                        hasMenuOrDropdown = true;
+                        break;
                     }
+                }
 
-                    break;
+                if (hasMenuOrDropdown) {
+                    deduplicated.removeIf(edge -> {
+                        String selector = edge.getSelector();
+                        return selector != null && selector.startsWith("router-link:");
+                    });
                 }
+            } else {
+                deduplicated.addAll(uniqueEdges);
             }
         }
+        List<Edge> withoutDuplicateRoutes = new ArrayList<>();
+        Map<String, List<Edge>> byFromTo = new LinkedHashMap<>();
 
-        if (vueFile != null && vueFile.getContent() != null) {
-            String content = vueFile.getContent();
-            boolean hasVForMenuItem = content.contains("v-for") &&
-                                     content.contains("el-menu-item") &&
-                                     (content.contains("route.children") || content.contains("routes"));
-
-            if (hasVForMenuItem) {
-                Map<String, String> routeNames = extractRouteNamesFromConfig();
-                Map<String, List<String>> routeChildren = routeTable.getChildren();
-
-                if (routeChildren != null && !routeNames.isEmpty()) {
-                    for (Map.Entry<String, List<String>> entry : routeChildren.entrySet()) {
-                        List<String> children = entry.getValue();
+        for (Edge edge : deduplicated) {
+            String key = edge.getFrom() + "|" + edge.getTo();
+            byFromTo.computeIfAbsent(key, k -> new ArrayList<>()).add(edge);
+        }
 
-                        if (children == null || children.isEmpty()) continue;
+        for (List<Edge> group : byFromTo.values()) {
+            if (group.size() == 1) {
+                withoutDuplicateRoutes.add(group.get(0));
+            } else {
+                Edge routeEdge = null;
+                List<Edge> submenuItemEdges = new ArrayList<>();
+                List<Edge> menuItemEdges = new ArrayList<>();
+                List<Edge> aTagEdges = new ArrayList<>();
+                List<Edge> otherEdges = new ArrayList<>();
 
-                        for (String childRoute : children) {
-                            String menuText = routeNames.get(childRoute);
+                List<Edge> dropdownItemEdges = new ArrayList<>();
+                List<Edge> genericButtonEdges = new ArrayList<>();
 
-                            if (menuText != null && !menuText.isBlank()) {
-                                String selector = ".el-sub-menu .el-menu-item:has-text('" + menuText + "')";
+                for (Edge edge : group) {
+                    String selector = edge.getSelector();
+                    if ("route".equals(edge.getEvent()) && "-".equals(selector)) {
+                        routeEdge = edge;
+                    } else if (selector != null && selector.contains(".el-dropdown-menu__item")) {
+                        dropdownItemEdges.add(edge);
+                    } else if (selector != null && selector.contains(".el-submenu") && selector.contains(".el-menu-item")) {
+                        submenuItemEdges.add(edge);
+                    } else if (selector != null && selector.contains(".el-menu-item")) {
+                        menuItemEdges.add(edge);
+                    } else if (selector != null && selector.startsWith("a:has-text")) {
+                        aTagEdges.add(edge);
+                    } else if (selector != null && RegexPatterns.GENERIC_BUTTON_SELECTOR.matcher(selector).matches()) {
+                        genericButtonEdges.add(edge);
+                    } else {
+                        otherEdges.add(edge);
+                    }
+                }
 
-                                Edge e = new Edge();
-                                e.setFrom(routePath);
-                                e.setSelector(selector);
-                                e.setEvent("click");
-                                e.setTo(childRoute);
-                                e.setSelectorKind("TEXT");
-                                e.setSourceFile(sourceFile);
-                                e.setExtractionMethod("AST");
-                                e.setRawAstSelector(selector);
+                if (routeEdge != null) {
+                    withoutDuplicateRoutes.add(routeEdge);
+                }
 
-                                if (!edgeExists(edges, e)) {
-                                    edges.add(e);
-                                }
-                            }
+                if (!dropdownItemEdges.isEmpty()) {
+                    withoutDuplicateRoutes.addAll(dropdownItemEdges);
+                    withoutDuplicateRoutes.addAll(otherEdges);
+                } else if (!aTagEdges.isEmpty() && (!menuItemEdges.isEmpty() || !submenuItemEdges.isEmpty())) {
+                    withoutDuplicateRoutes.addAll(aTagEdges);
+                    withoutDuplicateRoutes.addAll(otherEdges);
+                } else if (!submenuItemEdges.isEmpty()) {
+                    withoutDuplicateRoutes.addAll(submenuItemEdges);
+                    withoutDuplicateRoutes.addAll(otherEdges);
+                } else if (!menuItemEdges.isEmpty()) {
+                    withoutDuplicateRoutes.addAll(menuItemEdges);
+                    withoutDuplicateRoutes.addAll(otherEdges);
+                } else if (!aTagEdges.isEmpty()) {
+                    withoutDuplicateRoutes.addAll(aTagEdges);
+                    withoutDuplicateRoutes.addAll(otherEdges);
+                } else if (!genericButtonEdges.isEmpty()) {
+                    withoutDuplicateRoutes.addAll(genericButtonEdges);
+                    withoutDuplicateRoutes.addAll(otherEdges);
+                } else {
+                    for (Edge edge : group) {
+                        if (edge != routeEdge) {
+                            withoutDuplicateRoutes.add(edge);
                         }
                     }
                 }
             }
+        }
 
-            boolean hasFirstLevelMenuItem = content.contains("v-else-if") &&
-                                           content.contains("!route.hidden") &&
-                                           content.contains("el-menu-item");
+        List<Edge> withoutAutoRedirect = new ArrayList<>();
+        for (Edge edge : withoutDuplicateRoutes) {
+            // Filter out auto-redirect edges: from="/*" and selector="-"
+            if ("/*".equals(edge.getFrom()) && "-".equals(edge.getSelector())) {
+                log.debug("[Canonicalization] Filtered auto-redirect edge: {} -> {}", edge.getFrom(), edge.getTo());
+                continue;
+            }
 
-            if (hasFirstLevelMenuItem) {
-                Map<String, String> routeNames = extractRouteNamesFromConfig();
-                if (routeNames.containsKey("/")) {
-                    String menuText = routeNames.get("/");
-                    if (menuText != null && !menuText.isBlank()) {
-                        String selector = ".el-menu-item:has-text('" + menuText + "')";
+            if ("route".equals(edge.getEvent())) {
+                log.debug("[Canonicalization] Filtered route config edge: {} -> {}", edge.getFrom(), edge.getTo());
+                continue;
+            }
 
-                        Edge e = new Edge();
-                        e.setFrom(routePath);
-                        e.setSelector(selector);
-                        e.setEvent("click");
-                        e.setTo("/");
-                        e.setSelectorKind("TEXT");
-                        e.setSourceFile(sourceFile);
-                        e.setExtractionMethod("AST");
-                        e.setRawAstSelector(selector);
+            withoutAutoRedirect.add(edge);
+        }
 
-                        if (!edgeExists(edges, e)) {
-                            edges.add(e);
-                        }
-                    }
-                }
+        List<Edge> withoutRedundantPrefix = new ArrayList<>();
+        Map<String, List<Edge>> byFromToText = new LinkedHashMap<>();
 
-                if (routeNames.containsKey("/setting")) {
-                    String menuText = routeNames.get("/setting");
-                    if (menuText != null && !menuText.isBlank()) {
-                        String selector = ".el-menu-item:has-text('" + menuText + "')";
+        for (Edge edge : withoutAutoRedirect) {
+            String selector = edge.getSelector();
+            if (selector == null) {
+                withoutRedundantPrefix.add(edge);
+                continue;
+            }
 
-                        Edge e = new Edge();
-                        e.setFrom(routePath);
-                        e.setSelector(selector);
-                        e.setEvent("click");
-                        e.setTo("/setting");
-                        e.setSelectorKind("TEXT");
-                        e.setSourceFile(sourceFile);
-                        e.setExtractionMethod("AST");
-                        e.setRawAstSelector(selector);
+            boolean isElementUISelector = selector.startsWith(".el-") ||
+                                         selector.contains(".el-submenu ") ||
+                                         selector.contains(".el-sub-menu ");
 
-                        if (!edgeExists(edges, e)) {
-                            edges.add(e);
+            if (!isElementUISelector) {
+                withoutRedundantPrefix.add(edge);
+                continue;
+            }
+            String text = extractTextFromSelector(selector);
+
+            String baseSelector = selector;
+            if (selector.startsWith(".el-submenu ")) {
+                baseSelector = selector.substring(".el-submenu ".length());
+            } else if (selector.startsWith(".el-sub-menu ")) {
+                baseSelector = selector.substring(".el-sub-menu ".length());
+            }
+
+            String key = edge.getFrom() + "|" + edge.getTo() + "|" + (text != null ? text : "") + "|" + baseSelector;
+            byFromToText.computeIfAbsent(key, k -> new ArrayList<>()).add(edge);
+        }
+
+        for (List<Edge> group : byFromToText.values()) {
+            if (group.size() == 1) {
+                withoutRedundantPrefix.add(group.get(0));
+            } else {
+                String from = group.get(0).getFrom();
+                String to = group.get(0).getTo();
+
+                if (from.equals(to)) {
+                    Edge bestEdge = null;
+                    for (Edge edge : group) {
+                        String selector = edge.getSelector();
+                        if (selector.contains(".el-submenu ") || selector.contains(".el-sub-menu ")) {
+                            bestEdge = edge;
+                            break;
+                        }
+                    }
+                    if (bestEdge == null) {
+                        bestEdge = group.get(0);
+                    }
+                    withoutRedundantPrefix.add(bestEdge);
+                } else {
+                    Edge bestEdge = null;
+                    for (Edge edge : group) {
+                        String selector = edge.getSelector();
+                        if (!selector.contains(".el-submenu ") && !selector.contains(".el-sub-menu ")) {
+                            bestEdge = edge;
+                            break;
                         }
                     }
+                    if (bestEdge == null) {
+                        bestEdge = group.get(0);
+                    }
+                    withoutRedundantPrefix.add(bestEdge);
                 }
             }
         }
 
-        transformNestedRouteEdges(edges, routePath, sourceFile);
-    }
+        List<Edge> withoutCrossGroup = new ArrayList<>();
+        int crossGroupCount = 0;
 
+        Map<String, String> pageGroups = analyzeConditionalPageGroups();
 
-    private void transformNestedRouteEdges(List<Edge> edges, String parentRoutePath, String sourceFile) {
-        if (edges == null || parentRoutePath == null) {
-            return;
-        }
+        for (Edge edge : withoutRedundantPrefix) {
+            if (isCrossGroupEdge(edge, pageGroups)) {
+                crossGroupCount++;
+                log.debug("[Canonicalization] Filtered cross-group edge: {} -> {} ({} -> {})", edge.getFrom(), edge.getTo(), pageGroups.get(edge.getFrom()), pageGroups.get(edge.getTo()));
+                continue;
+            }
 
-        Set<String> childRoutes = routeTable.getDirectChildren(parentRoutePath);
-        if (childRoutes == null || childRoutes.isEmpty()) {
-            return;
+            withoutCrossGroup.add(edge);
         }
 
-        if (sourceFile == null ||
-            !(sourceFile.toLowerCase().contains("menu") ||
-              sourceFile.toLowerCase().contains("nav") ||
-              sourceFile.toLowerCase().contains("header") ||
-              sourceFile.toLowerCase().contains("aside"))) {
-            return;
+        if (crossGroupCount > 0) {
+            log.info("[Canonicalization] Filtered {} cross-group edges", crossGroupCount);
         }
-        int parentEdgeCount = 0;
-        int childEdgeCount = 0;
 
-        for (Edge edge : edges) {
-            if (edge != null && edge.getFrom() != null) {
-                if (parentRoutePath.equals(edge.getFrom())) {
-                    parentEdgeCount++;
-                } else if (childRoutes.contains(edge.getFrom())) {
-                    childEdgeCount++;
-                }
+        List<Edge> filtered = new ArrayList<>();
+
+        for (Edge edge : withoutCrossGroup) {
+            if (!edge.getFrom().equals(edge.getTo())) {
+                filtered.add(edge);
+                continue;
+            }
+            if (shouldKeepSelfLoopEdge(edge)) {
+                filtered.add(edge);
             }
         }
 
-        if (parentEdgeCount > 0 && childEdgeCount == 0) {
-            transformParentToChildEdges(edges, parentRoutePath, childRoutes);
-        }
-        else if (childEdgeCount > 0 && parentEdgeCount == 0) {
-            transformChildToParentEdges(edges, parentRoutePath, childRoutes, sourceFile);
-        }
+        graph.setEdges(filtered);
     }
 
 
-    private void transformParentToChildEdges(List<Edge> edges, String parentRoutePath, Collection<String> childRoutes) {
-        List<Edge> parentEdges = new ArrayList<>();
-        for (Edge edge : edges) {
-            if (edge != null && parentRoutePath.equals(edge.getFrom())) {
-                parentEdges.add(edge);
-            }
-        }
+    private Map<String, String> analyzeConditionalPageGroups() {
+        Map<String, String> pageGroups = new HashMap<>();
 
-        for (Edge parentEdge : parentEdges) {
-            edges.remove(parentEdge);
+        log.info("[Canonicalization] Analyzing conditional page groups from {} Vue files...", fileIndex.size());
+        for (VueFile file : fileIndex.getFiles()) {
+            if (!hasConditionalMenuRendering(file)) {
+                continue;
+            }
 
-            for (String childRoute : childRoutes) {
-                Edge childEdge = new Edge();
-                childEdge.setFrom(childRoute);
-                childEdge.setTo(parentEdge.getTo());
-                childEdge.setSelector(parentEdge.getSelector());
-                childEdge.setEvent(parentEdge.getEvent());
-                childEdge.setSelectorKind(parentEdge.getSelectorKind());
-                childEdge.setSourceFile(parentEdge.getSourceFile());
-                childEdge.setExtractionMethod(parentEdge.getExtractionMethod());
-                childEdge.setRawAstSelector(parentEdge.getRawAstSelector());
-                childEdge.setCondition(parentEdge.getCondition());
+            log.info("[Canonicalization] Found conditional menu in: {}", file.getPath());
+            String content = file.getContent();
 
-                if (!edgeExists(edges, childEdge)) {
-                    edges.add(childEdge);
+            List<String> baseMenuPaths = new ArrayList<>();
+            Matcher baseMenuMatcher = RegexPatterns.BASE_MENU_DECLARATION.matcher(content);
+            if (baseMenuMatcher.find()) {
+                int baseMenuStart = baseMenuMatcher.end() - 1;
+                int baseMenuEnd = findMatchingBracket(content, baseMenuStart);
+                if (baseMenuEnd != -1) {
+                    String baseMenuContent = content.substring(baseMenuStart + 1, baseMenuEnd);
+                    Matcher pathMatcher = RegexPatterns.PATH_PROPERTY.matcher(baseMenuContent);
+                    while (pathMatcher.find()) {
+                        String path = pathMatcher.group(1);
+                        if (path != null && !path.isBlank()) {
+                            String fullPath = path.startsWith("/") ? path : "/" + path;
+                            baseMenuPaths.add(fullPath);
+                        }
+                    }
+                    if (!baseMenuPaths.isEmpty()) {
+                        log.debug("[Canonicalization] Found baseMenu with paths: {}", baseMenuPaths);
+                    }
                 }
             }
-        }
-    }
 
+            int groupIndex = 0;
+            int pos = 0;
+            while (pos < content.length()) {
+                int ifPos = content.indexOf("if", pos);
+                if (ifPos == -1) break;
+                if (ifPos > 0) {
+                    char prevChar = content.charAt(ifPos - 1);
+                    if (Character.isLetterOrDigit(prevChar)) {
+                        pos = ifPos + 2;
+                        continue;
+                    }
+                }
 
-    private void transformChildToParentEdges(List<Edge> edges, String parentRoutePath, Collection<String> childRoutes, String sourceFile) {
-        Map<String, List<Edge>> edgeGroups = new HashMap<>();
+                int condStart = content.indexOf("(", ifPos);
+                if (condStart == -1 || condStart - ifPos > 10) {
+                    pos = ifPos + 2;
+                    continue;
+                }
 
-        for (Edge edge : edges) {
-            if (edge != null && childRoutes.contains(edge.getFrom())) {
-                String key = edge.getTo() + "|" + edge.getSelector() + "|" + edge.getEvent();
-                edgeGroups.computeIfAbsent(key, k -> new ArrayList<>()).add(edge);
-            }
-        }
+                int condEnd = findMatchingParen(content, condStart);
+                if (condEnd == -1) {
+                    pos = ifPos + 2;
+                    continue;
+                }
+                int ifBlockStart = content.indexOf("{", condEnd);
+                if (ifBlockStart == -1 || ifBlockStart - condEnd > 20) {
+                    pos = ifPos + 2;
+                    continue;
+                }
 
-        for (Map.Entry<String, List<Edge>> entry : edgeGroups.entrySet()) {
-            List<Edge> group = entry.getValue();
+                int ifBlockEnd = findMatchingBrace(content, ifBlockStart);
+                if (ifBlockEnd == -1) {
+                    pos = ifPos + 2;
+                    continue;
+                }
 
-            if (group.size() == childRoutes.size()) {
-                edges.removeAll(group);
-                Edge parentEdge = new Edge();
-                Edge template = group.get(0);
-                parentEdge.setFrom(parentRoutePath);
-                parentEdge.setTo(template.getTo());
-                parentEdge.setSelector(template.getSelector());
-                parentEdge.setEvent(template.getEvent());
-                parentEdge.setSelectorKind(template.getSelectorKind());
-                parentEdge.setSourceFile(sourceFile);
-                parentEdge.setExtractionMethod(template.getExtractionMethod());
-                parentEdge.setRawAstSelector(template.getRawAstSelector());
-                parentEdge.setCondition(template.getCondition());
+                String ifBlock = content.substring(ifBlockStart + 1, ifBlockEnd);
+                boolean hasMenuContent = ifBlock.contains("this.items") ||
+                                        ifBlock.contains("this.menuList") ||
+                                        ifBlock.contains("this.menus") ||
+                                        ifBlock.contains("this.menuItems") ||
+                                        ifBlock.contains("return [") ||
+                                        ifBlock.contains("path:") ||
+                                        ifBlock.contains("label:");
 
-                if (!edgeExists(edges, parentEdge)) {
-                    edges.add(parentEdge);
+                if (!hasMenuContent) {
+                    pos = ifBlockEnd + 1;
+                    continue;
                 }
-            }
-        }
-    }
 
-    private Map<String, String> extractRouteNamesFromConfig() {
-        Map<String, String> routeNames = new HashMap<>();
+                Matcher ifPathMatcher = RegexPatterns.PATH_PROPERTY.matcher(ifBlock);
+                while (ifPathMatcher.find()) {
+                    String path = ifPathMatcher.group(1);
+                    if (path != null && !path.isBlank()) {
+                        String fullPath = path.startsWith("/") ? path : "/" + path;
+                        pageGroups.put(fullPath, "group_" + groupIndex + "_if");
+                    }
+                }
+                if (ifBlock.contains("...baseMenu") && !baseMenuPaths.isEmpty()) {
+                    for (String baseMenuPath : baseMenuPaths) {
+                        if (!pageGroups.containsKey(baseMenuPath)) {
+                            pageGroups.put(baseMenuPath, "group_" + groupIndex + "_if");
+                        }
+                    }
+                }
 
-        try {
-            if (routerFilePath == null || routerFilePath.isBlank()) {
-                System.err.println("[extractRouteNamesFromConfig] Router file path is not configured.");
-                return routeNames;
-            }
+                int currentPos = ifBlockEnd + 1;
+                int branchIndex = 0;
+                while (currentPos < content.length()) {
+                    String remaining = content.substring(currentPos, Math.min(currentPos + 30, content.length())).trim();
+                    if (!remaining.startsWith("else")) {
+                        break;
+                    }
 
-            VueFile routerFile = null;
-            for (VueFile file : vueFiles) {
-                String filePath = file.getPath();
-                if (filePath != null && (routerFilePath.endsWith(filePath) || filePath.endsWith(routerFilePath))) {
-                    routerFile = file;
-                    break;
-                }
-            }
+                    int elsePos = content.indexOf("else", currentPos);
+                    if (elsePos == -1) break;
+                    String afterElse = content.substring(elsePos + 4, Math.min(elsePos + 20, content.length())).trim();
+                    boolean isElseIf = afterElse.startsWith("if");
 
-            if (routerFile == null || routerFile.getContent() == null) {
-                System.err.println("[extractRouteNamesFromConfig] Router file not found in vueFiles: " + routerFilePath);
-                return routeNames;
-            }
+                    String branchLabel;
+                    int blockStart;
 
-            String content = routerFile.getContent();
+                    if (isElseIf) {
+                        branchLabel = "group_" + groupIndex + "_elseif" + branchIndex;
+                        branchIndex++;
+                        int ifPos2 = content.indexOf("if", elsePos);
+                        int condStart2 = content.indexOf("(", ifPos2);
+                        if (condStart2 == -1) break;
 
-            String[] lines = content.split("\n");
-            String currentPath = null;
-            String currentName = null;
-            boolean inRouteObject = false;
+                        int condEnd2 = findMatchingParen(content, condStart2);
+                        if (condEnd2 == -1) break;
 
-            for (String line : lines) {
-                if (line.contains("}")) {
-                    if (inRouteObject && currentPath != null && currentName != null) {
-                        String normalizedPath = currentPath;
-                        if (normalizedPath.endsWith("/*")) {
-                            normalizedPath = normalizedPath.substring(0, normalizedPath.length() - 2);
+                        blockStart = content.indexOf("{", condEnd2);
+                    } else {
+                        branchLabel = "group_" + groupIndex + "_else";
+                        blockStart = content.indexOf("{", elsePos);
+                    }
+
+                    if (blockStart == -1 || blockStart - elsePos > 50) {
+                        break;
+                    }
+
+                    int blockEnd = findMatchingBrace(content, blockStart);
+                    if (blockEnd == -1) {
+                        break;
+                    }
+
+                    String branchBlock = content.substring(blockStart + 1, blockEnd);
+                    Matcher branchPathMatcher = RegexPatterns.PATH_PROPERTY.matcher(branchBlock);
+                    while (branchPathMatcher.find()) {
+                        String path = branchPathMatcher.group(1);
+                        if (path != null && !path.isBlank()) {
+                            String fullPath = path.startsWith("/") ? path : "/" + path;
+                            pageGroups.put(fullPath, branchLabel);
                         }
-                        routeNames.put(normalizedPath, currentName);
-                        currentPath = null;
-                        currentName = null;
-                        inRouteObject = false;
                     }
-                }
 
-                Pattern pathPattern = Pattern.compile("path\\s*:\\s*['\"`]([^'\"`]+)['\"`]");
-                Matcher pathMatcher = pathPattern.matcher(line);
-                if (pathMatcher.find()) {
-                    currentPath = pathMatcher.group(1);
-                    inRouteObject = true;
-                }
+                    if (branchBlock.contains("...baseMenu") && !baseMenuPaths.isEmpty()) {
+                        for (String baseMenuPath : baseMenuPaths) {
+                            if (!pageGroups.containsKey(baseMenuPath)) {
+                                pageGroups.put(baseMenuPath, branchLabel);
+                            }
+                        }
+                    }
 
-                Pattern namePattern = Pattern.compile("name\\s*:\\s*['\"`]([^'\"`]+)['\"`]");
-                Matcher nameMatcher = namePattern.matcher(line);
-                if (nameMatcher.find() && inRouteObject) {
-                    currentName = nameMatcher.group(1);
+                    currentPos = blockEnd + 1;
+                    if (!isElseIf) {
+                        break;
+                    }
                 }
+
+                groupIndex++;
+                pos = currentPos;
             }
+        }
 
-        } catch (Exception e) {
-            System.err.println("[extractRouteNamesFromConfig] Error: " + e.getMessage());
+        if (!pageGroups.isEmpty()) {
+            log.info("[Canonicalization] Detected conditional page groups:");
+            Map<String, List<String>> groupedPaths = new HashMap<>();
+            for (Map.Entry<String, String> entry : pageGroups.entrySet()) {
+                groupedPaths.computeIfAbsent(entry.getValue(), k -> new ArrayList<>()).add(entry.getKey());
+            }
+            for (Map.Entry<String, List<String>> entry : groupedPaths.entrySet()) {
+                log.info("  {}: {}", entry.getKey(), entry.getValue());
+            }
         }
 
-        return routeNames;
+        return pageGroups;
     }
 
-    private boolean edgeExists(List<Edge> edges, Edge e) {
-        for (Edge old : edges) {
-            if (old.getFrom().equals(e.getFrom()) &&
-                old.getSelector().equals(e.getSelector()) &&
-                old.getEvent().equals(e.getEvent()) &&
-                old.getTo().equals(e.getTo())) {
-                return true;
+    private int findMatchingParen(String content, int start) {
+        int depth = 1;
+        for (int i = start + 1; i < content.length(); i++) {
+            char c = content.charAt(i);
+            if (c == '(') depth++;
+            else if (c == ')') {
+                depth--;
+                if (depth == 0) return i;
             }
         }
-        return false;
+        return -1;
     }
 
-    private String normalizeEventType(String eventType) {
-        if (eventType == null || eventType.isBlank()) {
-            return "click";
-        }
-
-        String normalized = eventType.toLowerCase().trim();
-        if (normalized.equals("click") ||
-            normalized.equals("submit") ||
-            normalized.equals("redirect") ||
-            normalized.equals("route") ||
-            normalized.equals("child")) {
-            return normalized;
+    private int findMatchingBrace(String content, int start) {
+        int depth = 1;
+        for (int i = start + 1; i < content.length(); i++) {
+            char c = content.charAt(i);
+            if (c == '{') depth++;
+            else if (c == '}') {
+                depth--;
+                if (depth == 0) return i;
+            }
         }
-        return "click";
+        return -1;
     }
 
-    private String normalizeRouteTarget(String rawTo) {
-        if (rawTo == null || rawTo.isBlank()) {
-            return rawTo;
+    private boolean isCrossGroupEdge(Edge edge, Map<String, String> pageGroups) {
+        if (pageGroups.isEmpty()) {
+            return false;
         }
 
-        if (routeTable.exists(rawTo)) {
-            return rawTo;
+        String fromGroup = pageGroups.get(edge.getFrom());
+        String toGroup = pageGroups.get(edge.getTo());
+
+        if (fromGroup != null && toGroup != null && !fromGroup.equals(toGroup)) {
+            return true;
         }
 
-        Set<String> allPaths = routeTable.getAllPaths();
-        if (allPaths == null || allPaths.isEmpty()) {
-            return rawTo;
+        return false;
+    }
+
+    private String extractTextFromSelector(String selector) {
+        if (selector == null) {
+            return null;
         }
-        for (String p : allPaths) {
-            if (p != null && p.equalsIgnoreCase(rawTo)) {
-                return p;
+
+        // Match has-text('...') pattern
+        int start = selector.indexOf(":has-text('");
+        if (start == -1) {
+            start = selector.indexOf(":has-text(\"");
+            if (start == -1) {
+                return null;
+            }
+            start += ":has-text(\"".length();
+            int end = selector.indexOf("\")", start);
+            if (end == -1) {
+                return null;
             }
+            return selector.substring(start, end);
         }
 
-        String suffix = rawTo.startsWith("/") ? rawTo : "/" + rawTo;
-        String candidate = null;
+        start += ":has-text('".length();
+        int end = selector.indexOf("')", start);
+        if (end == -1) {
+            return null;
+        }
+        return selector.substring(start, end);
+    }
 
-        for (String p : allPaths) {
-            if (p != null && p.endsWith(suffix)) {
-                if (candidate == null) {
-                    candidate = p;
-                } else {
-                    return rawTo;
-                }
-            }
+    private boolean shouldKeepSelfLoopEdge(Edge edge) {
+        String selector = edge.getSelector();
+        if (selector == null) return false;
+
+        if (RegexPatterns.EL_MENU_HAS_TEXT_SELECTOR.matcher(selector).matches()) {
+            return false;
         }
 
-        if (candidate != null) {
-            return candidate;
+        if (selector.equals(".el-dropdown")) {
+            return false;
         }
 
-        String normalized = rawTo.startsWith("/") ? rawTo : "/" + rawTo;
-        for (String p : allPaths) {
-            if (p == null) continue;
+        if (selector.contains(".el-dropdown-menu__item")) {
+            return false;
+        }
 
-            String[] normalizedParts = normalized.split("/");
-            String[] pathParts = p.split("/");
+        return true;
+    }
 
-            if (pathParts.length == normalizedParts.length + 1) {
-                boolean matches = true;
-                for (int i = 0; i < normalizedParts.length; i++) {
-                    if (!normalizedParts[i].equals(pathParts[i])) {
-                        matches = false;
-                        break;
-                    }
-                }
-                if (matches && pathParts[pathParts.length - 1].startsWith(":")) {
-                    if (candidate == null) {
-                        candidate = p;
-                    } else {
-                        return rawTo;
-                    }
-                }
+    private String extractSubMenuTextFromSource(String sourceFilePath) {
+        return analysisCache.get(sourceFilePath, "subMenuText", () -> computeSubMenuTextFromSource(sourceFilePath));
+    }
+
+    private String computeSubMenuTextFromSource(String sourceFilePath) {
+        try {
+            VueFile targetFile = fileIndex.get(sourceFilePath);
+            if (targetFile == null) {
+                return null;
             }
-        }
 
-        return candidate != null ? candidate : rawTo;
+            return targetFile.getLexicalIndex().getSubMenuText();
+        } catch (Exception e) {
+            return null;
+        }
     }
 
 
-    private void canonicalizeEdges(StructureGraph graph) {
-        if (graph == null || graph.getEdges() == null || graph.getEdges().isEmpty()) {
-            return;
-        }
+    private String normalizeOrCondition(String condition) {
+        Matcher matcher = RegexPatterns.OR_EQUALITY_CHAIN.matcher(condition);
 
-        List<Edge> edges = graph.getEdges();
-        for (Edge e : edges) {
-            String selector = e.getSelector();
+        if (matcher.find()) {
+            String variable = matcher.group(1);
+            List<String> values = new ArrayList<>();
 
-            if (selector != null && selector.equals(".el-submenu") && e.getSourceFile() != null) {
-                String text = extractSubMenuTextFromSource(e.getSourceFile());
-                if (text != null) {
-                    e.setSelector(".el-submenu:has-text('" + text + "')");
-                    e.setRawAstSelector(".el-submenu:has-text('" + text + "')");
-                }
+            Matcher valueMatcher = RegexPatterns.cached(variable + "===(['\"])([^'\"]+)\\1").matcher(condition);
+
+            while (valueMatcher.find()) {
+                values.add(valueMatcher.group(2));
             }
-        }
 
-        for (Edge e : edges) {
-            String selector = e.getSelector();
-            if (selector != null && selector.startsWith("router-link:")) {
-                String newSelector = selector.replace("router-link:", "a:");
-                e.setSelector(newSelector);
-                if (e.getRawAstSelector() != null && e.getRawAstSelector().startsWith("router-link:")) {
-                    e.setRawAstSelector(e.getRawAstSelector().replace("router-link:", "a:"));
-                }
+            if (values.size() > 1) {
+                return variable + " in [" + values.stream()
+                    .map(v -> "'" + v + "'")
+                    .collect(java.util.stream.Collectors.joining(",")) + "]";
             }
         }
 
-        for (Edge e : edges) {
-            if (e.getCondition() != null && !e.getCondition().isBlank()) {
-                String condition = e.getCondition();
+        return condition;
+    }
 
-                condition = condition.replace("this.$store.state.", "store.");
-                condition = condition.replace("this.$store.", "store.");
-                condition = normalizeOrCondition(condition);
+    private Set<String> findAllRoutesUsingComponent(
+            String componentPath,
+            Map<String, List<String>> componentImports,
+            Map<String, List<String>> componentToAllDirectRoutes,
+            Map<String, List<String>> routeChildren,
+            Map<String, Map<String, String>> componentConditionsMap,
+            Set<String> visited) {
 
-                e.setCondition(condition);
+        Set<String> routes = new LinkedHashSet<>();
+
+        boolean isDebug = log.isTraceEnabled();
+
+        if (visited.contains(componentPath)) {
+            if (isDebug) {
+                log.trace("[DEBUG] {} already visited, skipping", componentPath);
             }
+            return routes;
         }
+        visited.add(componentPath);
 
-        Map<String, List<Edge>> grouped = new LinkedHashMap<>();
-        for (Edge edge : edges) {
-            String groupKey = edge.getFrom() + "|" + edge.getTo() + "|" + edge.getEvent();
-            grouped.computeIfAbsent(groupKey, k -> new ArrayList<>()).add(edge);
+        if (isDebug) {
+            log.trace("[DEBUG] Processing {}", componentPath);
         }
+        if (componentToAllDirectRoutes.containsKey(componentPath)) {
+            List<String> parentRoutes = componentToAllDirectRoutes.get(componentPath);
+            Map<String, String> redirects = routeTable.getRedirects();
+            Map<String, Integer> pathDefinitionCount = routeTable.getPathDefinitionCount();
 
-        List<Edge> deduplicated = new ArrayList<>();
-
-        for (List<Edge> group : grouped.values()) {
-            Set<String> seen = new HashSet<>();
-            List<Edge> uniqueEdges = new ArrayList<>();
-
-            for (Edge edge : group) {
-                String key = edge.getSelector();
-                if (!seen.contains(key)) {
-                    seen.add(key);
-                    uniqueEdges.add(edge);
-                }
-            }
+            for (String parentRoute : parentRoutes) {
+                routes.add(parentRoute);
 
-            if (uniqueEdges.size() > 1) {
-                boolean hasSpecificSelector = false;
-                for (Edge edge : uniqueEdges) {
-                    String selector = edge.getSelector();
-                    if (selector != null && !selector.equals("button") &&
-                        (selector.contains(".") || selector.contains(":has-text") || selector.contains("#"))) {
-                        hasSpecificSelector = true;
-                        break;
-                    }
-                }
+                boolean hasRedirect = redirects != null && redirects.containsKey(parentRoute);
 
-                List<Edge> filtered = new ArrayList<>();
+                if (routeChildren != null && routeChildren.containsKey(parentRoute)) {
+                    List<String> children = routeChildren.get(parentRoute);
+                    if (children != null) {
+                        if (hasRedirect) {
+                            routes.addAll(children);
+                            if (isDebug) {
+                                log.trace("[DEBUG]   Component has redirect: {}, propagating to all children: {}", parentRoute, children);
+                            }
+                        } else {
+                            int defCount = pathDefinitionCount != null && pathDefinitionCount.containsKey(parentRoute)
+                                ? pathDefinitionCount.get(parentRoute) : 1;
 
-                if (hasSpecificSelector) {
-                    for (Edge edge : uniqueEdges) {
-                        if (!edge.getSelector().equals("button")) {
-                            filtered.add(edge);
+                            if (defCount == 1) {
+                                routes.addAll(children);
+                                if (isDebug) {
+                                    log.trace("[DEBUG]   Component path defined once: {}, propagating to all children: {}", parentRoute, children);
+                                }
+                            } else {
+                                if (isDebug) {
+                                    log.trace("[DEBUG]   Component path defined {} times: {}, no propagation to children: {}", defCount, parentRoute, children);
+                                }
+                            }
                         }
                     }
-                } else {
-                    filtered.addAll(uniqueEdges);
                 }
+            }
+        }
 
-                deduplicated.addAll(filtered);
-                boolean hasMenuOrDropdown = false;
-                for (Edge edge : deduplicated) {
-                    String selector = edge.getSelector();
-                    if (selector != null && (selector.contains(".el-menu-item") ||
-                                            selector.contains(".el-dropdown-menu__item"))) {
-                        hasMenuOrDropdown = true;
-                        break;
-                    }
-                }
+        boolean hasParentComponent = false;
+        for (Map.Entry<String, List<String>> entry : componentImports.entrySet()) {
+            String parentComponent = entry.getKey();
+            List<String> imports = entry.getValue();
 
-                if (hasMenuOrDropdown) {
-                    deduplicated.removeIf(edge -> {
-                        String selector = edge.getSelector();
-                        return selector != null && selector.startsWith("router-link:");
-                    });
+            if (imports.contains(componentPath)) {
+                hasParentComponent = true;
+                if (isDebug) {
+                    log.trace("[DEBUG]   Found parent: {}", parentComponent);
                 }
-            } else {
-                deduplicated.addAll(uniqueEdges);
+                Set<String> parentRoutes = findAllRoutesUsingComponent(
+                    parentComponent, componentImports, componentToAllDirectRoutes, routeChildren, componentConditionsMap, visited
+                );
+                if (isDebug) {
+                    log.trace("[DEBUG]   Parent routes: {}", parentRoutes);
+                }
+                routes.addAll(parentRoutes);
             }
         }
-        List<Edge> withoutDuplicateRoutes = new ArrayList<>();
-        Map<String, List<Edge>> byFromTo = new LinkedHashMap<>();
 
-        for (Edge edge : deduplicated) {
-            String key = edge.getFrom() + "|" + edge.getTo();
-            byFromTo.computeIfAbsent(key, k -> new ArrayList<>()).add(edge);
+        if (isDebug) {
+            log.trace("[DEBUG] {} hasParentComponent={}, routes.size={}", componentPath, hasParentComponent, routes.size());
         }
 
-        for (List<Edge> group : byFromTo.values()) {
-            if (group.size() == 1) {
-                withoutDuplicateRoutes.add(group.get(0));
-            } else {
-                Edge routeEdge = null;
-                List<Edge> submenuItemEdges = new ArrayList<>();
-                List<Edge> menuItemEdges = new ArrayList<>();
-                List<Edge> aTagEdges = new ArrayList<>();
-                List<Edge> otherEdges = new ArrayList<>();
-
-                List<Edge> dropdownItemEdges = new ArrayList<>();
-                List<Edge> genericButtonEdges = new ArrayList<>();
-
-                for (Edge edge : group) {
-                    String selector = edge.getSelector();
-                    if ("route".equals(edge.getEvent()) && "-".equals(selector)) {
-                        routeEdge = edge;
-                    } else if (selector != null && selector.contains(".el-dropdown-menu__item")) {
-                        dropdownItemEdges.add(edge);
-                    } else if (selector != null && selector.contains(".el-submenu") && selector.contains(".el-menu-item")) {
-                        submenuItemEdges.add(edge);
-                    } else if (selector != null && selector.contains(".el-menu-item")) {
-                        menuItemEdges.add(edge);
-                    } else if (selector != null && selector.startsWith("a:has-text")) {
-                        aTagEdges.add(edge);
-                    } else if (selector != null && selector.matches("^button(:has-text\\(.*\\))?$")) {
-                        genericButtonEdges.add(edge);
-                    } else {
-                        otherEdges.add(edge);
-                    }
-                }
+        if (hasParentComponent && routes.isEmpty()) {
+            Set<String> allRoutes = routeTable.getAllPaths();
+            Map<String, String> redirects = routeTable.getRedirects();
 
-                if (routeEdge != null) {
-                    withoutDuplicateRoutes.add(routeEdge);
-                }
+            String componentName = extractComponentName(componentPath);
+            Set<String> excludedRoutes = new HashSet<>();
 
-                if (!dropdownItemEdges.isEmpty()) {
-                    withoutDuplicateRoutes.addAll(dropdownItemEdges);
-                    withoutDuplicateRoutes.addAll(otherEdges);
-                } else if (!aTagEdges.isEmpty() && (!menuItemEdges.isEmpty() || !submenuItemEdges.isEmpty())) {
-                    withoutDuplicateRoutes.addAll(aTagEdges);
-                    withoutDuplicateRoutes.addAll(otherEdges);
-                } else if (!submenuItemEdges.isEmpty()) {
-                    withoutDuplicateRoutes.addAll(submenuItemEdges);
-                    withoutDuplicateRoutes.addAll(otherEdges);
-                } else if (!menuItemEdges.isEmpty()) {
-                    withoutDuplicateRoutes.addAll(menuItemEdges);
-                    withoutDuplicateRoutes.addAll(otherEdges);
-                } else if (!aTagEdges.isEmpty()) {
-                    withoutDuplicateRoutes.addAll(aTagEdges);
-                    withoutDuplicateRoutes.addAll(otherEdges);
-                } else if (!genericButtonEdges.isEmpty()) {
-                    withoutDuplicateRoutes.addAll(genericButtonEdges);
-                    withoutDuplicateRoutes.addAll(otherEdges);
-                } else {
-                    for (Edge edge : group) {
-                        if (edge != routeEdge) {
-                            withoutDuplicateRoutes.add(edge);
+            for (Map.Entry<String, List<String>> entry : componentImports.entrySet()) {
+                String parentComp = entry.getKey();
+                if (entry.getValue().contains(componentPath)) {
+                    Map<String, String> parentConditions = componentConditionsMap.get(parentComp);
+                    if (parentConditions != null) {
+                        String condition = parentConditions.get(componentName);
+                        if ("v-else".equals(condition)) {
+                            VueFile parentFile = findVueFileByPath(parentComp);
+                            if (parentFile != null && parentFile.getContent() != null) {
+                                String content = parentFile.getContent();
+                                Matcher m = RegexPatterns.ROUTE_NAME_V_IF.matcher(content);
+                                while (m.find()) {
+                                    String routeName = m.group(2);
+                                    for (String r : allRoutes) {
+                                        if (r.toLowerCase().contains("/" + routeName.toLowerCase())) {
+                                            excludedRoutes.add(r);
+                                        }
+                                    }
+                                }
+                            }
                         }
                     }
                 }
             }
-        }
-
-        List<Edge> withoutAutoRedirect = new ArrayList<>();
-        for (Edge edge : withoutDuplicateRoutes) {
-            // Filter out auto-redirect edges: from="/*" and selector="-"
-            if ("/*".equals(edge.getFrom()) && "-".equals(edge.getSelector())) {
-                System.out.println("[Canonicalization] Filtered auto-redirect edge: " + edge.getFrom() + " -> " + edge.getTo());
-                continue;
-            }
 
-            if ("route".equals(edge.getEvent())) {
-                System.out.println("[Canonicalization] Filtered route config edge: " +
-                    edge.getFrom() + " -> " + edge.getTo());
-                continue;
-            }
-
-            withoutAutoRedirect.add(edge);
-        }
-
-        List<Edge> withoutRedundantPrefix = new ArrayList<>();
-        Map<String, List<Edge>> byFromToText = new LinkedHashMap<>();
-
-        for (Edge edge : withoutAutoRedirect) {
-            String selector = edge.getSelector();
-            if (selector == null) {
-                withoutRedundantPrefix.add(edge);
-                continue;
-            }
-
-            boolean isElementUISelector = selector.startsWith(".el-") ||
-                                         selector.contains(".el-submenu ") ||
-                                         selector.contains(".el-sub-menu ");
-
-            if (!isElementUISelector) {
-                withoutRedundantPrefix.add(edge);
-                continue;
-            }
-            String text = extractTextFromSelector(selector);
-
-            String baseSelector = selector;
-            if (selector.startsWith(".el-submenu ")) {
-                baseSelector = selector.substring(".el-submenu ".length());
-            } else if (selector.startsWith(".el-sub-menu ")) {
-                baseSelector = selector.substring(".el-sub-menu ".length());
-            }
-
-            String key = edge.getFrom() + "|" + edge.getTo() + "|" + (text != null ? text : "") + "|" + baseSelector;
-            byFromToText.computeIfAbsent(key, k -> new ArrayList<>()).add(edge);
-        }
-
-        for (List<Edge> group : byFromToText.values()) {
-            if (group.size() == 1) {
-                withoutRedundantPrefix.add(group.get(0));
-            } else {
-                String from = group.get(0).getFrom();
-                String to = group.get(0).getTo();
+            for (String route : allRoutes) {
+                if (redirects != null && redirects.containsKey(route)) {
+                    continue;
+                }
+                if (excludedRoutes.contains(route)) {
+                    continue;
+                }
 
-                if (from.equals(to)) {
-                    Edge bestEdge = null;
-                    for (Edge edge : group) {
-                        String selector = edge.getSelector();
-                        if (selector.contains(".el-submenu ") || selector.contains(".el-sub-menu ")) {
-                            bestEdge = edge;
-                            break;
-                        }
-                    }
-                    if (bestEdge == null) {
-                        bestEdge = group.get(0);
-                    }
-                    withoutRedundantPrefix.add(bestEdge);
-                } else {
-                    Edge bestEdge = null;
-                    for (Edge edge : group) {
-                        String selector = edge.getSelector();
-                        if (!selector.contains(".el-submenu ") && !selector.contains(".el-sub-menu ")) {
-                            bestEdge = edge;
-                            break;
-                        }
+                if (componentPath.contains("TabBar") || componentPath.contains("BottomNav") ||
+                    componentPath.contains("Navigation") || componentPath.contains("NavBar")) {
+                    if (route.contains(":")) {
+                        continue;
                     }
-                    if (bestEdge == null) {
-                        bestEdge = group.get(0);
+                    String routeLower = route.toLowerCase();
+                    if (routeLower.contains("/confirm") || routeLower.contains("/detail") ||
+                        routeLower.contains("/edit") || routeLower.contains("/add")) {
+                        continue;
                     }
-                    withoutRedundantPrefix.add(bestEdge);
                 }
-            }
-        }
 
-        List<Edge> withoutCrossGroup = new ArrayList<>();
-        int crossGroupCount = 0;
-
-        Map<String, String> pageGroups = analyzeConditionalPageGroups();
-
-        for (Edge edge : withoutRedundantPrefix) {
-            if (isCrossGroupEdge(edge, pageGroups)) {
-                crossGroupCount++;
-                System.out.println("[Canonicalization] Filtered cross-group edge: " +
-                    edge.getFrom() + " -> " + edge.getTo() +
-                    " (" + pageGroups.get(edge.getFrom()) + " -> " + pageGroups.get(edge.getTo()) + ")");
-                continue;
+                routes.add(route);
             }
-
-            withoutCrossGroup.add(edge);
         }
 
-        if (crossGroupCount > 0) {
-            System.out.println("[Canonicalization] Filtered " + crossGroupCount + " cross-group edges");
-        }
+        return routes;
+    }
 
-        List<Edge> filtered = new ArrayList<>();
 
-        for (Edge edge : withoutCrossGroup) {
-            if (!edge.getFrom().equals(edge.getTo())) {
-                filtered.add(edge);
-                continue;
-            }
-            if (shouldKeepSelfLoopEdge(edge)) {
-                filtered.add(edge);
-            }
+    private String extractComponentName(String componentPath) {
+        if (componentPath == null || componentPath.isEmpty()) {
+            return null;
         }
 
-        graph.setEdges(filtered);
+        int lastSlash = componentPath.lastIndexOf('/');
+        String fileName = lastSlash >= 0 ? componentPath.substring(lastSlash + 1) : componentPath;
+        int lastDot = fileName.lastIndexOf('.');
+        return lastDot > 0 ? fileName.substring(0, lastDot) : fileName;
     }
 
 
-    private Map<String, String> analyzeConditionalPageGroups() {
-        Map<String, String> pageGroups = new HashMap<>();
+    private VueFile findVueFileByPath(String path) {
+        return fileIndex.get(path);
+    }
 
-        System.out.println("[Canonicalization] Analyzing conditional page groups from " +
-            (vueFiles != null ? vueFiles.size() : 0) + " Vue files...");
-        for (VueFile file : vueFiles) {
-            if (!hasConditionalMenuRendering(file)) {
-                continue;
-            }
 
-            System.out.println("[Canonicalization] Found conditional menu in: " + file.getPath());
-            String content = file.getContent();
+    private String resolveComponentPath(String currentFilePath, String importPath) {
+        if (importPath == null || importPath.isEmpty()) {
+            return null;
+        }
 
-            List<String> baseMenuPaths = new ArrayList<>();
-            Pattern baseMenuPattern = Pattern.compile("const\\s+baseMenu\\s*=\\s*\\[");
-            Matcher baseMenuMatcher = baseMenuPattern.matcher(content);
-            if (baseMenuMatcher.find()) {
-                int baseMenuStart = baseMenuMatcher.end() - 1;
-                int baseMenuEnd = findMatchingBracket(content, baseMenuStart);
-                if (baseMenuEnd != -1) {
-                    String baseMenuContent = content.substring(baseMenuStart + 1, baseMenuEnd);
-                    Pattern pathPattern = Pattern.compile("path\\s*:\\s*['\"]([^'\"]+)['\"]");
-                    Matcher pathMatcher = pathPattern.matcher(baseMenuContent);
-                    while (pathMatcher.find()) {
-                        String path = pathMatcher.group(1);
-                        if (path != null && !path.isBlank()) {
-                            String fullPath = path.startsWith("/") ? path : "/" + path;
-                            baseMenuPaths.add(fullPath);
-                        }
-                    }
-                    if (!baseMenuPaths.isEmpty()) {
-                        System.out.println("[Canonicalization] Found baseMenu with paths: " + baseMenuPaths);
-                    }
+        if (importPath.startsWith("@/")) {
+            if (currentFilePath.startsWith("src/")) {
+                String resolved = "src/" + importPath.substring(2);
+                if (!resolved.endsWith(".vue") && !resolved.endsWith(".ts") && !resolved.endsWith(".js")) {
+                    resolved += ".vue";
                 }
+                return resolved;
             }
 
-            int groupIndex = 0;
-            int pos = 0;
-            while (pos < content.length()) {
-                int ifPos = content.indexOf("if", pos);
-                if (ifPos == -1) break;
-                if (ifPos > 0) {
-                    char prevChar = content.charAt(ifPos - 1);
-                    if (Character.isLetterOrDigit(prevChar)) {
-                        pos = ifPos + 2;
-                        continue;
-                    }
-                }
-
-                int condStart = content.indexOf("(", ifPos);
-                if (condStart == -1 || condStart - ifPos > 10) {
-                    pos = ifPos + 2;
-                    continue;
-                }
-
-                int condEnd = findMatchingParen(content, condStart);
-                if (condEnd == -1) {
-                    pos = ifPos + 2;
-                    continue;
-                }
-                int ifBlockStart = content.indexOf("{", condEnd);
-                if (ifBlockStart == -1 || ifBlockStart - condEnd > 20) {
-                    pos = ifPos + 2;
-                    continue;
+            int srcIndex = currentFilePath.indexOf("/src/");
+            if (srcIndex != -1) {
+                String projectRoot = currentFilePath.substring(0, srcIndex);
+                String resolved = projectRoot + "/src/" + importPath.substring(2);
+                if (!resolved.endsWith(".vue") && !resolved.endsWith(".ts") && !resolved.endsWith(".js")) {
+                    resolved += ".vue";
                 }
+                return resolved;
+            }
+        }
 
-                int ifBlockEnd = findMatchingBrace(content, ifBlockStart);
-                if (ifBlockEnd == -1) {
-                    pos = ifPos + 2;
-                    continue;
-                }
+        if (importPath.startsWith("./") || importPath.startsWith("../")) {
+            int lastSlash = currentFilePath.lastIndexOf('/');
+            if (lastSlash == -1) {
+                return null;
+            }
+            String currentDir = currentFilePath.substring(0, lastSlash);
 
-                String ifBlock = content.substring(ifBlockStart + 1, ifBlockEnd);
-                boolean hasMenuContent = ifBlock.contains("this.items") ||
-                                        ifBlock.contains("this.menuList") ||
-                                        ifBlock.contains("this.menus") ||
-                                        ifBlock.contains("this.menuItems") ||
-                                        ifBlock.contains("return [") ||
-                                        ifBlock.contains("path:") ||
-                                        ifBlock.contains("label:");
+            String[] parts = importPath.split("/");
+            String resolvedDir = currentDir;
 
-                if (!hasMenuContent) {
-                    pos = ifBlockEnd + 1;
+            for (String part : parts) {
+                if (part.equals(".")) {
                     continue;
-                }
-
-                Pattern pathPattern = Pattern.compile("path\\s*:\\s*['\"]([^'\"]+)['\"]");
-                Matcher ifPathMatcher = pathPattern.matcher(ifBlock);
-                while (ifPathMatcher.find()) {
-                    String path = ifPathMatcher.group(1);
-                    if (path != null && !path.isBlank()) {
-                        String fullPath = path.startsWith("/") ? path : "/" + path;
-                        pageGroups.put(fullPath, "group_" + groupIndex + "_if");
-                    }
-                }
-                if (ifBlock.contains("...baseMenu") && !baseMenuPaths.isEmpty()) {
-                    for (String baseMenuPath : baseMenuPaths) {
-                        if (!pageGroups.containsKey(baseMenuPath)) {
-                            pageGroups.put(baseMenuPath, "group_" + groupIndex + "_if");
-                        }
+                } else if (part.equals("..")) {
+                    int prevSlash = resolvedDir.lastIndexOf('/');
+                    if (prevSlash != -1) {
+                        resolvedDir = resolvedDir.substring(0, prevSlash);
                     }
+                } else {
+                    resolvedDir = resolvedDir + "/" + part;
                 }
+            }
+            if (!resolvedDir.endsWith(".vue")) {
+                resolvedDir += ".vue";
+            }
 
-                int currentPos = ifBlockEnd + 1;
-                int branchIndex = 0;
-                while (currentPos < content.length()) {
-                    String remaining = content.substring(currentPos, Math.min(currentPos + 30, content.length())).trim();
-                    if (!remaining.startsWith("else")) {
-                        break;
-                    }
-
-                    int elsePos = content.indexOf("else", currentPos);
-                    if (elsePos == -1) break;
-                    String afterElse = content.substring(elsePos + 4, Math.min(elsePos + 20, content.length())).trim();
-                    boolean isElseIf = afterElse.startsWith("if");
-
-                    String branchLabel;
-                    int blockStart;
+            return resolvedDir;
+        }
 
-                    if (isElseIf) {
-                        branchLabel = "group_" + groupIndex + "_elseif" + branchIndex;
-                        branchIndex++;
-                        int ifPos2 = content.indexOf("if", elsePos);
-                        int condStart2 = content.indexOf("(", ifPos2);
-                        if (condStart2 == -1) break;
+        return null;
+    }
 
-                        int condEnd2 = findMatchingParen(content, condStart2);
-                        if (condEnd2 == -1) break;
+    private void mergeGraph(StructureGraph global, StructureGraph partial) {
+        for (PageNode n : partial.getNodes()) {
+            boolean exists = global.getNodes().stream()
+                    .anyMatch(x -> x.getName().equals(n.getName()));
+            if (!exists) {
+                global.getNodes().add(n);
+            }
+        }
 
-                        blockStart = content.indexOf("{", condEnd2);
-                    } else {
-                        branchLabel = "group_" + groupIndex + "_else";
-                        blockStart = content.indexOf("{", elsePos);
-                    }
+        for (Edge e : partial.getEdges()) {
+            if (e.getFrom() == null || e.getFrom().isBlank()) continue;
+            if (e.getSelector() == null || e.getSelector().isBlank()) continue;
+            if (e.getEvent() == null || e.getEvent().isBlank()) continue;
+            if (e.getTo() == null || e.getTo().isBlank()) continue;
 
-                    if (blockStart == -1 || blockStart - elsePos > 50) {
-                        break;
-                    }
+            boolean exists = global.getEdges().stream().anyMatch(old ->
+                    old.getFrom().equals(e.getFrom())
+                            && old.getSelector().equals(e.getSelector())
+                            && old.getEvent().equals(e.getEvent())
+                            && old.getTo().equals(e.getTo())
+            );
 
-                    int blockEnd = findMatchingBrace(content, blockStart);
-                    if (blockEnd == -1) {
-                        break;
-                    }
+            if (!exists) {
+                global.getEdges().add(e);
+            }
+        }
+    }
 
-                    String branchBlock = content.substring(blockStart + 1, blockEnd);
-                    Matcher branchPathMatcher = pathPattern.matcher(branchBlock);
-                    while (branchPathMatcher.find()) {
-                        String path = branchPathMatcher.group(1);
-                        if (path != null && !path.isBlank()) {
-                            String fullPath = path.startsWith("/") ? path : "/" + path;
-                            pageGroups.put(fullPath, branchLabel);
-                        }
-                    }
 
-                    if (branchBlock.contains("...baseMenu") && !baseMenuPaths.isEmpty()) {
-                        for (String baseMenuPath : baseMenuPaths) {
-                            if (!pageGroups.containsKey(baseMenuPath)) {
-                                pageGroups.put(baseMenuPath, branchLabel);
-                            }
-                        }
-                    }
+    private void enhanceSelectorFromSource(List<Edge> edges, VueFile vueFile, String routePath) {
+        if (vueFile == null || vueFile.getContent() == null || edges == null) return;
 
-                    currentPos = blockEnd + 1;
-                    if (!isElseIf) {
-                        break;
-                    }
-                }
+        List<EdgeInfo> clickElements = new ArrayList<>();
 
-                groupIndex++;
-                pos = currentPos;
+        for (LexicalIndex.ClickNavigation click : vueFile.getLexicalIndex().getClickNavigations()) {
+            String normalizedTo = normalizeRouteTarget(click.getTarget());
+            if (!routeTable.exists(normalizedTo) || routePath.equals(normalizedTo)) {
+                continue;
             }
+            clickElements.add(new EdgeInfo(normalizedTo, click.getSelector()));
         }
 
-        if (!pageGroups.isEmpty()) {
-            System.out.println("[Canonicalization] Detected conditional page groups:");
-            Map<String, List<String>> groupedPaths = new HashMap<>();
-            for (Map.Entry<String, String> entry : pageGroups.entrySet()) {
-                groupedPaths.computeIfAbsent(entry.getValue(), k -> new ArrayList<>()).add(entry.getKey());
-            }
-            for (Map.Entry<String, List<String>> entry : groupedPaths.entrySet()) {
-                System.out.println("  " + entry.getKey() + ": " + entry.getValue());
-            }
+        Map<String, List<String>> targetToSelectors = new LinkedHashMap<>();
+        for (EdgeInfo info : clickElements) {
+            targetToSelectors.computeIfAbsent(info.target, k -> new ArrayList<>()).add(info.selector);
         }
 
-        return pageGroups;
-    }
+        for (Map.Entry<String, List<String>> entry : targetToSelectors.entrySet()) {
+            String targetRoute = entry.getKey();
+            List<String> selectors = entry.getValue();
 
-    private int findMatchingParen(String content, int start) {
-        int depth = 1;
-        for (int i = start + 1; i < content.length(); i++) {
-            char c = content.charAt(i);
-            if (c == '(') depth++;
-            else if (c == ')') {
-                depth--;
-                if (depth == 0) return i;
-            }
-        }
-        return -1;
-    }
+            edges.removeIf(e ->
+                e.getFrom().equals(routePath) &&
+                e.getTo().equals(targetRoute) &&
+                (e.getSelector().equals("button") || e.getSelector().startsWith("button:has-text"))
+            );
+
+            for (String selector : selectors) {
+                boolean exists = edges.stream().anyMatch(e ->
+                    e.getFrom().equals(routePath) &&
+                    e.getTo().equals(targetRoute) &&
+                    e.getSelector().equals(selector)
+                );
 
-    private int findMatchingBrace(String content, int start) {
-        int depth = 1;
-        for (int i = start + 1; i < content.length(); i++) {
-            char c = content.charAt(i);
-            if (c == '{') depth++;
-            else if (c == '}') {
-                depth--;
-                if (depth == 0) return i;
+                if (!exists) {
+                    Edge newEdge = new Edge();
+                    newEdge.setFrom(routePath);
+                    newEdge.setTo(targetRoute);
+                    newEdge.setEvent("click");
+                    newEdge.setSelector(selector);
+                    newEdge.setRawAstSelector(selector);
+                    newEdge.setSourceFile(vueFile.getPath());
+                    newEdge.setExtractionMethod("AST+LLM");
+                    edges.add(newEdge);
+                    log.debug("[DEBUG] Created edge: {} -> {} [{}]", routePath, targetRoute, selector);
+                }
             }
         }
-        return -1;
     }
 
-    private boolean isCrossGroupEdge(Edge edge, Map<String, String> pageGroups) {
-        if (pageGroups.isEmpty()) {
-            return false;
-        }
-
-        String fromGroup = pageGroups.get(edge.getFrom());
-        String toGroup = pageGroups.get(edge.getTo());
+    private static class EdgeInfo {
+        String target;
+        String selector;
 
-        if (fromGroup != null && toGroup != null && !fromGroup.equals(toGroup)) {
-            return true;
+        EdgeInfo(String target, String selector) {
+            this.target = target;
+            this.selector = selector;
         }
-
-        return false;
     }
 
-    private String extractTextFromSelector(String selector) {
-        if (selector == null) {
-            return null;
-        }
 
-        // Match has-text('...') pattern
-        int start = selector.indexOf(":has-text('");
-        if (start == -1) {
-            start = selector.indexOf(":has-text(\"");
-            if (start == -1) {
-                return null;
-            }
-            start += ":has-text(\"".length();
-            int end = selector.indexOf("\")", start);
-            if (end == -1) {
-                return null;
-            }
-            return selector.substring(start, end);
-        }
+    private class RouterCallExtractor implements EdgeExtractor {
+        @Override
+        public String name() { return "routerCall"; }
 
-        start += ":has-text('".length();
-        int end = selector.indexOf("')", start);
-        if (end == -1) {
-            return null;
-        }
-        return selector.substring(start, end);
-    }
+        @Override
+        public boolean isIndependent() { return true; }
 
-    private boolean shouldKeepSelfLoopEdge(Edge edge) {
-        String selector = edge.getSelector();
-        if (selector == null) return false;
+        @Override
+        public void extract(EdgeExtractor.Context ctx, List<Edge> edges) {
+            String routePath = ctx.routePath;
+            StaticFacts facts = ctx.facts;
+            String sourceFile = ctx.sourceFile;
 
-        if (selector.matches("^\\.el-menu:has-text\\(.*\\)$")) {
-            return false;
-        }
+            if (facts.routerCalls != null && facts.domNodes != null) {
+                HandlerIndex handlerIndex = analysisCache.get(sourceFile, "handlerIndex", () -> new HandlerIndex(facts.domNodes));
+                for (RouterCall rc : facts.routerCalls) {
+                    if (rc == null || rc.argument == null || rc.argument.isBlank()) continue;
 
-        if (selector.equals(".el-dropdown")) {
-            return false;
-        }
+                    String normalizedTo = normalizeRouteTarget(rc.argument);
+                    if (!routeTable.exists(normalizedTo)) {
+                        continue;
+                    }
 
-        if (selector.contains(".el-dropdown-menu__item")) {
-            return false;
-        }
+                    if (sourceFile != null && (sourceFile.contains("Dialog") || sourceFile.contains("Modal"))) {
+                        continue;
+                    }
 
-        return true;
-    }
+                    String handler = rc.handler;
+                    if (handler == null || handler.isBlank()) continue;
 
-    private String extractSubMenuTextFromSource(String sourceFilePath) {
-        try {
-            VueFile targetFile = null;
-            for (VueFile file : vueFiles) {
-                if (file.getPath().equals(sourceFilePath)) {
-                    targetFile = file;
-                    break;
-                }
-            }
+                    for (HandlerIndex.Match match : handlerIndex.lookup(handler)) {
+                        DomNode node = match.node;
+                        String eventKey = match.eventKey;
 
-            if (targetFile == null) {
-                return null;
-            }
+                        if (routePath.equals(normalizedTo)) {
+                            if (node.tag == null ||
+                                (!node.tag.equals("el-menu-item") && !node.tag.equals("el-avatar"))) {
+                                continue;
+                            }
+                        }
 
-            String content = targetFile.getContent();
+                        String rawSelector = buildSelectorFromDomNode(node);
+                        if (rawSelector == null || rawSelector.isBlank()) continue;
 
-            Pattern subMenuPattern = Pattern.compile(
-                "<el-sub-menu[^>]*>(.*?)</el-sub-menu>",
-                Pattern.DOTALL
-            );
-            Matcher subMenuMatcher = subMenuPattern.matcher(content);
+                        String eventType = normalizeEventType(eventKey);
 
-            if (subMenuMatcher.find()) {
-                String subMenuContent = subMenuMatcher.group(1);
+                        Edge e = new Edge();
+                        e.setFrom(routePath);
+                        e.setSelector(rawSelector);
+                        e.setEvent(eventType);
+                        e.setTo(normalizedTo);
+                        e.setSelectorKind("TEXT");
 
-                Pattern titlePattern = Pattern.compile(
-                    "<template[^>]*(?:#title|slot=[\"']title[\"'])[^>]*>(.*?)</template>",
-                    Pattern.DOTALL
-                );
-                Matcher titleMatcher = titlePattern.matcher(subMenuContent);
+                        if (node.condition != null && !node.condition.isBlank()) {
+                            e.setCondition(node.condition);
+                        }
 
-                String textContent = null;
-                if (titleMatcher.find()) {
-                    textContent = titleMatcher.group(1);
-                } else {
-                    textContent = subMenuContent;
-                }
-                Pattern spanPattern = Pattern.compile(
-                    "<span[^>]*>([^<]+)</span>"
-                );
-                Matcher spanMatcher = spanPattern.matcher(textContent);
+                        e.setSourceFile(sourceFile);
+                        e.setExtractionMethod("AST");
+                        e.setRawAstSelector(rawSelector);
 
-                if (spanMatcher.find()) {
-                    return spanMatcher.group(1).trim();
+                        if (!edgeExists(edges, e)) {
+                            edges.add(e);
+                        }
+                    }
                 }
             }
-
-            return null;
-        } catch (Exception e) {
-            return null;
         }
     }
 
 
-    private String normalizeOrCondition(String condition) {
-        Pattern pattern = Pattern.compile(
-            "(\\w+)===(['\"])([^'\"]+)\\2(?:\\|\\|\\1===\\2([^'\"]+)\\2)+"
-        );
-        Matcher matcher = pattern.matcher(condition);
+    private class NodeBindingExtractor implements EdgeExtractor {
+        @Override
+        public String name() { return "nodeBinding"; }
 
-        if (matcher.find()) {
-            String variable = matcher.group(1);
-            List<String> values = new ArrayList<>();
+        @Override
+        public boolean isIndependent() { return true; }
 
-            Pattern valuePattern = Pattern.compile(
-                variable + "===(['\"])([^'\"]+)\\1"
-            );
-            Matcher valueMatcher = valuePattern.matcher(condition);
+        @Override
+        public void extract(EdgeExtractor.Context ctx, List<Edge> edges) {
+            String routePath = ctx.routePath;
+            StaticFacts facts = ctx.facts;
+            String sourceFile = ctx.sourceFile;
+            VueFile vueFile = ctx.vueFile;
 
-            while (valueMatcher.find()) {
-                values.add(valueMatcher.group(2));
-            }
+            if (facts.domNodes != null) {
+                for (DomNode node : facts.domNodes) {
+                    if (node == null || node.attrs == null) continue;
 
-            if (values.size() > 1) {
-                return variable + " in [" + values.stream()
-                    .map(v -> "'" + v + "'")
-                    .collect(java.util.stream.Collectors.joining(",")) + "]";
-            }
-        }
+                    String target = null;
+                    String event = "click";
 
-        return condition;
-    }
+                    if (node.attrs.containsKey("to")) {
+                        target = node.attrs.get("to");
 
-    private Set<String> findAllRoutesUsingComponent(
-            String componentPath,
-            Map<String, List<String>> componentImports,
-            Map<String, List<String>> componentToAllDirectRoutes,
-            Map<String, List<String>> routeChildren,
-            Map<String, Map<String, String>> componentConditionsMap,
-            Set<String> visited) {
+                        if (target != null && (target.contains("tab.path") || target.contains("item.path") ||
+                            target.contains("menu.path") || target.contains(".path"))) {
+                            List<MenuItemInfo> menuItems = extractMenuItemsWithContext(vueFile);
 
-        Set<String> routes = new LinkedHashSet<>();
+                            if (!menuItems.isEmpty()) {
+                                for (MenuItemInfo menuItem : menuItems) {
+                                    String routeTarget = menuItem.path;
+                                    String menuText = menuItem.text;
 
-        boolean isDebug = componentPath.contains("NavBar") || componentPath.contains("SideBar");
+                                    if (!routeTable.exists(routeTarget)) {
+                                        continue;
+                                    }
 
-        if (visited.contains(componentPath)) {
-            if (isDebug) {
-                System.out.println("[DEBUG] " + componentPath + " already visited, skipping");
-            }
-            return routes;
-        }
-        visited.add(componentPath);
+                                    String finalSelector;
+                                    String itemClass = menuItem.className != null ? menuItem.className : "el-menu-item";
+                                    if (menuItem.isInSubmenu) {
+                                        String submenuClass = isElementUI2 ? ".el-submenu" : ".el-sub-menu";
+                                        finalSelector = submenuClass + " ." + itemClass + ":has-text('" + menuText + "')";
+                                    } else {
+                                        finalSelector = "." + itemClass + ":has-text('" + menuText + "')";
+                                    }
 
-        if (isDebug) {
-            System.out.println("[DEBUG] Processing " + componentPath);
-        }
-        if (componentToAllDirectRoutes.containsKey(componentPath)) {
-            List<String> parentRoutes = componentToAllDirectRoutes.get(componentPath);
-            Map<String, String> redirects = routeTable.getRedirects();
-            Map<String, Integer> pathDefinitionCount = routeTable.getPathDefinitionCount();
+                                    Edge e = new Edge();
+                                    e.setFrom(routePath);
+                                    e.setSelector(finalSelector);
+                                    e.setEvent("click");
+                                    e.setTo(routeTarget);
+                                    e.setSelectorKind("TEXT");
+                                    e.setSourceFile(sourceFile);
+                                    e.setExtractionMethod("AST");
+                                    e.setRawAstSelector(finalSelector);
+
+                                    if (!edgeExists(edges, e)) {
+                                        edges.add(e);
+                                    }
+                                }
+                                continue;
+                            }
+                            target = null;
+                        }
+                    }
 
-            for (String parentRoute : parentRoutes) {
-                routes.add(parentRoute);
+                    if (target == null && node.attrs.containsKey("index")) {
+                        String indexValue = node.attrs.get("index");
+                        if (indexValue != null && !indexValue.isBlank()) {
+                            if ((indexValue.contains("subItem") || indexValue.contains("item.path") ||
+                                indexValue.contains("child") || indexValue.contains("+")) &&
+                                node.tag != null && node.tag.equals("el-menu-item")) {
+                                String parentRoute = findParentRouteWithChildren(routePath);
+                                if (parentRoute != null) {
+                                    Set<String> children = routeTable.getDirectChildren(parentRoute);
+                                    if (children != null && !children.isEmpty()) {
+                                        Map<String, String> redirects = routeTable.getRedirects();
+                                        String redirectTarget = redirects != null ? redirects.get(parentRoute) : null;
+                                        List<MenuItemInfo> menuItems = extractMenuItemsWithContext(vueFile);
+
+                                        if (!menuItems.isEmpty()) {
+                                            for (MenuItemInfo menuItem : menuItems) {
+                                                String childRoute = menuItem.path;
+                                                String menuText = menuItem.text;
+
+                                                if (routePath.equals(childRoute) && childRoute.equals(redirectTarget)) {
+                                                    continue;
+                                                }
+
+                                                if (!routeTable.exists(childRoute)) {
+                                                    continue;
+                                                }
+
+                                                String finalSelector;
+                                                String itemClass = menuItem.className != null ? menuItem.className : "el-menu-item";
+                                                if (menuItem.isInSubmenu) {
+                                                    String submenuClass = isElementUI2 ? ".el-submenu" : ".el-sub-menu";
+                                                    finalSelector = submenuClass + " ." + itemClass + ":has-text('" + menuText + "')";
+                                                } else {
+                                                    finalSelector = "." + itemClass + ":has-text('" + menuText + "')";
+                                                }
+
+                                                Edge e = new Edge();
+                                                e.setFrom(routePath);
+                                                e.setSelector(finalSelector);
+                                                e.setEvent("click");
+                                                e.setTo(childRoute);
+                                                e.setSelectorKind("INDEX");
+                                                e.setSourceFile(sourceFile);
+                                                e.setExtractionMethod("AST");
+                                                e.setRawAstSelector(finalSelector);
+
+                                                if (!edgeExists(edges, e)) {
+                                                    edges.add(e);
+                                                }
+                                            }
+                                        } else {
+                                            Map<String, String> routeTexts = extractMenuTextsFromVueFile(vueFile);
+
+                                            for (String childRoute : children) {
+                                                if (routePath.equals(childRoute) && childRoute.equals(redirectTarget)) {
+                                                    continue;
+                                                }
+                                                String menuText = routeTexts.get(childRoute);
+                                                if (menuText == null || menuText.isBlank()) {
+                                                    continue;
+                                                }
+
+                                                String rawSelector = buildSelectorFromDomNode(node);
+                                                if (rawSelector == null) continue;
+
+                                                rawSelector = rawSelector + ":has-text('" + menuText + "')";
+
+                                                Edge e = new Edge();
+                                                e.setFrom(routePath);
+                                                e.setSelector(rawSelector);
+                                                e.setEvent("click");
+                                                e.setTo(childRoute);
+                                                e.setSelectorKind("INDEX");
+                                                e.setSourceFile(sourceFile);
+                                                e.setExtractionMethod("AST");
+                                                e.setRawAstSelector(rawSelector);
+
+                                                if (!edgeExists(edges, e)) {
+                                                    edges.add(e);
+                                                }
+                                            }
+                                        }
+                                        continue;
+                                    }
+                                }
+                            }
+                            else if (indexValue.startsWith("/")) {
+                                target = indexValue;
+                            } else {
+                                String candidatePath = "/" + indexValue.substring(0, 1).toUpperCase() + indexValue.substring(1);
+                                if (routeTable.exists(candidatePath)) {
+                                    target = candidatePath;
+                                } else {
+                                    candidatePath = "/" + indexValue;
+                                    if (routeTable.exists(candidatePath)) {
+                                        target = candidatePath;
+                                    }
+                                }
+                            }
+                        }
+                    }
 
-                boolean hasRedirect = redirects != null && redirects.containsKey(parentRoute);
+                    if ((target == null || target.isBlank()) && node.events != null) {
+                        for (String handlerExpr : node.events.values()) {
+                            if (handlerExpr == null) continue;
 
-                if (routeChildren != null && routeChildren.containsKey(parentRoute)) {
-                    List<String> children = routeChildren.get(parentRoute);
-                    if (children != null) {
-                        if (hasRedirect) {
-                            routes.addAll(children);
-                            if (isDebug) {
-                                System.out.println("[DEBUG]   Component has redirect: " + parentRoute + ", propagating to all children: " + children);
+                            String extracted = extractRouteFromInlinePush(handlerExpr);
+                            if (extracted != null && !extracted.isBlank()) {
+                                target = extracted;
+                                break;
                             }
-                        } else {
-                            int defCount = pathDefinitionCount != null && pathDefinitionCount.containsKey(parentRoute)
-                                ? pathDefinitionCount.get(parentRoute) : 1;
 
-                            if (defCount == 1) {
-                                routes.addAll(children);
-                                if (isDebug) {
-                                    System.out.println("[DEBUG]   Component path defined once: " + parentRoute + ", propagating to all children: " + children);
+                            Matcher methodCallMatcher = RegexPatterns.METHOD_CALL_WITH_STRING_ARG.matcher(handlerExpr.trim());
+                            if (methodCallMatcher.find()) {
+                                String methodName = methodCallMatcher.group(1);
+                                String routeArg = methodCallMatcher.group(2);
+
+                                if (routeArg != null && !routeArg.isBlank()) {
+                                    target = routeArg;
+                                    break;
                                 }
-                            } else {
-                                if (isDebug) {
-                                    System.out.println("[DEBUG]   Component path defined " + defCount + " times: " + parentRoute + ", no propagation to children: " + children);
+                            }
+                            if ((target == null || target.isBlank()) && facts.routerCalls != null) {
+                                Matcher methodMatcher = RegexPatterns.METHOD_CALL_NAME.matcher(handlerExpr.trim());
+                                if (methodMatcher.find()) {
+                                    String methodName = methodMatcher.group(1);
+
+                                    for (RouterCall rc : facts.routerCalls) {
+                                        if (rc != null && rc.handler != null && rc.handler.equals(methodName)) {
+                                            if (rc.argument != null && !rc.argument.isBlank()) {
+                                                target = rc.argument;
+                                                break;
+                                            }
+                                        }
+                                    }
+                                    if (target != null && !target.isBlank()) {
+                                        break;
+                                    }
                                 }
                             }
                         }
                     }
-                }
-            }
-        }
 
-        boolean hasParentComponent = false;
-        for (Map.Entry<String, List<String>> entry : componentImports.entrySet()) {
-            String parentComponent = entry.getKey();
-            List<String> imports = entry.getValue();
+                    if ("el-dropdown-item".equals(node.tag)) {
+                        String commandValue = node.attrs.get("command");
+                        if (commandValue != null && !commandValue.isBlank() && facts.routerCalls != null) {
+                            List<String> commandRoutes = new ArrayList<>();
+                            for (RouterCall rc : facts.routerCalls) {
+                                if (rc == null || rc.argument == null) continue;
+                                if (rc.handler != null && rc.handler.toLowerCase().contains("command")) {
+                                    String normalizedRoute = normalizeRouteTarget(rc.argument);
+                                    if (routeTable.exists(normalizedRoute)) {
+                                        commandRoutes.add(normalizedRoute);
+                                    }
+                                }
+                            }
 
-            if (imports.contains(componentPath)) {
-                hasParentComponent = true;
-                if (isDebug) {
-                    System.out.println("[DEBUG]   Found parent: " + parentComponent);
-                }
-                Set<String> parentRoutes = findAllRoutesUsingComponent(
-                    parentComponent, componentImports, componentToAllDirectRoutes, routeChildren, componentConditionsMap, visited
-                );
-                if (isDebug) {
-                    System.out.println("[DEBUG]   Parent routes: " + parentRoutes);
-                }
-                routes.addAll(parentRoutes);
-            }
-        }
+                            String nodeText = node.text != null ? node.text.trim().toLowerCase() : "";
+
+                            if (!commandRoutes.isEmpty()) {
+                                if (nodeText.contains("退出") || nodeText.contains("登出") || nodeText.contains("logout")) {
+                                    target = commandRoutes.stream()
+                                        .filter(r -> r.contains("login"))
+                                        .findFirst()
+                                        .orElse(commandRoutes.get(0));
+                                } else if (nodeText.contains("个人中心") || nodeText.contains("设置") || nodeText.contains("setting")) {
+                                    target = commandRoutes.stream()
+                                        .filter(r -> r.contains("setting"))
+                                        .findFirst()
+                                        .orElse(commandRoutes.get(0));
+                                } else {
+                                    target = commandRoutes.get(0);
+                                }
+                            }
+                        }
+                    }
 
-        if (isDebug) {
-            System.out.println("[DEBUG] " + componentPath + " hasParentComponent=" + hasParentComponent + ", routes.size=" + routes.size());
-        }
+                    if (target == null || target.isBlank()) {
+                        if (node.tag != null && node.tag.equals("el-menu-item")) {
+                            target = routePath;
+                        } else if (node.tag != null && (node.tag.equals("el-submenu") || node.tag.equals("el-sub-menu"))) {
+                            target = routePath;
+                        } else {
+                            continue;
+                        }
+                    }
 
-        if (hasParentComponent && routes.isEmpty()) {
-            Set<String> allRoutes = routeTable.getAllPaths();
-            Map<String, String> redirects = routeTable.getRedirects();
+                    String normalizedTo = normalizeRouteTarget(target);
+                    if (!routeTable.exists(normalizedTo)) {
+                        continue;
+                    }
 
-            String componentName = extractComponentName(componentPath);
-            Set<String> excludedRoutes = new HashSet<>();
+                    if (sourceFile != null && sourceFile.contains("layout") &&
+                        !routePath.equals(normalizedTo)) {
+                        Set<Integer> currentRoles = getRouteRoles(routePath);
+                        Set<Integer> targetRoles = getRouteRoles(normalizedTo);
 
-            for (Map.Entry<String, List<String>> entry : componentImports.entrySet()) {
-                String parentComp = entry.getKey();
-                if (entry.getValue().contains(componentPath)) {
-                    Map<String, String> parentConditions = componentConditionsMap.get(parentComp);
-                    if (parentConditions != null) {
-                        String condition = parentConditions.get(componentName);
-                        if ("v-else".equals(condition)) {
-                            VueFile parentFile = findVueFileByPath(parentComp);
-                            if (parentFile != null && parentFile.getContent() != null) {
-                                String content = parentFile.getContent();
-                                Pattern p = Pattern.compile("v-if\\s*=\\s*['\"]([^'\"]*\\$route\\.name\\s*===?\\s*['\"]([^'\"]+)['\"][^'\"]*)['\"]");
-                                Matcher m = p.matcher(content);
-                                while (m.find()) {
-                                    String routeName = m.group(2);
-                                    for (String r : allRoutes) {
-                                        if (r.toLowerCase().contains("/" + routeName.toLowerCase())) {
-                                            excludedRoutes.add(r);
-                                        }
-                                    }
-                                }
+                        if (log.isTraceEnabled()) {
+                            log.trace("[DEBUG] Role filtering: {} -> {}", routePath, normalizedTo);
+                            log.trace("[DEBUG]   currentRoles: {}", currentRoles);
+                            log.trace("[DEBUG]   targetRoles: {}", targetRoles);
+                        }
+
+                        if (currentRoles != null && !currentRoles.isEmpty() &&
+                            targetRoles != null && !targetRoles.isEmpty()) {
+                            boolean hasCommonRole = currentRoles.stream()
+                                .anyMatch(targetRoles::contains);
+                            if (!hasCommonRole) {
+                                continue;
                             }
                         }
                     }
-                }
-            }
 
-            for (String route : allRoutes) {
-                if (redirects != null && redirects.containsKey(route)) {
-                    continue;
-                }
-                if (excludedRoutes.contains(route)) {
-                    continue;
-                }
+                    if (routePath.equals(normalizedTo)) {
+                        if (node.text == null || node.text.isBlank()) {
+                            continue;
+                        }
+
+                        boolean isNavigationSelfLoop = node.tag != null &&
+                            (node.tag.equals("el-menu-item") ||
+                             node.tag.equals("el-avatar"));
+
+                        if (!isNavigationSelfLoop) {
+                            continue;
+                        }
+                    }
+
+                    String rawSelector = buildSelectorFromDomNode(node);
+                    if (rawSelector == null || rawSelector.isBlank()) continue;
+                    String eventType = normalizeEventType(event);
 
-                if (componentPath.contains("TabBar") || componentPath.contains("BottomNav") ||
-                    componentPath.contains("Navigation") || componentPath.contains("NavBar")) {
-                    if (route.contains(":")) {
-                        continue;
+                    Edge e = new Edge();
+                    e.setFrom(routePath);
+                    e.setSelector(rawSelector);
+                    e.setEvent(eventType);
+                    e.setTo(normalizedTo);
+                    e.setSelectorKind("TEXT");
+
+                    if (node.condition != null && !node.condition.isBlank()) {
+                        e.setCondition(node.condition);
                     }
-                    String routeLower = route.toLowerCase();
-                    if (routeLower.contains("/confirm") || routeLower.contains("/detail") ||
-                        routeLower.contains("/edit") || routeLower.contains("/add")) {
-                        continue;
+
+                    e.setSourceFile(sourceFile);
+                    e.setExtractionMethod("AST");
+                    e.setRawAstSelector(rawSelector);
+
+                    if (!edgeExists(edges, e)) {
+                        log.debug("[AST] Extracted edge: {}", e);
+                        edges.add(e);
                     }
                 }
-
-                routes.add(route);
             }
         }
-
-        return routes;
     }
 
 
-    private String extractComponentName(String componentPath) {
-        if (componentPath == null || componentPath.isEmpty()) {
-            return null;
-        }
+    private class ClickPushSelectorExtractor implements EdgeExtractor {
+        @Override
+        public String name() { return "clickPushSelector"; }
 
-        int lastSlash = componentPath.lastIndexOf('/');
-        String fileName = lastSlash >= 0 ? componentPath.substring(lastSlash + 1) : componentPath;
-        int lastDot = fileName.lastIndexOf('.');
-        return lastDot > 0 ? fileName.substring(0, lastDot) : fileName;
+        @Override
+        public void extract(EdgeExtractor.Context ctx, List<Edge> edges) {
+            enhanceSelectorFromSource(edges, ctx.vueFile, ctx.routePath);
+        }
     }
 
 
-    private VueFile findVueFileByPath(String path) {
-        if (vueFiles == null || path == null) {
-            return null;
-        }
-        for (VueFile file : vueFiles) {
-            if (path.equals(file.getPath())) {
-                return file;
-            }
-        }
-        return null;
-    }
+    private class WindowOpenExtractor implements EdgeExtractor {
+        @Override
+        public String name() { return "windowOpen"; }
 
+        @Override
+        public void extract(EdgeExtractor.Context ctx, List<Edge> edges) {
+            String routePath = ctx.routePath;
+            String sourceFile = ctx.sourceFile;
+            VueFile vueFile = ctx.vueFile;
 
-    private String resolveComponentPath(String currentFilePath, String importPath) {
-        if (importPath == null || importPath.isEmpty()) {
-            return null;
-        }
+            if (vueFile != null && vueFile.getContent() != null && !vueFile.getContent().isBlank()) {
+                LexicalIndex index = vueFile.getLexicalIndex();
 
-        if (importPath.startsWith("@/")) {
-            if (currentFilePath.startsWith("src/")) {
-                String resolved = "src/" + importPath.substring(2);
-                if (!resolved.endsWith(".vue") && !resolved.endsWith(".ts") && !resolved.endsWith(".js")) {
-                    resolved += ".vue";
-                }
-                return resolved;
-            }
+                for (String rawPath : index.getWindowOpenResolveTargets()) {
+                    if (rawPath == null || rawPath.isBlank()) continue;
 
-            int srcIndex = currentFilePath.indexOf("/src/");
-            if (srcIndex != -1) {
-                String projectRoot = currentFilePath.substring(0, srcIndex);
-                String resolved = projectRoot + "/src/" + importPath.substring(2);
-                if (!resolved.endsWith(".vue") && !resolved.endsWith(".ts") && !resolved.endsWith(".js")) {
-                    resolved += ".vue";
-                }
-                return resolved;
-            }
-        }
+                    if (rawPath.endsWith("/")) {
+                        rawPath = rawPath.substring(0, rawPath.length() - 1);
+                    }
 
-        if (importPath.startsWith("./") || importPath.startsWith("../")) {
-            int lastSlash = currentFilePath.lastIndexOf('/');
-            if (lastSlash == -1) {
-                return null;
-            }
-            String currentDir = currentFilePath.substring(0, lastSlash);
+                    String normalizedTo = normalizeRouteTarget(rawPath);
 
-            String[] parts = importPath.split("/");
-            String resolvedDir = currentDir;
+                    Edge e = new Edge();
+                    e.setFrom(routePath);
+                    e.setSelector("button");
+                    e.setEvent("click");
+                    e.setTo(normalizedTo);
+                    e.setSelectorKind("SCRIPT");
 
-            for (String part : parts) {
-                if (part.equals(".")) {
-                    continue;
-                } else if (part.equals("..")) {
-                    int prevSlash = resolvedDir.lastIndexOf('/');
-                    if (prevSlash != -1) {
-                        resolvedDir = resolvedDir.substring(0, prevSlash);
+                    e.setSourceFile(sourceFile);
+                    e.setExtractionMethod("AST");
+                    e.setRawAstSelector("button");
+
+                    if (!edgeExists(edges, e)) {
+                        edges.add(e);
                     }
-                } else {
-                    resolvedDir = resolvedDir + "/" + part;
                 }
-            }
-            if (!resolvedDir.endsWith(".vue")) {
-                resolvedDir += ".vue";
-            }
 
-            return resolvedDir;
-        }
+                for (String rawPath : index.getWindowOpenLiteralTargets()) {
+                    if (rawPath == null || rawPath.isBlank()) continue;
 
-        return null;
-    }
+                    if (rawPath.endsWith("/")) {
+                        rawPath = rawPath.substring(0, rawPath.length() - 1);
+                    }
 
-    private void mergeGraph(StructureGraph global, StructureGraph partial) {
-        for (PageNode n : partial.getNodes()) {
-            boolean exists = global.getNodes().stream()
-                    .anyMatch(x -> x.getName().equals(n.getName()));
-            if (!exists) {
-                global.getNodes().add(n);
-            }
-        }
+                    String normalizedTo = normalizeRouteTarget(rawPath);
 
-        for (Edge e : partial.getEdges()) {
-            if (e.getFrom() == null || e.getFrom().isBlank()) continue;
-            if (e.getSelector() == null || e.getSelector().isBlank()) continue;
-            if (e.getEvent() == null || e.getEvent().isBlank()) continue;
-            if (e.getTo() == null || e.getTo().isBlank()) continue;
+                    Edge e = new Edge();
+                    e.setFrom(routePath);
+                    e.setSelector("button");
+                    e.setEvent("click");
+                    e.setTo(normalizedTo);
+                    e.setSelectorKind("SCRIPT");
+                    e.setSourceFile(sourceFile);
+                    e.setExtractionMethod("AST");
+                    e.setRawAstSelector("button");
 
-            boolean exists = global.getEdges().stream().anyMatch(old ->
-                    old.getFrom().equals(e.getFrom())
-                            && old.getSelector().equals(e.getSelector())
-                            && old.getEvent().equals(e.getEvent())
-                            && old.getTo().equals(e.getTo())
-            );
+                    if (!edgeExists(edges, e)) {
+                        edges.add(e);
+                    }
+                }
 
-            if (!exists) {
-                global.getEdges().add(e);
+                for (String rawPath : index.getWindowOpenTemplateTargets()) {
+                    if (rawPath == null || rawPath.isBlank()) continue;
+
+                    rawPath = RegexPatterns.TEMPLATE_INTERPOLATION.matcher(rawPath).replaceAll("");
+                    if (rawPath.endsWith("/")) {
+                        rawPath = rawPath.substring(0, rawPath.length() - 1);
+                    }
+
+                    String normalizedTo = normalizeRouteTarget(rawPath);
+
+                    Edge e = new Edge();
+                    e.setFrom(routePath);
+                    e.setSelector("button");
+                    e.setEvent("click");
+                    e.setTo(normalizedTo);
+                    e.setSelectorKind("SCRIPT");
+                    e.setSourceFile(sourceFile);
+                    e.setExtractionMethod("AST");
+                    e.setRawAstSelector("button");
+
+                    if (!edgeExists(edges, e)) {
+                        edges.add(e);
+                    }
+                }
             }
         }
     }
 
 
-    private void enhanceSelectorFromSource(List<Edge> edges, VueFile vueFile, String routePath) {
-        if (vueFile == null || vueFile.getContent() == null || edges == null) return;
+    private class SelfLoopMenuExtractor implements EdgeExtractor {
+        @Override
+        public String name() { return "selfLoopMenu"; }
 
-        String content = vueFile.getContent();
+        @Override
+        public void extract(EdgeExtractor.Context ctx, List<Edge> edges) {
+            String routePath = ctx.routePath;
+            StaticFacts facts = ctx.facts;
+            String sourceFile = ctx.sourceFile;
 
-        List<EdgeInfo> clickElements = new ArrayList<>();
+            if (facts.domNodes != null) {
+                for (DomNode node : facts.domNodes) {
+                    if (node == null || node.events == null || node.events.isEmpty()) continue;
 
-        Pattern clickPattern = Pattern.compile(
-            "<(\\w+)([^>]*@click\\s*=\\s*['\"]\\$router\\.push\\(['\"]([^'\"]+)['\"]\\)[^'\"]*['\"][^>]*)>",
-            Pattern.DOTALL
-        );
-        Matcher clickMatcher = clickPattern.matcher(content);
+                    String rawSelector = buildSelectorFromDomNode(node);
+                    if (rawSelector == null || rawSelector.isBlank()) continue;
+                    boolean alreadyProcessed = false;
+                    for (Edge existing : edges) {
+                        if (existing.getFrom().equals(routePath) &&
+                            existing.getSelector().equals(rawSelector)) {
+                            alreadyProcessed = true;
+                            break;
+                        }
+                    }
 
-        while (clickMatcher.find()) {
-            String tag = clickMatcher.group(1);
-            String attrs = clickMatcher.group(2);
-            String targetPath = clickMatcher.group(3);
+                    if (alreadyProcessed) continue;
 
-            String normalizedTo = normalizeRouteTarget(targetPath);
-            if (!routeTable.exists(normalizedTo) || routePath.equals(normalizedTo)) {
-                continue;
-            }
+                    boolean isNavigationSelfLoop = node.tag != null &&
+                        (node.tag.equals("el-menu-item") || node.tag.equals("el-avatar"));
 
-            Pattern classPattern = Pattern.compile("class\\s*=\\s*['\"]([^'\"]+)['\"]");
-            Matcher classMatcher = classPattern.matcher(attrs);
-            String selectorBase = tag;
-            if (classMatcher.find()) {
-                String cls = classMatcher.group(1);
-                if (cls != null && !cls.isBlank()) {
-                    selectorBase = "." + cls.split("\\s+")[0];
-                }
-            }
+                    if (!isNavigationSelfLoop) {
+                        continue;
+                    }
+                    for (Map.Entry<String, String> evt : node.events.entrySet()) {
+                        Edge e = new Edge();
+                        e.setFrom(routePath);
+                        e.setSelector(rawSelector);
+                        e.setEvent(evt.getKey() != null ? evt.getKey() : "click");
+                        e.setTo(routePath);
+                        e.setSelectorKind("TEXT");
 
-            int startPos = clickMatcher.end();
-            String endTag = "</" + tag + ">";
-            int endPos = content.indexOf(endTag, startPos);
-            String selector = selectorBase;
-            if (endPos != -1) {
-                String innerContent = content.substring(startPos, endPos);
-                String text = extractVisibleText(innerContent);
-                if (text != null && !text.isBlank()) {
-                    selector = selectorBase + ":has-text('" + text + "')";
+                        if (node.condition != null && !node.condition.isBlank()) {
+                            e.setCondition(node.condition);
+                        }
+
+                        e.setSourceFile(sourceFile);
+                        e.setExtractionMethod("AST");
+                        e.setRawAstSelector(rawSelector);
+
+                        if (!edgeExists(edges, e)) {
+                            edges.add(e);
+                        }
+
+                        break;
+                    }
                 }
             }
-
-            clickElements.add(new EdgeInfo(normalizedTo, selector));
         }
+    }
 
-        Map<String, List<String>> targetToSelectors = new LinkedHashMap<>();
-        for (EdgeInfo info : clickElements) {
-            targetToSelectors.computeIfAbsent(info.target, k -> new ArrayList<>()).add(info.selector);
-        }
 
-        for (Map.Entry<String, List<String>> entry : targetToSelectors.entrySet()) {
-            String targetRoute = entry.getKey();
-            List<String> selectors = entry.getValue();
+    private class RouteConfigMenuExtractor implements EdgeExtractor {
+        @Override
+        public String name() { return "routeConfigMenu"; }
 
-            edges.removeIf(e ->
-                e.getFrom().equals(routePath) &&
-                e.getTo().equals(targetRoute) &&
-                (e.getSelector().equals("button") || e.getSelector().startsWith("button:has-text"))
-            );
+        @Override
+        public void extract(EdgeExtractor.Context ctx, List<Edge> edges) {
+            String routePath = ctx.routePath;
+            String sourceFile = ctx.sourceFile;
+            VueFile vueFile = ctx.vueFile;
 
-            for (String selector : selectors) {
-                boolean exists = edges.stream().anyMatch(e ->
-                    e.getFrom().equals(routePath) &&
-                    e.getTo().equals(targetRoute) &&
-                    e.getSelector().equals(selector)
-                );
+            if (vueFile != null && vueFile.getContent() != null) {
+                LexicalIndex index = vueFile.getLexicalIndex();
+                boolean hasVForMenuItem = index.contains("v-for") &&
+                                         index.contains("el-menu-item") &&
+                                         (index.contains("route.children") || index.contains("routes"));
 
-                if (!exists) {
-                    Edge newEdge = new Edge();
-                    newEdge.setFrom(routePath);
-                    newEdge.setTo(targetRoute);
-                    newEdge.setEvent("click");
-                    newEdge.setSelector(selector);
-                    newEdge.setRawAstSelector(selector);
-                    newEdge.setSourceFile(vueFile.getPath());
-                    newEdge.setExtractionMethod("AST+LLM");
-                    edges.add(newEdge);
-                    System.out.println("[DEBUG] Created edge: " + routePath + " -> " + targetRoute + " [" + selector + "]");
-                }
-            }
-        }
-    }
+                if (hasVForMenuItem) {
+                    Map<String, String> routeNames = extractRouteNamesFromConfig();
+                    Map<String, List<String>> routeChildren = routeTable.getChildren();
 
-    private static class EdgeInfo {
-        String target;
-        String selector;
+                    if (routeChildren != null && !routeNames.isEmpty()) {
+                        for (Map.Entry<String, List<String>> entry : routeChildren.entrySet()) {
+                            List<String> children = entry.getValue();
 
-        EdgeInfo(String target, String selector) {
-            this.target = target;
-            this.selector = selector;
-        }
-    }
+                            if (children == null || children.isEmpty()) continue;
 
+                            for (String childRoute : children) {
+                                String menuText = routeNames.get(childRoute);
 
-    private String extractVisibleText(String htmlContent) {
-        if (htmlContent == null || htmlContent.isBlank()) return null;
+                                if (menuText != null && !menuText.isBlank()) {
+                                    String selector = ".el-sub-menu .el-menu-item:has-text('" + menuText + "')";
 
-        Pattern textPattern = Pattern.compile(">([^<]+)<");
-        Matcher textMatcher = textPattern.matcher(htmlContent);
+                                    Edge e = new Edge();
+                                    e.setFrom(routePath);
+                                    e.setSelector(selector);
+                                    e.setEvent("click");
+                                    e.setTo(childRoute);
+                                    e.setSelectorKind("TEXT");
+                                    e.setSourceFile(sourceFile);
+                                    e.setExtractionMethod("AST");
+                                    e.setRawAstSelector(selector);
 
-        String longestText = null;
-        int maxLength = 0;
+                                    if (!edgeExists(edges, e)) {
+                                        edges.add(e);
+                                    }
+                                }
+                            }
+                        }
+                    }
+                }
+
+                boolean hasFirstLevelMenuItem = index.contains("v-else-if") &&
+                                               index.contains("!route.hidden") &&
+                                               index.contains("el-menu-item");
+
+                if (hasFirstLevelMenuItem) {
+                    Map<String, String> routeNames = extractRouteNamesFromConfig();
+                    if (routeNames.containsKey("/")) {
+                        String menuText = routeNames.get("/");
+                        if (menuText != null && !menuText.isBlank()) {
+                            String selector = ".el-menu-item:has-text('" + menuText + "')";
+
+                            Edge e = new Edge();
+                            e.setFrom(routePath);
+                            e.setSelector(selector);
+                            e.setEvent("click");
+                            e.setTo("/");
+                            e.setSelectorKind("TEXT");
+                            e.setSourceFile(sourceFile);
+                            e.setExtractionMethod("AST");
+                            e.setRawAstSelector(selector);
+
+                            if (!edgeExists(edges, e)) {
+                                edges.add(e);
+                            }
+                        }
+                    }
 
-        while (textMatcher.find()) {
-            String t = textMatcher.group(1).trim();
-            if (t != null && !t.isBlank()) {
-                if (t.matches(".*[\\u4e00-\\u9fa5a-zA-Z0-9]+.*")) {
-                    if (t.length() > maxLength) {
-                        longestText = t;
-                        maxLength = t.length();
+                    if (routeNames.containsKey("/setting")) {
+                        String menuText = routeNames.get("/setting");
+                        if (menuText != null && !menuText.isBlank()) {
+                            String selector = ".el-menu-item:has-text('" + menuText + "')";
+
+                            Edge e = new Edge();
+                            e.setFrom(routePath);
+                            e.setSelector(selector);
+                            e.setEvent("click");
+                            e.setTo("/setting");
+                            e.setSelectorKind("TEXT");
+                            e.setSourceFile(sourceFile);
+                            e.setExtractionMethod("AST");
+                            e.setRawAstSelector(selector);
+
+                            if (!edgeExists(edges, e)) {
+                                edges.add(e);
+                            }
+                        }
                     }
                 }
             }
         }
+    }
+
 
-        return longestText;
+    private class NestedRouteTransform implements EdgeExtractor {
+        @Override
+        public String name() { return "nestedRouteTransform"; }
+
+        @Override
+        public void extract(EdgeExtractor.Context ctx, List<Edge> edges) {
+            transformNestedRouteEdges(edges, ctx.routePath, ctx.sourceFile);
+        }
     }
 
     private StructureGraph deepCopyGraph(StructureGraph source) {
-        String json = JSON.toJSONString(source);
-        return JSON.parseObject(json, StructureGraph.class);
+        return source.snapshot();
     }
 }
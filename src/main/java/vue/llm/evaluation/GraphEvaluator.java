@@ -2,6 +2,7 @@ package vue.llm.evaluation;
 
 import vue.llm.graph.Edge;
 import vue.llm.graph.StructureGraph;
+import vue.llm.util.RegexPatterns;
 
 import java.util.*;
 
@@ -190,14 +191,13 @@ public class GraphEvaluator {
     private static String normalizeSelector(String selector) {
         if (selector == null) return "";
 
-        java.util.regex.Pattern pattern = java.util.regex.Pattern.compile(":has-text\\(['\"]([^'\"]+)['\"]\\)");
-        java.util.regex.Matcher matcher = pattern.matcher(selector);
+        java.util.regex.Matcher matcher = RegexPatterns.HAS_TEXT_QUOTED.matcher(selector);
 
         if (matcher.find()) {
             String text = matcher.group(1);
-            String normalizedText = text.trim()
-                .replaceAll("[><!\\-»«]+", "")
-                .replaceAll("\\s+", " ")
+            String normalizedText = RegexPatterns.WHITESPACE.matcher(
+                    RegexPatterns.SELECTOR_TEXT_NOISE.matcher(text.trim()).replaceAll(""))
+                .replaceAll(" ")
                 .trim();
             return matcher.replaceAll(":has-text('" + normalizedText + "')");
         }
@@ -27,6 +27,22 @@ public class Edge {
         this.to = to;
     }
 
+    public Edge(Edge other) {
+        this.from = other.from;
+        this.selector = other.selector;
+        this.event = other.event;
+        this.to = other.to;
+        this.selectorKind = other.selectorKind;
+        this.condition = other.condition;
+        this.sourceFile = other.sourceFile;
+        this.extractionMethod = other.extractionMethod;
+        this.confidence = other.confidence;
+        this.llmReasoning = other.llmReasoning;
+        this.rawAstSelector = other.rawAstSelector;
+        this.isValid = other.isValid;
+        this.isDefinedButUnused = other.isDefinedButUnused;
+    }
+
     public String getFrom() { return from; }
     public String getSelector() { return selector; }
     public String getEvent() { return event; }
@@ -5,6 +5,7 @@ public class PageNode {
 
     public PageNode() {}
     public PageNode(String name) { this.name = name; }
+    public PageNode(PageNode other) { this.name = other.name; }
 
     public String getName() { return name; }
 
@@ -22,6 +22,23 @@ public class StructureGraph {
     }
 
     // utils
+
+    /** Deep copy by direct field copy; later changes to this graph or its edges do not affect it. */
+    public StructureGraph snapshot() {
+        StructureGraph copy = new StructureGraph();
+        List<PageNode> nodeCopies = new ArrayList<>(nodes.size());
+        for (PageNode node : nodes) {
+            nodeCopies.add(node != null ? new PageNode(node) : null);
+        }
+        List<Edge> edgeCopies = new ArrayList<>(edges.size());
+        for (Edge edge : edges) {
+            edgeCopies.add(edge != null ? new Edge(edge) : null);
+        }
+        copy.nodes = nodeCopies;
+        copy.edges = edgeCopies;
+        return copy;
+    }
+
     public void addNode(PageNode node) {
         if (node != null && !nodes.contains(node)) {
             nodes.add(node);
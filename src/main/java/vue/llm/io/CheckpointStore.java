@@ -0,0 +1,128 @@
+package vue.llm.io;
+
+import com.alibaba.fastjson2.JSON;
+import com.alibaba.fastjson2.JSONObject;
+import vue.llm.graph.StructureGraph;
+import vue.llm.router.RouteTable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * Persists the graph produced by each pipeline stage together with a fingerprint of its inputs,
+ * so a later run can resume from a stage whose inputs have not changed.
+ * Layout: {@code <dir>/stage<N>.json}.
+ */
+public class CheckpointStore {
+
+    private static final Logger log = LoggerFactory.getLogger(CheckpointStore.class);
+
+    private final Path dir;
+
+    public CheckpointStore(Path dir) {
+        this.dir = dir;
+    }
+
+    public Path getDir() {
+        return dir;
+    }
+
+    public void save(int stage, String fingerprint, StructureGraph graph) {
+        JSONObject checkpoint = new JSONObject();
+        checkpoint.put("stage", stage);
+        checkpoint.put("fingerprint", fingerprint);
+        checkpoint.put("createdAt", LocalDateTime.now().toString());
+        checkpoint.put("graph", graph);
+        try {
+            Files.createDirectories(dir);
+            Path target = file(stage);
+            Path tmp = dir.resolve(target.getFileName() + ".tmp");
+            Files.writeString(tmp, JSON.toJSONString(checkpoint), StandardCharsets.UTF_8);
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            log.info("[Checkpoint] Stage {} saved to {}", stage, target);
+        } catch (IOException e) {
+            log.warn("[Checkpoint] Failed to save stage {}: {}", stage, e.getMessage());
+        }
+    }
+
+    /** The stored graph for {@code stage}, or null when it is missing, unreadable or was built from other inputs. */
+    public StructureGraph load(int stage, String fingerprint) {
+        Path source = file(stage);
+        if (!Files.exists(source)) {
+            log.info("[Checkpoint] No stage {} checkpoint at {}", stage, source);
+            return null;
+        }
+        try {
+            JSONObject checkpoint = JSON.parseObject(Files.readString(source, StandardCharsets.UTF_8));
+            String stored = checkpoint.getString("fingerprint");
+            if (!fingerprint.equals(stored)) {
+                log.info("[Checkpoint] Stage {} checkpoint is stale (inputs changed)", stage);
+                return null;
+            }
+            StructureGraph graph = checkpoint.getObject("graph", StructureGraph.class);
+            log.info("[Checkpoint] Loaded stage {} checkpoint ({} edges)", stage, graph != null ? graph.getEdges().size() : 0);
+            return graph;
+        } catch (Exception e) {
+            log.warn("[Checkpoint] Failed to read {}: {}", source, e.getMessage());
+            return null;
+        }
+    }
+
+    private Path file(int stage) {
+        return dir.resolve("stage" + stage + ".json");
+    }
+
+    /** SHA-256 over every file's path and content hash (in path order), the route table and any extra inputs. */
+    public static String fingerprint(List<VueFile> files, RouteTable routeTable, String... extra) {
+        MessageDigest digest = sha256();
+        List<VueFile> sorted = new ArrayList<>(files != null ? files : List.of());
+        sorted.sort(Comparator.comparing(VueFile::getPath, Comparator.nullsFirst(Comparator.naturalOrder())));
+        for (VueFile file : sorted) {
+            update(digest, "file " + file.getPath() + " " + hash(file.getContent() != null ? file.getContent() : ""));
+        }
+        update(digest, "routes " + hash(routeTable != null ? routeTable.canonicalForm() : ""));
+        for (String part : extra) {
+            update(digest, "extra " + part);
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /** Fingerprint of a later stage: the previous stage's fingerprint plus that stage's own inputs. */
+    public static String chain(String previous, String... parts) {
+        MessageDigest digest = sha256();
+        update(digest, previous);
+        for (String part : parts) {
+            update(digest, part);
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static String hash(String text) {
+        return HexFormat.of().formatHex(sha256().digest(text.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static void update(MessageDigest digest, String part) {
+        digest.update(part.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) '\n');
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,327 @@
+package vue.llm.io;
+
+import vue.llm.util.RegexPatterns;
+
+import java.util.*;
+import java.util.regex.Matcher;
+
+/**
+ * Per-file lexical facts shared by the Stage 1 regex consumers.
+ * Built once per {@link VueFile} so each structural pattern scans the source a single time;
+ * quoted attribute bindings and keyword presence come from one character pass.
+ */
+public final class LexicalIndex {
+
+    private static final String[] KEYWORDS = {
+            "v-for", "el-menu-item", "route.children", "routes", "v-else-if", "!route.hidden",
+            "computed(", "menuItems", "menuList", "menus", "role", "Role"
+    };
+
+    /** Binding keys (with their separator) collected by {@link #scanBindings}. */
+    private static final String[] INDEXED_BINDINGS = {"index=", "to=", "path:"};
+
+    private static final String[] MENU_ARRAY_KEYWORDS = {"return", "items", "tabs", "menus", "menuList"};
+
+    private final String content;
+    private final Set<String> keywords = new HashSet<>();
+    private final Map<String, Set<String>> bindings = new HashMap<>();
+    private final boolean conditionalMenuAssignment;
+    private final boolean roleConditionalMethod;
+    private final String routerLinkClass;
+    private final List<String> menuArrays;
+    private final Map<String, String> menuTexts;
+    private final List<String> windowOpenResolveTargets;
+    private final List<String> windowOpenLiteralTargets;
+    private final List<String> windowOpenTemplateTargets;
+    private final List<ClickNavigation> clickNavigations;
+    private final String subMenuText;
+
+    /** A {@code @click="$router.push('...')"} element with the selector derived from its markup. */
+    public static final class ClickNavigation {
+        private final String target;
+        private final String selector;
+
+        ClickNavigation(String target, String selector) {
+            this.target = target;
+            this.selector = selector;
+        }
+
+        public String getTarget() { return target; }
+        public String getSelector() { return selector; }
+    }
+
+    public static LexicalIndex build(String content) {
+        return new LexicalIndex(content == null ? "" : content);
+    }
+
+    private LexicalIndex(String content) {
+        this.content = content;
+        scanBindings();
+        for (String keyword : KEYWORDS) {
+            if (content.contains(keyword)) keywords.add(keyword);
+        }
+        this.conditionalMenuAssignment = RegexPatterns.CONDITIONAL_MENU_ASSIGNMENT.matcher(content).find();
+        this.roleConditionalMethod = RegexPatterns.METHOD_ROLE_CONDITIONAL.matcher(content).find();
+        this.routerLinkClass = scanRouterLinkClass();
+        this.menuArrays = scanMenuArrays();
+        this.menuTexts = Collections.unmodifiableMap(scanMenuTexts());
+        this.windowOpenResolveTargets = captures(RegexPatterns.WINDOW_OPEN_RESOLVE.matcher(content));
+        this.windowOpenLiteralTargets = captures(RegexPatterns.WINDOW_OPEN_LITERAL.matcher(content));
+        this.windowOpenTemplateTargets = captures(RegexPatterns.WINDOW_OPEN_TEMPLATE.matcher(content));
+        this.clickNavigations = scanClickNavigations();
+        this.subMenuText = scanSubMenuText();
+    }
+
+    public boolean contains(String keyword) {
+        if (keywords.contains(keyword)) return true;
+        for (String k : KEYWORDS) {
+            if (k.equals(keyword)) return false;
+        }
+        return content.contains(keyword);
+    }
+
+    /**
+     * Whether {@code key <separator> "value"} occurs, e.g. {@code index="/home"} or {@code path: '/home'}.
+     * Indexed keys are {@code index=}, {@code to=} and {@code path:}; values never contain quotes.
+     */
+    public boolean hasQuotedBinding(String key, char separator, String value) {
+        Set<String> values = bindings.get(key + separator);
+        if (values != null) return values.contains(value);
+        // not an indexed key: scan the source
+        return RegexPatterns.indexOfQuotedBinding(content, key, separator, value) >= 0;
+    }
+
+    public boolean hasConditionalMenuAssignment() { return conditionalMenuAssignment; }
+    public boolean hasRoleConditionalMethod() { return roleConditionalMethod; }
+    public String getRouterLinkClass() { return routerLinkClass; }
+    public List<String> getMenuArrays() { return menuArrays; }
+    public Map<String, String> getMenuTexts() { return menuTexts; }
+    public List<String> getWindowOpenResolveTargets() { return windowOpenResolveTargets; }
+    public List<String> getWindowOpenLiteralTargets() { return windowOpenLiteralTargets; }
+    public List<String> getWindowOpenTemplateTargets() { return windowOpenTemplateTargets; }
+    public List<ClickNavigation> getClickNavigations() { return clickNavigations; }
+    public String getSubMenuText() { return subMenuText; }
+
+    private void scanBindings() {
+        // an indexed key with no entry means the file has no such binding
+        for (String key : INDEXED_BINDINGS) {
+            bindings.put(key, new HashSet<>());
+        }
+        for (int p = 0; p < content.length(); p++) {
+            char c = content.charAt(p);
+            if (c == '=') {
+                recordBinding("index", c, p, false);
+                recordBinding("to", c, p, false);
+            } else if (c == ':') {
+                recordBinding("path", c, p, true);
+            }
+        }
+    }
+
+    private void recordBinding(String key, char separator, int sepPos, boolean allowQuotedKey) {
+        int i = skipWhitespace(sepPos - 1, -1);
+        if (i < 0) return;
+        boolean keyed = content.startsWith(key, i - key.length() + 1)
+                || (allowQuotedKey && isQuote(content.charAt(i)) && content.startsWith(key, i - key.length()));
+        if (!keyed) return;
+
+        int open = skipWhitespace(sepPos + 1, 1);
+        if (open >= content.length() || !isQuote(content.charAt(open))) return;
+        int close = open + 1;
+        while (close < content.length() && !isQuote(content.charAt(close))) close++;
+        if (close >= content.length()) return;
+
+        bindings.get(key + separator).add(content.substring(open + 1, close));
+    }
+
+    // Same character class as the regex \s
+    private int skipWhitespace(int i, int step) {
+        while (i >= 0 && i < content.length()) {
+            char c = content.charAt(i);
+            if (c != ' ' && c != '\t' && c != '\n' && c != '\u000B' && c != '\f' && c != '\r') break;
+            i += step;
+        }
+        return i;
+    }
+
+    private static boolean isQuote(char c) {
+        return c == '"' || c == '\'';
+    }
+
+    private String scanRouterLinkClass() {
+        Matcher matcher = RegexPatterns.ROUTER_LINK_CLASS.matcher(content);
+        if (matcher.find()) {
+            String[] classes = RegexPatterns.WHITESPACE.split(matcher.group(1));
+            if (classes.length > 0 && !classes[0].isBlank()) {
+                return classes[0];
+            }
+        }
+        return null;
+    }
+
+    private List<String> scanMenuArrays() {
+        List<String> arrays = new ArrayList<>();
+        int pos = 0;
+        while (pos < content.length()) {
+            int searchPos = -1;
+            for (String keyword : MENU_ARRAY_KEYWORDS) {
+                int p = content.indexOf(keyword, pos);
+                if (p != -1 && (searchPos == -1 || p < searchPos)) {
+                    searchPos = p;
+                }
+            }
+            if (searchPos == -1) break;
+
+            int arrayStart = content.indexOf('[', searchPos);
+            if (arrayStart == -1 || arrayStart - searchPos > 30) {
+                pos = searchPos + 6;
+                continue;
+            }
+            int arrayEnd = findMatchingBracket(content, arrayStart);
+            if (arrayEnd == -1) {
+                pos = searchPos + 6;
+                continue;
+            }
+            arrays.add(content.substring(arrayStart + 1, arrayEnd));
+            pos = arrayEnd + 1;
+        }
+        return Collections.unmodifiableList(arrays);
+    }
+
+    private static int findMatchingBracket(String content, int start) {
+        int depth = 1;
+        for (int i = start + 1; i < content.length(); i++) {
+            char c = content.charAt(i);
+            if (c == '[') depth++;
+            else if (c == ']') {
+                depth--;
+                if (depth == 0) return i;
+            }
+        }
+        return -1;
+    }
+
+    private Map<String, String> scanMenuTexts() {
+        Map<String, String> routeTexts = new HashMap<>();
+
+        Matcher matcher1 = RegexPatterns.MENU_PATH_NAME_PAIR.matcher(content);
+        while (matcher1.find()) {
+            String path = matcher1.group(1) != null ? matcher1.group(1) : matcher1.group(4);
+            String name = matcher1.group(2) != null ? matcher1.group(2) : matcher1.group(3);
+            putMenuText(routeTexts, path, name);
+        }
+
+        Matcher matcher2 = RegexPatterns.MENU_LABEL_PATH.matcher(content);
+        while (matcher2.find()) {
+            String label = matcher2.group(1) != null ? matcher2.group(1) : matcher2.group(4);
+            String path = matcher2.group(2) != null ? matcher2.group(2) : matcher2.group(3);
+            putMenuText(routeTexts, path, label);
+        }
+
+        Matcher matcher3 = RegexPatterns.MENU_TITLE_PATH.matcher(content);
+        while (matcher3.find()) {
+            String title = matcher3.group(1) != null ? matcher3.group(1) : matcher3.group(4);
+            String path = matcher3.group(2) != null ? matcher3.group(2) : matcher3.group(3);
+            putMenuText(routeTexts, path, title);
+        }
+
+        Matcher arrayMatcher = RegexPatterns.MENU_ARRAY_BLOCK.matcher(content);
+        while (arrayMatcher.find()) {
+            Matcher objectMatcher = RegexPatterns.OBJECT_BODY.matcher(arrayMatcher.group(2));
+            while (objectMatcher.find()) {
+                Map<String, String> properties = new HashMap<>();
+                Matcher propertyMatcher = RegexPatterns.OBJECT_STRING_PROPERTY.matcher(objectMatcher.group(1));
+                while (propertyMatcher.find()) {
+                    properties.put(propertyMatcher.group(1), propertyMatcher.group(2));
+                }
+
+                String pathValue = null;
+                String textValue = null;
+                for (Map.Entry<String, String> entry : properties.entrySet()) {
+                    String key = entry.getKey().toLowerCase();
+                    if (pathValue == null && (key.contains("path") || key.contains("route") || key.contains("url"))) {
+                        pathValue = entry.getValue();
+                    }
+                    if (textValue == null && (key.contains("name") || key.contains("label") ||
+                                             key.contains("title") || key.contains("text"))) {
+                        textValue = entry.getValue();
+                    }
+                }
+                putMenuText(routeTexts, pathValue, textValue);
+            }
+        }
+
+        return routeTexts;
+    }
+
+    private static void putMenuText(Map<String, String> routeTexts, String path, String text) {
+        if (path != null && text != null && !path.isBlank() && !text.isBlank()) {
+            routeTexts.put(path.startsWith("/") ? path : "/" + path, text);
+        }
+    }
+
+    private static List<String> captures(Matcher matcher) {
+        List<String> values = new ArrayList<>();
+        while (matcher.find()) {
+            values.add(matcher.group(1));
+        }
+        return Collections.unmodifiableList(values);
+    }
+
+    private List<ClickNavigation> scanClickNavigations() {
+        List<ClickNavigation> result = new ArrayList<>();
+        Matcher clickMatcher = RegexPatterns.CLICK_ROUTER_PUSH_ELEMENT.matcher(content);
+        while (clickMatcher.find()) {
+            String tag = clickMatcher.group(1);
+            String attrs = clickMatcher.group(2);
+
+            String selectorBase = tag;
+            Matcher classMatcher = RegexPatterns.CLASS_ATTRIBUTE.matcher(attrs);
+            if (classMatcher.find()) {
+                String cls = classMatcher.group(1);
+                if (cls != null && !cls.isBlank()) {
+                    selectorBase = "." + RegexPatterns.WHITESPACE.split(cls)[0];
+                }
+            }
+
+            String selector = selectorBase;
+            int endPos = content.indexOf("</" + tag + ">", clickMatcher.end());
+            if (endPos != -1) {
+                String text = extractVisibleText(content.substring(clickMatcher.end(), endPos));
+                if (text != null && !text.isBlank()) {
+                    selector = selectorBase + ":has-text('" + text + "')";
+                }
+            }
+
+            result.add(new ClickNavigation(clickMatcher.group(3), selector));
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    private static String extractVisibleText(String htmlContent) {
+        if (htmlContent == null || htmlContent.isBlank()) return null;
+
+        Matcher textMatcher = RegexPatterns.TAG_TEXT.matcher(htmlContent);
+        String longestText = null;
+        int maxLength = 0;
+        while (textMatcher.find()) {
+            String t = textMatcher.group(1).trim();
+            if (!t.isBlank() && RegexPatterns.VISIBLE_TEXT_LINE.matcher(t).matches() && t.length() > maxLength) {
+                longestText = t;
+                maxLength = t.length();
+            }
+        }
+        return longestText;
+    }
+
+    private String scanSubMenuText() {
+        Matcher subMenuMatcher = RegexPatterns.EL_SUB_MENU_BLOCK.matcher(content);
+        if (!subMenuMatcher.find()) return null;
+
+        String subMenuContent = subMenuMatcher.group(1);
+        Matcher titleMatcher = RegexPatterns.TITLE_SLOT_TEMPLATE.matcher(subMenuContent);
+        String textContent = titleMatcher.find() ? titleMatcher.group(1) : subMenuContent;
+        Matcher spanMatcher = RegexPatterns.SPAN_TEXT.matcher(textContent);
+        return spanMatcher.find() ? spanMatcher.group(1).trim() : null;
+    }
+}
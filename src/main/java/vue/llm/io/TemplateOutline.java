@@ -0,0 +1,344 @@
+package vue.llm.io;
+
+import vue.llm.util.RegexPatterns;
+
+import java.util.*;
+import java.util.function.IntPredicate;
+
+/**
+ * Element tree of a Vue template recovered with a tolerant tag scan (no full HTML parsing), used to
+ * cut a template down to the subtrees that matter for a set of edges.
+ *
+ * {@link #render(Collection)} keeps each selected element verbatim, keeps only the opening tags of its
+ * ancestors (where v-if / v-show / v-for live), and, for elements in a v-if / v-else-if / v-else chain,
+ * the opening tags of the preceding branches. Everything else is dropped.
+ */
+public final class TemplateOutline {
+
+    private static final Set<String> VOID_TAGS = Set.of(
+            "area", "base", "br", "col", "embed", "hr", "img", "input", "link", "meta", "source", "track", "wbr");
+
+    private final String template;
+    private final List<Element> elements = new ArrayList<>();
+    private final List<String> texts = new ArrayList<>();
+
+    public static final class Element {
+        public final int index;
+        public final String tag;
+        public final int parent;
+        public final int depth;
+        final int start;
+        final int openEnd;
+        int end;
+        final List<Integer> children = new ArrayList<>();
+
+        Element(int index, String tag, int parent, int depth, int start, int openEnd) {
+            this.index = index;
+            this.tag = tag;
+            this.parent = parent;
+            this.depth = depth;
+            this.start = start;
+            this.openEnd = openEnd;
+            this.end = openEnd;
+        }
+    }
+
+    public static TemplateOutline build(String template) {
+        return new TemplateOutline(template == null ? "" : template);
+    }
+
+    private TemplateOutline(String template) {
+        this.template = template;
+        scan();
+        for (Element e : elements) {
+            texts.add(stripTags(source(e.index)));
+        }
+    }
+
+    /**
+     * Body of the file's top-level {@code <template>} block, including nested {@code <template #slot>}
+     * blocks, or null if the file has none.
+     */
+    public static String topLevelTemplate(String content) {
+        if (content == null) return null;
+        int start = templateTag(content, 0);
+        if (start < 0) return null;
+        int bodyStart = content.indexOf('>', start);
+        if (bodyStart < 0) return null;
+        bodyStart++;
+        int depth = 1;
+        int i = bodyStart;
+        while (depth > 0) {
+            int close = content.indexOf("</template>", i);
+            if (close < 0) return null;
+            int open = templateTag(content, i);
+            if (open >= 0 && open < close) {
+                depth++;
+                i = open + 1;
+            } else {
+                depth--;
+                if (depth == 0) return content.substring(bodyStart, close).trim();
+                i = close + 1;
+            }
+        }
+        return null;
+    }
+
+    private static int templateTag(String content, int from) {
+        int i = content.indexOf("<template", from);
+        while (i >= 0) {
+            int after = i + "<template".length();
+            if (after < content.length()
+                    && (content.charAt(after) == '>' || Character.isWhitespace(content.charAt(after)))) {
+                return i;
+            }
+            i = content.indexOf("<template", after);
+        }
+        return -1;
+    }
+
+    public List<Element> getElements() {
+        return Collections.unmodifiableList(elements);
+    }
+
+    /** The element's opening tag, attributes included. */
+    public String openTag(int index) {
+        Element e = elements.get(index);
+        return template.substring(e.start, e.openEnd);
+    }
+
+    /** The element's source text from its opening tag to its closing tag. */
+    public String source(int index) {
+        Element e = elements.get(index);
+        return template.substring(e.start, e.end);
+    }
+
+    /** Text content of the element with tags stripped and whitespace collapsed. */
+    public String text(int index) {
+        return texts.get(index);
+    }
+
+    private static String stripTags(String src) {
+        StringBuilder sb = new StringBuilder();
+        boolean inTag = false;
+        for (int i = 0; i < src.length(); i++) {
+            char c = src.charAt(i);
+            if (c == '<') inTag = true;
+            else if (c == '>') { inTag = false; sb.append(' '); }
+            else if (!inTag) sb.append(c);
+        }
+        return RegexPatterns.WHITESPACE.matcher(sb).replaceAll(" ").trim();
+    }
+
+    public List<Integer> find(IntPredicate predicate) {
+        List<Integer> result = new ArrayList<>();
+        for (Element e : elements) {
+            if (predicate.test(e.index)) result.add(e.index);
+        }
+        return result;
+    }
+
+    /** Drops every match that contains another match, keeping the innermost elements. */
+    public List<Integer> innermost(List<Integer> matches) {
+        List<Integer> result = new ArrayList<>();
+        for (int m : matches) {
+            boolean hasMatchedDescendant = false;
+            for (int other : matches) {
+                if (other != m && isAncestor(m, other)) {
+                    hasMatchedDescendant = true;
+                    break;
+                }
+            }
+            if (!hasMatchedDescendant) result.add(m);
+        }
+        return result;
+    }
+
+    public boolean isAncestor(int ancestor, int index) {
+        for (int p = elements.get(index).parent; p >= 0; p = elements.get(p).parent) {
+            if (p == ancestor) return true;
+        }
+        return false;
+    }
+
+    /** The template reduced to the selected elements and their conditional context, in document order. */
+    public String render(Collection<Integer> selected) {
+        Set<Integer> full = new HashSet<>(selected);
+        Set<Integer> skeleton = new HashSet<>();
+        for (int index : selected) {
+            addContext(index, skeleton);
+            for (int p = elements.get(index).parent; p >= 0; p = elements.get(p).parent) {
+                skeleton.add(p);
+                addContext(p, skeleton);
+            }
+        }
+        StringBuilder sb = new StringBuilder();
+        for (Element e : elements) {
+            if (e.parent < 0) render(e, full, skeleton, sb);
+        }
+        return sb.toString();
+    }
+
+    /** Preceding v-if / v-else-if siblings of an element that is itself an else branch. */
+    private void addContext(int index, Set<Integer> skeleton) {
+        if (!hasAttr(index, "v-else") && !hasAttr(index, "v-else-if")) return;
+        Element e = elements.get(index);
+        List<Integer> siblings = e.parent >= 0 ? elements.get(e.parent).children : roots();
+        for (int i = siblings.indexOf(index) - 1; i >= 0; i--) {
+            int sibling = siblings.get(i);
+            skeleton.add(sibling);
+            if (hasAttr(sibling, "v-if")) break;
+        }
+    }
+
+    private List<Integer> roots() {
+        List<Integer> roots = new ArrayList<>();
+        for (Element e : elements) {
+            if (e.parent < 0) roots.add(e.index);
+        }
+        return roots;
+    }
+
+    private boolean hasAttr(int index, String attr) {
+        String open = openTag(index);
+        int i = open.indexOf(attr);
+        while (i >= 0) {
+            char before = open.charAt(i - 1);
+            int after = i + attr.length();
+            boolean boundaryBefore = Character.isWhitespace(before);
+            boolean boundaryAfter = after < open.length()
+                    && (open.charAt(after) == '=' || Character.isWhitespace(open.charAt(after))
+                    || open.charAt(after) == '>' || open.charAt(after) == '/');
+            if (boundaryBefore && boundaryAfter) return true;
+            i = open.indexOf(attr, i + 1);
+        }
+        return false;
+    }
+
+    private void render(Element e, Set<Integer> full, Set<Integer> skeleton, StringBuilder sb) {
+        String indent = "  ".repeat(e.depth);
+        if (full.contains(e.index)) {
+            appendVerbatim(e, indent, sb);
+            return;
+        }
+        if (!skeleton.contains(e.index)) return;
+
+        sb.append(indent).append(template, e.start, e.openEnd);
+        boolean selfClosing = e.end == e.openEnd;
+        if (selfClosing) {
+            sb.append('\n');
+            return;
+        }
+        int before = sb.length();
+        sb.append('\n');
+        for (int child : e.children) {
+            if (isTitleSlot(child)) {
+                appendVerbatim(elements.get(child), "  ".repeat(e.depth + 1), sb);
+            } else {
+                render(elements.get(child), full, skeleton, sb);
+            }
+        }
+        if (sb.length() == before + 1) {
+            // branch kept only for its condition
+            sb.setLength(before);
+            sb.append(" … </").append(e.tag).append(">\n");
+        } else {
+            sb.append(indent).append("</").append(e.tag).append(">\n");
+        }
+    }
+
+    /** {@code <template #title>} / {@code slot="title"}: the visible label of a kept submenu or dialog. */
+    private boolean isTitleSlot(int index) {
+        if (!elements.get(index).tag.equals("template")) return false;
+        String open = openTag(index);
+        return open.contains("#title") || open.contains("v-slot:title") || open.contains("slot=\"title\"");
+    }
+
+    /** The element's source re-indented to {@code indent}, keeping its inner relative indentation. */
+    private void appendVerbatim(Element e, String indent, StringBuilder sb) {
+        int lineStart = template.lastIndexOf('\n', e.start - 1) + 1;
+        int column = e.start - lineStart;
+        String[] lines = template.substring(e.start, e.end).split("\n", -1);
+        for (int i = 0; i < lines.length; i++) {
+            String line = lines[i];
+            if (i > 0) {
+                int strip = 0;
+                while (strip < column && strip < line.length() && Character.isWhitespace(line.charAt(strip))) strip++;
+                line = line.substring(strip);
+            }
+            sb.append(indent).append(line).append('\n');
+        }
+    }
+
+    private void scan() {
+        Deque<Integer> open = new ArrayDeque<>();
+        int i = 0;
+        int n = template.length();
+        while (i < n) {
+            int lt = template.indexOf('<', i);
+            if (lt < 0 || lt + 1 >= n) break;
+            if (template.startsWith("<!--", lt)) {
+                int close = template.indexOf("-->", lt + 4);
+                i = close < 0 ? n : close + 3;
+                continue;
+            }
+            char next = template.charAt(lt + 1);
+            if (next == '/') {
+                int gt = template.indexOf('>', lt);
+                if (gt < 0) break;
+                String tag = template.substring(lt + 2, gt).trim().toLowerCase(Locale.ROOT);
+                closeElement(open, tag, gt + 1);
+                i = gt + 1;
+                continue;
+            }
+            if (!Character.isLetter(next)) {
+                i = lt + 1;
+                continue;
+            }
+            int gt = endOfOpenTag(lt);
+            if (gt < 0) break;
+            int nameEnd = lt + 1;
+            while (nameEnd < gt && !Character.isWhitespace(template.charAt(nameEnd))
+                    && template.charAt(nameEnd) != '>' && template.charAt(nameEnd) != '/') {
+                nameEnd++;
+            }
+            String tag = template.substring(lt + 1, nameEnd).toLowerCase(Locale.ROOT);
+            int parent = open.isEmpty() ? -1 : open.peek();
+            Element e = new Element(elements.size(), tag, parent, open.size(), lt, gt + 1);
+            elements.add(e);
+            if (parent >= 0) elements.get(parent).children.add(e.index);
+
+            boolean selfClosing = template.charAt(gt - 1) == '/' || VOID_TAGS.contains(tag);
+            if (!selfClosing) open.push(e.index);
+            i = gt + 1;
+        }
+        while (!open.isEmpty()) {
+            elements.get(open.pop()).end = n;
+        }
+    }
+
+    /** Index of the '>' ending the opening tag at {@code lt}, skipping quoted attribute values. */
+    private int endOfOpenTag(int lt) {
+        char quote = 0;
+        for (int i = lt + 1; i < template.length(); i++) {
+            char c = template.charAt(i);
+            if (quote != 0) {
+                if (c == quote) quote = 0;
+            } else if (c == '"' || c == '\'') {
+                quote = c;
+            } else if (c == '>') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void closeElement(Deque<Integer> open, String tag, int end) {
+        if (!open.stream().anyMatch(index -> elements.get(index).tag.equals(tag))) return;
+        while (!open.isEmpty()) {
+            Element e = elements.get(open.pop());
+            e.end = end;
+            if (e.tag.equals(tag)) return;
+        }
+    }
+}
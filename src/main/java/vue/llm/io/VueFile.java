@@ -4,6 +4,7 @@ package vue.llm.io;
 public class VueFile {
     private final String path;
     private final String content;
+    private volatile LexicalIndex lexicalIndex;
 
     public VueFile(String path, String content) {
         this.path = path;
@@ -13,6 +14,21 @@ public class VueFile {
     public String getPath() { return path; }
     public String getContent() { return content; }
 
+    /** Lexical facts of {@link #getContent()}, built on first use and cached for the lifetime of this file. */
+    public LexicalIndex getLexicalIndex() {
+        LexicalIndex index = lexicalIndex;
+        if (index == null) {
+            synchronized (this) {
+                index = lexicalIndex;
+                if (index == null) {
+                    index = LexicalIndex.build(content);
+                    lexicalIndex = index;
+                }
+            }
+        }
+        return index;
+    }
+
     @Override
     public String toString() {
         return "VueFile{" +
@@ -0,0 +1,68 @@
+package vue.llm.io;
+
+import java.util.*;
+
+/**
+ * Immutable path lookup over the collected project files.
+ * Exact lookups hit a hash map; {@link #findEndingWith} is a plain string-suffix scan, so a partial
+ * name such as {@code "index.js"} also matches {@code "src/router/index.js"}.
+ * When several files match the one collected first wins.
+ */
+public final class VueFileIndex {
+
+    private final List<VueFile> files;
+    private final Map<String, VueFile> byPath = new HashMap<>();
+    private final Map<String, Integer> positions = new HashMap<>();
+
+    public VueFileIndex(List<VueFile> files) {
+        this.files = files == null ? List.of() : List.copyOf(files);
+        for (int i = 0; i < this.files.size(); i++) {
+            VueFile file = this.files.get(i);
+            String path = file.getPath();
+            if (path == null || byPath.containsKey(path)) continue;
+            byPath.put(path, file);
+            positions.put(path, i);
+        }
+    }
+
+    public List<VueFile> getFiles() {
+        return files;
+    }
+
+    public int size() {
+        return files.size();
+    }
+
+    public VueFile get(String path) {
+        return path == null ? null : byPath.get(path);
+    }
+
+    /** Files whose whole path is a suffix of {@code path}, in collection order. */
+    public List<VueFile> findSuffixesOf(String path) {
+        if (path == null) return List.of();
+        List<VueFile> result = new ArrayList<>();
+        for (int i = 0; i <= path.length(); i++) {
+            VueFile file = byPath.get(path.substring(i));
+            if (file != null) result.add(file);
+        }
+        result.sort(Comparator.comparingInt(f -> positions.get(f.getPath())));
+        return result;
+    }
+
+    /** First file whose path ends with {@code suffix}, as {@link String#endsWith}. */
+    public VueFile findEndingWith(String suffix) {
+        if (suffix == null) return null;
+        for (VueFile file : files) {
+            String path = file.getPath();
+            if (path != null && path.endsWith(suffix)) return file;
+        }
+        return null;
+    }
+
+    /** Whichever of the two files was collected first; either may be null. */
+    public VueFile earliest(VueFile a, VueFile b) {
+        if (a == null) return b;
+        if (b == null) return a;
+        return positions.get(a.getPath()) <= positions.get(b.getPath()) ? a : b;
+    }
+}
@@ -143,6 +143,25 @@ public class RouteTable {
     }
 
 
+    /** Order-independent text form of the whole table, used to fingerprint pipeline inputs. */
+    public String canonicalForm() {
+        StringBuilder sb = new StringBuilder();
+        sorted(routes).forEach((k, v) -> sb.append("route ").append(k).append(" ").append(v).append("\n"));
+        sorted(redirects).forEach((k, v) -> sb.append("redirect ").append(k).append(" ").append(v).append("\n"));
+        allPaths.stream().sorted(Comparator.nullsFirst(Comparator.naturalOrder()))
+                .forEach(p -> sb.append("path ").append(p).append("\n"));
+        sorted(children).forEach((k, v) -> sb.append("children ").append(k).append(" ").append(v).append("\n"));
+        sorted(pathDefinitionCount).forEach((k, v) -> sb.append("count ").append(k).append(" ").append(v).append("\n"));
+        return sb.toString();
+    }
+
+    private static <V> Map<String, V> sorted(Map<String, V> map) {
+        Map<String, V> result = new TreeMap<>(Comparator.nullsFirst(Comparator.naturalOrder()));
+        result.putAll(map);
+        return result;
+    }
+
+
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder();
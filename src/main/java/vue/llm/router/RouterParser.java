@@ -1,6 +1,8 @@
 package vue.llm.router;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.*;
 import java.nio.file.Files;
@@ -10,6 +12,8 @@ import java.util.Map;
 
 public class RouterParser {
 
+    private static final Logger log = LoggerFactory.getLogger(RouterParser.class);
+
     private static final ObjectMapper mapper = new ObjectMapper();
 
     public static class RouterDTO {
@@ -80,7 +84,7 @@ public class RouterParser {
         if (dto.routes != null) {
             dto.routes.forEach(table::addRoute);
         } else {
-            System.out.println("[RouterParser] WARNING: dto.routes is null");
+            log.warn("[RouterParser] dto.routes is null");
         }
 
         if (dto.redirects != null) {
@@ -0,0 +1,101 @@
+package vue.llm.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * AIMD limit on concurrent LLM calls. Every successful call raises the limit by {@code 1/limit} (about +1
+ * per round of calls) up to {@code maxLimit}; a 429 halves it. Calls that were already in flight when the
+ * limit was cut do not cut it again, so one burst of throttling halves the limit once.
+ *
+ * Permits are handed out as futures, so blocking and asynchronous callers share one queue.
+ */
+public class AdaptiveConcurrencyLimiter {
+
+    /** One granted slot; remembers the limit epoch it was granted in. */
+    public static final class Permit {
+        private final long epoch;
+        private boolean released;
+
+        private Permit(long epoch) {
+            this.epoch = epoch;
+        }
+    }
+
+    private final int maxLimit;
+    private double limit;
+    private int inFlight;
+    private long epoch;
+    private int minLimitSeen;
+    private final Deque<CompletableFuture<Permit>> waiters = new ArrayDeque<>();
+
+    public AdaptiveConcurrencyLimiter(int maxLimit) {
+        this.maxLimit = Math.max(1, maxLimit);
+        this.limit = this.maxLimit;
+        this.minLimitSeen = this.maxLimit;
+    }
+
+    /** Completes once a slot is free; waiters are served in arrival order. */
+    public synchronized CompletableFuture<Permit> acquire() {
+        if (waiters.isEmpty() && inFlight < currentLimit()) {
+            inFlight++;
+            return CompletableFuture.completedFuture(new Permit(epoch));
+        }
+        CompletableFuture<Permit> waiter = new CompletableFuture<>();
+        waiters.add(waiter);
+        return waiter;
+    }
+
+    /**
+     * Returns the slot. {@code failure} is null for a successful call; only successes and
+     * {@link RetryPolicy.Failure#THROTTLED} move the limit. Releasing twice is a no-op.
+     */
+    public void release(Permit permit, RetryPolicy.Failure failure) {
+        List<CompletableFuture<Permit>> granted = new ArrayList<>();
+        synchronized (this) {
+            if (permit.released) return;
+            permit.released = true;
+            inFlight--;
+            if (failure == RetryPolicy.Failure.THROTTLED) {
+                if (permit.epoch == epoch) {
+                    limit = Math.max(1, limit / 2);
+                    epoch++;
+                    minLimitSeen = Math.min(minLimitSeen, currentLimit());
+                }
+            } else if (failure == null) {
+                limit = Math.min(maxLimit, limit + 1 / limit);
+            }
+            while (inFlight < currentLimit() && !waiters.isEmpty()) {
+                CompletableFuture<Permit> waiter = waiters.poll();
+                if (waiter.isDone()) continue;
+                inFlight++;
+                granted.add(waiter);
+            }
+        }
+        for (CompletableFuture<Permit> waiter : granted) {
+            Permit next;
+            synchronized (this) {
+                next = new Permit(epoch);
+            }
+            if (!waiter.complete(next)) {
+                // waiter was cancelled meanwhile
+                release(next, RetryPolicy.Failure.OTHER);
+            }
+        }
+    }
+
+    public synchronized int currentLimit() {
+        return (int) limit;
+    }
+
+    public synchronized int getMinLimitSeen() {
+        return minLimitSeen;
+    }
+
+    public int getMaxLimit() {
+        return maxLimit;
+    }
+}
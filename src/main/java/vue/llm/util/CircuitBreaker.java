@@ -0,0 +1,107 @@
+package vue.llm.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+
+/**
+ * Consecutive-failure circuit breaker shared by every caller of one {@link LlmEndpoint}.
+ *
+ * After {@code failureThreshold} server or network failures in a row the circuit opens and calls fail
+ * immediately with {@link OpenException} instead of adding load to an endpoint that is down. Once
+ * {@code openMillis} have passed one probe call is let through (half-open): its success closes the
+ * circuit, its failure opens it again. Throttling (429) does not count; the concurrency limiter handles it.
+ */
+public class CircuitBreaker {
+
+    private static final Logger log = LoggerFactory.getLogger(CircuitBreaker.class);
+
+    public static final int DEFAULT_FAILURE_THRESHOLD = 5;
+    public static final long DEFAULT_OPEN_MILLIS = 30_000;
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    /** Thrown instead of calling the endpoint while the circuit is open. */
+    public static class OpenException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        public OpenException(long remainingMillis) {
+            super("LLM circuit breaker open, endpoint considered down for another " + remainingMillis + " ms");
+        }
+    }
+
+    private final int failureThreshold;
+    private final long openMillis;
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAt;
+    private boolean probeInFlight;
+    private int timesOpened;
+
+    public CircuitBreaker(int failureThreshold, long openMillis) {
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.openMillis = Math.max(0, openMillis);
+    }
+
+    public static CircuitBreaker defaults() {
+        return new CircuitBreaker(DEFAULT_FAILURE_THRESHOLD, DEFAULT_OPEN_MILLIS);
+    }
+
+    /** Called before each attempt; throws while the circuit is open or another caller holds the half-open probe. */
+    public synchronized void acquirePermission() throws OpenException {
+        if (state == State.CLOSED) return;
+        long remaining = openedAt + openMillis - System.currentTimeMillis();
+        if (state == State.OPEN && remaining <= 0) {
+            state = State.HALF_OPEN;
+            probeInFlight = false;
+        }
+        if (state == State.HALF_OPEN && !probeInFlight) {
+            probeInFlight = true;
+            return;
+        }
+        throw new OpenException(Math.max(0, remaining));
+    }
+
+    /**
+     * Outcome of an attempt that was let through by {@link #acquirePermission()}: null for success.
+     * Any HTTP answer other than a 5xx shows the endpoint is up; {@link RetryPolicy.Failure#OTHER}
+     * (the caller gave up) says nothing about it either way.
+     */
+    public synchronized void record(RetryPolicy.Failure failure) {
+        boolean counts = failure == RetryPolicy.Failure.SERVER || failure == RetryPolicy.Failure.NETWORK;
+        if (state == State.HALF_OPEN) {
+            probeInFlight = false;
+            if (counts) {
+                open();
+            } else if (failure != RetryPolicy.Failure.OTHER) {
+                log.info("[LlmClient] Circuit closed, endpoint answered again");
+                state = State.CLOSED;
+                consecutiveFailures = 0;
+            }
+            return;
+        }
+        if (failure == RetryPolicy.Failure.OTHER) return;
+        if (!counts) {
+            consecutiveFailures = 0;
+        } else if (++consecutiveFailures >= failureThreshold && state == State.CLOSED) {
+            open();
+        }
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openedAt = System.currentTimeMillis();
+        timesOpened++;
+        log.warn("[LlmClient] Circuit opened after {} consecutive failures, failing fast for {} ms",
+                consecutiveFailures, openMillis);
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    public synchronized int getTimesOpened() {
+        return timesOpened;
+    }
+}
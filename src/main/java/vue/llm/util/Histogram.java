@@ -0,0 +1,91 @@
+package vue.llm.util;
+
+import com.alibaba.fastjson2.JSONObject;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Log-linear histogram of non-negative longs in the style of HdrHistogram: each power-of-two range is
+ * split into 128 equal buckets, so any recorded value and every percentile is within 1% of the true one,
+ * and memory depends on the value range, not the sample count. Buckets are kept sparsely. Thread-safe.
+ */
+public final class Histogram {
+
+    private static final int SUB_BUCKET_BITS = 7;
+
+    /** Bucket lower bound to count. */
+    private final TreeMap<Long, Long> buckets = new TreeMap<>();
+    private long count;
+    private long sum;
+    private long min = Long.MAX_VALUE;
+    private long max;
+
+    public synchronized void record(long value) {
+        long v = Math.max(0, value);
+        buckets.merge(lowerBound(v), 1L, Long::sum);
+        count++;
+        sum += v;
+        min = Math.min(min, v);
+        max = Math.max(max, v);
+    }
+
+    static long lowerBound(long value) {
+        int shift = Math.max(0, 64 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS - 1);
+        return (value >>> shift) << shift;
+    }
+
+    public synchronized long getCount() {
+        return count;
+    }
+
+    public synchronized long getSum() {
+        return sum;
+    }
+
+    public synchronized long getMax() {
+        return max;
+    }
+
+    /** Value at percentile {@code p} (0-100), the lower bound of its bucket clamped to [min, max]; 0 when empty. */
+    public synchronized long percentile(double p) {
+        if (count == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(p / 100.0 * count));
+        long seen = 0;
+        for (Map.Entry<Long, Long> bucket : buckets.entrySet()) {
+            seen += bucket.getValue();
+            if (seen >= rank) return Math.min(max, Math.max(min, bucket.getKey()));
+        }
+        return max;
+    }
+
+    /** {@code n=.. p50=.. p90=.. p99=.. max=..}, values divided by {@code scale}, e.g. 1e6 for nanos to ms. */
+    public synchronized String summary(double scale, String unit) {
+        return String.format("n=%d p50=%.0f p90=%.0f p99=%.0f max=%.0f %s", count,
+                percentile(50) / scale, percentile(90) / scale, percentile(99) / scale, max / scale, unit);
+    }
+
+    /** Count, min, mean, percentiles, max and the non-empty buckets as {@code [lowerBound, count]}, divided by {@code scale}. */
+    public synchronized JSONObject toJson(double scale) {
+        JSONObject json = new JSONObject();
+        json.put("count", count);
+        if (count == 0) return json;
+        json.put("min", round(min / scale));
+        json.put("mean", round(sum / scale / count));
+        json.put("p50", round(percentile(50) / scale));
+        json.put("p90", round(percentile(90) / scale));
+        json.put("p99", round(percentile(99) / scale));
+        json.put("p999", round(percentile(99.9) / scale));
+        json.put("max", round(max / scale));
+        List<double[]> counts = new ArrayList<>();
+        buckets.forEach((bound, n) -> counts.add(new double[]{round(bound / scale), n}));
+        json.put("buckets", counts);
+        return json;
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 1000) / 1000.0;
+    }
+}
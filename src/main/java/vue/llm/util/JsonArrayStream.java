@@ -0,0 +1,110 @@
+package vue.llm.util;
+
+import com.alibaba.fastjson2.JSON;
+import com.alibaba.fastjson2.JSONException;
+import com.alibaba.fastjson2.JSONObject;
+
+import java.util.function.Consumer;
+
+/**
+ * Incremental parser for a streamed JSON document such as {@code {"edges": [{...}, {...}]}}: text is fed
+ * in arbitrary chunks and each object of the named top-level array is handed to the consumer as soon as
+ * its closing brace arrives. Text outside the document (markdown fences, prose) is skipped.
+ *
+ * Only the object boundaries are tracked while streaming (string and escape state plus nesting depth);
+ * each completed object is parsed once. An object that does not parse is handed over as null, so one bad
+ * element does not end the stream. Not thread-safe.
+ */
+public final class JsonArrayStream {
+
+    private final String field;
+    private final Consumer<JSONObject> consumer;
+    private final StringBuilder text = new StringBuilder();
+
+    private int scanned;
+    private int depth;
+    private boolean inString;
+    private boolean escaped;
+    private int stringStart = -1;
+    private String lastString;
+    /** Depth of the target array while inside it; -1 before it opens, -2 after it closes. */
+    private int arrayDepth = -1;
+    private int objectStart = -1;
+    private int emitted;
+
+    public JsonArrayStream(String field, Consumer<JSONObject> consumer) {
+        this.field = field;
+        this.consumer = consumer;
+    }
+
+    /** Appends a chunk; the consumer runs on this thread for every object the chunk completes. */
+    public void feed(CharSequence chunk) {
+        text.append(chunk);
+        for (; scanned < text.length(); scanned++) {
+            char c = text.charAt(scanned);
+            if (inString) {
+                if (escaped) {
+                    escaped = false;
+                } else if (c == '\\') {
+                    escaped = true;
+                } else if (c == '"') {
+                    inString = false;
+                    lastString = text.substring(stringStart + 1, scanned);
+                }
+                continue;
+            }
+            switch (c) {
+                case '"':
+                    if (depth > 0) {
+                        inString = true;
+                        stringStart = scanned;
+                    }
+                    break;
+                case '{':
+                    depth++;
+                    if (arrayDepth >= 0 && depth == arrayDepth + 1) {
+                        objectStart = scanned;
+                    }
+                    break;
+                case '[':
+                    depth++;
+                    if (arrayDepth == -1 && depth == 2 && field.equals(lastString)) {
+                        arrayDepth = depth;
+                    }
+                    break;
+                case '}':
+                    if (objectStart >= 0 && depth == arrayDepth + 1) {
+                        JSONObject object;
+                        try {
+                            object = JSON.parseObject(text.substring(objectStart, scanned + 1));
+                        } catch (JSONException e) {
+                            object = null;
+                        }
+                        objectStart = -1;
+                        emitted++;
+                        consumer.accept(object);
+                    }
+                    depth = Math.max(0, depth - 1);
+                    break;
+                case ']':
+                    if (depth == arrayDepth) {
+                        arrayDepth = -2;
+                    }
+                    depth = Math.max(0, depth - 1);
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    /** Everything fed so far. */
+    public String getText() {
+        return text.toString();
+    }
+
+    /** Number of array objects handed to the consumer. */
+    public int getEmitted() {
+        return emitted;
+    }
+}
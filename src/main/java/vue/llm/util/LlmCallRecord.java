@@ -0,0 +1,121 @@
+package vue.llm.util;
+
+import com.alibaba.fastjson2.JSON;
+import com.alibaba.fastjson2.JSONObject;
+
+import java.util.Map;
+
+/**
+ * Timing, token usage and outcome of one logical LLM call (all of its attempts), filled in by
+ * {@link LlmClient} and handed to its {@link LlmTelemetry} when the call ends. The caller creates it when
+ * the work is ready to send, so rate limiting and concurrency waits count as queue time.
+ */
+public final class LlmCallRecord {
+
+    /** Stage the call belongs to, e.g. {@code stage2}. */
+    public final String stage;
+    /** Source files the call works for, each with its share of the call's tokens (shares sum to 1). */
+    public final Map<String, Double> fileShares;
+    final long createdNanos = System.nanoTime();
+
+    long firstSendNanos = -1;
+    long attemptSendNanos = -1;
+    long ttfbNanos = -1;
+    long endNanos = -1;
+    int attempts;
+    boolean cacheHit;
+    boolean failed;
+    boolean abandoned;
+    long promptTokens;
+    long completionTokens;
+    long cachedPromptTokens;
+
+    public LlmCallRecord(String stage, Map<String, Double> fileShares) {
+        this.stage = stage;
+        this.fileShares = fileShares != null ? fileShares : Map.of();
+    }
+
+    public static LlmCallRecord unlabelled() {
+        return new LlmCallRecord("unlabelled", Map.of());
+    }
+
+    /** Creation to the first byte sent: rate limiter, concurrency limiter and breaker. */
+    public long getQueueWaitNanos() {
+        return firstSendNanos < 0 ? elapsed(createdNanos, endNanos) : firstSendNanos - createdNanos;
+    }
+
+    /** Send to response headers of the attempt that answered; -1 without one (cache hit, failure). */
+    public long getTtfbNanos() {
+        return ttfbNanos;
+    }
+
+    /** Creation to completion, backoff between attempts included. */
+    public long getTotalNanos() {
+        return elapsed(createdNanos, endNanos);
+    }
+
+    public int getRetries() {
+        return Math.max(0, attempts - 1);
+    }
+
+    public boolean isCacheHit() {
+        return cacheHit;
+    }
+
+    public boolean isFailed() {
+        return failed;
+    }
+
+    /** The caller stopped reading a streamed answer early. */
+    public boolean isAbandoned() {
+        return abandoned;
+    }
+
+    public long getPromptTokens() {
+        return promptTokens;
+    }
+
+    public long getCompletionTokens() {
+        return completionTokens;
+    }
+
+    /** Prompt tokens the provider served from its prompt cache; 0 when it does not report them. */
+    public long getCachedPromptTokens() {
+        return cachedPromptTokens;
+    }
+
+    void attemptStarted() {
+        attempts++;
+        attemptSendNanos = System.nanoTime();
+        if (firstSendNanos < 0) firstSendNanos = attemptSendNanos;
+    }
+
+    void headersReceived() {
+        ttfbNanos = System.nanoTime() - attemptSendNanos;
+    }
+
+    /**
+     * Reads {@code usage.prompt_tokens} / {@code usage.completion_tokens} from a chat-completion body, and
+     * the cached part of the prompt from {@code usage.prompt_tokens_details.cached_tokens} (OpenAI) or
+     * {@code usage.prompt_cache_hit_tokens} (DeepSeek).
+     */
+    void usageFrom(String body) {
+        try {
+            JSONObject json = JSON.parseObject(body);
+            JSONObject usage = json != null ? json.getJSONObject("usage") : null;
+            if (usage == null) return;
+            promptTokens = usage.getLongValue("prompt_tokens");
+            completionTokens = usage.getLongValue("completion_tokens");
+            JSONObject details = usage.getJSONObject("prompt_tokens_details");
+            cachedPromptTokens = details != null
+                    ? details.getLongValue("cached_tokens")
+                    : usage.getLongValue("prompt_cache_hit_tokens");
+        } catch (RuntimeException ignored) {
+            // not JSON: no usage to report
+        }
+    }
+
+    private static long elapsed(long from, long to) {
+        return (to < 0 ? System.nanoTime() : to) - from;
+    }
+}
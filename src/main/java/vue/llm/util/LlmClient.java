@@ -1,20 +1,112 @@
 package vue.llm.util;
 
+import com.alibaba.fastjson2.JSON;
+import com.alibaba.fastjson2.JSONArray;
+import com.alibaba.fastjson2.JSONObject;
 import okhttp3.*;
+import okio.BufferedSink;
+import okio.BufferedSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-import java.nio.charset.StandardCharsets;
+import java.io.IOException;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
 
+/**
+ * OpenAI-compatible chat-completions client with a response cache.
+ *
+ * Failed calls are classified ({@link RetryPolicy.Failure}) and retried with jittered exponential backoff,
+ * honouring {@code Retry-After}. A {@link CircuitBreaker} shared by all callers stops calling an endpoint
+ * that keeps failing, and an {@link AdaptiveConcurrencyLimiter} halves the calls in flight on 429s.
+ *
+ * Calls are spread over a pool of {@link LlmEndpoint}s, each going to the one with the fewest outstanding
+ * calls per unit of weight; a retry prefers another endpoint than the attempt that failed. With hedging on,
+ * a non-streaming call still unanswered after the p95 latency of earlier calls is sent once more, to
+ * another endpoint when there is one; the first answer wins and the other call is cancelled.
+ */
 public class LlmClient {
 
+    private static final Logger log = LoggerFactory.getLogger(LlmClient.class);
+
+    // Overridable with -Dllmvue.endpoint / -Dllmvue.apiKey / -Dllmvue.model or LLMVUE_ENDPOINT / LLMVUE_API_KEY / LLMVUE_MODEL.
+    public final static String endpoint = setting("llmvue.endpoint", "LLMVUE_ENDPOINT", "https://api.openai.com/v1/chat/completions");
+    // -Dllmvue.endpoints / LLMVUE_ENDPOINTS: a weighted pool in LlmEndpoint.parseList syntax, used instead of the single endpoint.
+    public final static String endpoints = setting("llmvue.endpoints", "LLMVUE_ENDPOINTS", "");
+    public final static String apiKey = setting("llmvue.apiKey", "LLMVUE_API_KEY", "sk-xx");
+    public final static String model = setting("llmvue.model", "LLMVUE_MODEL", "gpt-4o");
+
+    /** Default cap on concurrent HTTP calls; well above Stage 2's in-flight limit so the server is the bottleneck. */
+    public static final int MAX_REQUESTS = 64;
+
+    /** Hedge after this percentile of the latency of earlier successful calls ... */
+    public static final double HEDGE_PERCENTILE = 95;
+    /** ... once there are this many ... */
+    public static final int HEDGE_MIN_SAMPLES = 10;
+    /** ... but never sooner than this. */
+    public static final long HEDGE_MIN_DELAY_MS = 50;
+
     private final OkHttpClient client;
-    public final static String endpoint = "https://api.openai.com/v1/chat/completions";
-    public final static String apiKey = "sk-xx";
-    public final static String model = "gpt-4o";
+    private final List<LlmEndpoint> pool;
+    private final AtomicInteger nextEndpoint = new AtomicInteger();
+    private LlmResponseCache cache = LlmResponseCache.bypass();
+    private RetryPolicy retryPolicy = RetryPolicy.defaults();
+    private AdaptiveConcurrencyLimiter concurrencyLimiter;
+    private LlmTelemetry telemetry = new LlmTelemetry(price("llmvue.promptPrice", "LLMVUE_PROMPT_PRICE"),
+            price("llmvue.completionPrice", "LLMVUE_COMPLETION_PRICE"));
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder throttled = new LongAdder();
+    private final LongAdder serverErrors = new LongAdder();
+    private final LongAdder networkErrors = new LongAdder();
+    private boolean hedging;
+    private final Histogram callLatency = new Histogram();
+    private final LongAdder hedges = new LongAdder();
 
     public LlmClient() {
+        this(endpoints.isBlank() ? List.of(new LlmEndpoint(endpoint, 1)) : LlmEndpoint.parseList(endpoints), MAX_REQUESTS);
+    }
+
+    /** Client for another OpenAI-compatible chat-completions URL, e.g. a local stub server. */
+    public LlmClient(String url) {
+        this(url, MAX_REQUESTS);
+    }
+
+    /**
+     * {@code maxRequests} bounds in-flight calls on the OkHttp dispatcher, per host as well as in total,
+     * and sizes the keep-alive pool so concurrent callers reuse connections instead of reconnecting.
+     * HTTP/2 is negotiated via ALPN on TLS endpoints and multiplexes those calls over one connection.
+     */
+    public LlmClient(String url, int maxRequests) {
+        this(List.of(new LlmEndpoint(url, 1)), maxRequests);
+    }
+
+    /** Client balancing over several chat-completions URLs serving the same model. */
+    public LlmClient(List<LlmEndpoint> endpoints, int maxRequests) {
+        if (endpoints.isEmpty()) throw new IllegalArgumentException("No LLM endpoints");
+        this.pool = List.copyOf(endpoints);
+        this.concurrencyLimiter = new AdaptiveConcurrencyLimiter(maxRequests);
+        // Daemon threads: OkHttp's default dispatcher threads would keep the JVM alive for a minute after main returns.
+        Dispatcher dispatcher = new Dispatcher(Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "llm-http");
+            t.setDaemon(true);
+            return t;
+        }));
+        dispatcher.setMaxRequests(maxRequests);
+        dispatcher.setMaxRequestsPerHost(maxRequests);
         this.client = new OkHttpClient.Builder()
+                .dispatcher(dispatcher)
+                .connectionPool(new ConnectionPool(maxRequests, 5, TimeUnit.MINUTES))
+                .protocols(List.of(Protocol.HTTP_2, Protocol.HTTP_1_1))
                 .connectTimeout(Duration.ofSeconds(30))
                 .writeTimeout(Duration.ofSeconds(60))
                 .readTimeout(Duration.ofSeconds(120))
@@ -22,53 +114,640 @@ public class LlmClient {
                 .build();
     }
 
+    public void setCache(LlmResponseCache cache) {
+        this.cache = cache != null ? cache : LlmResponseCache.bypass();
+    }
+
+    public LlmResponseCache getCache() {
+        return cache;
+    }
+
+    public void setTelemetry(LlmTelemetry telemetry) {
+        this.telemetry = telemetry != null ? telemetry : new LlmTelemetry();
+    }
+
+    public LlmTelemetry getTelemetry() {
+        return telemetry;
+    }
+
+    public void setRetryPolicy(RetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy != null ? retryPolicy : RetryPolicy.none();
+    }
+
+    /** Gives every endpoint a fresh {@link CircuitBreaker} with these settings. */
+    public void setCircuitBreakers(int failureThreshold, long openMillis) {
+        for (LlmEndpoint e : pool) {
+            e.setCircuitBreaker(new CircuitBreaker(failureThreshold, openMillis));
+        }
+    }
+
+    public List<LlmEndpoint> getEndpoints() {
+        return pool;
+    }
+
+    /** Sends a second copy of a slow non-streaming call; see the class comment. Off by default. */
+    public void setHedging(boolean hedging) {
+        this.hedging = hedging;
+    }
+
+    /** Replaces the limiter; its maximum should match the callers' own concurrency so a 429 takes effect at once. */
+    public void setConcurrencyLimiter(AdaptiveConcurrencyLimiter concurrencyLimiter) {
+        this.concurrencyLimiter = concurrencyLimiter;
+    }
+
+    public AdaptiveConcurrencyLimiter getConcurrencyLimiter() {
+        return concurrencyLimiter;
+    }
+
+    public void resetStats() {
+        retries.reset();
+        throttled.reset();
+        serverErrors.reset();
+        networkErrors.reset();
+        hedges.reset();
+    }
+
+    public long getRetries() {
+        return retries.sum();
+    }
+
+    public long getHedges() {
+        return hedges.sum();
+    }
+
+    public void printStats() {
+        if (!log.isInfoEnabled()) return;
+        if (pool.size() > 1 || hedges.sum() > 0) {
+            for (LlmEndpoint e : pool) {
+                log.info("[LlmClient] {} (weight {}): {} calls, {} failed, {} hedges won",
+                        e.getUrl(), e.getWeight(), e.getCalls(), e.getFailures(), e.getHedgeWins());
+            }
+        }
+        if (retries.sum() == 0 && throttled.sum() == 0 && serverErrors.sum() == 0 && networkErrors.sum() == 0
+                && hedges.sum() == 0) return;
+        int timesOpened = pool.stream().mapToInt(e -> e.getCircuitBreaker().getTimesOpened()).sum();
+        log.info("[LlmClient] failed attempts: 429={} 5xx={} network={}, retries={}, hedges={}, circuit opened {} times, "
+                        + "concurrency limit {}/{} (lowest {})",
+                throttled.sum(), serverErrors.sum(), networkErrors.sum(), retries.sum(), hedges.sum(),
+                timesOpened, concurrencyLimiter.currentLimit(), concurrencyLimiter.getMaxLimit(),
+                concurrencyLimiter.getMinLimitSeen());
+    }
+
     public String complete(String systemPrompt, String userPrompt, Map<String, Object> params) throws Exception {
-        String temperature = params != null && params.get("temperature") != null
-                ? params.get("temperature").toString()
-                : "0";
-
-        String payloadFormatted = """
-                {
-                  "model": %s,
-                  "messages": [
-                    {"role":"system","content": %s},
-                    {"role":"user","content": %s}
-                  ],
-                  "temperature": %s,
-                  "response_format": {"type": "json_object"}
+        return complete(systemPrompt, userPrompt, params, LlmCallRecord.unlabelled());
+    }
+
+    public String complete(String systemPrompt, String userPrompt, Map<String, Object> params,
+                           LlmCallRecord record) throws Exception {
+        try {
+            return completeAsync(systemPrompt, userPrompt, params, record).get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) throw (Exception) cause;
+            throw e;
+        }
+    }
+
+    /**
+     * Non-blocking {@link #complete}: the request is enqueued on the client's dispatcher and the
+     * future completes on an OkHttp thread, after any retries. Cancelling the future cancels the HTTP call.
+     */
+    public CompletableFuture<String> completeAsync(String systemPrompt, String userPrompt, Map<String, Object> params) {
+        return completeAsync(systemPrompt, userPrompt, params, LlmCallRecord.unlabelled());
+    }
+
+    /** {@link #completeAsync} reporting its timing and token usage to the telemetry under {@code record}'s labels. */
+    public CompletableFuture<String> completeAsync(String systemPrompt, String userPrompt, Map<String, Object> params,
+                                                   LlmCallRecord record) {
+        String temperature = temperature(params);
+        String responseFormat = responseFormat(params);
+        String cacheKey = cacheKey(temperature, responseFormat, systemPrompt, userPrompt);
+        if (cacheKey != null) {
+            String cached = cache.get(cacheKey);
+            if (cached != null) {
+                record.cacheHit = true;
+                finish(record, false);
+                return CompletableFuture.completedFuture(cached);
+            }
+            if (cache.getMode() == LlmResponseCache.Mode.READ_ONLY) {
+                finish(record, true);
+                return CompletableFuture.failedFuture(new LlmResponseCache.CacheMissException(cacheKey));
+            }
+        }
+
+        CompletableFuture<String> result = new CompletableFuture<>();
+        result.whenComplete((body, error) -> finish(record, error != null));
+        new Attempt(new ChatRequestBody(model, systemPrompt, userPrompt, temperature, responseFormat, false), cacheKey, 1, record, result)
+                .start(null);
+        return result;
+    }
+
+    /**
+     * One attempt of {@link #completeAsync}: its call and, when hedged, a second one racing it. The first
+     * answer completes the result and cancels the other call; once every call has failed, the attempt
+     * schedules the next one after a backoff if the failure is retryable.
+     */
+    private final class Attempt {
+        private final ChatRequestBody body;
+        private final String cacheKey;
+        private final int number;
+        private final LlmCallRecord record;
+        private final CompletableFuture<String> result;
+        // guarded by this
+        private final List<Call> calls = new ArrayList<>();
+        private int pending;
+        private boolean over;
+        private LlmEndpoint primary;
+        private Exception lastError;
+
+        Attempt(ChatRequestBody body, String cacheKey, int number, LlmCallRecord record, CompletableFuture<String> result) {
+            this.body = body;
+            this.cacheKey = cacheKey;
+            this.number = number;
+            this.record = record;
+            this.result = result;
+        }
+
+        void start(LlmEndpoint avoid) {
+            launch(avoid, false);
+            long delay = hedgeDelayMillis();
+            if (delay >= 0) {
+                CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS).execute(this::hedge);
+            }
+        }
+
+        private void hedge() {
+            LlmEndpoint avoid;
+            synchronized (this) {
+                if (over || primary == null) return;
+                avoid = primary;
+            }
+            hedges.increment();
+            log.debug("[LlmClient] no answer after the hedge delay (attempt {}), sending a second call", number);
+            launch(avoid, true);
+        }
+
+        private void launch(LlmEndpoint avoid, boolean hedge) {
+            synchronized (this) {
+                pending++;
+            }
+            concurrencyLimiter.acquire().thenAccept(permit -> send(permit, avoid, hedge));
+        }
+
+        private void send(AdaptiveConcurrencyLimiter.Permit permit, LlmEndpoint avoid, boolean hedge) {
+            if (result.isDone()) {
+                concurrencyLimiter.release(permit, RetryPolicy.Failure.OTHER);
+                ended(null);
+                return;
+            }
+            LlmEndpoint target;
+            try {
+                target = pickEndpoint(avoid);
+            } catch (CircuitBreaker.OpenException e) {
+                concurrencyLimiter.release(permit, RetryPolicy.Failure.OTHER);
+                ended(e);
+                return;
+            }
+            Call call = client.newCall(request(target, body));
+            boolean late;
+            synchronized (this) {
+                late = over;
+                if (!late) {
+                    if (!hedge) primary = target;
+                    calls.add(call);
+                }
+            }
+            if (late) {
+                // outside the lock: releasing the permit can run other waiters' send on this thread
+                settle(permit, target, RetryPolicy.Failure.OTHER);
+                return;
+            }
+            if (!hedge) record.attemptStarted();
+            long sent = System.nanoTime();
+            result.whenComplete((b, error) -> {
+                if (result.isCancelled()) call.cancel();
+            });
+            call.enqueue(new Callback() {
+                @Override
+                public void onFailure(Call c, IOException e) {
+                    failed(c, e);
+                }
+
+                @Override
+                public void onResponse(Call c, Response resp) {
+                    long headers = System.nanoTime();
+                    String answer;
+                    try (resp) {
+                        if (!resp.isSuccessful()) {
+                            throw LlmHttpException.from(resp);
+                        }
+                        answer = resp.body() != null ? resp.body().string() : "";
+                    } catch (Exception e) {
+                        failed(c, e);
+                        return;
+                    }
+                    settle(permit, target, null);
+                    callLatency.record(System.nanoTime() - sent);
+                    won(c, target, hedge, headers - sent, answer);
+                }
+
+                private void failed(Call c, Exception e) {
+                    // the loser of a hedge, or a call its caller gave up on: says nothing about the endpoint
+                    boolean cancelled = c.isCanceled();
+                    settle(permit, target, cancelled ? RetryPolicy.Failure.OTHER : RetryPolicy.classify(e));
+                    ended(cancelled ? null : e);
+                }
+            });
+        }
+
+        private void won(Call winner, LlmEndpoint target, boolean hedge, long ttfbNanos, String answer) {
+            List<Call> others;
+            synchronized (this) {
+                pending--;
+                if (over) return;
+                over = true;
+                others = new ArrayList<>(calls);
+            }
+            for (Call other : others) {
+                if (other != winner) other.cancel();
+            }
+            if (hedge) target.hedgeWon();
+            record.ttfbNanos = ttfbNanos;
+            record.usageFrom(answer);
+            if (cacheKey != null) {
+                cache.put(cacheKey, answer);
+            }
+            result.complete(answer);
+        }
+
+        /** A call that did not answer; the attempt fails with the last error once no call is left. */
+        private void ended(Exception error) {
+            Exception failure;
+            LlmEndpoint failedOn;
+            synchronized (this) {
+                pending--;
+                if (error != null) lastError = error;
+                if (over || pending > 0) return;
+                over = true;
+                failure = lastError;
+                failedOn = primary;
+            }
+            if (result.isDone() || failure == null) return;
+            if (!retryPolicy.shouldRetry(failure, number)) {
+                result.completeExceptionally(failure);
+                return;
+            }
+            long delay = retryPolicy.delayMillis(failure, number);
+            retries.increment();
+            log.debug("[LlmClient] {} (attempt {}), retrying in {} ms", failure.getMessage(), number, delay);
+            CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS)
+                    .execute(() -> new Attempt(body, cacheKey, number + 1, record, result).start(failedOn));
+        }
+    }
+
+    /** Hedge delay in ms, or -1 while hedging is off or there are too few latencies to estimate it. */
+    private long hedgeDelayMillis() {
+        if (!hedging || callLatency.getCount() < HEDGE_MIN_SAMPLES) return -1;
+        return Math.max(HEDGE_MIN_DELAY_MS, callLatency.percentile(HEDGE_PERCENTILE) / 1_000_000);
+    }
+
+    /**
+     * Least outstanding calls per unit of weight, ties taken in turn, among the endpoints whose circuit
+     * lets a call through; {@code avoid} (where the previous attempt went) only when nothing else does.
+     */
+    private LlmEndpoint pickEndpoint(LlmEndpoint avoid) throws CircuitBreaker.OpenException {
+        int n = pool.size();
+        int offset = Math.floorMod(nextEndpoint.getAndIncrement(), n);
+        List<LlmEndpoint> order = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            order.add(pool.get((offset + i) % n));
+        }
+        order.sort(Comparator.comparing((LlmEndpoint e) -> e == avoid && n > 1).thenComparingDouble(LlmEndpoint::load));
+        CircuitBreaker.OpenException refused = null;
+        for (LlmEndpoint e : order) {
+            try {
+                e.getCircuitBreaker().acquirePermission();
+                e.callStarted();
+                return e;
+            } catch (CircuitBreaker.OpenException open) {
+                refused = open;
+            }
+        }
+        throw refused;
+    }
+
+    /** Closes the call's record and hands it to the telemetry. */
+    private void finish(LlmCallRecord record, boolean failed) {
+        record.failed = failed && !record.abandoned;
+        record.endNanos = System.nanoTime();
+        telemetry.record(record);
+    }
+
+    /**
+     * Books the outcome of a call sent to {@code endpoint} ({@code failure} null on success): frees its
+     * concurrency slot and records it on the endpoint and its circuit breaker.
+     */
+    private void settle(AdaptiveConcurrencyLimiter.Permit permit, LlmEndpoint endpoint, RetryPolicy.Failure failure) {
+        if (failure == RetryPolicy.Failure.THROTTLED) throttled.increment();
+        else if (failure == RetryPolicy.Failure.SERVER) serverErrors.increment();
+        else if (failure == RetryPolicy.Failure.NETWORK) networkErrors.increment();
+        concurrencyLimiter.release(permit, failure);
+        endpoint.getCircuitBreaker().record(failure);
+        endpoint.callEnded(failure != null && failure != RetryPolicy.Failure.OTHER);
+    }
+
+    /**
+     * Streaming {@link #complete} ({@code "stream": true}): {@code onContent} receives each piece of the
+     * assistant message as its server-sent event arrives, on the calling thread. An exception thrown by
+     * {@code onContent} cancels the HTTP call and is rethrown, so a caller can give up on a response early.
+     * Returns the assembled response in the non-streaming chat-completion shape; only complete responses
+     * are cached. A cached response is delivered to {@code onContent} in one piece. Failures are retried
+     * like {@link #completeAsync}, but only until the first piece has been delivered.
+     */
+    public String completeStreaming(String systemPrompt, String userPrompt, Map<String, Object> params,
+                                    LlmCallRecord record, Consumer<String> onContent) throws Exception {
+        boolean failed = true;
+        try {
+            String body = streamWithRetries(systemPrompt, userPrompt, params, record, onContent);
+            failed = false;
+            return body;
+        } finally {
+            finish(record, failed);
+        }
+    }
+
+    private String streamWithRetries(String systemPrompt, String userPrompt, Map<String, Object> params,
+                                     LlmCallRecord record, Consumer<String> onContent) throws Exception {
+        String temperature = temperature(params);
+        String responseFormat = responseFormat(params);
+        String cacheKey = cacheKey(temperature, responseFormat, systemPrompt, userPrompt);
+        if (cacheKey != null) {
+            String cached = cache.get(cacheKey);
+            if (cached != null) {
+                record.cacheHit = true;
+                onContent.accept(messageContent(cached));
+                return cached;
+            }
+            if (cache.getMode() == LlmResponseCache.Mode.READ_ONLY) {
+                throw new LlmResponseCache.CacheMissException(cacheKey);
+            }
+        }
+
+        ChatRequestBody body = new ChatRequestBody(model, systemPrompt, userPrompt, temperature, responseFormat, true);
+        boolean[] delivered = {false};
+        Consumer<String> listener = piece -> {
+            delivered[0] = true;
+            try {
+                onContent.accept(piece);
+            } catch (RuntimeException e) {
+                record.abandoned = true;
+                throw e;
+            }
+        };
+        LlmEndpoint previous = null;
+        for (int attempt = 1; ; attempt++) {
+            AdaptiveConcurrencyLimiter.Permit permit = awaitPermit();
+            LlmEndpoint target;
+            try {
+                target = pickEndpoint(previous);
+            } catch (CircuitBreaker.OpenException e) {
+                concurrencyLimiter.release(permit, RetryPolicy.Failure.OTHER);
+                throw e;
+            }
+            previous = target;
+            try {
+                record.attemptStarted();
+                String answer = streamOnce(request(target, body), record, listener);
+                settle(permit, target, null);
+                record.usageFrom(answer);
+                if (cacheKey != null) {
+                    cache.put(cacheKey, answer);
                 }
-                """;
-        String payload = payloadFormatted.formatted(
-                jsonString(model),
-                jsonString(systemPrompt),
-                jsonString(userPrompt),
-                temperature
-        );
-        //System.out.println("[payload]: " + payload);
-        Request req = new Request.Builder()
-                .url(endpoint)
+                return answer;
+            } catch (Exception e) {
+                settle(permit, target, RetryPolicy.classify(e));
+                if (delivered[0] || !retryPolicy.shouldRetry(e, attempt)) throw e;
+                long delay = retryPolicy.delayMillis(e, attempt);
+                retries.increment();
+                log.debug("[LlmClient] {} (attempt {}), retrying in {} ms", e.getMessage(), attempt, delay);
+                Thread.sleep(delay);
+            }
+        }
+    }
+
+    private AdaptiveConcurrencyLimiter.Permit awaitPermit() throws Exception {
+        CompletableFuture<AdaptiveConcurrencyLimiter.Permit> waiter = concurrencyLimiter.acquire();
+        try {
+            return waiter.get();
+        } catch (InterruptedException e) {
+            // a cancelled waiter is skipped by the limiter; one granted meanwhile is handed back here
+            if (!waiter.cancel(false)) {
+                concurrencyLimiter.release(waiter.join(), RetryPolicy.Failure.OTHER);
+            }
+            throw e;
+        }
+    }
+
+    private String streamOnce(Request req, LlmCallRecord record, Consumer<String> onContent) throws IOException {
+        Call call = client.newCall(req);
+        try (Response resp = call.execute()) {
+            record.headersReceived();
+            if (!resp.isSuccessful()) {
+                throw LlmHttpException.from(resp);
+            }
+            MediaType type = resp.body() != null ? resp.body().contentType() : null;
+            if (type != null && "event-stream".equals(type.subtype())) {
+                return readEventStream(resp.body().source(), onContent);
+            }
+            // Server ignored "stream": hand over the whole message at once.
+            String body = resp.body() != null ? resp.body().string() : "";
+            onContent.accept(messageContent(body));
+            return body;
+        } catch (RuntimeException e) {
+            call.cancel();
+            throw e;
+        }
+    }
+
+    /** Reads {@code data:} events until {@code [DONE]}, forwarding content deltas; returns the assembled response. */
+    private static String readEventStream(BufferedSource source, Consumer<String> onContent) throws IOException {
+        StringBuilder content = new StringBuilder();
+        String finishReason = null;
+        JSONObject usage = null;
+        String line;
+        while ((line = source.readUtf8Line()) != null) {
+            if (!line.startsWith("data:")) continue;
+            String data = line.substring("data:".length()).trim();
+            if (data.equals("[DONE]")) break;
+            if (data.isEmpty()) continue;
+            JSONObject chunk = JSON.parseObject(data);
+            if (chunk.getJSONObject("usage") != null) {
+                usage = chunk.getJSONObject("usage");
+            }
+            JSONArray choices = chunk.getJSONArray("choices");
+            if (choices == null || choices.isEmpty()) continue;
+            JSONObject choice = choices.getJSONObject(0);
+            if (choice.getString("finish_reason") != null) {
+                finishReason = choice.getString("finish_reason");
+            }
+            JSONObject delta = choice.getJSONObject("delta");
+            String piece = delta != null ? delta.getString("content") : null;
+            if (piece != null && !piece.isEmpty()) {
+                content.append(piece);
+                onContent.accept(piece);
+            }
+        }
+
+        JSONObject message = new JSONObject();
+        message.put("role", "assistant");
+        message.put("content", content.toString());
+        JSONObject choice = new JSONObject();
+        choice.put("index", 0);
+        choice.put("message", message);
+        choice.put("finish_reason", finishReason);
+        JSONObject response = new JSONObject();
+        response.put("object", "chat.completion");
+        response.put("choices", List.of(choice));
+        if (usage != null) {
+            response.put("usage", usage);
+        }
+        return response.toJSONString();
+    }
+
+    private static String messageContent(String response) {
+        JSONObject json = JSON.parseObject(response);
+        JSONArray choices = json != null ? json.getJSONArray("choices") : null;
+        if (choices == null || choices.isEmpty()) return "";
+        JSONObject message = choices.getJSONObject(0).getJSONObject("message");
+        String content = message != null ? message.getString("content") : null;
+        return content != null ? content : "";
+    }
+
+    private static String temperature(Map<String, Object> params) {
+        return params != null && params.get("temperature") != null ? params.get("temperature").toString() : "0";
+    }
+
+    /**
+     * {@code params.response_format} as raw JSON, e.g. a {@code json_schema} format for structured output;
+     * {@code json_object} by default.
+     */
+    private static String responseFormat(Map<String, Object> params) {
+        Object format = params != null ? params.get("response_format") : null;
+        return format != null ? format.toString() : DEFAULT_RESPONSE_FORMAT;
+    }
+
+    /**
+     * Null when the cache is bypassed. A non-default response format is part of the key, so structured and
+     * free-form answers to the same prompts are cached apart.
+     */
+    private String cacheKey(String temperature, String responseFormat, String systemPrompt, String userPrompt) {
+        if (cache.getMode() == LlmResponseCache.Mode.BYPASS) return null;
+        return LlmResponseCache.key(model, temperature,
+                DEFAULT_RESPONSE_FORMAT.equals(responseFormat) ? null : responseFormat, systemPrompt, userPrompt);
+    }
+
+    private static Request request(LlmEndpoint endpoint, ChatRequestBody body) {
+        return new Request.Builder()
+                .url(endpoint.getUrl())
                 .header("Authorization", "Bearer " + apiKey)
-                .header("Content-Type", "application/json")
-                .post(RequestBody.create(payload.getBytes(StandardCharsets.UTF_8), MediaType.parse("application/json")))
+                .post(body)
                 .build();
+    }
+
+    private static final String DEFAULT_RESPONSE_FORMAT = "{\"type\":\"json_object\"}";
 
-        try (Response resp = client.newCall(req).execute()) {
-            if (!resp.isSuccessful())
-                throw new RuntimeException("HTTP " + resp.code() + " - " + resp.message());
+    /** Chat-completions payload written straight to the socket, escaping the prompts as they are copied. */
+    private static final class ChatRequestBody extends RequestBody {
+        private static final MediaType JSON_TYPE = MediaType.get("application/json; charset=utf-8");
 
-            return resp.body() != null ? resp.body().string() : "";
+        private final String model;
+        private final String systemPrompt;
+        private final String userPrompt;
+        private final String temperature;
+        private final String responseFormat;
+        private final boolean stream;
+
+        ChatRequestBody(String model, String systemPrompt, String userPrompt, String temperature,
+                        String responseFormat, boolean stream) {
+            this.model = model;
+            this.systemPrompt = systemPrompt;
+            this.userPrompt = userPrompt;
+            this.temperature = temperature;
+            this.responseFormat = responseFormat;
+            this.stream = stream;
+        }
+
+        @Override
+        public MediaType contentType() {
+            return JSON_TYPE;
+        }
+
+        @Override
+        public void writeTo(BufferedSink sink) throws IOException {
+            sink.writeUtf8("{\"model\":");
+            writeJsonString(sink, model);
+            sink.writeUtf8(",\"messages\":[{\"role\":\"system\",\"content\":");
+            writeJsonString(sink, systemPrompt);
+            sink.writeUtf8("},{\"role\":\"user\",\"content\":");
+            writeJsonString(sink, userPrompt);
+            sink.writeUtf8("}],\"temperature\":").writeUtf8(temperature);
+            if (stream) {
+                sink.writeUtf8(",\"stream\":true,\"stream_options\":{\"include_usage\":true}");
+            }
+            sink.writeUtf8(",\"response_format\":").writeUtf8(responseFormat).writeByte('}');
+        }
+    }
+
+    private static void writeJsonString(BufferedSink sink, String s) throws IOException {
+        if (s == null) {
+            sink.writeUtf8("null");
+            return;
         }
+        sink.writeByte('"');
+        int run = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            String escape;
+            if (c == '"') escape = "\\\"";
+            else if (c == '\\') escape = "\\\\";
+            else if (c == '\n') escape = "\\n";
+            else if (c == '\r') escape = "\\r";
+            else if (c == '\t') escape = "\\t";
+            else if (c < 0x20) escape = String.format("\\u%04x", (int) c);
+            else continue;
+            sink.writeUtf8(s, run, i).writeUtf8(escape);
+            run = i + 1;
+        }
+        sink.writeUtf8(s, run, s.length());
+        sink.writeByte('"');
     }
 
-    private static String jsonString(String s) {
-        if (s == null) return "null";
-        return "\"" + s.replace("\\", "\\\\")
-                .replace("\"", "\\\"")
-                .replace("\n", "\\n") + "\"";
+    /** USD per million tokens for the telemetry's cost figures; 0 when unset. */
+    private static double price(String property, String envVar) {
+        try {
+            return Double.parseDouble(setting(property, envVar, "0"));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
     }
 
+    private static String setting(String property, String envVar, String defaultValue) {
+        String value = System.getProperty(property);
+        if (value == null || value.isBlank()) {
+            value = System.getenv(envVar);
+        }
+        return value == null || value.isBlank() ? defaultValue : value;
+    }
 
     public String ask(String systemPrompt, String userPrompt) throws Exception {
         return complete(systemPrompt, userPrompt, Map.of("temperature", 0));
     }
+
+    public String ask(String systemPrompt, String userPrompt, LlmCallRecord record) throws Exception {
+        return complete(systemPrompt, userPrompt, Map.of("temperature", 0), record);
+    }
+
+    public CompletableFuture<String> askAsync(String systemPrompt, String userPrompt) {
+        return completeAsync(systemPrompt, userPrompt, Map.of("temperature", 0));
+    }
 }
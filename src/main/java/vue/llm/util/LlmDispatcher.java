@@ -0,0 +1,67 @@
+package vue.llm.util;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Runs LLM work units concurrently with at most {@code maxInFlight} running at once.
+ * Uses a virtual thread per task on JDK 21+ (looked up reflectively, the build targets 17)
+ * and a fixed pool of daemon threads otherwise.
+ */
+public class LlmDispatcher implements AutoCloseable {
+
+    private final int maxInFlight;
+    private final Semaphore inFlight;
+    private final ExecutorService executor;
+    private final boolean virtualThreads;
+
+    public LlmDispatcher(int maxInFlight) {
+        this.maxInFlight = Math.max(1, maxInFlight);
+        this.inFlight = new Semaphore(this.maxInFlight);
+        ExecutorService virtual = newVirtualThreadExecutor();
+        this.virtualThreads = virtual != null;
+        this.executor = virtual != null ? virtual : Executors.newFixedThreadPool(this.maxInFlight, r -> {
+            Thread t = new Thread(r, "llm-dispatch");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public <T> Future<T> submit(Callable<T> task) {
+        return executor.submit(() -> {
+            inFlight.acquire();
+            try {
+                return task.call();
+            } finally {
+                inFlight.release();
+            }
+        });
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    public boolean usesVirtualThreads() {
+        return virtualThreads;
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private static ExecutorService newVirtualThreadExecutor() {
+        if (Runtime.version().feature() < 21) return null;
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+}
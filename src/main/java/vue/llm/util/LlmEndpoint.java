@@ -0,0 +1,107 @@
+package vue.llm.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * One OpenAI-compatible chat-completions URL in an {@link LlmClient}'s pool, with its weight, the calls
+ * currently outstanding on it and its own {@link CircuitBreaker}, so one failing proxy or deployment is
+ * taken out of rotation without stopping the others.
+ */
+public final class LlmEndpoint {
+
+    private final String url;
+    private final double weight;
+    private volatile CircuitBreaker circuitBreaker = CircuitBreaker.defaults();
+    private final AtomicInteger outstanding = new AtomicInteger();
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder hedgeWins = new LongAdder();
+
+    public LlmEndpoint(String url, double weight) {
+        if (weight <= 0) throw new IllegalArgumentException("Endpoint weight must be positive: " + url);
+        this.url = url;
+        this.weight = weight;
+    }
+
+    /**
+     * Parses {@code url[;weight=w],url[;weight=w],...}, e.g.
+     * {@code http://127.0.0.1:8089/v1/chat/completions;weight=2,http://127.0.0.1:8090/v1/chat/completions}.
+     */
+    public static List<LlmEndpoint> parseList(String spec) {
+        List<LlmEndpoint> endpoints = new ArrayList<>();
+        for (String entry : spec.split(",")) {
+            String trimmed = entry.trim();
+            if (trimmed.isEmpty()) continue;
+            double weight = 1;
+            int params = trimmed.indexOf(';');
+            String url = params >= 0 ? trimmed.substring(0, params) : trimmed;
+            if (params >= 0) {
+                for (String param : trimmed.substring(params + 1).split(";")) {
+                    String[] kv = param.split("=", 2);
+                    if (kv.length == 2 && kv[0].trim().equals("weight")) {
+                        weight = Double.parseDouble(kv[1].trim());
+                    } else {
+                        throw new IllegalArgumentException("Unknown endpoint parameter: " + param);
+                    }
+                }
+            }
+            endpoints.add(new LlmEndpoint(url, weight));
+        }
+        if (endpoints.isEmpty()) throw new IllegalArgumentException("No endpoints in: " + spec);
+        return endpoints;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public double getWeight() {
+        return weight;
+    }
+
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    void setCircuitBreaker(CircuitBreaker circuitBreaker) {
+        this.circuitBreaker = circuitBreaker;
+    }
+
+    public int getOutstanding() {
+        return outstanding.get();
+    }
+
+    /** Outstanding calls per unit of weight, counting the one about to be sent. */
+    double load() {
+        return (outstanding.get() + 1) / weight;
+    }
+
+    void callStarted() {
+        outstanding.incrementAndGet();
+        calls.increment();
+    }
+
+    void callEnded(boolean failed) {
+        outstanding.decrementAndGet();
+        if (failed) failures.increment();
+    }
+
+    void hedgeWon() {
+        hedgeWins.increment();
+    }
+
+    public long getCalls() {
+        return calls.sum();
+    }
+
+    public long getFailures() {
+        return failures.sum();
+    }
+
+    public long getHedgeWins() {
+        return hedgeWins.sum();
+    }
+}
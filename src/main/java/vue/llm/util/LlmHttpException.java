@@ -0,0 +1,65 @@
+package vue.llm.util;
+
+import okhttp3.Response;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+
+/** Non-2xx answer from the chat-completions endpoint, with the server's {@code Retry-After} hint if any. */
+public class LlmHttpException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int statusCode;
+    private final long retryAfterMillis;
+
+    public LlmHttpException(int statusCode, String message, long retryAfterMillis) {
+        super("HTTP " + statusCode + " - " + message);
+        this.statusCode = statusCode;
+        this.retryAfterMillis = retryAfterMillis;
+    }
+
+    static LlmHttpException from(Response resp) {
+        return new LlmHttpException(resp.code(), resp.message(), retryAfterMillis(resp));
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    /** Server-requested wait before the next attempt, or -1 if it sent none. */
+    public long getRetryAfterMillis() {
+        return retryAfterMillis;
+    }
+
+    /**
+     * {@code retry-after-ms} (OpenAI), else {@code Retry-After} as seconds or an HTTP date; -1 if absent
+     * or unparsable.
+     */
+    static long retryAfterMillis(Response resp) {
+        String ms = resp.header("retry-after-ms");
+        if (ms != null) {
+            try {
+                return Math.max(0, (long) Double.parseDouble(ms.trim()));
+            } catch (NumberFormatException ignored) {
+                // fall through to Retry-After
+            }
+        }
+        String value = resp.header("Retry-After");
+        if (value == null || value.isBlank()) return -1;
+        try {
+            return Math.max(0, (long) (Double.parseDouble(value.trim()) * 1000));
+        } catch (NumberFormatException ignored) {
+            // HTTP date
+        }
+        try {
+            ZonedDateTime at = ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME);
+            return Math.max(0, Duration.between(ZonedDateTime.now(at.getZone()), at).toMillis());
+        } catch (DateTimeParseException e) {
+            return -1;
+        }
+    }
+}
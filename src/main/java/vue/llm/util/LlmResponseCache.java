@@ -0,0 +1,238 @@
+package vue.llm.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Content-addressed store of raw chat-completion responses, keyed by
+ * SHA-256(model, temperature, system prompt, user prompt).
+ *
+ * Layout: {@code <dir>/responses.dat} holds the response bodies back to back and
+ * {@code <dir>/index.tsv} has one {@code key offset length} line per body. Both files are only
+ * appended to; an index line is written after its body, so a torn write loses at most that entry.
+ */
+public class LlmResponseCache implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(LlmResponseCache.class);
+
+    public static final Path DEFAULT_DIR = Path.of("out", ".cache", "llm");
+
+    public enum Mode {
+        /** Serve hits, call the endpoint on a miss and store the response. */
+        READ_WRITE,
+        /** Serve hits only; a miss fails without touching the network. */
+        READ_ONLY,
+        /** Neither read nor write. */
+        BYPASS;
+
+        public static Mode parse(String value) {
+            switch (value.toLowerCase(Locale.ROOT)) {
+                case "rw": case "read-write": return READ_WRITE;
+                case "replay": case "ro": case "read-only": return READ_ONLY;
+                case "off": case "bypass": return BYPASS;
+                default: throw new IllegalArgumentException("Unknown LLM cache mode: " + value + " (rw, replay, off)");
+            }
+        }
+    }
+
+    /** Thrown on a read-only cache miss. */
+    public static class CacheMissException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        public CacheMissException(String key) {
+            super("LLM cache miss in replay mode: " + key);
+        }
+    }
+
+    private final Path dir;
+    private final Mode mode;
+    private final Map<String, long[]> index = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder writes = new LongAdder();
+    private FileChannel data;
+
+    public LlmResponseCache(Path dir, Mode mode) {
+        this.dir = dir;
+        this.mode = mode;
+        if (mode != Mode.BYPASS) {
+            open();
+        }
+    }
+
+    public static LlmResponseCache bypass() {
+        return new LlmResponseCache(DEFAULT_DIR, Mode.BYPASS);
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public static String key(String model, String temperature, String systemPrompt, String userPrompt) {
+        return key(model, temperature, null, systemPrompt, userPrompt);
+    }
+
+    /**
+     * Key of a request that also asked for {@code responseFormat} (raw JSON). Null leaves it out, so
+     * entries recorded with the default format before it was part of the key still match.
+     */
+    public static String key(String model, String temperature, String responseFormat, String systemPrompt,
+                             String userPrompt) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+        String[] parts = responseFormat != null
+                ? new String[]{model, temperature, systemPrompt, userPrompt, "response_format", responseFormat}
+                : new String[]{model, temperature, systemPrompt, userPrompt};
+        for (String part : parts) {
+            byte[] bytes = (part != null ? part : "").getBytes(StandardCharsets.UTF_8);
+            digest.update(ByteBuffer.allocate(4).putInt(bytes.length).array());
+            digest.update(bytes);
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /** The cached response for {@code key}, or null. Counts a hit or miss unless the cache is bypassed. */
+    public String get(String key) {
+        if (mode == Mode.BYPASS) return null;
+        long[] entry = index.get(key);
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        try {
+            ByteBuffer buffer = ByteBuffer.allocate((int) entry[1]);
+            long position = entry[0];
+            while (buffer.hasRemaining()) {
+                int read = data.read(buffer, position + buffer.position());
+                if (read < 0) throw new IOException("Truncated cache data");
+            }
+            hits.increment();
+            return new String(buffer.array(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            log.warn("[LlmCache] Failed to read entry {}: {}", key, e.getMessage());
+            misses.increment();
+            return null;
+        }
+    }
+
+    public void put(String key, String response) {
+        if (mode != Mode.READ_WRITE || response == null || index.containsKey(key)) return;
+        byte[] bytes = response.getBytes(StandardCharsets.UTF_8);
+        synchronized (this) {
+            if (index.containsKey(key)) return;
+            try {
+                long offset = data.size();
+                ByteBuffer buffer = ByteBuffer.wrap(bytes);
+                while (buffer.hasRemaining()) {
+                    data.write(buffer, offset + buffer.position());
+                }
+                Files.writeString(dir.resolve("index.tsv"), key + '\t' + offset + '\t' + bytes.length + '\n',
+                        StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+                index.put(key, new long[]{offset, bytes.length});
+                writes.increment();
+            } catch (IOException e) {
+                log.warn("[LlmCache] Failed to store entry {}: {}", key, e.getMessage());
+            }
+        }
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getWrites() {
+        return writes.sum();
+    }
+
+    public int size() {
+        return index.size();
+    }
+
+    public void resetStats() {
+        hits.reset();
+        misses.reset();
+        writes.reset();
+    }
+
+    public void printStats() {
+        if (mode == Mode.BYPASS || !log.isInfoEnabled()) return;
+        long h = getHits();
+        long m = getMisses();
+        log.info(String.format("[LlmCache] mode=%s hits=%d misses=%d stored=%d (%.1f%% hit rate, %d entries in %s)",
+                mode, h, m, getWrites(), h + m == 0 ? 0.0 : 100.0 * h / (h + m), size(), dir));
+    }
+
+    private void open() {
+        try {
+            if (mode == Mode.READ_ONLY) {
+                if (!Files.exists(dir.resolve("responses.dat"))) {
+                    log.warn("[LlmCache] No cache at {}, every replayed request will miss", dir);
+                    return;
+                }
+                data = FileChannel.open(dir.resolve("responses.dat"), StandardOpenOption.READ);
+            } else {
+                Files.createDirectories(dir);
+                data = FileChannel.open(dir.resolve("responses.dat"),
+                        StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            }
+            long dataSize = data.size();
+            Path indexFile = dir.resolve("index.tsv");
+            if (Files.exists(indexFile)) {
+                try (BufferedReader reader = Files.newBufferedReader(indexFile, StandardCharsets.UTF_8)) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        String[] fields = line.split("\t");
+                        if (fields.length != 3) continue;
+                        try {
+                            long offset = Long.parseLong(fields[1]);
+                            long length = Long.parseLong(fields[2]);
+                            if (offset + length <= dataSize) {
+                                index.put(fields[0], new long[]{offset, length});
+                            }
+                        } catch (NumberFormatException ignored) {
+                            // torn line from an interrupted write
+                        }
+                    }
+                }
+            }
+            log.info("[LlmCache] {} entries loaded from {} (mode={})", index.size(), dir, mode);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open LLM cache at " + dir, e);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (data != null) {
+            try {
+                data.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package vue.llm.util;
+
+import com.alibaba.fastjson2.JSONObject;
+import com.alibaba.fastjson2.JSONWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Aggregates {@link LlmCallRecord}s per run, per stage and per source file: histograms of queue wait,
+ * time to first byte, total latency and tokens, plus call, cache-hit, retry and failure counts and the
+ * share of prompt tokens the provider's prompt cache served, when it reports them. A call
+ * shared by several files counts once for each of them, with its tokens split by the file's share.
+ * Written as {@code llm_metrics.json}; latencies in milliseconds.
+ */
+public class LlmTelemetry {
+
+    private static final Logger log = LoggerFactory.getLogger(LlmTelemetry.class);
+    private static final double NANOS_PER_MS = 1_000_000.0;
+
+    /** USD per million prompt / completion tokens, to report cost; 0 leaves cost out. */
+    private final double promptPrice;
+    private final double completionPrice;
+
+    private final Aggregate run = new Aggregate();
+    private final Map<String, Aggregate> byStage = new ConcurrentHashMap<>();
+    private final Map<String, Aggregate> byFile = new ConcurrentHashMap<>();
+
+    private static final class Aggregate {
+        final LongAdder calls = new LongAdder();
+        final LongAdder cacheHits = new LongAdder();
+        final LongAdder failures = new LongAdder();
+        final LongAdder abandoned = new LongAdder();
+        final LongAdder retries = new LongAdder();
+        final Histogram queueWait = new Histogram();
+        final Histogram ttfb = new Histogram();
+        final Histogram latency = new Histogram();
+        final Histogram promptTokens = new Histogram();
+        final Histogram completionTokens = new Histogram();
+        final LongAdder cachedPromptTokens = new LongAdder();
+
+        void add(LlmCallRecord call, double share) {
+            calls.increment();
+            if (call.isCacheHit()) cacheHits.increment();
+            if (call.isFailed()) failures.increment();
+            if (call.isAbandoned()) abandoned.increment();
+            retries.add(call.getRetries());
+            queueWait.record(call.getQueueWaitNanos());
+            if (call.getTtfbNanos() >= 0) ttfb.record(call.getTtfbNanos());
+            latency.record(call.getTotalNanos());
+            if (!call.isCacheHit() && !call.isFailed() && !call.isAbandoned()) {
+                promptTokens.record(Math.round(call.getPromptTokens() * share));
+                completionTokens.record(Math.round(call.getCompletionTokens() * share));
+                cachedPromptTokens.add(Math.round(call.getCachedPromptTokens() * share));
+            }
+        }
+
+        /** Cached prompt tokens over all prompt tokens, or -1 when the provider reported none cached. */
+        double promptCacheHitRate() {
+            long cached = cachedPromptTokens.sum();
+            long prompt = promptTokens.getSum();
+            return cached > 0 && prompt > 0 ? (double) cached / prompt : -1;
+        }
+    }
+
+    public LlmTelemetry() {
+        this(0, 0);
+    }
+
+    public LlmTelemetry(double promptPricePerMillion, double completionPricePerMillion) {
+        this.promptPrice = promptPricePerMillion;
+        this.completionPrice = completionPricePerMillion;
+    }
+
+    public void record(LlmCallRecord call) {
+        run.add(call, 1);
+        byStage.computeIfAbsent(call.stage, k -> new Aggregate()).add(call, 1);
+        for (Map.Entry<String, Double> file : call.fileShares.entrySet()) {
+            byFile.computeIfAbsent(file.getKey(), k -> new Aggregate()).add(call, file.getValue());
+        }
+    }
+
+    public long getCalls() {
+        return run.calls.sum();
+    }
+
+    /** One line per stage: calls, latency percentiles and tokens. */
+    public void printStats() {
+        if (!log.isInfoEnabled()) return;
+        new TreeMap<>(byStage).forEach((stage, a) -> log.info(
+                "[LlmTelemetry] {}: {} calls ({} cached, {} failed, {} abandoned, {} retries), latency {}, ttfb {}, tokens {} in{} / {} out{}",
+                stage, a.calls.sum(), a.cacheHits.sum(), a.failures.sum(), a.abandoned.sum(), a.retries.sum(),
+                a.latency.summary(NANOS_PER_MS, "ms"), a.ttfb.summary(NANOS_PER_MS, "ms"),
+                a.promptTokens.getSum(), promptCacheSuffix(a), a.completionTokens.getSum(), costSuffix(a)));
+    }
+
+    private static String promptCacheSuffix(Aggregate a) {
+        double rate = a.promptCacheHitRate();
+        if (rate < 0) return "";
+        return String.format(" (%d from prompt cache, %.1f%%)", a.cachedPromptTokens.sum(), rate * 100);
+    }
+
+    private String costSuffix(Aggregate a) {
+        if (promptPrice <= 0 && completionPrice <= 0) return "";
+        return String.format(", $%.4f", cost(a));
+    }
+
+    private double cost(Aggregate a) {
+        return (a.promptTokens.getSum() * promptPrice + a.completionTokens.getSum() * completionPrice) / 1_000_000.0;
+    }
+
+    public JSONObject toJson() {
+        JSONObject json = new JSONObject();
+        json.put("run", toJson(run));
+        JSONObject stages = new JSONObject();
+        new TreeMap<>(byStage).forEach((stage, a) -> stages.put(stage, toJson(a)));
+        json.put("stages", stages);
+        JSONObject files = new JSONObject();
+        new TreeMap<>(byFile).forEach((file, a) -> files.put(file, toJson(a)));
+        json.put("files", files);
+        return json;
+    }
+
+    private JSONObject toJson(Aggregate a) {
+        JSONObject json = new JSONObject();
+        json.put("calls", a.calls.sum());
+        json.put("cacheHits", a.cacheHits.sum());
+        json.put("failures", a.failures.sum());
+        json.put("abandoned", a.abandoned.sum());
+        json.put("retries", a.retries.sum());
+        json.put("promptTokens", a.promptTokens.getSum());
+        json.put("completionTokens", a.completionTokens.getSum());
+        json.put("cachedPromptTokens", a.cachedPromptTokens.sum());
+        double promptCacheHitRate = a.promptCacheHitRate();
+        if (promptCacheHitRate >= 0) {
+            json.put("promptCacheHitRate", Math.round(promptCacheHitRate * 10_000) / 10_000.0);
+        }
+        if (promptPrice > 0 || completionPrice > 0) {
+            json.put("costUsd", Math.round(cost(a) * 1_000_000) / 1_000_000.0);
+        }
+        json.put("queueWaitMs", a.queueWait.toJson(NANOS_PER_MS));
+        json.put("ttfbMs", a.ttfb.toJson(NANOS_PER_MS));
+        json.put("latencyMs", a.latency.toJson(NANOS_PER_MS));
+        json.put("promptTokensPerCall", a.promptTokens.toJson(1));
+        json.put("completionTokensPerCall", a.completionTokens.toJson(1));
+        return json;
+    }
+
+    public void write(Path file) throws IOException {
+        Files.writeString(file, toJson().toJSONString(JSONWriter.Feature.PrettyFormat), StandardCharsets.UTF_8);
+        log.info("[LlmTelemetry] {} calls written to {}", getCalls(), file);
+    }
+}
@@ -0,0 +1,77 @@
+package vue.llm.util;
+
+/**
+ * Token-bucket limiter for an LLM account's requests-per-minute and tokens-per-minute quotas.
+ * Both buckets start full and refill continuously; a limit of 0 disables that bucket.
+ */
+public class RateLimiter {
+
+    private static final double NANOS_PER_MINUTE = 60_000_000_000.0;
+
+    private final int requestsPerMinute;
+    private final int tokensPerMinute;
+    private double requestBudget;
+    private double tokenBudget;
+    private long lastRefill;
+
+    public RateLimiter(int requestsPerMinute, int tokensPerMinute) {
+        this.requestsPerMinute = Math.max(0, requestsPerMinute);
+        this.tokensPerMinute = Math.max(0, tokensPerMinute);
+        this.requestBudget = this.requestsPerMinute;
+        this.tokenBudget = this.tokensPerMinute;
+        this.lastRefill = System.nanoTime();
+    }
+
+    public static RateLimiter unlimited() {
+        return new RateLimiter(0, 0);
+    }
+
+    public boolean isUnlimited() {
+        return requestsPerMinute == 0 && tokensPerMinute == 0;
+    }
+
+    /** Blocks until one request carrying {@code tokens} tokens fits in both buckets, then takes it. */
+    public void acquire(int tokens) throws InterruptedException {
+        if (isUnlimited()) return;
+        // A request larger than the whole bucket could never fit; let it through once the bucket is full.
+        double needTokens = Math.min(Math.max(0, tokens), tokensPerMinute);
+        while (true) {
+            long waitNanos;
+            synchronized (this) {
+                refill();
+                boolean requestOk = requestsPerMinute == 0 || requestBudget >= 1;
+                boolean tokensOk = tokensPerMinute == 0 || tokenBudget >= needTokens;
+                if (requestOk && tokensOk) {
+                    if (requestsPerMinute > 0) requestBudget -= 1;
+                    if (tokensPerMinute > 0) tokenBudget -= needTokens;
+                    return;
+                }
+                waitNanos = 0;
+                if (!requestOk) {
+                    waitNanos = Math.max(waitNanos, (long) ((1 - requestBudget) * NANOS_PER_MINUTE / requestsPerMinute));
+                }
+                if (!tokensOk) {
+                    waitNanos = Math.max(waitNanos, (long) ((needTokens - tokenBudget) * NANOS_PER_MINUTE / tokensPerMinute));
+                }
+            }
+            Thread.sleep(Math.max(1, (waitNanos + 999_999) / 1_000_000));
+        }
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        double minutes = (now - lastRefill) / NANOS_PER_MINUTE;
+        lastRefill = now;
+        if (requestsPerMinute > 0) {
+            requestBudget = Math.min(requestsPerMinute, requestBudget + minutes * requestsPerMinute);
+        }
+        if (tokensPerMinute > 0) {
+            tokenBudget = Math.min(tokensPerMinute, tokenBudget + minutes * tokensPerMinute);
+        }
+    }
+
+    /** Prompt size in tokens as estimated by {@link TokenEstimator}, used to charge the token bucket. */
+    public static int estimateTokens(String... parts) {
+        return TokenEstimator.estimate(parts);
+    }
+}
@@ -0,0 +1,203 @@
+package vue.llm.util;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Compile-once registry for the regular expressions used by the extraction pipeline.
+ * Every static pattern lives here so hot loops never pay for {@code Pattern.compile}.
+ */
+public final class RegexPatterns {
+
+    private RegexPatterns() {}
+
+    public static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    // --- Menu / conditional rendering ---
+
+    public static final Pattern CONDITIONAL_MENU_ASSIGNMENT = Pattern.compile(
+            "if\\s*\\([^)]+\\)\\s*\\{[^}]*(this\\.(items|menuList|menus|menuItems))\\s*=\\s*\\[",
+            Pattern.DOTALL
+    );
+
+    public static final Pattern METHOD_ROLE_CONDITIONAL = Pattern.compile(
+            "methods\\s*:\\s*\\{[^}]*if\\s*\\([^)]*role[^)]*\\)[^}]*(this\\.(items|menuList|menus))",
+            Pattern.DOTALL | Pattern.CASE_INSENSITIVE
+    );
+
+    public static final Pattern ROUTER_LINK_CLASS = Pattern.compile(
+            "<router-link[^>]*?\\sclass=\"([^\"]+)\"", Pattern.DOTALL);
+
+    public static final Pattern OBJECT_STRING_PROPERTY = Pattern.compile(
+            "(\\w+)\\s*:\\s*['\"]([^'\"]+)['\"]");
+
+    public static final Pattern MENU_PATH_NAME_PAIR = Pattern.compile(
+            "\\{\\s*path\\s*:\\s*['\"]([^'\"]+)['\"]\\s*,\\s*name\\s*:\\s*['\"]([^'\"]+)['\"]\\s*\\}|" +
+            "\\{\\s*name\\s*:\\s*['\"]([^'\"]+)['\"]\\s*,\\s*path\\s*:\\s*['\"]([^'\"]+)['\"]\\s*\\}"
+    );
+
+    public static final Pattern MENU_LABEL_PATH = Pattern.compile(
+            "\\{[^}]*label\\s*:\\s*['\"]([^'\"]+)['\"][^}]*path\\s*:\\s*['\"]([^'\"]+)['\"][^}]*\\}|" +
+            "\\{[^}]*path\\s*:\\s*['\"]([^'\"]+)['\"][^}]*label\\s*:\\s*['\"]([^'\"]+)['\"][^}]*\\}"
+    );
+
+    public static final Pattern MENU_TITLE_PATH = Pattern.compile(
+            "\\{[^}]*title\\s*:\\s*['\"]([^'\"]+)['\"][^}]*path\\s*:\\s*['\"]([^'\"]+)['\"][^}]*\\}|" +
+            "\\{[^}]*path\\s*:\\s*['\"]([^'\"]+)['\"][^}]*title\\s*:\\s*['\"]([^'\"]+)['\"][^}]*\\}"
+    );
+
+    public static final Pattern MENU_ARRAY_BLOCK = Pattern.compile(
+            "(children|items|menus|menuList|tabs)\\s*:\\s*\\[([^\\]]+)\\]",
+            Pattern.DOTALL
+    );
+
+    public static final Pattern OBJECT_BODY = Pattern.compile("\\{([^}]+)\\}", Pattern.DOTALL);
+
+    public static final Pattern BASE_MENU_DECLARATION = Pattern.compile("const\\s+baseMenu\\s*=\\s*\\[");
+
+    public static final Pattern PATH_PROPERTY = Pattern.compile("path\\s*:\\s*['\"]([^'\"]+)['\"]");
+
+    public static final Pattern EL_SUB_MENU_BLOCK = Pattern.compile(
+            "<el-sub-menu[^>]*>(.*?)</el-sub-menu>", Pattern.DOTALL);
+
+    public static final Pattern TITLE_SLOT_TEMPLATE = Pattern.compile(
+            "<template[^>]*(?:#title|slot=[\"']title[\"'])[^>]*>(.*?)</template>", Pattern.DOTALL);
+
+    public static final Pattern SPAN_TEXT = Pattern.compile("<span[^>]*>([^<]+)</span>");
+
+    // --- Router config ---
+
+    public static final Pattern ROUTE_CONFIG_PATH = Pattern.compile("path\\s*:\\s*['\"`]([^'\"`]+)['\"`]");
+
+    public static final Pattern ROUTE_CONFIG_NAME = Pattern.compile("name\\s*:\\s*['\"`]([^'\"`]+)['\"`]");
+
+    public static final Pattern ROUTE_META_ROLES = Pattern.compile(
+            "['\"]?meta['\"]?\\s*:\\s*\\{[^}]*['\"]?roles['\"]?\\s*:\\s*\\[([^\\]]+)\\]", Pattern.DOTALL);
+
+    public static final Pattern ROUTE_NAME_V_IF = Pattern.compile(
+            "v-if\\s*=\\s*['\"]([^'\"]*\\$route\\.name\\s*===?\\s*['\"]([^'\"]+)['\"][^'\"]*)['\"]");
+
+    // --- Navigation calls ---
+
+    public static final Pattern ROUTER_PUSH_LITERAL = Pattern.compile(
+            "\\$router\\.push\\(\\s*['\"]([^'\"]+)['\"]\\s*\\)");
+
+    public static final Pattern ROUTER_PUSH_CONCAT = Pattern.compile(
+            "\\$router\\.push\\(\\s*['\"]([^'\"]+)['\"]\\s*\\+");
+
+    public static final Pattern ROUTER_REPLACE_LITERAL = Pattern.compile(
+            "\\$router\\.replace\\(\\s*['\"]([^'\"]+)['\"]");
+
+    public static final Pattern METHOD_CALL_WITH_STRING_ARG = Pattern.compile(
+            "^([a-zA-Z_][a-zA-Z0-9_]*)\\s*\\(\\s*['\"]([^'\"]+)['\"]");
+
+    public static final Pattern METHOD_CALL_NAME = Pattern.compile("^([a-zA-Z_][a-zA-Z0-9_]*)\\s*\\(");
+
+    public static final Pattern WINDOW_OPEN_RESOLVE = Pattern.compile(
+            "window\\.open\\([^)]*\\$router\\.resolve\\(['\"]([^'\"]+)['\"](?:\\s*\\+[^)]+)?\\)");
+
+    public static final Pattern WINDOW_OPEN_LITERAL = Pattern.compile("window\\.open\\(\\s*['\"]([^'\"]+)['\"]");
+
+    public static final Pattern WINDOW_OPEN_TEMPLATE = Pattern.compile("window\\.open\\(\\s*`([^`]+)`");
+
+    public static final Pattern TEMPLATE_INTERPOLATION = Pattern.compile("\\$\\{[^}]+\\}");
+
+    public static final Pattern CLICK_ROUTER_PUSH_ELEMENT = Pattern.compile(
+            "<(\\w+)([^>]*@click\\s*=\\s*['\"]\\$router\\.push\\(['\"]([^'\"]+)['\"]\\)[^'\"]*['\"][^>]*)>",
+            Pattern.DOTALL
+    );
+
+    // --- Template / markup ---
+
+    public static final Pattern TEMPLATE_SECTION = Pattern.compile("<template[^>]*>(.+?)</template>", Pattern.DOTALL);
+
+    public static final Pattern SCRIPT_SECTION = Pattern.compile("<script[^>]*>(.+?)</script>", Pattern.DOTALL);
+
+    /** {@code @event="handler"} / {@code v-on:event="handler(...)"}: the handler's leading identifier. */
+    public static final Pattern EVENT_HANDLER_NAME = Pattern.compile(
+            "(?:@|v-on:)[\\w.:-]+\\s*=\\s*['\"]\\s*([A-Za-z_$][\\w$]*)");
+
+    /**
+     * What follows a method's name where it is defined, up to and including its opening brace:
+     * {@code (args)}, {@code = (args) =>} or {@code : function (args)}. Used with {@code lookingAt} right
+     * after the name, which is found with a literal scan rather than a pattern per name.
+     */
+    public static final Pattern METHOD_DEFINITION_TAIL = Pattern.compile(
+            "\\s*(?:\\([^)]*\\)|=\\s*\\([^)]*\\)\\s*=>|:\\s*function\\s*\\([^)]*\\))\\s*\\{");
+
+    public static final Pattern CLASS_ATTRIBUTE = Pattern.compile("class\\s*=\\s*['\"]([^'\"]+)['\"]");
+
+    public static final Pattern TAG_TEXT = Pattern.compile(">([^<]+)<");
+
+    public static final Pattern VISIBLE_TEXT_LINE = Pattern.compile(".*[\\u4e00-\\u9fa5a-zA-Z0-9]+.*");
+
+    // --- Selectors / conditions ---
+
+    public static final Pattern GENERIC_BUTTON_SELECTOR = Pattern.compile("^button(:has-text\\(.*\\))?$");
+
+    public static final Pattern EL_MENU_HAS_TEXT_SELECTOR = Pattern.compile("^\\.el-menu:has-text\\(.*\\)$");
+
+    public static final Pattern HAS_TEXT_QUOTED = Pattern.compile(":has-text\\(['\"]([^'\"]+)['\"]\\)");
+
+    public static final Pattern SELECTOR_TEXT_NOISE = Pattern.compile("[><!\\-»«]+");
+
+    public static final Pattern OR_EQUALITY_CHAIN = Pattern.compile(
+            "(\\w+)===(['\"])([^'\"]+)\\2(?:\\|\\|\\1===\\2([^'\"]+)\\2)+");
+
+    private static final Map<String, Pattern> DYNAMIC = new ConcurrentHashMap<>();
+
+    /**
+     * Compiles a pattern built at runtime at most once per distinct regex.
+     * Only meant for small, bounded key spaces such as condition variable names.
+     */
+    public static Pattern cached(String regex) {
+        return DYNAMIC.computeIfAbsent(regex, Pattern::compile);
+    }
+
+    /**
+     * Literal replacement for {@code key\s*<separator>\s*["']value["']}: returns the offset of the first
+     * quoted {@code value} bound to {@code key}, or -1. Runs on plain {@code indexOf} so callers can
+     * probe many dynamic values without compiling a pattern per value. With {@code ':'} the key may
+     * itself be quoted, as in object literals.
+     */
+    public static int indexOfQuotedBinding(String content, String key, char separator, String value) {
+        if (content == null || key == null || value == null) return -1;
+
+        int from = 0;
+        while (true) {
+            int pos = content.indexOf(value, from);
+            if (pos < 0) return -1;
+            from = pos + 1;
+
+            int end = pos + value.length();
+            if (pos == 0 || end >= content.length()) continue;
+            if (!isQuote(content.charAt(pos - 1)) || !isQuote(content.charAt(end))) continue;
+
+            int i = skipWhitespaceBackward(content, pos - 2);
+            if (i < 0 || content.charAt(i) != separator) continue;
+            i = skipWhitespaceBackward(content, i - 1);
+            if (i < 0) continue;
+            if (content.startsWith(key, i - key.length() + 1)) {
+                return pos;
+            }
+            if (separator == ':' && isQuote(content.charAt(i)) && content.startsWith(key, i - key.length())) {
+                return pos;
+            }
+        }
+    }
+
+    private static boolean isQuote(char c) {
+        return c == '"' || c == '\'';
+    }
+
+    // Same character class as the regex \s
+    private static int skipWhitespaceBackward(String content, int i) {
+        while (i >= 0) {
+            char c = content.charAt(i);
+            if (c != ' ' && c != '\t' && c != '\n' && c != '\u000B' && c != '\f' && c != '\r') break;
+            i--;
+        }
+        return i;
+    }
+}
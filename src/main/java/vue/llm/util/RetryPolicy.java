@@ -0,0 +1,88 @@
+package vue.llm.util;
+
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * How {@link LlmClient} retries a failed call: which failures are worth another attempt, and how long to
+ * wait before it. Waits grow exponentially with full jitter, so concurrent callers that failed together do
+ * not come back together; a server's {@code Retry-After} is honoured as a lower bound.
+ */
+public class RetryPolicy {
+
+    public enum Failure {
+        /** HTTP 429. */
+        THROTTLED,
+        /** HTTP 5xx or 408. */
+        SERVER,
+        /** Connection failure or timeout. */
+        NETWORK,
+        /** Any other 4xx: the request itself is wrong, another attempt would fail the same way. */
+        CLIENT,
+        /** Not a transport failure (e.g. the caller gave up on a stream); never retried. */
+        OTHER;
+
+        public boolean isRetryable() {
+            return this == THROTTLED || this == SERVER || this == NETWORK;
+        }
+    }
+
+    public static final int DEFAULT_MAX_ATTEMPTS = 4;
+    public static final long DEFAULT_BASE_DELAY_MS = 500;
+    public static final long DEFAULT_MAX_DELAY_MS = 20_000;
+    /** Longer {@code Retry-After} hints are not waited out; the call fails instead. */
+    public static final long MAX_RETRY_AFTER_MS = 60_000;
+
+    private final int maxAttempts;
+    private final long baseDelayMs;
+    private final long maxDelayMs;
+
+    public RetryPolicy(int maxAttempts, long baseDelayMs, long maxDelayMs) {
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.baseDelayMs = Math.max(1, baseDelayMs);
+        this.maxDelayMs = Math.max(this.baseDelayMs, maxDelayMs);
+    }
+
+    public static RetryPolicy defaults() {
+        return new RetryPolicy(DEFAULT_MAX_ATTEMPTS, DEFAULT_BASE_DELAY_MS, DEFAULT_MAX_DELAY_MS);
+    }
+
+    /** A single attempt per call. */
+    public static RetryPolicy none() {
+        return new RetryPolicy(1, DEFAULT_BASE_DELAY_MS, DEFAULT_MAX_DELAY_MS);
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    public static Failure classify(Throwable error) {
+        if (error instanceof CircuitBreaker.OpenException) return Failure.OTHER;
+        if (error instanceof LlmHttpException) {
+            int status = ((LlmHttpException) error).getStatusCode();
+            if (status == 429) return Failure.THROTTLED;
+            if (status >= 500 || status == 408) return Failure.SERVER;
+            return Failure.CLIENT;
+        }
+        if (error instanceof IOException) return Failure.NETWORK;
+        return Failure.OTHER;
+    }
+
+    /** Whether {@code error} on attempt {@code attempt} (1-based) deserves another attempt. */
+    public boolean shouldRetry(Throwable error, int attempt) {
+        if (attempt >= maxAttempts || !classify(error).isRetryable()) return false;
+        return retryAfterMillis(error) <= MAX_RETRY_AFTER_MS;
+    }
+
+    /** Wait before attempt {@code attempt + 1}: uniform in [0, min(max, base * 2^(attempt-1))], at least Retry-After. */
+    public long delayMillis(Throwable error, int attempt) {
+        long ceiling = Math.min(maxDelayMs, baseDelayMs << Math.min(attempt - 1, 20));
+        long jittered = ThreadLocalRandom.current().nextLong(ceiling + 1);
+        long retryAfter = retryAfterMillis(error);
+        return retryAfter >= 0 ? Math.max(retryAfter + jittered / 4, jittered) : jittered;
+    }
+
+    private static long retryAfterMillis(Throwable error) {
+        return error instanceof LlmHttpException ? ((LlmHttpException) error).getRetryAfterMillis() : -1;
+    }
+}
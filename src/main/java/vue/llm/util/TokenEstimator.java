@@ -0,0 +1,54 @@
+package vue.llm.util;
+
+/**
+ * Offline approximation of a BPE tokenizer (cl100k/o200k style) for budgeting prompts.
+ * Letter runs cost about one token per four characters, digit runs one per three, each
+ * punctuation/symbol character one token and whitespace is folded into the following word;
+ * non-ASCII characters count one token each. Unlike a flat chars/4 rule this does not undercount
+ * punctuation-heavy text such as Vue templates and JSON; it is an estimate, not an exact count.
+ */
+public final class TokenEstimator {
+
+    private TokenEstimator() {
+    }
+
+    public static int estimate(CharSequence text) {
+        if (text == null) return 0;
+        long tokens = 0;
+        int letters = 0;
+        int digits = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 128 && Character.isLetter(c)) {
+                if (digits > 0) { tokens += (digits + 2) / 3; digits = 0; }
+                letters++;
+                continue;
+            }
+            if (c >= '0' && c <= '9') {
+                if (letters > 0) { tokens += (letters + 3) / 4; letters = 0; }
+                digits++;
+                continue;
+            }
+            if (letters > 0) { tokens += (letters + 3) / 4; letters = 0; }
+            if (digits > 0) { tokens += (digits + 2) / 3; digits = 0; }
+            if (c == ' ') continue;
+            if (c == '\n' || c == '\t' || c == '\r') {
+                // indentation runs collapse into a single token
+                while (i + 1 < text.length() && Character.isWhitespace(text.charAt(i + 1))) i++;
+                tokens++;
+                continue;
+            }
+            tokens++;
+        }
+        tokens += (letters + 3) / 4 + (digits + 2) / 3;
+        return (int) Math.min(Integer.MAX_VALUE, tokens);
+    }
+
+    public static int estimate(String... parts) {
+        long total = 0;
+        for (String part : parts) {
+            total += estimate((CharSequence) part);
+        }
+        return (int) Math.min(Integer.MAX_VALUE, total);
+    }
+}